@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Map;
+
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+
+public class ColumnarResultsIT extends BaseUniqueNamesOwnClusterIT {
+    private static final int ROW_COUNT = 100;
+
+    @BeforeClass
+    public static void doSetup() throws Exception {
+        Map<String,String> props = Maps.newHashMapWithExpectedSize(3);
+        props.put(QueryServices.COLUMNAR_RESULTS_ENABLED_ATTRIB, Boolean.toString(true));
+        // Small enough for a scan to return several batches
+        props.put(QueryServices.COLUMNAR_RESULTS_BATCH_SIZE_ATTRIB, Integer.toString(7));
+        props.put(QueryServices.COLUMNAR_RESULTS_COMPRESSION_ATTRIB, Boolean.toString(true));
+        setUpTestDriver(new ReadOnlyProps(props.entrySet().iterator()));
+    }
+
+    private static String createTable(Connection conn) throws Exception {
+        String tableName = generateUniqueName();
+        conn.createStatement().execute("CREATE TABLE " + tableName
+                + " (k VARCHAR PRIMARY KEY, a.v1 INTEGER, b.v2 VARCHAR) SPLIT ON ('k050')");
+        PreparedStatement stmt = conn.prepareStatement("UPSERT INTO " + tableName + " VALUES (?, ?, ?)");
+        for (int i = 0; i < ROW_COUNT; i++) {
+            stmt.setString(1, String.format("k%03d", i));
+            stmt.setInt(2, i);
+            // Leave some columns null
+            stmt.setString(3, i % 3 == 0 ? null : "v" + i);
+            stmt.execute();
+        }
+        conn.commit();
+        return tableName;
+    }
+
+    @Test
+    public void testFullScan() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            String tableName = createTable(conn);
+            ResultSet rs = conn.createStatement().executeQuery("SELECT k, v1, v2 FROM " + tableName);
+            for (int i = 0; i < ROW_COUNT; i++) {
+                assertTrue(rs.next());
+                assertEquals(String.format("k%03d", i), rs.getString(1));
+                assertEquals(i, rs.getInt(2));
+                if (i % 3 == 0) {
+                    assertNull(rs.getString(3));
+                } else {
+                    assertEquals("v" + i, rs.getString(3));
+                }
+            }
+            assertFalse(rs.next());
+        }
+    }
+
+    @Test
+    public void testOrderByAndLimit() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            String tableName = createTable(conn);
+            ResultSet rs = conn.createStatement().executeQuery(
+                    "SELECT k, v1 FROM " + tableName + " WHERE v1 >= 10 ORDER BY v1 DESC LIMIT 20");
+            for (int i = ROW_COUNT - 1; i >= ROW_COUNT - 20; i--) {
+                assertTrue(rs.next());
+                assertEquals(i, rs.getInt(2));
+            }
+            assertFalse(rs.next());
+
+            rs = conn.createStatement().executeQuery("SELECT k FROM " + tableName + " ORDER BY k DESC");
+            for (int i = ROW_COUNT - 1; i >= 0; i--) {
+                assertTrue(rs.next());
+                assertEquals(String.format("k%03d", i), rs.getString(1));
+            }
+            assertFalse(rs.next());
+        }
+    }
+
+    @Test
+    public void testOffset() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            String tableName = createTable(conn);
+            ResultSet rs = conn.createStatement().executeQuery(
+                    "SELECT k FROM " + tableName + " LIMIT 10 OFFSET 45");
+            for (int i = 45; i < 55; i++) {
+                assertTrue(rs.next());
+                assertEquals(String.format("k%03d", i), rs.getString(1));
+            }
+            assertFalse(rs.next());
+        }
+    }
+}
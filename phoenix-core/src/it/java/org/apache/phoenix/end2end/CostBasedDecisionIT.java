@@ -18,6 +18,7 @@
 package org.apache.phoenix.end2end;
 
 import static org.apache.phoenix.util.TestUtil.TEST_PROPERTIES;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.sql.Connection;
@@ -29,6 +30,7 @@ import java.util.Properties;
 
 import org.apache.phoenix.query.BaseTest;
 import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.util.PhoenixRuntime;
 import org.apache.phoenix.util.PropertiesUtil;
 import org.apache.phoenix.util.QueryUtil;
 import org.apache.phoenix.util.ReadOnlyProps;
@@ -639,6 +641,39 @@ public class CostBasedDecisionIT extends BaseUniqueNamesOwnClusterIT {
         verifyQueryPlan(q, expected);
     }
 
+    /**
+     * Multi-table join: the hash joins of a star join are reordered so that the join with
+     * the smaller right-hand side is probed first.
+     */
+    @Test
+    public void testJoinOrder() throws Exception {
+        String q = "SELECT t1.ID, t2.COL2, t3.COL1\n" +
+                "FROM " + testTable1000 + " t1 JOIN " + testTable500 + " t2\n" +
+                "ON t1.COL2 = t2.COL1 AND t2.ID > 200\n" +
+                "JOIN " + testTable990 + " t3\n" +
+                "ON t1.COL1 = t3.COL2 AND t3.ID < 100";
+        String expected =
+                "CLIENT PARALLEL 1-WAY FULL SCAN OVER " + testTable1000 + "\n" +
+                "    PARALLEL INNER-JOIN TABLE 0\n" +
+                "        CLIENT PARALLEL 1-WAY RANGE SCAN OVER " + testTable990 + " [*] - [100]\n" +
+                "    PARALLEL INNER-JOIN TABLE 1\n" +
+                "        CLIENT PARALLEL 1-WAY RANGE SCAN OVER " + testTable500 + " [201] - [*]";
+        verifyQueryPlan(q, expected);
+    }
+
+    @Test
+    public void testExplainShowsCost() throws Exception {
+        Properties props = PropertiesUtil.deepCopy(TEST_PROPERTIES);
+        try (Connection conn = DriverManager.getConnection(getUrl(), props)) {
+            ResultSet rs = conn.createStatement().executeQuery("explain SELECT * FROM " + testTable500
+                    + " t1 JOIN " + testTable1000 + " t2 ON t1.ID = t2.ID");
+            assertTrue(rs.next());
+            double cost = rs.getDouble(PhoenixRuntime.EXPLAIN_PLAN_ESTIMATED_COST_COLUMN);
+            assertFalse(rs.wasNull());
+            assertTrue(cost > 0);
+        }
+    }
+
     private static void verifyQueryPlan(String query, String expected) throws Exception {
         Properties props = PropertiesUtil.deepCopy(TEST_PROPERTIES);
         Connection conn = DriverManager.getConnection(getUrl(), props);
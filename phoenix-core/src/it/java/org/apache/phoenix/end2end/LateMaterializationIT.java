@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Map;
+
+import org.apache.phoenix.coprocessor.BaseScannerRegionObserver;
+import org.apache.phoenix.jdbc.PhoenixStatement;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+
+public class LateMaterializationIT extends BaseUniqueNamesOwnClusterIT {
+    private static final int ROW_COUNT = 200;
+
+    @BeforeClass
+    public static void doSetup() throws Exception {
+        Map<String,String> props = Maps.newHashMapWithExpectedSize(1);
+        props.put(QueryServices.LATE_MATERIALIZATION_ENABLED_ATTRIB, Boolean.toString(true));
+        setUpTestDriver(new ReadOnlyProps(props.entrySet().iterator()));
+    }
+
+    private static String createTable(Connection conn) throws Exception {
+        String tableName = generateUniqueName();
+        conn.createStatement().execute("CREATE TABLE " + tableName
+                + " (k INTEGER PRIMARY KEY, status VARCHAR, payload1 VARCHAR, payload2 VARCHAR, b.payload3 VARCHAR)"
+                + " SPLIT ON (100)");
+        PreparedStatement stmt = conn.prepareStatement("UPSERT INTO " + tableName + " VALUES (?, ?, ?, ?, ?)");
+        for (int i = 0; i < ROW_COUNT; i++) {
+            stmt.setInt(1, i);
+            stmt.setString(2, i % 50 == 0 ? null : (i % 10 == 0 ? "rare" : "common"));
+            stmt.setString(3, "p1-" + i);
+            // Some rows have none of the deferred columns of the default column family
+            stmt.setString(4, i % 7 == 0 ? null : "p2-" + i);
+            stmt.setString(5, i % 2 == 0 ? "p3-" + i : null);
+            stmt.execute();
+        }
+        conn.commit();
+        return tableName;
+    }
+
+    private static ResultSet executeLateMaterialized(Connection conn, String query) throws Exception {
+        PhoenixStatement stmt = conn.createStatement().unwrap(PhoenixStatement.class);
+        ResultSet rs = stmt.executeQuery(query);
+        assertNotNull(stmt.getQueryPlan().getContext().getScan().getAttribute(
+                BaseScannerRegionObserver.LATE_MATERIALIZED_COLUMNS));
+        return rs;
+    }
+
+    private static void assertRow(ResultSet rs, int i) throws Exception {
+        assertTrue(rs.next());
+        assertEquals(i, rs.getInt("k"));
+        assertEquals("p1-" + i, rs.getString("payload1"));
+        assertEquals(i % 7 == 0 ? null : "p2-" + i, rs.getString("payload2"));
+        assertEquals(i % 2 == 0 ? "p3-" + i : null, rs.getString("payload3"));
+    }
+
+    @Test
+    public void testSelectiveFilter() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            String tableName = createTable(conn);
+            ResultSet rs = executeLateMaterialized(conn,
+                    "SELECT k, payload1, payload2, payload3 FROM " + tableName + " WHERE status = 'rare'");
+            for (int i = 0; i < ROW_COUNT; i++) {
+                if (i % 10 == 0 && i % 50 != 0) {
+                    assertRow(rs, i);
+                }
+            }
+            assertFalse(rs.next());
+        }
+    }
+
+    @Test
+    public void testIsNullFilter() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            String tableName = createTable(conn);
+            ResultSet rs = executeLateMaterialized(conn,
+                    "SELECT k, payload1, payload2, payload3 FROM " + tableName + " WHERE status IS NULL");
+            for (int i = 0; i < ROW_COUNT; i += 50) {
+                assertRow(rs, i);
+            }
+            assertFalse(rs.next());
+        }
+    }
+
+    @Test
+    public void testFilteredColumnProjectedAndOrderBy() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            String tableName = createTable(conn);
+            ResultSet rs = executeLateMaterialized(conn, "SELECT k, status, payload1, payload2, payload3 FROM "
+                    + tableName + " WHERE status = 'rare' AND k > 100 ORDER BY payload1 DESC LIMIT 3");
+            // Sorted as strings
+            for (int i : new int[] { 190, 180, 170 }) {
+                assertRow(rs, i);
+                assertEquals("rare", rs.getString("status"));
+            }
+            assertFalse(rs.next());
+        }
+    }
+
+    @Test
+    public void testNotUsedWithoutFilter() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            String tableName = createTable(conn);
+            PhoenixStatement stmt = conn.createStatement().unwrap(PhoenixStatement.class);
+            ResultSet rs = stmt.executeQuery("SELECT k, payload1, payload2, payload3 FROM " + tableName);
+            assertNull(stmt.getQueryPlan().getContext().getScan().getAttribute(
+                    BaseScannerRegionObserver.LATE_MATERIALIZED_COLUMNS));
+            for (int i = 0; i < ROW_COUNT; i++) {
+                assertRow(rs, i);
+            }
+            assertFalse(rs.next());
+        }
+    }
+
+    @Test
+    public void testNotUsedForTransactionalTable() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl());
+                Connection txConn = DriverManager.getConnection(getUrl())) {
+            String tableName = generateUniqueName();
+            conn.createStatement().execute("CREATE TABLE " + tableName
+                    + " (k INTEGER PRIMARY KEY, status VARCHAR, payload1 VARCHAR) TRANSACTIONAL=true");
+            conn.createStatement().execute("UPSERT INTO " + tableName + " VALUES (1, 'rare', 'committed')");
+            conn.commit();
+            // The write in flight is sent to the region server by the query of its own transaction
+            txConn.setAutoCommit(false);
+            txConn.createStatement().execute("UPSERT INTO " + tableName + " VALUES (1, 'rare', 'uncommitted')");
+            ResultSet txRs = txConn.createStatement().executeQuery(
+                    "SELECT payload1 FROM " + tableName + " WHERE status = 'rare'");
+            assertTrue(txRs.next());
+            assertEquals("uncommitted", txRs.getString(1));
+
+            PhoenixStatement stmt = conn.createStatement().unwrap(PhoenixStatement.class);
+            ResultSet rs = stmt.executeQuery("SELECT k, payload1 FROM " + tableName + " WHERE status = 'rare'");
+            assertNull(stmt.getQueryPlan().getContext().getScan().getAttribute(
+                    BaseScannerRegionObserver.LATE_MATERIALIZED_COLUMNS));
+            assertTrue(rs.next());
+            assertEquals(1, rs.getInt("k"));
+            assertEquals("committed", rs.getString("payload1"));
+            assertFalse(rs.next());
+            txConn.rollback();
+        }
+    }
+}
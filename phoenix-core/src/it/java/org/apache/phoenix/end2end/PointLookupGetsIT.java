@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.phoenix.monitoring.MetricType;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.util.PhoenixRuntime;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+
+public class PointLookupGetsIT extends BaseUniqueNamesOwnClusterIT {
+
+    @BeforeClass
+    public static void doSetup() throws Exception {
+        Map<String, String> props = Maps.newHashMapWithExpectedSize(1);
+        props.put(QueryServices.POINT_LOOKUP_USE_GETS_ATTRIB, Boolean.toString(true));
+        setUpTestDriver(new ReadOnlyProps(props.entrySet().iterator()));
+    }
+
+    private static void populate(Connection conn, String tableName, String options) throws Exception {
+        conn.createStatement().execute("CREATE TABLE " + tableName
+                + " (k1 VARCHAR NOT NULL, k2 INTEGER NOT NULL, v1 VARCHAR, v2 INTEGER"
+                + " CONSTRAINT pk PRIMARY KEY (k1, k2)) " + options);
+        PreparedStatement stmt = conn.prepareStatement("UPSERT INTO " + tableName + " VALUES (?, ?, ?, ?)");
+        for (int i = 0; i < 20; i++) {
+            stmt.setString(1, "k" + (i % 4));
+            stmt.setInt(2, i);
+            stmt.setString(3, "v" + i);
+            stmt.setInt(4, i);
+            stmt.execute();
+        }
+        conn.commit();
+    }
+
+    private static void assertLookup(Connection conn, String tableName) throws Exception {
+        ResultSet rs = conn.createStatement().executeQuery("SELECT k2, v1 FROM " + tableName
+                + " WHERE k1 IN ('k1', 'k2') AND k2 IN (1, 2, 5, 6, 7)");
+        assertTrue(rs.next());
+        assertEquals(1, rs.getInt(1));
+        assertEquals("v1", rs.getString(2));
+        assertTrue(rs.next());
+        assertEquals(5, rs.getInt(1));
+        assertEquals("v5", rs.getString(2));
+        assertTrue(rs.next());
+        assertEquals(2, rs.getInt(1));
+        assertEquals("v2", rs.getString(2));
+        assertTrue(rs.next());
+        assertEquals(6, rs.getInt(1));
+        assertEquals("v6", rs.getString(2));
+        assertFalse(rs.next());
+
+        // Non primary key filters are still evaluated
+        rs = conn.createStatement().executeQuery("SELECT k2 FROM " + tableName
+                + " WHERE k1 = 'k1' AND k2 IN (1, 5, 9, 13) AND v2 > 4");
+        assertTrue(rs.next());
+        assertEquals(5, rs.getInt(1));
+        assertTrue(rs.next());
+        assertEquals(9, rs.getInt(1));
+        assertTrue(rs.next());
+        assertEquals(13, rs.getInt(1));
+        assertFalse(rs.next());
+
+        rs = conn.createStatement().executeQuery("SELECT k2 FROM " + tableName
+                + " WHERE k1 = 'k1' AND k2 IN (1, 5, 9, 13) LIMIT 2");
+        assertTrue(rs.next());
+        assertEquals(1, rs.getInt(1));
+        assertTrue(rs.next());
+        assertEquals(5, rs.getInt(1));
+        assertFalse(rs.next());
+    }
+
+    @Test
+    public void testPointLookup() throws Exception {
+        String tableName = generateUniqueName();
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            populate(conn, tableName, "SPLIT ON ('k2')");
+            assertLookup(conn, tableName);
+        }
+    }
+
+    @Test
+    public void testPointLookupWithRequestMetrics() throws Exception {
+        String tableName = generateUniqueName();
+        Properties props = new Properties();
+        props.setProperty(PhoenixRuntime.REQUEST_METRIC_ATTRIB, Boolean.toString(true));
+        try (Connection conn = DriverManager.getConnection(getUrl(), props)) {
+            populate(conn, tableName, "SPLIT ON ('k2')");
+            assertLookup(conn, tableName);
+            ResultSet rs = conn.createStatement().executeQuery("SELECT k2, v1 FROM " + tableName
+                    + " WHERE k1 IN ('k1', 'k2') AND k2 IN (1, 2, 5, 6, 7)");
+            int count = 0;
+            while (rs.next()) {
+                count++;
+            }
+            assertEquals(4, count);
+            // One Get per key, which a skip scan would not have recorded as rows scanned
+            Map<MetricType, Long> tableMetrics = PhoenixRuntime.getRequestReadMetricInfo(rs).get(tableName);
+            assertEquals(10, (long)tableMetrics.get(MetricType.COUNT_ROWS_SCANNED));
+            assertTrue(tableMetrics.get(MetricType.COUNT_BYTES_REGION_SERVER_RESULTS) > 0);
+        }
+    }
+
+    @Test
+    public void testPointLookupOnSaltedTable() throws Exception {
+        String tableName = generateUniqueName();
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            populate(conn, tableName, "SALT_BUCKETS = 4");
+            ResultSet rs = conn.createStatement().executeQuery("SELECT v1 FROM " + tableName
+                    + " WHERE k1 IN ('k1', 'k2') AND k2 IN (1, 2, 5, 6, 7)");
+            int count = 0;
+            while (rs.next()) {
+                count++;
+            }
+            assertEquals(4, count);
+            rs = conn.createStatement().executeQuery("SELECT v1 FROM " + tableName
+                    + " WHERE k1 = 'k3' AND k2 = 11");
+            assertTrue(rs.next());
+            assertEquals("v11", rs.getString(1));
+            assertFalse(rs.next());
+        }
+    }
+}
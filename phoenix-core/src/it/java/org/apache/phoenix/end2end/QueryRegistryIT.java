@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.apache.phoenix.exception.SQLExceptionCode;
+import org.apache.phoenix.monitoring.RunningQuery;
+import org.apache.phoenix.util.PhoenixRuntime;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the tracking and cancellation of running queries through
+ * {@link PhoenixRuntime#getRunningQueries(Connection)}
+ */
+public class QueryRegistryIT extends ParallelStatsDisabledIT {
+    private String tableName;
+
+    @Before
+    public void createTable() throws Exception {
+        tableName = generateUniqueName();
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            conn.createStatement().execute("CREATE TABLE " + tableName
+                    + " (k INTEGER NOT NULL PRIMARY KEY, v VARCHAR) SALT_BUCKETS = 4");
+            PreparedStatement stmt = conn.prepareStatement("UPSERT INTO " + tableName + " VALUES (?, ?)");
+            for (int i = 0; i < 100; i++) {
+                stmt.setInt(1, i);
+                stmt.setString(2, "v" + i);
+                stmt.executeUpdate();
+            }
+            conn.commit();
+        }
+    }
+
+    private RunningQuery findRunningQuery(Connection conn) throws SQLException {
+        for (RunningQuery query : PhoenixRuntime.getRunningQueries(conn)) {
+            if (query.getSql().contains(tableName)) {
+                return query;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void testQueryTrackedUntilResultSetClosed() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            ResultSet rs = conn.createStatement().executeQuery("SELECT * FROM " + tableName);
+            assertTrue(rs.next());
+            RunningQuery query = findRunningQuery(conn);
+            assertNotNull(query);
+            assertEquals(4, query.getTotalScans());
+            assertTrue(query.getBytesRead() > 0);
+            assertNotNull(query.getExplainPlan());
+            assertTrue(query.getExplainPlan().contains(tableName));
+            assertFalse(query.isCancelled());
+            int rowCount = 1;
+            while (rs.next()) {
+                rowCount++;
+            }
+            assertEquals(100, rowCount);
+            assertEquals(4, query.getCompletedScans());
+            rs.close();
+            assertNull(findRunningQuery(conn));
+        }
+    }
+
+    @Test
+    public void testCancelQuery() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            ResultSet rs = conn.createStatement().executeQuery("SELECT * FROM " + tableName);
+            assertTrue(rs.next());
+            RunningQuery query = findRunningQuery(conn);
+            assertNotNull(query);
+            assertTrue(PhoenixRuntime.cancelQuery(conn, query.getId()));
+            assertTrue(query.isCancelled());
+            try {
+                rs.next();
+                fail();
+            } catch (SQLException e) {
+                assertEquals(SQLExceptionCode.OPERATION_CANCELLED.getErrorCode(), e.getErrorCode());
+            }
+            rs.close();
+            assertNull(findRunningQuery(conn));
+            assertFalse(PhoenixRuntime.cancelQuery(conn, query.getId()));
+        }
+    }
+
+    @Test
+    public void testStatementCancel() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            Statement stmt = conn.createStatement();
+            ResultSet rs = stmt.executeQuery("SELECT * FROM " + tableName);
+            assertTrue(rs.next());
+            stmt.cancel();
+            try {
+                rs.next();
+                fail();
+            } catch (SQLException e) {
+                assertEquals(SQLExceptionCode.OPERATION_CANCELLED.getErrorCode(), e.getErrorCode());
+            }
+            // The statement may be used again once cancelled
+            rs = stmt.executeQuery("SELECT count(*) FROM " + tableName);
+            assertTrue(rs.next());
+            assertEquals(100, rs.getInt(1));
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Map;
+
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+
+public class RampedLimitIT extends BaseUniqueNamesOwnClusterIT {
+
+    @BeforeClass
+    public static void doSetup() throws Exception {
+        Map<String,String> props = Maps.newHashMapWithExpectedSize(6);
+        props.put(QueryServices.STATS_GUIDEPOST_WIDTH_BYTES_ATTRIB, Long.toString(50));
+        // Too small to run a scan per chunk at once, as checked by QueryWithLimitIT
+        props.put(QueryServices.QUEUE_SIZE_ATTRIB, Integer.toString(1));
+        props.put(QueryServices.THREAD_POOL_SIZE_ATTRIB, Integer.toString(4));
+        props.put(QueryServices.SEQUENCE_SALT_BUCKETS_ATTRIB, Integer.toString(0));
+        props.put(QueryServices.LOG_SALT_BUCKETS_ATTRIB, Integer.toString(0));
+        props.put(QueryServices.LIMIT_RAMPED_DISPATCH_ENABLED_ATTRIB, Boolean.toString(true));
+        setUpTestDriver(new ReadOnlyProps(props.entrySet().iterator()));
+    }
+
+    @Test
+    public void testLimitWithFilterOverManyChunks() throws Exception {
+        String tableName = generateUniqueName();
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            conn.createStatement().execute("CREATE TABLE " + tableName
+                    + " (i1 INTEGER NOT NULL, i2 INTEGER NOT NULL CONSTRAINT pk PRIMARY KEY (i1, i2))");
+            PreparedStatement stmt = conn.prepareStatement("UPSERT INTO " + tableName + " VALUES (?, ?)");
+            for (int i = 0; i < 100; i++) {
+                stmt.setInt(1, i);
+                stmt.setInt(2, i + 1);
+                stmt.execute();
+            }
+            conn.commit();
+            conn.createStatement().execute("UPDATE STATISTICS " + tableName);
+
+            // The filter prevents a serial scan, and the chunks are dispatched in growing
+            // batches that never exceed the size of the thread pool
+            ResultSet rs = conn.createStatement().executeQuery(
+                    "SELECT i1 FROM " + tableName + " WHERE i2 > 90 LIMIT 5");
+            for (int i = 90; i < 95; i++) {
+                assertTrue(rs.next());
+                assertEquals(i, rs.getInt(1));
+            }
+            assertFalse(rs.next());
+
+            rs = conn.createStatement().executeQuery(
+                    "SELECT i1 FROM " + tableName + " WHERE i2 > 200 LIMIT 5");
+            assertFalse(rs.next());
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end.join;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.util.Map;
+
+import org.apache.phoenix.end2end.BaseUniqueNamesOwnClusterIT;
+import org.apache.phoenix.expression.function.RuntimeJoinFilterExpression;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.util.QueryUtil;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+
+public class RuntimeJoinFilterIT extends BaseUniqueNamesOwnClusterIT {
+    private static final int FACT_ROW_COUNT = 300;
+    private static final int DIMENSION_ROW_COUNT = 30;
+
+    @BeforeClass
+    public static void doSetup() throws Exception {
+        Map<String,String> props = Maps.newHashMapWithExpectedSize(1);
+        props.put(QueryServices.RUNTIME_JOIN_FILTER_ENABLED_ATTRIB, Boolean.toString(true));
+        setUpTestDriver(new ReadOnlyProps(props.entrySet().iterator()));
+    }
+
+    private static String[] createTables(Connection conn) throws Exception {
+        String factTable = generateUniqueName();
+        String dimensionTable = generateUniqueName();
+        conn.createStatement().execute("CREATE TABLE " + factTable
+                + " (id INTEGER PRIMARY KEY, dim_id INTEGER, region VARCHAR, amount INTEGER) SPLIT ON (100, 200)");
+        conn.createStatement().execute("CREATE TABLE " + dimensionTable
+                + " (id INTEGER PRIMARY KEY, region VARCHAR, category VARCHAR)");
+        PreparedStatement stmt = conn.prepareStatement("UPSERT INTO " + factTable + " VALUES (?, ?, ?, ?)");
+        for (int i = 0; i < FACT_ROW_COUNT; i++) {
+            stmt.setInt(1, i);
+            // Leave some join keys null
+            if (i % 17 == 0) {
+                stmt.setNull(2, Types.INTEGER);
+            } else {
+                stmt.setInt(2, i % DIMENSION_ROW_COUNT);
+            }
+            stmt.setString(3, "r" + (i % 3));
+            stmt.setInt(4, i);
+            stmt.execute();
+        }
+        stmt = conn.prepareStatement("UPSERT INTO " + dimensionTable + " VALUES (?, ?, ?)");
+        for (int i = 0; i < DIMENSION_ROW_COUNT; i++) {
+            stmt.setInt(1, i);
+            stmt.setString(2, "r" + (i % 3));
+            stmt.setString(3, i % 10 == 0 ? "rare" : "common");
+            stmt.execute();
+        }
+        conn.commit();
+        return new String[] { factTable, dimensionTable };
+    }
+
+    private static void assertRuntimeJoinFilter(Connection conn, String query) throws Exception {
+        ResultSet rs = conn.createStatement().executeQuery("EXPLAIN " + query);
+        assertTrue(QueryUtil.getExplainPlan(rs).contains(RuntimeJoinFilterExpression.NAME));
+    }
+
+    @Test
+    public void testInnerJoinOnNonKeyColumn() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            String[] tables = createTables(conn);
+            String query = "SELECT f.id, d.id FROM " + tables[0] + " f JOIN " + tables[1]
+                    + " d ON f.dim_id = d.id WHERE d.category = 'rare' ORDER BY f.id";
+            assertRuntimeJoinFilter(conn, query);
+            ResultSet rs = conn.createStatement().executeQuery(query);
+            for (int i = 0; i < FACT_ROW_COUNT; i++) {
+                if (i % 17 != 0 && (i % DIMENSION_ROW_COUNT) % 10 == 0) {
+                    assertTrue(rs.next());
+                    assertEquals(i, rs.getInt(1));
+                    assertEquals(i % DIMENSION_ROW_COUNT, rs.getInt(2));
+                }
+            }
+            assertFalse(rs.next());
+        }
+    }
+
+    @Test
+    public void testInnerJoinOnMultipleColumns() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            String[] tables = createTables(conn);
+            String query = "SELECT count(*), sum(f.amount) FROM " + tables[0] + " f JOIN " + tables[1]
+                    + " d ON f.dim_id = d.id AND f.region = d.region WHERE d.category = 'rare'";
+            assertRuntimeJoinFilter(conn, query);
+            ResultSet rs = conn.createStatement().executeQuery(query);
+            int count = 0;
+            int sum = 0;
+            for (int i = 0; i < FACT_ROW_COUNT; i++) {
+                int dimId = i % DIMENSION_ROW_COUNT;
+                if (i % 17 != 0 && dimId % 10 == 0 && i % 3 == dimId % 3) {
+                    count++;
+                    sum += i;
+                }
+            }
+            assertTrue(rs.next());
+            assertEquals(count, rs.getInt(1));
+            assertEquals(sum, rs.getInt(2));
+            assertFalse(rs.next());
+        }
+    }
+
+    @Test
+    public void testSemiJoin() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            String[] tables = createTables(conn);
+            String query = "SELECT count(*) FROM " + tables[0] + " WHERE dim_id IN (SELECT id FROM "
+                    + tables[1] + " WHERE category = 'rare')";
+            ResultSet rs = conn.createStatement().executeQuery(query);
+            int count = 0;
+            for (int i = 0; i < FACT_ROW_COUNT; i++) {
+                if (i % 17 != 0 && (i % DIMENSION_ROW_COUNT) % 10 == 0) {
+                    count++;
+                }
+            }
+            assertTrue(rs.next());
+            assertEquals(count, rs.getInt(1));
+            assertFalse(rs.next());
+        }
+    }
+
+    @Test
+    public void testEmptyBuildSide() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            String[] tables = createTables(conn);
+            ResultSet rs = conn.createStatement().executeQuery("SELECT f.id FROM " + tables[0] + " f JOIN "
+                    + tables[1] + " d ON f.dim_id = d.id WHERE d.category = 'none'");
+            assertFalse(rs.next());
+        }
+    }
+
+    @Test
+    public void testLeftJoinNotFiltered() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            String[] tables = createTables(conn);
+            String query = "SELECT count(*) FROM " + tables[0] + " f LEFT JOIN " + tables[1]
+                    + " d ON f.dim_id = d.id AND d.category = 'rare'";
+            ResultSet rs = conn.createStatement().executeQuery("EXPLAIN " + query);
+            assertFalse(QueryUtil.getExplainPlan(rs).contains(RuntimeJoinFilterExpression.NAME));
+            rs = conn.createStatement().executeQuery(query);
+            assertTrue(rs.next());
+            assertEquals(FACT_ROW_COUNT, rs.getInt(1));
+        }
+    }
+}
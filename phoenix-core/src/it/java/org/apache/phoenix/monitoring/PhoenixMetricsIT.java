@@ -35,11 +35,15 @@ import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_TASK_END_
 import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_TASK_EXECUTION_TIME;
 import static org.apache.phoenix.monitoring.MetricType.MEMORY_CHUNK_BYTES;
 import static org.apache.phoenix.monitoring.MetricType.SCAN_BYTES;
+import static org.apache.phoenix.monitoring.MetricType.SERVER_AGGREGATION_TIME;
+import static org.apache.phoenix.monitoring.MetricType.SERVER_ROWS_RETURNED;
+import static org.apache.phoenix.monitoring.MetricType.SERVER_SCAN_TIME;
 import static org.apache.phoenix.monitoring.MetricType.TASK_EXECUTED_COUNTER;
 import static org.apache.phoenix.monitoring.MetricType.TASK_EXECUTION_TIME;
 import static org.apache.phoenix.util.PhoenixRuntime.TENANT_ID_ATTRIB;
 import static org.apache.phoenix.util.PhoenixRuntime.UPSERT_BATCH_SIZE_ATTRIB;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -198,6 +202,62 @@ public class PhoenixMetricsIT extends BaseUniqueNamesOwnClusterIT {
         assertTrue(GLOBAL_HBASE_COUNT_SCANNED_REGIONS.getMetric().getTotalSum() > 0);
     }
 
+    @Test
+    public void testLatencyHistograms() throws Exception {
+        String tableName = generateUniqueName();
+        createTableAndInsertValues(tableName, true);
+        for (GlobalClientHistograms histogram : GlobalClientHistograms.values()) {
+            histogram.reset();
+        }
+        Connection conn = DriverManager.getConnection(getUrl());
+        conn.createStatement().executeUpdate("UPSERT INTO " + tableName + " VALUES ('key11', 'value11')");
+        conn.commit();
+        ResultSet rs = conn.createStatement().executeQuery("SELECT * FROM " + tableName);
+        int count = 0;
+        while (rs.next()) {
+            count++;
+        }
+        assertEquals(11, count);
+        for (Map<GlobalClientHistograms, LatencyHistogram.Snapshot> histograms : Lists.newArrayList(
+                PhoenixRuntime.getGlobalPhoenixClientHistograms(),
+                PhoenixRuntime.getTablePhoenixClientHistograms(tableName))) {
+            assertEquals(1, histograms.get(GlobalClientHistograms.QUERY_TIME_HISTOGRAM).getCount());
+            assertEquals(1, histograms.get(GlobalClientHistograms.TIME_TO_FIRST_ROW_HISTOGRAM).getCount());
+            assertEquals(1, histograms.get(GlobalClientHistograms.SCAN_TIME_HISTOGRAM).getCount());
+            assertEquals(1, histograms.get(GlobalClientHistograms.MUTATION_COMMIT_TIME_HISTOGRAM).getCount());
+            assertTrue(histograms.get(GlobalClientHistograms.QUERY_TIME_HISTOGRAM).getMax()
+                    >= histograms.get(GlobalClientHistograms.TIME_TO_FIRST_ROW_HISTOGRAM).getMax());
+        }
+        assertTrue(PhoenixRuntime.getTablePhoenixClientHistograms(generateUniqueName()).isEmpty());
+    }
+
+    @Test
+    public void testServerScanMetrics() throws Exception {
+        String tableName = generateUniqueName();
+        createTableAndInsertValues(tableName, true);
+        Connection conn = DriverManager.getConnection(getUrl());
+        ResultSet rs = conn.createStatement().executeQuery("SELECT * FROM " + tableName);
+        int count = 0;
+        while (rs.next()) {
+            count++;
+        }
+        // The metrics returned by the region server aren't returned as rows
+        assertEquals(10, count);
+        assertEquals(10, (long)PhoenixRuntime.getOverAllReadRequestMetricInfo(rs).get(SERVER_ROWS_RETURNED));
+        Map<MetricType, Long> tableMetrics = PhoenixRuntime.getRequestReadMetricInfo(rs).get(tableName);
+        assertEquals(10, (long)tableMetrics.get(SERVER_ROWS_RETURNED));
+        assertTrue(tableMetrics.get(SERVER_SCAN_TIME) >= 0);
+        rs.close();
+
+        rs = conn.createStatement().executeQuery("SELECT COUNT(*) FROM " + tableName + " WHERE K > 'key5'");
+        assertTrue(rs.next());
+        assertEquals(4, rs.getLong(1));
+        assertFalse(rs.next());
+        assertEquals(4, (long)PhoenixRuntime.getOverAllReadRequestMetricInfo(rs).get(SERVER_ROWS_RETURNED));
+        assertTrue(PhoenixRuntime.getOverAllReadRequestMetricInfo(rs).get(SERVER_AGGREGATION_TIME) >= 0);
+        rs.close();
+    }
+
     private static void resetGlobalMetrics() {
         for (GlobalMetric m : PhoenixRuntime.getGlobalPhoenixClientMetrics()) {
             m.reset();
@@ -147,7 +147,9 @@ public class GlobalCache extends TenantCacheImpl {
     }
     
     private GlobalCache(Configuration config) {
-        super(new GlobalMemoryManager(getMaxMemorySize(config)),
+        super(new GlobalMemoryManager(getMaxMemorySize(config),
+                config.getInt(QueryServices.MAX_MEMORY_WAIT_MS_ATTRIB, QueryServicesOptions.DEFAULT_MAX_MEMORY_WAIT_MS),
+                config.getInt(QueryServices.MEMORY_SPILL_WAIT_MS_ATTRIB, QueryServicesOptions.DEFAULT_MEMORY_SPILL_WAIT_MS)),
               config.getInt(QueryServices.MAX_SERVER_CACHE_TIME_TO_LIVE_MS_ATTRIB, QueryServicesOptions.DEFAULT_MAX_SERVER_CACHE_TIME_TO_LIVE_MS));
         this.config = config;
     }
@@ -36,4 +36,8 @@ import org.apache.phoenix.schema.tuple.Tuple;
 public interface HashCache extends Closeable {
     public int getClientVersion();
     public List<Tuple> get(ImmutableBytesPtr hashKey) throws IOException;
+    /**
+     * @return the number of bytes of memory used by the cache on the region server
+     */
+    public long getEstimatedSize();
 }
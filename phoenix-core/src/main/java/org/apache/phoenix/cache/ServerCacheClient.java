@@ -63,6 +63,7 @@ import org.apache.phoenix.jdbc.PhoenixConnection;
 import org.apache.phoenix.job.JobManager.JobCallable;
 import org.apache.phoenix.join.HashCacheFactory;
 import org.apache.phoenix.memory.InsufficientMemoryException;
+import org.apache.phoenix.memory.MemoryManager;
 import org.apache.phoenix.memory.MemoryManager.MemoryChunk;
 import org.apache.phoenix.monitoring.TaskExecutionMetricsHolder;
 import org.apache.phoenix.query.ConnectionQueryServices;
@@ -70,11 +71,15 @@ import org.apache.phoenix.query.QueryServices;
 import org.apache.phoenix.query.QueryServicesOptions;
 import org.apache.phoenix.schema.PTable;
 import org.apache.phoenix.schema.PTable.IndexType;
+import org.apache.phoenix.util.ByteUtil;
 import org.apache.phoenix.util.Closeables;
 import org.apache.phoenix.util.SQLCloseable;
 import org.apache.phoenix.util.SQLCloseables;
 import org.apache.phoenix.util.ScanUtil;
 
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
 /**
  * 
  * Client for sending cache to each region server
@@ -87,8 +92,11 @@ public class ServerCacheClient {
     public static final byte[] KEY_IN_FIRST_REGION = new byte[]{0};
     private static final Log LOG = LogFactory.getLog(ServerCacheClient.class);
     private static final Random RANDOM = new Random();
+    // Set in the ids of shared caches and cleared in the random ids of the others
+    private static final long SHARED_ID_FLAG = Long.MIN_VALUE;
 	public static final String HASH_JOIN_SERVER_CACHE_RESEND_PER_SERVER = "hash.join.server.cache.resend.per.server";
     private final PhoenixConnection connection;
+    private final MemoryManager memoryManager;
     private final Map<Integer, PTable> cacheUsingTableMap = new ConcurrentHashMap<Integer, PTable>();
 
     /**
@@ -100,7 +108,16 @@ public class ServerCacheClient {
      * servers when we don't have to if the min is in first region and max is in last region, especially for point queries.
      */
     public ServerCacheClient(PhoenixConnection connection) {
+        this(connection, connection.getQueryServices().getMemoryManager());
+    }
+
+    /**
+     * @param connection the client connection
+     * @param memoryManager the memory manager through which the caches kept on the client are allocated
+     */
+    public ServerCacheClient(PhoenixConnection connection, MemoryManager memoryManager) {
         this.connection = connection;
+        this.memoryManager = memoryManager;
     }
 
     public PhoenixConnection getConnection() {
@@ -122,10 +139,11 @@ public class ServerCacheClient {
         private MemoryChunk chunk;
         private File outputFile;
         private long maxServerCacheTTL;
+        private ServerCacheRegistry registry;
         
         
         public ServerCache(byte[] id, Set<HRegionLocation> servers, ImmutableBytesWritable cachePtr,
-                ConnectionQueryServices services, boolean storeCacheOnClient) throws IOException {
+                ConnectionQueryServices services, MemoryManager memoryManager, boolean storeCacheOnClient) throws IOException {
             maxServerCacheTTL = services.getProps().getInt(
                     QueryServices.MAX_SERVER_CACHE_TIME_TO_LIVE_MS_ATTRIB,
                     QueryServicesOptions.DEFAULT_MAX_SERVER_CACHE_TIME_TO_LIVE_MS);
@@ -138,7 +156,7 @@ public class ServerCacheClient {
             this.size =  cachePtr.getLength();
             if (storeCacheOnClient) {
                 try {
-                    this.chunk = services.getMemoryManager().allocate(cachePtr.getLength());
+                    this.chunk = memoryManager.allocate(cachePtr.getLength());
                     this.cachePtr = cachePtr;
                 } catch (InsufficientMemoryException e) {
                     this.outputFile = File.createTempFile("HashJoinCacheSpooler", ".bin", new File(services.getProps()
@@ -176,7 +194,7 @@ public class ServerCacheClient {
             return id;
         }
 
-        public boolean addServer(HRegionLocation loc) {
+        public synchronized boolean addServer(HRegionLocation loc) {
             if(this.servers.containsKey(loc)) {
                 return false;
             } else {
@@ -185,7 +203,7 @@ public class ServerCacheClient {
             }
         }
 
-        public boolean isExpired(HRegionLocation loc) {
+        public synchronized boolean isExpired(HRegionLocation loc) {
             if(this.servers.containsKey(loc)) {
                 Long time = this.servers.get(loc);
                 if(System.currentTimeMillis() - time > maxServerCacheTTL)
@@ -203,16 +221,24 @@ public class ServerCacheClient {
          */
         @Override
         public void close() throws SQLException {
+            if (registry != null && !registry.release(this)) {
+                // Shared cache still used by other queries
+                return;
+            }
             try{
                 removeServerCache(this, servers.keySet());
             }finally{
-                cachePtr = null;
-                if (chunk != null) {
-                    chunk.close();
-                }
-                if (outputFile != null) {
-                    outputFile.delete();
-                }
+                releaseClientCopy();
+            }
+        }
+
+        private void releaseClientCopy() {
+            cachePtr = null;
+            if (chunk != null) {
+                chunk.close();
+            }
+            if (outputFile != null) {
+                outputFile.delete();
             }
         }
         
@@ -223,6 +249,21 @@ public class ServerCacheClient {
         return addServerCache(keyRanges, cachePtr, txState, cacheFactory, cacheUsingTable, false);
     }
     
+    /**
+     * Add a cache to the region servers of the regions of the table intersecting the key ranges.
+     * @param shared whether the cache may be shared with the queries of any connection adding an
+     * identical cache while it is in use, in which case it is only sent to the region servers that
+     * do not have it yet
+     */
+    public ServerCache addServerCache(ScanRanges keyRanges, final ImmutableBytesWritable cachePtr, final byte[] txState,
+            final ServerCacheFactory cacheFactory, final PTable cacheUsingTable, boolean storeCacheOnClient, boolean shared)
+            throws SQLException {
+        if (shared && txState.length == 0) {
+            return addSharedServerCache(keyRanges, cachePtr, cacheFactory, cacheUsingTable, storeCacheOnClient);
+        }
+        return addServerCache(keyRanges, cachePtr, txState, cacheFactory, cacheUsingTable, storeCacheOnClient);
+    }
+
     public ServerCache addServerCache(ScanRanges keyRanges, final ImmutableBytesWritable cachePtr, final byte[] txState,
             final ServerCacheFactory cacheFactory, final PTable cacheUsingTable, boolean storeCacheOnClient)
             throws SQLException {
@@ -285,7 +326,7 @@ public class ServerCacheClient {
                 }
             }
             
-            hashCacheSpec = new ServerCache(cacheId,servers,cachePtr, services, storeCacheOnClient);
+            hashCacheSpec = new ServerCache(cacheId,servers,cachePtr, services, memoryManager, storeCacheOnClient);
             // Execute in parallel
             int timeoutMs = services.getProps().getInt(QueryServices.THREAD_TIMEOUT_MS_ATTRIB, QueryServicesOptions.DEFAULT_THREAD_TIMEOUT_MS);
             for (Future<Boolean> future : futures) {
@@ -324,6 +365,113 @@ public class ServerCacheClient {
         return hashCacheSpec;
     }
     
+    private ServerCache addSharedServerCache(ScanRanges keyRanges, final ImmutableBytesWritable cachePtr,
+            final ServerCacheFactory cacheFactory, final PTable cacheUsingTable, boolean storeCacheOnClient)
+            throws SQLException {
+        ConnectionQueryServices services = connection.getQueryServices();
+        ServerCacheRegistry registry = services.getServerCacheRegistry();
+        final byte[] cacheId = generateSharedId(cachePtr, cacheFactory, cacheUsingTable, registry);
+        ServerCache cache = registry.acquire(cacheId);
+        if (cache == null) {
+            ServerCache newCache;
+            try {
+                // Shared with other queries, so not accounted to this one
+                newCache = new ServerCache(cacheId, Collections.<HRegionLocation>emptySet(), cachePtr, services,
+                        services.getMemoryManager(), storeCacheOnClient);
+            } catch (IOException e) {
+                throw new SQLException(e);
+            }
+            newCache.registry = registry;
+            cache = registry.register(newCache);
+            if (cache == newCache) {
+                cacheUsingTableMap.put(Bytes.mapKey(cacheId), cacheUsingTable);
+            } else {
+                // An identical cache was added by another query in the meantime
+                newCache.releaseClientCopy();
+            }
+        } else if (LOG.isDebugEnabled()) {
+            LOG.debug(addCustomAnnotations("Reusing shared cache " + idToString(cacheId), connection));
+        }
+
+        List<Closeable> closeables = new ArrayList<Closeable>();
+        List<HRegionLocation> newServers = new ArrayList<HRegionLocation>();
+        List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+        SQLException firstException = null;
+        boolean success = false;
+        // Queries adding the same cache wait for the one sending it
+        synchronized (cache) {
+            try {
+                List<HRegionLocation> locations = services.getAllTableRegions(cacheUsingTable.getPhysicalName().getBytes());
+                for (HRegionLocation entry : locations) {
+                    byte[] regionStartKey = entry.getRegionInfo().getStartKey();
+                    byte[] regionEndKey = entry.getRegionInfo().getEndKey();
+                    if (!keyRanges.intersectRegion(regionStartKey, regionEndKey,
+                            cacheUsingTable.getIndexType() == IndexType.LOCAL)) {
+                        continue;
+                    }
+                    if (!cache.addServer(entry)) {
+                        if (!cache.isExpired(entry)) {
+                            continue;
+                        }
+                        cache.servers.put(entry, System.currentTimeMillis());
+                    }
+                    newServers.add(entry);
+                    final byte[] key = getKeyInRegion(regionStartKey);
+                    final HTableInterface htable = services.getTable(cacheUsingTable.getPhysicalName().getBytes());
+                    closeables.add(htable);
+                    futures.add(services.getExecutor().submit(new JobCallable<Boolean>() {
+
+                        @Override
+                        public Boolean call() throws Exception {
+                            return addServerCache(htable, key, cacheUsingTable, cacheId, cachePtr, cacheFactory,
+                                    ByteUtil.EMPTY_BYTE_ARRAY);
+                        }
+
+                        @Override
+                        public Object getJobId() {
+                            return ServerCacheClient.this;
+                        }
+
+                        @Override
+                        public TaskExecutionMetricsHolder getTaskExecutionMetric() {
+                            return NO_OP_INSTANCE;
+                        }
+                    }));
+                }
+                int timeoutMs = services.getProps().getInt(QueryServices.THREAD_TIMEOUT_MS_ATTRIB, QueryServicesOptions.DEFAULT_THREAD_TIMEOUT_MS);
+                for (Future<Boolean> future : futures) {
+                    future.get(timeoutMs, TimeUnit.MILLISECONDS);
+                }
+                success = true;
+            } catch (SQLException e) {
+                firstException = e;
+            } catch (Exception e) {
+                firstException = new SQLException(e);
+            } finally {
+                if (!success) {
+                    for (Future<Boolean> future : futures) {
+                        future.cancel(true);
+                    }
+                    for (HRegionLocation entry : newServers) {
+                        cache.servers.remove(entry);
+                    }
+                }
+                try {
+                    Closeables.closeAll(closeables);
+                } catch (IOException e) {
+                    if (firstException == null) {
+                        firstException = new SQLException(e);
+                    }
+                }
+            }
+        }
+        if (firstException != null) {
+            SQLCloseables.closeAllQuietly(Collections.singletonList(cache));
+            throw firstException;
+        }
+        return cache;
+    }
+
     /**
      * Remove the cached table from all region servers
      * @throws SQLException
@@ -411,9 +559,35 @@ public class ServerCacheClient {
      * is very limited. 
      */
     public static byte[] generateId() {
-        long rand = RANDOM.nextLong();
+        long rand = RANDOM.nextLong() & ~SHARED_ID_FLAG;
         return Bytes.toBytes(rand);
     }
+
+    /**
+     * Create the ID of a shared cache from its content, the table using it, the tenant and the
+     * registry sharing it. The region servers keep a single reference to a shared cache, which is
+     * correct as long as the queries sharing it are the ones of a single registry.
+     */
+    private byte[] generateSharedId(ImmutableBytesWritable cachePtr, ServerCacheFactory cacheFactory, PTable cacheUsingTable,
+            ServerCacheRegistry registry) {
+        Hasher hasher = Hashing.md5().newHasher();
+        hasher.putLong(registry.getRegistryId());
+        hasher.putBytes(cachePtr.get(), cachePtr.getOffset(), cachePtr.getLength());
+        hasher.putString(cacheFactory.getClass().getName());
+        hasher.putBytes(cacheUsingTable.getPhysicalName().getBytes());
+        if (connection.getTenantId() != null) {
+            hasher.putBytes(connection.getTenantId().getBytes());
+        }
+        return Bytes.toBytes(hasher.hash().asLong() | SHARED_ID_FLAG);
+    }
+
+    /**
+     * Whether the ID is the one of a cache that may be shared by several queries, which a region
+     * server keeps a single copy of however many times it is added.
+     */
+    public static boolean isSharedId(ImmutableBytesWritable cacheId) {
+        return cacheId.getLength() == UUID_LENGTH && cacheId.get()[cacheId.getOffset()] < 0;
+    }
     
     public static String idToString(byte[] uuid) {
         assert(uuid.length == Bytes.SIZEOF_LONG);
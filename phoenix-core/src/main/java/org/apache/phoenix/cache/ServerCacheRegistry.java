@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.cache;
+
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.phoenix.cache.ServerCacheClient.ServerCache;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+
+import com.google.common.collect.Maps;
+
+/**
+ *
+ * Reference counted registry of the server caches shared by the queries of all the
+ * connections of a {@link org.apache.phoenix.query.ConnectionQueryServices}.
+ * A shared cache is only removed from the region servers once closed by every
+ * query that added it.
+ *
+ */
+public class ServerCacheRegistry {
+    private static final Random RANDOM = new Random();
+    // Part of the ids of the shared caches, so that the region servers never see the
+    // same id added by two registries each counting its references on its own
+    private final long registryId = RANDOM.nextLong();
+    private final Map<ImmutableBytesPtr, ServerCache> caches = Maps.newHashMap();
+    private final Map<ImmutableBytesPtr, Integer> referenceCounts = Maps.newHashMap();
+
+    /**
+     * Get the cache with the given id, adding a reference to it
+     * @return the cache or null if there's no cache with that id
+     */
+    public synchronized ServerCache acquire(byte[] cacheId) {
+        ImmutableBytesPtr key = new ImmutableBytesPtr(cacheId);
+        ServerCache cache = caches.get(key);
+        if (cache != null) {
+            referenceCounts.put(key, referenceCounts.get(key) + 1);
+        }
+        return cache;
+    }
+
+    /**
+     * Register a cache with a single reference to it. If a cache with the same
+     * id was registered in the meantime, a reference to it is added instead.
+     * @return the registered cache
+     */
+    public synchronized ServerCache register(ServerCache cache) {
+        ImmutableBytesPtr key = new ImmutableBytesPtr(cache.getId());
+        ServerCache registered = caches.get(key);
+        if (registered != null) {
+            referenceCounts.put(key, referenceCounts.get(key) + 1);
+            return registered;
+        }
+        caches.put(key, cache);
+        referenceCounts.put(key, 1);
+        return cache;
+    }
+
+    /**
+     * Remove a reference to a registered cache
+     * @return true if it was the last reference, in which case the cache is unregistered
+     */
+    public synchronized boolean release(ServerCache cache) {
+        ImmutableBytesPtr key = new ImmutableBytesPtr(cache.getId());
+        Integer referenceCount = referenceCounts.get(key);
+        if (referenceCount == null || caches.get(key) != cache) {
+            return true;
+        }
+        if (referenceCount > 1) {
+            referenceCounts.put(key, referenceCount - 1);
+            return false;
+        }
+        caches.remove(key);
+        referenceCounts.remove(key);
+        return true;
+    }
+
+    public long getRegistryId() {
+        return registryId;
+    }
+
+    public synchronized int size() {
+        return caches.size();
+    }
+}
@@ -39,6 +39,9 @@ import com.google.common.cache.RemovalNotification;
  * 
  * Cache per tenant on server side.  Tracks memory usage for each
  * tenat as well and rolling up usage to global memory manager.
+ * Caches with a shared id are shared by the queries of a single client,
+ * which may send them again when it expects them to have expired, so
+ * adding one already present returns it instead of creating a new one.
  * 
  * 
  * @since 0.1
@@ -107,6 +110,20 @@ public class TenantCacheImpl implements TenantCache {
     @Override
     public Closeable addServerCache(ImmutableBytesPtr cacheId, ImmutableBytesWritable cachePtr, byte[] txState, ServerCacheFactory cacheFactory, boolean useProtoForIndexMaintainer, int clientVersion) throws SQLException {
         getServerCaches().cleanUp();
+        if (ServerCacheClient.isSharedId(cacheId)) {
+            synchronized (this) {
+                // Sent again with the same content, so no new reference to it is added
+                Closeable element = getServerCaches().getIfPresent(cacheId);
+                if (element != null) {
+                    return element;
+                }
+                return newServerCache(cacheId, cachePtr, txState, cacheFactory, useProtoForIndexMaintainer, clientVersion);
+            }
+        }
+        return newServerCache(cacheId, cachePtr, txState, cacheFactory, useProtoForIndexMaintainer, clientVersion);
+    }
+
+    private Closeable newServerCache(ImmutableBytesPtr cacheId, ImmutableBytesWritable cachePtr, byte[] txState, ServerCacheFactory cacheFactory, boolean useProtoForIndexMaintainer, int clientVersion) throws SQLException {
         MemoryChunk chunk = this.getMemoryManager().allocate(cachePtr.getLength() + txState.length);
         boolean success = false;
         try {
@@ -256,13 +256,15 @@ public class SpillManager implements Closeable {
      * serialize call
      * @param key
      * @param value
+     * @return the size in bytes of the serialized tuple
      * @throws IOException
      */
-    public void spill(ImmutableBytesWritable key, Aggregator[] value) throws IOException {
+    public int spill(ImmutableBytesWritable key, Aggregator[] value) throws IOException {
         SpillMap spillMap = spillMaps.get(getPartition(key));
         ImmutableBytesPtr keyPtr = new ImmutableBytesPtr(key);
         byte[] data = serialize(keyPtr, value, aggregators);
         spillMap.put(keyPtr, data);
+        return data.length;
     }
 
     /**
@@ -50,6 +50,8 @@ import org.apache.phoenix.expression.aggregator.ServerAggregators;
 import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
 import org.apache.phoenix.memory.InsufficientMemoryException;
 import org.apache.phoenix.memory.MemoryManager.MemoryChunk;
+import org.apache.phoenix.monitoring.MetricType;
+import org.apache.phoenix.monitoring.ServerScanMetrics;
 import org.apache.phoenix.util.Closeables;
 import org.apache.phoenix.util.KeyValueUtil;
 import org.slf4j.Logger;
@@ -186,7 +188,8 @@ public class SpillableGroupByCache implements GroupByCache {
                             spillManager = new SpillManager(numSpillFilesConf, aggregators, env.getConfiguration(),
                                     new QueryCache());
                         }
-                        spillManager.spill(eldest.getKey(), eldest.getValue());
+                        int spilledBytes = spillManager.spill(eldest.getKey(), eldest.getValue());
+                        ServerScanMetrics.update(MetricType.SERVER_SPILL_BYTES, spilledBytes);
                     } catch (IOException ioe) {
                         // Ensure that we always close and delete the temp files
                         try {
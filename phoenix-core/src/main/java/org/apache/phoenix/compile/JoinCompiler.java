@@ -453,13 +453,21 @@ public class JoinCompiler {
             return NODE_FACTORY.select(select, query.getFrom(), query.getWhere());
         }
 
-        public boolean hasPostReference() {
+        public boolean hasWildCardSelect() {
             for (Table table : tables) {
                 if (table.isWildCardSelect()) {
                     return true;
                 }
             }
 
+            return false;
+        }
+
+        public boolean hasPostReference() {
+            if (hasWildCardSelect()) {
+                return true;
+            }
+
             for (Map.Entry<ColumnRef, ColumnRefType> e : columnRefs.entrySet()) {
                 if (e.getValue() == ColumnRefType.GENERAL && tableRefs.contains(e.getKey().getTableRef())) {
                     return true;
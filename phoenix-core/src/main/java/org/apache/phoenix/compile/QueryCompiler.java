@@ -20,7 +20,9 @@ package org.apache.phoenix.compile;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -44,6 +46,7 @@ import org.apache.phoenix.execute.SortMergeJoinPlan;
 import org.apache.phoenix.execute.TupleProjectionPlan;
 import org.apache.phoenix.execute.TupleProjector;
 import org.apache.phoenix.execute.UnionPlan;
+import org.apache.phoenix.execute.visitor.RowCountVisitor;
 import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.expression.LiteralExpression;
 import org.apache.phoenix.expression.RowValueConstructorExpression;
@@ -201,6 +204,8 @@ public class QueryCompiler {
      *         join plan with the best cost. Note that the "best" plan is only locally optimal,
      *         and might or might not be globally optimal.
      *      2) Otherwise, return the join plan compiled with the default strategy.
+     * With COST_BASED_OPTIMIZER_ENABLED on, the hash joins of a star join are also reordered
+     * based on the estimated sizes of their right-hand sides.
      * @see JoinCompiler.JoinTable#getApplicableJoinStrategies()
      */
     protected QueryPlan compileJoinQuery(StatementContext context, List<Object> binds, JoinTable joinTable, boolean asSubquery, boolean projectPKColumns, List<OrderByNode> orderBy) throws SQLException {
@@ -291,6 +296,23 @@ public class QueryCompiler {
                     Scan subScan = ScanUtil.newScan(originalScan);
                     subContexts[i] = new StatementContext(statement, context.getResolver(), subScan, new SequenceManager(statement));
                     subPlans[i] = compileJoinQuery(subContexts[i], binds, joinSpec.getJoinTable(), true, true, null);
+                }
+                int[] joinOrder = costBased ? getCostBasedJoinOrder(joinTable, starJoinVector, subPlans) : null;
+                if (joinOrder != null) {
+                    List<JoinSpec> orderedJoinSpecs = Lists.newArrayListWithExpectedSize(count);
+                    StatementContext[] orderedSubContexts = new StatementContext[count];
+                    QueryPlan[] orderedSubPlans = new QueryPlan[count];
+                    for (int i = 0; i < count; i++) {
+                        orderedJoinSpecs.add(joinSpecs.get(joinOrder[i]));
+                        orderedSubContexts[i] = subContexts[joinOrder[i]];
+                        orderedSubPlans[i] = subPlans[joinOrder[i]];
+                    }
+                    joinSpecs = orderedJoinSpecs;
+                    subContexts = orderedSubContexts;
+                    subPlans = orderedSubPlans;
+                }
+                for (int i = 0; i < count; i++) {
+                    JoinSpec joinSpec = joinSpecs.get(i);
                     boolean hasPostReference = joinSpec.getJoinTable().hasPostReference();
                     if (hasPostReference) {
                         tables[i] = subContexts[i].getResolver().getTables().get(0).getTable();
@@ -447,6 +469,58 @@ public class QueryCompiler {
         }
     }
 
+    /**
+     * Returns the order in which the hash joins of a star join should be evaluated, based on the
+     * estimated number of rows of their right-hand sides, or null if the original order should be
+     * kept. Inner and semi joins, whose probes may reject a row of the left-hand side early, are
+     * evaluated first, starting with the smallest right-hand side, which is expected to be the most
+     * selective, followed by the remaining joins in their original order. The joins are only
+     * reordered when all of them can be evaluated against the left-hand side alone and no table is
+     * selected with a wildcard, as the order of the joined columns would otherwise be visible.
+     */
+    private static int[] getCostBasedJoinOrder(JoinTable joinTable, boolean[] starJoinVector, QueryPlan[] subPlans) {
+        int count = subPlans.length;
+        if (count < 2 || starJoinVector == null || joinTable.hasWildCardSelect()) {
+            return null;
+        }
+        final double[] rhsRows = new double[count];
+        List<Integer> filtering = Lists.newArrayListWithExpectedSize(count);
+        List<Integer> others = Lists.newArrayListWithExpectedSize(count);
+        for (int i = 0; i < count; i++) {
+            if (!starJoinVector[i]) {
+                return null;
+            }
+            JoinType type = joinTable.getJoinSpecs().get(i).getType();
+            if (type == JoinType.Inner || type == JoinType.Semi) {
+                Double rows = subPlans[i].accept(new RowCountVisitor());
+                if (rows == null) {
+                    return null;
+                }
+                rhsRows[i] = rows;
+                filtering.add(i);
+            } else {
+                others.add(i);
+            }
+        }
+        // Stable sort, so joins with equal estimates keep their relative order
+        Collections.sort(filtering, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer i1, Integer i2) {
+                return Double.compare(rhsRows[i1], rhsRows[i2]);
+            }
+        });
+        int[] joinOrder = new int[count];
+        boolean reordered = false;
+        int pos = 0;
+        for (List<Integer> indexes : Arrays.asList(filtering, others)) {
+            for (Integer index : indexes) {
+                reordered |= index != pos;
+                joinOrder[pos++] = index;
+            }
+        }
+        return reordered ? joinOrder : null;
+    }
+
     private boolean getKeyExpressionCombinations(Pair<Expression, Expression> combination, StatementContext context, SelectStatement select, TableRef table, JoinType type, final List<Expression> joinExpressions, final List<Expression> hashExpressions) throws SQLException {
         if ((type != JoinType.Inner && type != JoinType.Semi) || this.noChildParentJoinOptimization)
             return false;
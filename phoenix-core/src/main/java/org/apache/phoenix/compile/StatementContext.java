@@ -32,8 +32,11 @@ import org.apache.hadoop.hbase.util.Pair;
 import org.apache.phoenix.jdbc.PhoenixConnection;
 import org.apache.phoenix.jdbc.PhoenixStatement;
 import org.apache.phoenix.log.QueryLogger;
+import org.apache.phoenix.memory.MemoryManager;
 import org.apache.phoenix.monitoring.OverAllQueryMetrics;
 import org.apache.phoenix.monitoring.ReadMetricQueue;
+import org.apache.phoenix.monitoring.RunningQuery;
+import org.apache.phoenix.monitoring.StatementStats;
 import org.apache.phoenix.parse.SelectStatement;
 import org.apache.phoenix.query.QueryConstants;
 import org.apache.phoenix.query.QueryServices;
@@ -86,6 +89,9 @@ public class StatementContext {
     private final OverAllQueryMetrics overAllQueryMetrics;
     private QueryLogger queryLogger;
     private boolean isClientSideUpsertSelect;
+    private RunningQuery runningQuery;
+    private MemoryManager memoryManager;
+    private StatementStats statementStats;
     
     public StatementContext(PhoenixStatement statement) {
         this(statement, new Scan());
@@ -325,5 +331,38 @@ public class StatementContext {
     public void setClientSideUpsertSelect(boolean isClientSideUpsertSelect) {
         this.isClientSideUpsertSelect = isClientSideUpsertSelect;
     }
+
+    /**
+     * @return the query tracked by the query registry for this context, or null if not tracked
+     */
+    public RunningQuery getRunningQuery() {
+        return runningQuery;
+    }
+
+    public void setRunningQuery(RunningQuery runningQuery) {
+        this.runningQuery = runningQuery;
+    }
+
+    /**
+     * @return the memory manager through which the memory used by the query on the client is allocated
+     */
+    public MemoryManager getMemoryManager() {
+        return memoryManager == null ? getConnection().getQueryServices().getMemoryManager() : memoryManager;
+    }
+
+    public void setMemoryManager(MemoryManager memoryManager) {
+        this.memoryManager = memoryManager;
+    }
+
+    /**
+     * @return the statistics of the fingerprint of the query, into which its execution is recorded, or null
+     */
+    public StatementStats getStatementStats() {
+        return statementStats;
+    }
+
+    public void setStatementStats(StatementStats statementStats) {
+        this.statementStats = statementStats;
+    }
     
 }
@@ -22,6 +22,7 @@ import java.util.List;
 import java.util.NavigableSet;
 
 import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
 import org.apache.hadoop.hbase.CoprocessorEnvironment;
 import org.apache.hadoop.hbase.DoNotRetryIOException;
 import org.apache.hadoop.hbase.HConstants;
@@ -30,6 +31,8 @@ import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.coprocessor.BaseRegionObserver;
 import org.apache.hadoop.hbase.coprocessor.ObserverContext;
 import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.FilterList;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.hbase.io.TimeRange;
 import org.apache.hadoop.hbase.regionserver.KeyValueScanner;
@@ -44,10 +47,14 @@ import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.htrace.Span;
 import org.apache.htrace.Trace;
 import org.apache.phoenix.execute.TupleProjector;
+import org.apache.phoenix.filter.SkipScanFilter;
 import org.apache.phoenix.hbase.index.covered.update.ColumnReference;
 import org.apache.phoenix.index.IndexMaintainer;
 import org.apache.phoenix.iterate.NonAggregateRegionScannerFactory;
 import org.apache.phoenix.iterate.RegionScannerFactory;
+import org.apache.phoenix.monitoring.MetricType;
+import org.apache.phoenix.monitoring.ServerScanMetrics;
+import org.apache.phoenix.query.QueryConstants;
 import org.apache.phoenix.schema.StaleRegionBoundaryCacheException;
 import org.apache.phoenix.schema.types.PUnsignedTinyint;
 import org.apache.phoenix.util.ScanUtil;
@@ -107,6 +114,13 @@ abstract public class BaseScannerRegionObserver extends BaseRegionObserver {
     public final static String IMMUTABLE_STORAGE_ENCODING_SCHEME = "_ImmutableStorageEncodingScheme";
     public final static String USE_ENCODED_COLUMN_QUALIFIER_LIST = "_UseEncodedColumnQualifierList";
     public static final String CLIENT_VERSION = "_ClientVersion";
+    // Number of rows returned together in a column oriented batch, see ColumnarResultBatch
+    public static final String COLUMNAR_RESULT_BATCH_SIZE = "_ColumnarResultBatchSize";
+    public static final String COLUMNAR_RESULT_COMPRESSION = "_ColumnarResultCompression";
+    // Projected columns only read for the rows that pass the filter of the scan
+    public static final String LATE_MATERIALIZED_COLUMNS = "_LateMaterializedColumns";
+    // Resources used to process the scan returned after its last row, see ServerScanMetrics
+    public static final String SERVER_SCAN_METRICS = "_ServerScanMetrics";
     
     public final static byte[] REPLAY_TABLE_AND_INDEX_WRITES = PUnsignedTinyint.INSTANCE.toBytes(1);
     public final static byte[] REPLAY_ONLY_INDEX_WRITES = PUnsignedTinyint.INSTANCE.toBytes(2);
@@ -213,12 +227,17 @@ abstract public class BaseScannerRegionObserver extends BaseRegionObserver {
     private class RegionScannerHolder extends DelegateRegionScanner {
             private final Scan scan;
             private final ObserverContext<RegionCoprocessorEnvironment> c;
+            private final ServerScanMetrics metrics;
             private boolean wasOverriden;
+            private Cell lastCell;
+            private boolean metricsPending;
+            private boolean metricsReturned;
             
             public RegionScannerHolder(ObserverContext<RegionCoprocessorEnvironment> c, Scan scan, final RegionScanner scanner) {
                 super(scanner);
                 this.c = c;
                 this.scan = scan;
+                this.metrics = scan.getAttribute(SERVER_SCAN_METRICS) == null ? null : new ServerScanMetrics();
             }
     
             private void overrideDelegate() throws IOException {
@@ -235,7 +254,8 @@ abstract public class BaseScannerRegionObserver extends BaseRegionObserver {
                 final Span savedSpan = Trace.currentSpan();
                 final Span child = Trace.startSpan(SCANNER_OPENED_TRACE_INFO, savedSpan).getSpan();
                 try {
-                    RegionScanner scanner = doPostScannerOpen(c, scan, delegate);
+                    RegionScanner scanner = doPostScannerOpen(c, scan,
+                            metrics == null ? delegate : new RowCountingRegionScanner(delegate, metrics));
                     scanner = new DelegateRegionScanner(scanner) {
                         // This isn't very obvious but close() could be called in a thread
                         // that is different from the thread that created the scanner.
@@ -266,10 +286,56 @@ abstract public class BaseScannerRegionObserver extends BaseRegionObserver {
                 }
             }
             
+            /**
+             * Get the next row, collecting the metrics of the scan if requested. Once the scan
+             * is done, its metrics are returned as the last row, on its own.
+             */
+            private boolean next(List<Cell> result, boolean raw) throws IOException {
+                if (metrics == null || metricsReturned) {
+                    overrideDelegate();
+                    return raw ? super.nextRaw(result) : super.next(result);
+                }
+                if (metricsPending) {
+                    return addMetrics(result);
+                }
+                boolean hasMore;
+                ServerScanMetrics previous = ServerScanMetrics.setCurrent(metrics);
+                long startTime = System.nanoTime();
+                try {
+                    overrideDelegate();
+                    hasMore = raw ? super.nextRaw(result) : super.next(result);
+                } finally {
+                    metrics.add(MetricType.SERVER_SCAN_TIME, System.nanoTime() - startTime);
+                    ServerScanMetrics.setCurrent(previous);
+                }
+                if (!result.isEmpty()) {
+                    lastCell = result.get(result.size() - 1);
+                }
+                if (!hasMore) {
+                    if (result.isEmpty()) {
+                        return addMetrics(result);
+                    }
+                    metricsPending = true;
+                    return true;
+                }
+                return hasMore;
+            }
+
+            private boolean addMetrics(List<Cell> result) {
+                metrics.add(MetricType.SERVER_SKIP_SCAN_FILTERED_CELLS, getSkipScanFilteredCellCount(scan.getFilter()));
+                byte[] row = lastCell == null ? scan.getStartRow() : CellUtil.cloneRow(lastCell);
+                if (row.length == 0) {
+                    row = QueryConstants.SEPARATOR_BYTE_ARRAY;
+                }
+                result.add(metrics.toCell(row));
+                metricsPending = false;
+                metricsReturned = true;
+                return false;
+            }
+
             @Override
             public boolean next(List<Cell> result, ScannerContext scannerContext) throws IOException {
-                overrideDelegate();
-                boolean res = super.next(result);
+                boolean res = next(result, false);
                 ScannerContextUtil.incrementSizeProgress(scannerContext, result);
                 ScannerContextUtil.updateTimeProgress(scannerContext);
                 return res;
@@ -277,14 +343,12 @@ abstract public class BaseScannerRegionObserver extends BaseRegionObserver {
 
             @Override
             public boolean next(List<Cell> result) throws IOException {
-                overrideDelegate();
-                return super.next(result);
+                return next(result, false);
             }
 
             @Override
             public boolean nextRaw(List<Cell> result, ScannerContext scannerContext) throws IOException {
-                overrideDelegate();
-                boolean res = super.nextRaw(result);
+                boolean res = next(result, true);
                 ScannerContextUtil.incrementSizeProgress(scannerContext, result);
                 ScannerContextUtil.updateTimeProgress(scannerContext);
                 return res;
@@ -292,10 +356,72 @@ abstract public class BaseScannerRegionObserver extends BaseRegionObserver {
             
             @Override
             public boolean nextRaw(List<Cell> result) throws IOException {
-                overrideDelegate();
-                return super.nextRaw(result);
+                return next(result, true);
+            }
+        }
+
+    private static long getSkipScanFilteredCellCount(Filter filter) {
+        if (filter instanceof SkipScanFilter) {
+            return ((SkipScanFilter)filter).getFilteredCellCount();
+        }
+        long count = 0;
+        if (filter instanceof FilterList) {
+            for (Filter childFilter : ((FilterList)filter).getFilters()) {
+                count += getSkipScanFilteredCellCount(childFilter);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Counts the rows the region scanner returns to the coprocessor for {@link ServerScanMetrics},
+     * i.e. after the scan filters but before any processing by the coprocessor. A row returned
+     * in several batches of cells is counted once.
+     */
+    private static class RowCountingRegionScanner extends DelegateRegionScanner {
+        private final ServerScanMetrics metrics;
+        private Cell lastRowCell;
+
+        public RowCountingRegionScanner(RegionScanner scanner, ServerScanMetrics metrics) {
+            super(scanner);
+            this.metrics = metrics;
+        }
+
+        private boolean count(boolean hasMore, List<Cell> result, int previousSize) {
+            if (result.size() > previousSize) {
+                Cell cell = result.get(previousSize);
+                if (lastRowCell == null || !CellUtil.matchingRow(lastRowCell, cell)) {
+                    metrics.add(MetricType.SERVER_ROWS_RETURNED, 1);
+                    lastRowCell = cell;
+                }
             }
+            return hasMore;
         }
+
+        @Override
+        public boolean next(List<Cell> result) throws IOException {
+            int size = result.size();
+            return count(delegate.next(result), result, size);
+        }
+
+        @Override
+        public boolean next(List<Cell> result, ScannerContext scannerContext) throws IOException {
+            int size = result.size();
+            return count(delegate.next(result, scannerContext), result, size);
+        }
+
+        @Override
+        public boolean nextRaw(List<Cell> result) throws IOException {
+            int size = result.size();
+            return count(delegate.nextRaw(result), result, size);
+        }
+
+        @Override
+        public boolean nextRaw(List<Cell> result, ScannerContext scannerContext) throws IOException {
+            int size = result.size();
+            return count(delegate.nextRaw(result, scannerContext), result, size);
+        }
+    }
         
 
         /**
@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.coprocessor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.regionserver.RegionScanner;
+import org.apache.phoenix.iterate.ColumnarResultBatch;
+
+/**
+ * Region scanner that returns the rows of the delegate scanner in batches, each batch being
+ * encoded as a single cell through {@link ColumnarResultBatch}.
+ */
+public class ColumnarBatchRegionScanner extends DelegateRegionScanner {
+    // Bounds the size of a batch regardless of the number of rows
+    private static final long MAX_BATCH_BYTES = 1024 * 1024;
+
+    private final int batchSize;
+    private final boolean compress;
+
+    public ColumnarBatchRegionScanner(RegionScanner scanner, int batchSize, boolean compress) {
+        super(scanner);
+        this.batchSize = Math.max(1, batchSize);
+        this.compress = compress;
+    }
+
+    private boolean nextBatch(List<Cell> result, boolean raw) throws IOException {
+        ColumnarResultBatch.Encoder encoder = new ColumnarResultBatch.Encoder();
+        boolean hasMore = true;
+        while (hasMore && encoder.getRowCount() < batchSize && encoder.getRawSize() < MAX_BATCH_BYTES) {
+            List<Cell> row = new ArrayList<Cell>();
+            hasMore = raw ? delegate.nextRaw(row) : delegate.next(row);
+            if (!row.isEmpty()) {
+                encoder.add(row);
+            }
+        }
+        if (encoder.getRowCount() > 0) {
+            result.add(encoder.toCell(compress));
+        }
+        return hasMore;
+    }
+
+    @Override
+    public boolean next(List<Cell> result) throws IOException {
+        return nextBatch(result, false);
+    }
+
+    @Override
+    public boolean nextRaw(List<Cell> result) throws IOException {
+        return nextBatch(result, true);
+    }
+}
@@ -61,6 +61,8 @@ import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
 import org.apache.phoenix.index.IndexMaintainer;
 import org.apache.phoenix.join.HashJoinInfo;
 import org.apache.phoenix.memory.MemoryManager.MemoryChunk;
+import org.apache.phoenix.monitoring.MetricType;
+import org.apache.phoenix.monitoring.ServerScanMetrics;
 import org.apache.phoenix.query.QueryConstants;
 import org.apache.phoenix.schema.PTable;
 import org.apache.phoenix.schema.SortOrder;
@@ -415,6 +417,7 @@ public class GroupedAggregateRegionObserver extends BaseScannerRegionObserver {
             }
             Region region = c.getEnvironment().getRegion();
             boolean acquiredLock = false;
+            long startTime = System.nanoTime();
             try {
                 region.startRegionOperation();
                 acquiredLock = true;
@@ -438,6 +441,7 @@ public class GroupedAggregateRegionObserver extends BaseScannerRegionObserver {
                     } while (hasMore && groupByCache.size() < limit);
                 }
             }  finally {
+                ServerScanMetrics.update(MetricType.SERVER_AGGREGATION_TIME, System.nanoTime() - startTime);
                 if (acquiredLock) region.closeRegionOperation();
             }
 
@@ -490,6 +494,7 @@ public class GroupedAggregateRegionObserver extends BaseScannerRegionObserver {
                 int countOffset = rowAggregators.length == 0 ? 1 : 0;
                 Region region = c.getEnvironment().getRegion();
                 boolean acquiredLock = false;
+                long startTime = System.nanoTime();
                 try {
                     region.startRegionOperation();
                     acquiredLock = true;
@@ -524,6 +529,7 @@ public class GroupedAggregateRegionObserver extends BaseScannerRegionObserver {
                         } while (hasMore && !aggBoundary && !atLimit);
                     }
                 } finally {
+                    ServerScanMetrics.update(MetricType.SERVER_AGGREGATION_TIME, System.nanoTime() - startTime);
                     if (acquiredLock) region.closeRegionOperation();
                 }
 
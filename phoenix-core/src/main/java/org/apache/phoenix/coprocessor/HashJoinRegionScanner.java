@@ -39,6 +39,8 @@ import org.apache.phoenix.execute.TupleProjector.ProjectedValueTuple;
 import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
 import org.apache.phoenix.join.HashJoinInfo;
+import org.apache.phoenix.monitoring.MetricType;
+import org.apache.phoenix.monitoring.ServerScanMetrics;
 import org.apache.phoenix.parse.JoinTableNode.JoinType;
 import org.apache.phoenix.schema.IllegalDataException;
 import org.apache.phoenix.schema.KeyValueSchema;
@@ -104,6 +106,7 @@ public class HashJoinRegionScanner implements RegionScanner {
                 throw new DoNotRetryIOException(cause.getMessage(), cause);
             }
                 
+            ServerScanMetrics.update(MetricType.SERVER_HASH_CACHE_BYTES, hashCache.getEstimatedSize());
             hashCaches[i] = hashCache;
             tempSrcBitSet[i] = ValueBitSet.newInstance(joinInfo.getSchemas()[i]);
         }
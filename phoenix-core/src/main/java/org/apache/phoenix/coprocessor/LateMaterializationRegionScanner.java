@@ -0,0 +1,200 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.coprocessor;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.KeyValueUtil;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.regionserver.KeyValueHeap;
+import org.apache.hadoop.hbase.regionserver.KeyValueScanner;
+import org.apache.hadoop.hbase.regionserver.Region;
+import org.apache.hadoop.hbase.regionserver.RegionScanner;
+import org.apache.hadoop.hbase.regionserver.ScanInfoUtil;
+import org.apache.hadoop.hbase.regionserver.Store;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.phoenix.util.TrustedByteArrayOutputStream;
+
+/**
+ * Region scanner performing the second phase of a late materialized scan. The scan opened by
+ * the client only reads the columns needed to evaluate its filter, and the other projected
+ * columns, as listed in the {@link BaseScannerRegionObserver#LATE_MATERIALIZED_COLUMNS}
+ * attribute, are read through a second unfiltered scanner positioned on the rows that passed
+ * the filter. Rows rejected by a selective filter are thus never read in their entirety.
+ *
+ * The second scanner is made of store scanners opened at the MVCC read point of the first one,
+ * so that both see the same snapshot of the rows and a row is never read partially updated.
+ */
+public class LateMaterializationRegionScanner extends DelegateRegionScanner {
+    private static final List<Cell> NO_CELLS = Collections.emptyList();
+
+    private final KeyValueHeap materializer;
+
+    private LateMaterializationRegionScanner(RegionScanner scanner, KeyValueHeap materializer) {
+        super(scanner);
+        this.materializer = materializer;
+    }
+
+    /**
+     * Wrap the scanner if the scan defers the reading of some of its columns.
+     */
+    public static RegionScanner wrap(Region region, Scan scan, RegionScanner s) throws IOException {
+        byte[] columns = scan.getAttribute(BaseScannerRegionObserver.LATE_MATERIALIZED_COLUMNS);
+        if (columns == null) {
+            return s;
+        }
+        Scan materializationScan = new Scan(scan);
+        materializationScan.setFilter(null);
+        materializationScan.setFamilyMap(deserializeColumns(columns));
+        // A region scanner would get a read point of its own, so open the stores directly
+        long readPt = s.getMvccReadPoint();
+        List<KeyValueScanner> scanners = new ArrayList<KeyValueScanner>();
+        try {
+            for (Map.Entry<byte[], NavigableSet<byte[]>> entry : materializationScan.getFamilyMap().entrySet()) {
+                Store store = region.getStore(entry.getKey());
+                if (store != null) {
+                    scanners.add(ScanInfoUtil.createStoreScanner(store, store.getScanInfo(),
+                            materializationScan, entry.getValue(), readPt));
+                }
+            }
+            return new LateMaterializationRegionScanner(s, new KeyValueHeap(scanners, KeyValue.COMPARATOR));
+        } catch (IOException e) {
+            for (KeyValueScanner scanner : scanners) {
+                scanner.close();
+            }
+            throw e;
+        }
+    }
+
+    public static byte[] serializeColumns(Map<byte[], NavigableSet<byte[]>> columns) {
+        TrustedByteArrayOutputStream stream = new TrustedByteArrayOutputStream(64);
+        try (DataOutputStream output = new DataOutputStream(stream)) {
+            WritableUtils.writeVInt(output, columns.size());
+            for (Map.Entry<byte[], NavigableSet<byte[]>> entry : columns.entrySet()) {
+                Bytes.writeByteArray(output, entry.getKey());
+                WritableUtils.writeVInt(output, entry.getValue().size());
+                for (byte[] qualifier : entry.getValue()) {
+                    Bytes.writeByteArray(output, qualifier);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e); // Impossible
+        }
+        return stream.toByteArray();
+    }
+
+    private static Map<byte[], NavigableSet<byte[]>> deserializeColumns(byte[] b) throws IOException {
+        Map<byte[], NavigableSet<byte[]>> columns = new TreeMap<byte[], NavigableSet<byte[]>>(Bytes.BYTES_COMPARATOR);
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(b))) {
+            int familyCount = WritableUtils.readVInt(input);
+            for (int i = 0; i < familyCount; i++) {
+                byte[] family = Bytes.readByteArray(input);
+                NavigableSet<byte[]> qualifiers = new TreeSet<byte[]>(Bytes.BYTES_COMPARATOR);
+                int qualifierCount = WritableUtils.readVInt(input);
+                for (int j = 0; j < qualifierCount; j++) {
+                    qualifiers.add(Bytes.readByteArray(input));
+                }
+                columns.put(family, qualifiers);
+            }
+        }
+        return columns;
+    }
+
+    private static int compareRows(Cell left, Cell right) {
+        return Bytes.compareTo(left.getRowArray(), left.getRowOffset(), left.getRowLength(),
+                right.getRowArray(), right.getRowOffset(), right.getRowLength());
+    }
+
+    /*
+     * Read the deferred columns of the row of the given cell. Rows are visited in increasing
+     * order, so the materializer only ever seeks forward.
+     */
+    private List<Cell> materialize(Cell rowCell) throws IOException {
+        materializer.reseek(KeyValueUtil.createFirstOnRow(rowCell.getRowArray(), rowCell.getRowOffset(), rowCell.getRowLength()));
+        Cell next = materializer.peek();
+        if (next == null || compareRows(next, rowCell) != 0) {
+            // The row has none of the deferred columns
+            return NO_CELLS;
+        }
+        List<Cell> row = new ArrayList<Cell>();
+        // Each call reads the cells of the row from one store
+        do {
+            materializer.next(row);
+            next = materializer.peek();
+        } while (next != null && compareRows(next, rowCell) == 0);
+        return row;
+    }
+
+    private static void merge(List<Cell> left, List<Cell> right, List<Cell> result) {
+        int i = 0, j = 0;
+        while (i < left.size() && j < right.size()) {
+            if (KeyValue.COMPARATOR.compare(left.get(i), right.get(j)) <= 0) {
+                result.add(left.get(i++));
+            } else {
+                result.add(right.get(j++));
+            }
+        }
+        while (i < left.size()) {
+            result.add(left.get(i++));
+        }
+        while (j < right.size()) {
+            result.add(right.get(j++));
+        }
+    }
+
+    private boolean nextRow(List<Cell> result, boolean raw) throws IOException {
+        List<Cell> filtered = new ArrayList<Cell>();
+        boolean hasMore = raw ? delegate.nextRaw(filtered) : delegate.next(filtered);
+        if (!filtered.isEmpty()) {
+            merge(filtered, materialize(filtered.get(0)), result);
+        }
+        return hasMore;
+    }
+
+    @Override
+    public boolean next(List<Cell> result) throws IOException {
+        return nextRow(result, false);
+    }
+
+    @Override
+    public boolean nextRaw(List<Cell> result) throws IOException {
+        return nextRow(result, true);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            delegate.close();
+        } finally {
+            materializer.close();
+        }
+    }
+}
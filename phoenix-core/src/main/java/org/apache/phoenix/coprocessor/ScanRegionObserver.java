@@ -27,6 +27,7 @@ import org.apache.hadoop.hbase.coprocessor.ObserverContext;
 import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
 
 import org.apache.hadoop.hbase.regionserver.RegionScanner;
+import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.io.WritableUtils;
 import org.apache.phoenix.expression.OrderByExpression;
 import org.apache.phoenix.iterate.NonAggregateRegionScannerFactory;
@@ -72,7 +73,14 @@ public class ScanRegionObserver extends BaseScannerRegionObserver {
     @Override
     protected RegionScanner doPostScannerOpen(final ObserverContext<RegionCoprocessorEnvironment> c, final Scan scan, final RegionScanner s) throws Throwable {
         NonAggregateRegionScannerFactory nonAggregateROUtil = new NonAggregateRegionScannerFactory(c.getEnvironment());
-        return nonAggregateROUtil.getRegionScanner(scan, s);
+        RegionScanner scanner = nonAggregateROUtil.getRegionScanner(scan, s);
+        byte[] batchSize = scan.getAttribute(BaseScannerRegionObserver.COLUMNAR_RESULT_BATCH_SIZE);
+        // The row holding the remaining offset must be returned on its own
+        if (batchSize != null && scan.getAttribute(BaseScannerRegionObserver.SCAN_OFFSET) == null) {
+            scanner = new ColumnarBatchRegionScanner(scanner, Bytes.toInt(batchSize),
+                    scan.getAttribute(BaseScannerRegionObserver.COLUMNAR_RESULT_COMPRESSION) != null);
+        }
+        return scanner;
     }
 
     @Override
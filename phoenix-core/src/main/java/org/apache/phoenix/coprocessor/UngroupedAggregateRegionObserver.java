@@ -102,6 +102,8 @@ import org.apache.phoenix.jdbc.PhoenixConnection;
 import org.apache.phoenix.jdbc.PhoenixDatabaseMetaData;
 import org.apache.phoenix.join.HashJoinInfo;
 import org.apache.phoenix.memory.MemoryManager.MemoryChunk;
+import org.apache.phoenix.monitoring.MetricType;
+import org.apache.phoenix.monitoring.ServerScanMetrics;
 import org.apache.phoenix.query.QueryConstants;
 import org.apache.phoenix.query.QueryServices;
 import org.apache.phoenix.query.QueryServicesOptions;
@@ -548,6 +550,7 @@ public class UngroupedAggregateRegionObserver extends BaseScannerRegionObserver
             }
             region.startRegionOperation();
             acquiredLock = true;
+            long aggregationStartTime = System.nanoTime();
             synchronized (innerScanner) {
                 do {
                     List<Cell> results = useQualifierAsIndex ? new EncodedColumnQualiferCellsList(minMaxQualifiers.getFirst(), minMaxQualifiers.getSecond(), encodingScheme) : new ArrayList<Cell>();
@@ -783,6 +786,7 @@ public class UngroupedAggregateRegionObserver extends BaseScannerRegionObserver
                         hasAny = true;
                     }
                 } while (hasMore);
+                ServerScanMetrics.update(MetricType.SERVER_AGGREGATION_TIME, System.nanoTime() - aggregationStartTime);
                 if (!mutations.isEmpty()) {
                     commit(region, mutations, indexUUID, blockingMemStoreSize, indexMaintainersPtr, txState,
                         targetHTable, useIndexProto, isPKChanging, clientVersionBytes);
@@ -1001,6 +1005,36 @@ public class UngroupedAggregateRegionObserver extends BaseScannerRegionObserver
         return scanner;
     }
 
+    @Override
+    public InternalScanner preFlush(final ObserverContext<RegionCoprocessorEnvironment> c,
+            final Store store, final InternalScanner scanner) throws IOException {
+        if (!c.getEnvironment().getConfiguration().getBoolean(QueryServices.STATS_COLLECT_ON_FLUSH_ATTRIB,
+                QueryServicesOptions.DEFAULT_STATS_COLLECT_ON_FLUSH)) {
+            return scanner;
+        }
+        TableName table = c.getEnvironment().getRegion().getRegionInfo().getTable();
+        // The stats of the flushed data are only merged into SYSTEM.STATS once the flush
+        // scanner is closed, so there are no cross cluster RPCs on the flush path.
+        InternalScanner internalScanner = scanner;
+        try {
+            long clientTimeStamp = EnvironmentEdgeManager.currentTimeMillis();
+            DelegateRegionCoprocessorEnvironment compactionConfEnv =
+                    new DelegateRegionCoprocessorEnvironment(c.getEnvironment(),
+                            ConnectionType.COMPACTION_CONNECTION);
+            StatisticsCollector stats = StatisticsCollectorFactory.createStatisticsCollector(
+                compactionConfEnv, table.getNameAsString(), clientTimeStamp,
+                store.getFamily().getName());
+            internalScanner = stats.createFlushScanner(compactionConfEnv, store, scanner);
+        } catch (Exception e) {
+            // Never fail a flush because of stats, they'll be fixed up by the next
+            // major compaction.
+            if (logger.isWarnEnabled()) {
+                logger.warn("Unable to collect stats on flush for " + table, e);
+            }
+        }
+        return internalScanner;
+    }
+
     private static PTable deserializeTable(byte[] b) {
         try {
             PTableProtos.PTable ptableProto = PTableProtos.PTable.parseFrom(b);
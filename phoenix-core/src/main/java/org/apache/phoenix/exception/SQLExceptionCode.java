@@ -421,6 +421,7 @@ public enum SQLExceptionCode {
     UNALLOWED_USER_DEFINED_FUNCTIONS(6003, "42F03",
             "User defined functions are configured to not be allowed. To allow configure "
                     + QueryServices.ALLOW_USER_DEFINED_FUNCTIONS_ATTRIB + " to true."), 
+    OPERATION_CANCELLED(6004, "TIM02", "Operation cancelled."),
 
     SCHEMA_ALREADY_EXISTS(721, "42M04", "Schema with given name already exists", new Factory() {
         @Override
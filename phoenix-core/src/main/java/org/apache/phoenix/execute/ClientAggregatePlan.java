@@ -56,12 +56,14 @@ import org.apache.phoenix.iterate.OffsetResultIterator;
 import org.apache.phoenix.iterate.OrderedAggregatingResultIterator;
 import org.apache.phoenix.iterate.OrderedResultIterator;
 import org.apache.phoenix.iterate.ParallelScanGrouper;
+import org.apache.phoenix.iterate.PartitionedAggregatingResultIterator;
 import org.apache.phoenix.iterate.PeekingResultIterator;
 import org.apache.phoenix.iterate.ResultIterator;
 import org.apache.phoenix.iterate.SequenceResultIterator;
 import org.apache.phoenix.iterate.UngroupedAggregatingResultIterator;
 import org.apache.phoenix.optimize.Cost;
 import org.apache.phoenix.parse.FilterableStatement;
+import org.apache.phoenix.query.ConnectionQueryServices;
 import org.apache.phoenix.query.QueryServices;
 import org.apache.phoenix.query.QueryServicesOptions;
 import org.apache.phoenix.schema.TableRef;
@@ -131,7 +133,24 @@ public class ClientAggregatePlan extends ClientProcessingPlan {
         }
         
         AggregatingResultIterator aggResultIterator;
-        if (groupBy.isEmpty()) {
+        int parallelism = getAggregationParallelism();
+        if (parallelism > 1) {
+            // Aggregate hash partitions of the rows in parallel, and combine their partial aggregates
+            ConnectionQueryServices services = context.getConnection().getQueryServices();
+            int thresholdBytes = services.getProps().getInt(
+                    QueryServices.SPOOL_THRESHOLD_BYTES_ATTRIB, QueryServicesOptions.DEFAULT_SPOOL_THRESHOLD_BYTES);
+            byte[] serializedAggregators = context.getScan().getAttribute(BaseScannerRegionObserver.AGGREGATORS);
+            List<ServerAggregators> partitionAggregators = Lists.newArrayListWithExpectedSize(parallelism);
+            for (int i = 0; i < parallelism; i++) {
+                partitionAggregators.add(ServerAggregators.deserialize(serializedAggregators, services.getConfiguration(), null));
+            }
+            List<Expression> keyExpressions = groupBy.isEmpty() ? Collections.<Expression> emptyList() : groupBy.getKeyExpressions();
+            iterator = new PartitionedAggregatingResultIterator(iterator, keyExpressions, partitionAggregators,
+                    services.getConfiguration(), thresholdBytes, context.getMemoryManager(), services.getExecutor());
+            aggResultIterator = groupBy.isEmpty()
+                    ? new UngroupedAggregatingResultIterator(LookAheadResultIterator.wrap(iterator), clientAggregators)
+                    : new GroupedAggregatingResultIterator(LookAheadResultIterator.wrap(iterator), clientAggregators);
+        } else if (groupBy.isEmpty()) {
             aggResultIterator = new ClientUngroupedAggregatingResultIterator(LookAheadResultIterator.wrap(iterator), serverAggregators);
             aggResultIterator = new UngroupedAggregatingResultIterator(LookAheadResultIterator.wrap(aggResultIterator), clientAggregators);
         } else {
@@ -143,7 +162,8 @@ public class ClientAggregatePlan extends ClientProcessingPlan {
                 for (Expression keyExpression : keyExpressions) {
                     keyExpressionOrderBy.add(new OrderByExpression(keyExpression, false, true));
                 }
-                iterator = new OrderedResultIterator(iterator, keyExpressionOrderBy, thresholdBytes, null, null, projector.getEstimatedRowByteSize());
+                iterator = new OrderedResultIterator(iterator, keyExpressionOrderBy, thresholdBytes, null, null,
+                        projector.getEstimatedRowByteSize(), context.getMemoryManager());
             }
             aggResultIterator = new ClientGroupedAggregatingResultIterator(LookAheadResultIterator.wrap(iterator), serverAggregators, groupBy.getKeyExpressions());
             aggResultIterator = new GroupedAggregatingResultIterator(LookAheadResultIterator.wrap(aggResultIterator), clientAggregators);
@@ -183,8 +203,12 @@ public class ClientAggregatePlan extends ClientProcessingPlan {
         if (where != null) {
             planSteps.add("CLIENT FILTER BY " + where.toString());
         }
+        int parallelism = getAggregationParallelism();
+        if (parallelism > 1) {
+            planSteps.add("CLIENT PARALLEL " + parallelism + "-WAY HASH AGGREGATE");
+        }
         if (!groupBy.isEmpty()) {
-            if (!groupBy.isOrderPreserving()) {
+            if (!groupBy.isOrderPreserving() && parallelism <= 1) {
                 planSteps.add("CLIENT SORTED BY " + groupBy.getKeyExpressions().toString());
             }
             planSteps.add("CLIENT AGGREGATE INTO DISTINCT ROWS BY " + groupBy.getExpressions().toString());
@@ -215,6 +239,19 @@ public class ClientAggregatePlan extends ClientProcessingPlan {
         return new ExplainPlan(planSteps);
     }
 
+    /**
+     * Get the number of partitions aggregated in parallel, or 1 if the rows are aggregated
+     * on the calling thread. The groups of an order preserving GROUP BY are already in
+     * order, so they are aggregated as they come.
+     */
+    private int getAggregationParallelism() {
+        if (!groupBy.isEmpty() && groupBy.isOrderPreserving()) {
+            return 1;
+        }
+        return context.getConnection().getQueryServices().getProps().getInt(
+                QueryServices.CLIENT_AGGREGATION_PARALLELISM_ATTRIB, QueryServicesOptions.DEFAULT_CLIENT_AGGREGATION_PARALLELISM);
+    }
+
     @Override
     public GroupBy getGroupBy() {
         return groupBy;
@@ -89,7 +89,7 @@ public class ClientScanPlan extends ClientProcessingPlan {
             int thresholdBytes = context.getConnection().getQueryServices().getProps().getInt(
                     QueryServices.SPOOL_THRESHOLD_BYTES_ATTRIB, QueryServicesOptions.DEFAULT_SPOOL_THRESHOLD_BYTES);
             iterator = new OrderedResultIterator(iterator, orderBy.getOrderByExpressions(), thresholdBytes, limit,
-                    offset, projector.getEstimatedRowByteSize());
+                    offset, projector.getEstimatedRowByteSize(), context.getMemoryManager());
         } else {
             if (offset != null) {
                 iterator = new OffsetResultIterator(iterator, offset);
@@ -37,6 +37,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.phoenix.cache.ServerCacheClient.ServerCache;
 import org.apache.phoenix.compile.ColumnProjector;
 import org.apache.phoenix.compile.ExplainPlan;
@@ -54,8 +55,13 @@ import org.apache.phoenix.execute.visitor.RowCountVisitor;
 import org.apache.phoenix.expression.Determinism;
 import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.expression.InListExpression;
+import org.apache.phoenix.expression.KeyValueColumnExpression;
 import org.apache.phoenix.expression.LiteralExpression;
+import org.apache.phoenix.expression.ProjectedColumnExpression;
 import org.apache.phoenix.expression.RowValueConstructorExpression;
+import org.apache.phoenix.expression.function.RuntimeJoinFilterExpression;
+import org.apache.phoenix.expression.visitor.CloneExpressionVisitor;
+import org.apache.phoenix.expression.visitor.KeyValueExpressionVisitor;
 import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
 import org.apache.phoenix.iterate.FilterResultIterator;
 import org.apache.phoenix.iterate.ParallelScanGrouper;
@@ -67,13 +73,19 @@ import org.apache.phoenix.join.HashJoinInfo;
 import org.apache.phoenix.monitoring.TaskExecutionMetricsHolder;
 import org.apache.phoenix.optimize.Cost;
 import org.apache.phoenix.parse.FilterableStatement;
+import org.apache.phoenix.parse.JoinTableNode.JoinType;
 import org.apache.phoenix.parse.ParseNode;
 import org.apache.phoenix.parse.SQLParser;
 import org.apache.phoenix.parse.SelectStatement;
 import org.apache.phoenix.query.ConnectionQueryServices;
 import org.apache.phoenix.query.QueryServices;
 import org.apache.phoenix.query.QueryServicesOptions;
+import org.apache.phoenix.schema.ColumnRef;
+import org.apache.phoenix.schema.PColumn;
 import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.schema.PTable.IndexType;
+import org.apache.phoenix.schema.PTableType;
+import org.apache.phoenix.schema.ProjectedColumn;
 import org.apache.phoenix.schema.TableRef;
 import org.apache.phoenix.schema.tuple.Tuple;
 import org.apache.phoenix.schema.types.PArrayDataType;
@@ -97,6 +109,8 @@ public class HashJoinPlan extends DelegateQueryPlan {
     private final Set<TableRef> tableRefs;
     private final int maxServerCacheTimeToLive;
     private final long serverCacheLimit;
+    private final boolean runtimeJoinFilterEnabled;
+    private final int runtimeJoinFilterMaxKeys;
     private final Map<ImmutableBytesPtr,ServerCache> dependencies = Maps.newHashMap();
     private HashCacheClient hashClient;
     private AtomicLong firstJobEndTime;
@@ -142,6 +156,10 @@ public class HashJoinPlan extends DelegateQueryPlan {
                 QueryServices.MAX_SERVER_CACHE_TIME_TO_LIVE_MS_ATTRIB, QueryServicesOptions.DEFAULT_MAX_SERVER_CACHE_TIME_TO_LIVE_MS);
         this.serverCacheLimit = services.getProps().getLong(
                 QueryServices.MAX_SERVER_CACHE_SIZE_ATTRIB, QueryServicesOptions.DEFAULT_MAX_SERVER_CACHE_SIZE);
+        this.runtimeJoinFilterEnabled = services.getProps().getBoolean(
+                QueryServices.RUNTIME_JOIN_FILTER_ENABLED_ATTRIB, QueryServicesOptions.DEFAULT_RUNTIME_JOIN_FILTER_ENABLED);
+        this.runtimeJoinFilterMaxKeys = services.getProps().getInt(
+                QueryServices.RUNTIME_JOIN_FILTER_MAX_KEYS_ATTRIB, QueryServicesOptions.DEFAULT_RUNTIME_JOIN_FILTER_MAX_KEYS);
     }
     
     @Override
@@ -163,7 +181,7 @@ public class HashJoinPlan extends DelegateQueryPlan {
         if (joinInfo != null) {
             hashClient = hashClient != null ? 
                     hashClient 
-                  : new HashCacheClient(delegate.getContext().getConnection());
+                  : new HashCacheClient(delegate.getContext().getConnection(), getContext().getMemoryManager());
             firstJobEndTime = new AtomicLong(0);
             keyRangeExpressions = new CopyOnWriteArrayList<Expression>();
         }
@@ -195,7 +213,11 @@ public class HashJoinPlan extends DelegateQueryPlan {
             try {
                 ServerCache result = futures.get(i).get();
                 if (result != null) {
-                    dependencies.put(new ImmutableBytesPtr(result.getId()),result);
+                    ServerCache previous = dependencies.put(new ImmutableBytesPtr(result.getId()),result);
+                    if (previous != null) {
+                        // Sub plans with identical shared caches hold a reference each to the same cache
+                        SQLCloseables.closeAllQuietly(Collections.singletonList(previous));
+                    }
                 }
                 subPlans[i].postProcess(result, this);
             } catch (InterruptedException e) {
@@ -229,6 +251,17 @@ public class HashJoinPlan extends DelegateQueryPlan {
                 postFilter = WhereCompiler.compile(delegate.getContext(), delegate.getStatement(), viewWhere, null);
             }
             if (hasKeyRangeExpressions) {
+                // Columns read by the dynamic filters must be read along with the WHERE conditions
+                final StatementContext whereContext = context;
+                for (Expression expression : keyRangeExpressions) {
+                    expression.accept(new KeyValueExpressionVisitor() {
+                        @Override
+                        public Void visit(KeyValueColumnExpression column) {
+                            whereContext.addWhereConditionColumn(column.getColumnFamily(), column.getColumnQualifier());
+                            return null;
+                        }
+                    });
+                }
                 WhereCompiler.compile(delegate.getContext(), delegate.getStatement(), viewWhere, keyRangeExpressions, null);
             }
         }
@@ -256,6 +289,96 @@ public class HashJoinPlan extends DelegateQueryPlan {
         return InListExpression.create(rhsValues, false, ptr, rowKeyOrderOptimizable);
     }
 
+    /**
+     * Returns the join key expressions of the given join rewritten to be evaluated on the rows
+     * scanned from the probe side table instead of on the projected tuples, or null if the rows
+     * of the scan cannot be filtered by the join keys of the build side.
+     */
+    private List<Expression> getRuntimeJoinFilterExpressions(int index) {
+        if (!runtimeJoinFilterEnabled) {
+            return null;
+        }
+        JoinType type = joinInfo.getJoinTypes()[index];
+        // Rows without a match are only discarded by inner and semi joins. The join keys of
+        // joins evaluated late may reference the tables of the preceding joins.
+        if ((type != JoinType.Inner && type != JoinType.Semi) || !joinInfo.earlyEvaluation()[index]) {
+            return null;
+        }
+        TableRef tableRef = delegate.getTableRef();
+        PTable table = tableRef.getTable();
+        if (table.getType() == PTableType.PROJECTED || table.getType() == PTableType.SUBQUERY
+                || table.getIndexType() == IndexType.LOCAL) {
+            return null;
+        }
+        ProbeSideColumnVisitor visitor = new ProbeSideColumnVisitor(tableRef);
+        List<Expression> expressions = Lists.newArrayListWithExpectedSize(joinInfo.getJoinExpressions()[index].size());
+        boolean isStateless = true;
+        for (Expression expression : joinInfo.getJoinExpressions()[index]) {
+            expressions.add(expression.accept(visitor));
+            isStateless &= expression.isStateless();
+        }
+        return visitor.isConvertible() && !isStateless ? expressions : null;
+    }
+
+    /**
+     * Replaces the columns of the projected tuples by the columns of the probe side table they
+     * are projected from.
+     */
+    private static class ProbeSideColumnVisitor extends CloneExpressionVisitor {
+        private final TableRef tableRef;
+        private boolean isConvertible = true;
+
+        ProbeSideColumnVisitor(TableRef tableRef) {
+            this.tableRef = tableRef;
+        }
+
+        boolean isConvertible() {
+            return isConvertible;
+        }
+
+        @Override
+        public boolean isCloneNode(Expression node, List<Expression> children) {
+            return !children.equals(node.getChildren());
+        }
+
+        @Override
+        public Expression visit(ProjectedColumnExpression node) {
+            PColumn column = node.getColumn();
+            if (!(column instanceof ProjectedColumn)) {
+                isConvertible = false;
+                return node;
+            }
+            ColumnRef sourceColumnRef = ((ProjectedColumn) column).getSourceColumnRef();
+            if (!tableRef.equals(sourceColumnRef.getTableRef()) || isQualifierAmbiguous(sourceColumnRef.getColumn())) {
+                isConvertible = false;
+                return node;
+            }
+            try {
+                return sourceColumnRef.newColumnExpression();
+            } catch (SQLException e) {
+                isConvertible = false;
+                return node;
+            }
+        }
+
+        /*
+         * The scan filters may match the cells of a column by qualifier only.
+         */
+        private boolean isQualifierAmbiguous(PColumn column) {
+            if (column.getFamilyName() == null) {
+                return false;
+            }
+            for (PColumn other : tableRef.getTable().getColumns()) {
+                if (other.getFamilyName() != null
+                        && !other.getFamilyName().getString().equals(column.getFamilyName().getString())
+                        && Bytes.equals(other.getColumnQualifierBytes(), column.getColumnQualifierBytes())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
     @Override
     public ExplainPlan getExplainPlan() throws SQLException {
         List<String> planSteps = Lists.newArrayList(delegate.getExplainPlan().getPlanSteps());
@@ -392,6 +515,7 @@ public class HashJoinPlan extends DelegateQueryPlan {
         @Override
         public ServerCache execute(HashJoinPlan parent) throws SQLException {
             List<Object> values = Lists.<Object> newArrayList();
+            plan.getContext().setMemoryManager(parent.getContext().getMemoryManager());
             ResultIterator iterator = plan.iterator();
             try {
                 RowProjector projector = plan.getProjector();
@@ -486,19 +610,27 @@ public class HashJoinPlan extends DelegateQueryPlan {
         @Override
         public ServerCache execute(HashJoinPlan parent) throws SQLException {
             ScanRanges ranges = parent.delegate.getContext().getScanRanges();
+            // The memory of the sub query is accounted to the query
+            plan.getContext().setMemoryManager(parent.getContext().getMemoryManager());
             List<Expression> keyRangeRhsValues = null;
             if (keyRangeRhsExpression != null) {
                 keyRangeRhsValues = Lists.<Expression>newArrayList();
             }
             ServerCache cache = null;
+            List<Expression> runtimeFilterExpressions = null;
+            Set<ImmutableBytesPtr> joinKeys = null;
             if (hashExpressions != null) {
+                runtimeFilterExpressions = parent.getRuntimeJoinFilterExpressions(index);
+                if (runtimeFilterExpressions != null) {
+                    joinKeys = Sets.<ImmutableBytesPtr>newHashSet();
+                }
                 ResultIterator iterator = plan.iterator();
                 try {
                     cache =
                             parent.hashClient.addHashCache(ranges, iterator,
                                 plan.getEstimatedSize(), hashExpressions, singleValueOnly,
                                 parent.delegate.getTableRef().getTable(), keyRangeRhsExpression,
-                                keyRangeRhsValues);
+                                keyRangeRhsValues, joinKeys);
                     long endTime = System.currentTimeMillis();
                     boolean isSet = parent.firstJobEndTime.compareAndSet(0, endTime);
                     if (!isSet && (endTime
@@ -527,6 +659,10 @@ public class HashJoinPlan extends DelegateQueryPlan {
             if (keyRangeRhsValues != null) {
                 parent.keyRangeExpressions.add(parent.createKeyRangeExpression(keyRangeLhsExpression, keyRangeRhsExpression, keyRangeRhsValues, plan.getContext().getTempPtr(), plan.getContext().getCurrentTable().getTable().rowKeyOrderOptimizable()));
             }
+            // Not worth it when the build side has too many keys for a selective filter
+            if (joinKeys != null && joinKeys.size() <= parent.runtimeJoinFilterMaxKeys) {
+                parent.keyRangeExpressions.add(RuntimeJoinFilterExpression.create(runtimeFilterExpressions, joinKeys));
+            }
             return cache;
         }
 
@@ -559,12 +695,20 @@ public class HashJoinPlan extends DelegateQueryPlan {
 
         @Override
         public List<String> getPostSteps(HashJoinPlan parent) throws SQLException {
-            if (keyRangeLhsExpression == null)
-                return Collections.<String> emptyList();
-            
-            String step = "    DYNAMIC SERVER FILTER BY " + keyRangeLhsExpression.toString() 
-                    + " IN (" + keyRangeRhsExpression.toString() + ")";
-            return Collections.<String> singletonList(step);
+            List<String> steps = Lists.newArrayList();
+            if (keyRangeLhsExpression != null) {
+                steps.add("    DYNAMIC SERVER FILTER BY " + keyRangeLhsExpression.toString() 
+                        + " IN (" + keyRangeRhsExpression.toString() + ")");
+            }
+            List<Expression> runtimeFilterExpressions = hashExpressions == null ? null : parent.getRuntimeJoinFilterExpressions(index);
+            if (runtimeFilterExpressions != null) {
+                StringBuilder buf = new StringBuilder("    DYNAMIC SERVER FILTER BY " + RuntimeJoinFilterExpression.NAME + "(");
+                for (int i = 0; i < runtimeFilterExpressions.size(); i++) {
+                    buf.append(i == 0 ? "" : ", ").append(runtimeFilterExpressions.get(i).toString());
+                }
+                steps.add(buf.append(")").toString());
+            }
+            return steps;
         }
 
 
@@ -18,6 +18,7 @@
 package org.apache.phoenix.execute;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static org.apache.phoenix.monitoring.GlobalClientHistograms.MUTATION_COMMIT_TIME_HISTOGRAM;
 import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_MUTATION_BATCH_FAILED_COUNT;
 import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_MUTATION_BATCH_SIZE;
 import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_MUTATION_BYTES;
@@ -1003,6 +1004,7 @@ public class MutationState implements SQLCloseable {
                         shouldRetry = false;
                         mutationCommitTime = System.currentTimeMillis() - startTime;
                         GLOBAL_MUTATION_COMMIT_TIME.update(mutationCommitTime);
+                        MUTATION_COMMIT_TIME_HISTOGRAM.update(Bytes.toString(htableName), mutationCommitTime);
                         numFailedMutations = 0;
 
                         // Remove batches as we process them
@@ -28,6 +28,7 @@ import java.util.Map;
 
 import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.util.Pair;
 import org.apache.phoenix.cache.ServerCacheClient.ServerCache;
 import org.apache.phoenix.compile.GroupByCompiler.GroupBy;
@@ -51,6 +52,8 @@ import org.apache.phoenix.iterate.OffsetResultIterator;
 import org.apache.phoenix.iterate.ParallelIteratorFactory;
 import org.apache.phoenix.iterate.ParallelIterators;
 import org.apache.phoenix.iterate.ParallelScanGrouper;
+import org.apache.phoenix.iterate.PointLookupResultIterator;
+import org.apache.phoenix.iterate.RampingParallelIterators;
 import org.apache.phoenix.iterate.ResultIterator;
 import org.apache.phoenix.iterate.RoundRobinResultIterator;
 import org.apache.phoenix.iterate.SequenceResultIterator;
@@ -71,6 +74,7 @@ import org.apache.phoenix.schema.TableRef;
 import org.apache.phoenix.schema.stats.StatisticsUtil;
 import org.apache.phoenix.util.CostUtil;
 import org.apache.phoenix.util.QueryUtil;
+import org.apache.phoenix.util.ReadOnlyProps;
 import org.apache.phoenix.util.ScanUtil;
 import org.apache.phoenix.util.SchemaUtil;
 import org.slf4j.Logger;
@@ -257,6 +261,16 @@ public class ScanPlan extends BaseQueryPlan {
         boolean isOrdered = !orderBy.getOrderByExpressions().isEmpty();
         Integer perScanLimit = !allowPageFilter || isOrdered ? null : QueryUtil.getOffsetLimit(limit, offset);
         boolean isOffsetOnServer = isOffsetPossibleOnServer(context, orderBy, offset, isSalted, table.getIndexType());
+        ReadOnlyProps props = context.getConnection().getQueryServices().getProps();
+        if (!isOffsetOnServer && props.getBoolean(QueryServices.COLUMNAR_RESULTS_ENABLED_ATTRIB,
+                QueryServicesOptions.DEFAULT_COLUMNAR_RESULTS_ENABLED)) {
+            scan.setAttribute(BaseScannerRegionObserver.COLUMNAR_RESULT_BATCH_SIZE, Bytes.toBytes(props.getInt(
+                    QueryServices.COLUMNAR_RESULTS_BATCH_SIZE_ATTRIB, QueryServicesOptions.DEFAULT_COLUMNAR_RESULTS_BATCH_SIZE)));
+            if (props.getBoolean(QueryServices.COLUMNAR_RESULTS_COMPRESSION_ATTRIB,
+                    QueryServicesOptions.DEFAULT_COLUMNAR_RESULTS_COMPRESSION)) {
+                scan.setAttribute(BaseScannerRegionObserver.COLUMNAR_RESULT_COMPRESSION, QueryConstants.TRUE);
+            }
+        }
         /*
          * For queries that are doing a row key order by and are not possibly querying more than a
          * threshold worth of data, then we only need to initialize scanners corresponding to the
@@ -270,6 +284,10 @@ public class ScanPlan extends BaseQueryPlan {
             iterators = new SerialIterators(this, perScanLimit, offset, parallelIteratorFactory, scanGrouper, scan, caches, dataPlan);
         } else if (isSerial) {
             iterators = new SerialIterators(this, perScanLimit, null, parallelIteratorFactory, scanGrouper, scan, caches, dataPlan);
+        } else if (perScanLimit != null && !isOrdered && RampingParallelIterators.isEnabled(context)
+                && !((isSalted || table.getIndexType() == IndexType.LOCAL) && ScanUtil.shouldRowsBeInRowKeyOrder(orderBy, context))) {
+            // Only scan as many chunks as needed to reach the limit
+            iterators = new RampingParallelIterators(this, perScanLimit, parallelIteratorFactory, scanGrouper, scan, caches, dataPlan);
         } else {
             iterators = new ParallelIterators(this, perScanLimit, parallelIteratorFactory, scanGrouper, scan, initFirstScanOnly, caches, dataPlan);
         }
@@ -286,7 +304,14 @@ public class ScanPlan extends BaseQueryPlan {
         } else if (isOrdered) {
             scanner = new MergeSortTopNResultIterator(iterators, limit, offset, orderBy.getOrderByExpressions());
         } else {
-            if ((isSalted || table.getIndexType() == IndexType.LOCAL) && ScanUtil.shouldRowsBeInRowKeyOrder(orderBy, context)) {
+            if (!(isSalted && ScanUtil.shouldRowsBeInRowKeyOrder(orderBy, context))
+                    && PointLookupResultIterator.isSupported(context, table, scan)) {
+                /*
+                 * Fetch the rows of a point lookup through batched Gets, as the keys are sorted
+                 * the same way as the rows would be returned by the scans.
+                 */
+                scanner = new PointLookupResultIterator(context, table, scan, iterators);
+            } else if ((isSalted || table.getIndexType() == IndexType.LOCAL) && ScanUtil.shouldRowsBeInRowKeyOrder(orderBy, context)) {
                 /*
                  * For salted tables or local index, a merge sort is needed if: 
                  * 1) The config phoenix.query.force.rowkeyorder is set to true 
@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression.function;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.expression.Determinism;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.LiteralExpression;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.schema.IllegalDataException;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.schema.types.PBoolean;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.util.TupleUtil;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnel;
+import com.google.common.hash.PrimitiveSink;
+
+/**
+ *
+ * Internal function used to filter the rows of the probe side of a hash join by the join keys
+ * of its build side. Evaluates to true if the join key formed by the children, concatenated
+ * the same way as by the hash cache, is between the smallest and largest build side keys and
+ * is contained in a Bloom filter of the build side keys. May evaluate to true for rows without
+ * a match in the hash cache, but never evaluates to false for a row with one.
+ *
+ */
+public class RuntimeJoinFilterExpression extends ScalarFunction {
+    public static final String NAME = "RUNTIME_JOIN_FILTER";
+
+    private BloomFilter<ImmutableBytesWritable> bloomFilter;
+    private byte[] minKey;
+    private byte[] maxKey;
+
+    public RuntimeJoinFilterExpression() {
+    }
+
+    private RuntimeJoinFilterExpression(List<Expression> children, BloomFilter<ImmutableBytesWritable> bloomFilter,
+            byte[] minKey, byte[] maxKey) {
+        super(children);
+        this.bloomFilter = bloomFilter;
+        this.minKey = minKey;
+        this.maxKey = maxKey;
+    }
+
+    /**
+     * Create the filter of the join keys formed by the given expressions.
+     * @param keyExpressions expressions forming the join key of a probe side row
+     * @param keys the distinct join keys of the build side
+     */
+    public static Expression create(List<Expression> keyExpressions, Collection<ImmutableBytesPtr> keys) throws SQLException {
+        if (keys.isEmpty()) {
+            return LiteralExpression.newConstant(false, PBoolean.INSTANCE, Determinism.ALWAYS);
+        }
+        BloomFilter<ImmutableBytesWritable> bloomFilter = BloomFilter.create(KeyFunnel.INSTANCE, keys.size());
+        ImmutableBytesPtr minKey = null;
+        ImmutableBytesPtr maxKey = null;
+        for (ImmutableBytesPtr key : keys) {
+            bloomFilter.put(key);
+            if (minKey == null || key.compareTo(minKey) < 0) {
+                minKey = key;
+            }
+            if (maxKey == null || key.compareTo(maxKey) > 0) {
+                maxKey = key;
+            }
+        }
+        return new RuntimeJoinFilterExpression(keyExpressions, bloomFilter, minKey.copyBytes(), maxKey.copyBytes());
+    }
+
+    @Override
+    public boolean evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
+        // Wait for all the columns of the key, unless they are absent from the row
+        for (Expression child : children) {
+            if (!child.evaluate(tuple, ptr) && !tuple.isImmutable()) {
+                return false;
+            }
+        }
+        ImmutableBytesPtr key;
+        try {
+            key = TupleUtil.getConcatenatedValue(tuple, children);
+        } catch (IOException e) {
+            throw new IllegalDataException(e);
+        }
+        boolean mightContain = Bytes.compareTo(key.get(), key.getOffset(), key.getLength(), minKey, 0, minKey.length) >= 0
+                && Bytes.compareTo(key.get(), key.getOffset(), key.getLength(), maxKey, 0, maxKey.length) <= 0
+                && bloomFilter.mightContain(key);
+        ptr.set(mightContain ? PDataType.TRUE_BYTES : PDataType.FALSE_BYTES);
+        return true;
+    }
+
+    @Override
+    public PDataType getDataType() {
+        return PBoolean.INSTANCE;
+    }
+
+    @Override
+    public boolean isNullable() {
+        return false;
+    }
+
+    @Override
+    public boolean requiresFinalEvaluation() {
+        // Rows without any of the columns of the key may still match a null key
+        return true;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public RuntimeJoinFilterExpression clone(List<Expression> children) {
+        return new RuntimeJoinFilterExpression(children, bloomFilter, minKey, maxKey);
+    }
+
+    @Override
+    public void readFields(DataInput input) throws IOException {
+        super.readFields(input);
+        minKey = Bytes.readByteArray(input);
+        maxKey = Bytes.readByteArray(input);
+        bloomFilter = BloomFilter.readFrom(new ByteArrayInputStream(Bytes.readByteArray(input)), KeyFunnel.INSTANCE);
+    }
+
+    @Override
+    public void write(DataOutput output) throws IOException {
+        super.write(output);
+        Bytes.writeByteArray(output, minKey);
+        Bytes.writeByteArray(output, maxKey);
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        bloomFilter.writeTo(stream);
+        Bytes.writeByteArray(output, stream.toByteArray());
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = super.hashCode();
+        result = prime * result + Arrays.hashCode(minKey);
+        result = prime * result + Arrays.hashCode(maxKey);
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!super.equals(obj)) return false;
+        RuntimeJoinFilterExpression other = (RuntimeJoinFilterExpression)obj;
+        return Arrays.equals(minKey, other.minKey) && Arrays.equals(maxKey, other.maxKey)
+                && bloomFilter.equals(other.bloomFilter);
+    }
+
+    private enum KeyFunnel implements Funnel<ImmutableBytesWritable> {
+        INSTANCE;
+
+        @Override
+        public void funnel(ImmutableBytesWritable from, PrimitiveSink into) {
+            into.putBytes(from.get(), from.getOffset(), from.getLength());
+        }
+    }
+}
@@ -19,6 +19,7 @@ package org.apache.phoenix.filter;
 
 import java.io.DataInput;
 import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -35,6 +36,7 @@ import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.util.Writables;
 import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
 import org.apache.phoenix.query.KeyRange;
 import org.apache.phoenix.query.KeyRange.Bound;
 import org.apache.phoenix.schema.RowKeySchema;
@@ -43,6 +45,7 @@ import org.apache.phoenix.util.ByteUtil;
 import org.apache.phoenix.util.ScanUtil;
 import org.apache.phoenix.util.ScanUtil.BytesComparator;
 import org.apache.phoenix.util.SchemaUtil;
+import org.apache.phoenix.util.TrustedByteArrayOutputStream;
 
 import com.google.common.base.Objects;
 import com.google.common.collect.Lists;
@@ -83,6 +86,10 @@ public class SkipScanFilter extends FilterBase implements Writable {
             new HashMap<ImmutableBytesWritable, Cell>();
 
     private final ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+    // Number of cells not included by the filter, not serialized
+    private long filteredCellCount;
+    // Serialized form of the filter, which only depends on the slots and schema
+    private byte[] serializedBytes;
 
     /**
      * We know that initially the first row will be positioned at or 
@@ -126,6 +133,7 @@ public class SkipScanFilter extends FilterBase implements Writable {
         this.endKey = new byte[maxKeyLength];
         this.endKeyLength = 0;
         this.includeMultipleVersions = includeMultipleVersions;
+        this.serializedBytes = null;
     }
 
     // Exposed for testing.
@@ -141,12 +149,22 @@ public class SkipScanFilter extends FilterBase implements Writable {
     @Override
     public ReturnCode filterKeyValue(Cell kv) {
         ReturnCode code = navigate(kv.getRowArray(), kv.getRowOffset() + offset,kv.getRowLength()- offset,Terminate.AFTER);
+        if (code != ReturnCode.INCLUDE) {
+            filteredCellCount++;
+        }
         if (code == ReturnCode.SEEK_NEXT_USING_HINT) {
             setNextCellHint(kv);
         }
         return code;
     }
 
+    /**
+     * @return the number of cells this instance of the filter did not include
+     */
+    public long getFilteredCellCount() {
+        return filteredCellCount;
+    }
+
     private void setNextCellHint(Cell kv) {
         ImmutableBytesWritable family = new ImmutableBytesWritable(kv.getFamilyArray(), kv.getFamilyOffset(), kv.getFamilyLength());
         Cell nextCellHint = null;
@@ -407,9 +425,7 @@ public class SkipScanFilter extends FilterBase implements Writable {
             // Comparator depends on field in schema
             BytesComparator comparator = ScanUtil.getComparator(schema.getField(ScanUtil.getRowKeyPosition(slotSpan, i)));
             // Increment to the next range while the upper bound of our current slot is less than our current key
-            while (position[i] < slots.get(i).size() && slots.get(i).get(position[i]).compareUpperToLowerBound(ptr, comparator) < 0) {
-                position[i]++;
-            }
+            position[i] = gallop(slots.get(i), position[i], ptr, comparator);
             Arrays.fill(position, i+1, position.length, 0);
             if (position[i] >= slots.get(i).size()) {
                 // Our current key is bigger than the last range of the current slot.
@@ -514,6 +530,39 @@ public class SkipScanFilter extends FilterBase implements Writable {
         return getIncludeReturnCode();
     }
 
+    /**
+     * Find the first range of a slot, at or after the given position, whose upper bound is not
+     * less than the key. Rather than stepping through the ranges one at a time, probe ranges at
+     * exponentially growing distances from the position and then binary search the last interval,
+     * so that a jump over many keys of a large IN list costs a logarithmic number of comparisons
+     * while advancing by a few ranges still only costs a few.
+     * @return the position of the range, or the number of ranges of the slot if there is none
+     */
+    private static int gallop(List<KeyRange> ranges, int pos, ImmutableBytesWritable ptr, BytesComparator comparator) {
+        int size = ranges.size();
+        if (pos >= size || ranges.get(pos).compareUpperToLowerBound(ptr, comparator) >= 0) {
+            return pos;
+        }
+        // The range at low is always less than the key, and the one at high (if any) is not
+        int low = pos;
+        int high = pos + 1;
+        int step = 1;
+        while (high < size && ranges.get(high).compareUpperToLowerBound(ptr, comparator) < 0) {
+            low = high;
+            step <<= 1;
+            high = size - low > step ? low + step : size;
+        }
+        while (high - low > 1) {
+            int mid = (low + high) >>> 1;
+            if (ranges.get(mid).compareUpperToLowerBound(ptr, comparator) < 0) {
+                low = mid;
+            } else {
+                high = mid;
+            }
+        }
+        return high;
+    }
+
     private boolean allTrailingNulls(int i) {
         for (; i < slots.size(); i++) {
             List<KeyRange> keyRanges = slots.get(i);
@@ -633,9 +682,32 @@ public class SkipScanFilter extends FilterBase implements Writable {
         }
     }
     
+    /*
+     * Upper bound of the size of the serialized filter, excluding the schema
+     */
+    private int getSerializedSize() {
+        int size = Bytes.SIZEOF_INT * (1 + slots.size());
+        for (List<KeyRange> ranges : slots) {
+            for (KeyRange range : ranges) {
+                size += 2 * WritableUtils.getVIntSize(Integer.MAX_VALUE)
+                        + range.getLowerRange().length + range.getUpperRange().length;
+            }
+        }
+        return size;
+    }
+
     @Override
     public byte[] toByteArray() throws IOException {
-        return Writables.getBytes(this);
+        // The same filter may be serialized for many scans, and large IN lists would otherwise
+        // repeatedly grow the output buffer of Writables.getBytes()
+        if (serializedBytes == null) {
+            TrustedByteArrayOutputStream stream = new TrustedByteArrayOutputStream(getSerializedSize() + 256);
+            try (DataOutputStream output = new DataOutputStream(stream)) {
+                write(output);
+            }
+            serializedBytes = stream.toByteArray();
+        }
+        return serializedBytes;
     }
     
     public static SkipScanFilter parseFrom(final byte [] pbBytes) throws DeserializationException {
@@ -38,6 +38,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -48,9 +49,11 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.RunnableFuture;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -73,6 +76,7 @@ import org.apache.phoenix.compile.ScanRanges;
 import org.apache.phoenix.compile.StatementContext;
 import org.apache.phoenix.coprocessor.BaseScannerRegionObserver;
 import org.apache.phoenix.coprocessor.HashJoinCacheNotFoundException;
+import org.apache.phoenix.coprocessor.LateMaterializationRegionScanner;
 import org.apache.phoenix.coprocessor.UngroupedAggregateRegionObserver;
 import org.apache.phoenix.exception.SQLExceptionCode;
 import org.apache.phoenix.exception.SQLExceptionInfo;
@@ -83,8 +87,10 @@ import org.apache.phoenix.filter.DistinctPrefixFilter;
 import org.apache.phoenix.filter.EncodedQualifiersColumnProjectionFilter;
 import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
 import org.apache.phoenix.hbase.index.util.VersionUtil;
+import org.apache.phoenix.job.JobManager;
 import org.apache.phoenix.join.HashCacheClient;
 import org.apache.phoenix.mapreduce.util.PhoenixConfigurationUtil;
+import org.apache.phoenix.monitoring.RunningQuery;
 import org.apache.phoenix.parse.FilterableStatement;
 import org.apache.phoenix.parse.HintNode;
 import org.apache.phoenix.parse.HintNode.Hint;
@@ -282,8 +288,69 @@ public abstract class BaseResultIterators extends ExplainTable implements Result
             if (optimizeProjection) {
                 optimizeProjection(context, scan, table, statement);
             }
+            setLateMaterializedColumns(context, table, scan);
         }
     }
+
+    /*
+     * Defer the reading of the projected columns not referenced by the filter of a non aggregate
+     * scan until a row passes the filter, see LateMaterializationRegionScanner. Only done when all
+     * the columns are projected individually rather than as whole column families, and not for
+     * transactional tables as the deferred columns are read without the transaction visibility
+     * filter of the scan.
+     */
+    private static void setLateMaterializedColumns(StatementContext context, PTable table, Scan scan) {
+        if (!context.getConnection().getQueryServices().getProps().getBoolean(
+                QueryServices.LATE_MATERIALIZATION_ENABLED_ATTRIB, QueryServicesOptions.DEFAULT_LATE_MATERIALIZATION_ENABLED)) {
+            return;
+        }
+        if (!ScanUtil.isNonAggregateScan(scan) || scan.getFilter() == null || scan.isRaw()
+                || ScanUtil.isReversed(scan) || ScanUtil.isAnalyzeTable(scan)
+                || table.getIndexType() == IndexType.LOCAL || table.getViewType() == ViewType.MAPPED
+                || table.isTransactional()
+                || table.getImmutableStorageScheme() != ImmutableStorageScheme.ONE_CELL_PER_COLUMN
+                || context.getWhereConditionColumns().isEmpty()) {
+            return;
+        }
+        Map<byte[], NavigableSet<byte[]>> familyMap = scan.getFamilyMap();
+        // The empty column is projected when the filter must be evaluated for rows in which all
+        // the filtered columns are null
+        byte[] emptyCF = SchemaUtil.getEmptyColumnFamily(table);
+        byte[] emptyCQ = EncodedColumnsUtil.getEmptyKeyValueInfo(table).getFirst();
+        Set<Pair<ImmutableBytesPtr, ImmutableBytesPtr>> filterColumns = new HashSet<>();
+        filterColumns.add(new Pair<>(new ImmutableBytesPtr(emptyCF), new ImmutableBytesPtr(emptyCQ)));
+        for (Pair<byte[], byte[]> whereCol : context.getWhereConditionColumns()) {
+            if (whereCol.getSecond() == null) {
+                return;
+            }
+            filterColumns.add(new Pair<>(new ImmutableBytesPtr(whereCol.getFirst()), new ImmutableBytesPtr(whereCol.getSecond())));
+        }
+        Map<byte[], NavigableSet<byte[]>> scannedColumns = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+        Map<byte[], NavigableSet<byte[]>> deferredColumns = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+        for (Entry<byte[], NavigableSet<byte[]>> entry : familyMap.entrySet()) {
+            if (entry.getValue() == null) {
+                // The whole column family is projected
+                return;
+            }
+            for (byte[] cq : entry.getValue()) {
+                boolean isFilterColumn = filterColumns.contains(
+                        new Pair<>(new ImmutableBytesPtr(entry.getKey()), new ImmutableBytesPtr(cq)));
+                Map<byte[], NavigableSet<byte[]>> columns = isFilterColumn ? scannedColumns : deferredColumns;
+                NavigableSet<byte[]> qualifiers = columns.get(entry.getKey());
+                if (qualifiers == null) {
+                    qualifiers = new TreeSet<>(Bytes.BYTES_COMPARATOR);
+                    columns.put(entry.getKey(), qualifiers);
+                }
+                qualifiers.add(cq);
+            }
+        }
+        if (deferredColumns.isEmpty() || scannedColumns.isEmpty()) {
+            return;
+        }
+        scan.setFamilyMap(scannedColumns);
+        scan.setAttribute(BaseScannerRegionObserver.LATE_MATERIALIZED_COLUMNS,
+                LateMaterializationRegionScanner.serializeColumns(deferredColumns));
+    }
     
     private static void setQualifierRanges(boolean keyOnlyFilter, PTable table, Scan scan,
             StatementContext context) throws SQLException {
@@ -881,7 +948,7 @@ public abstract class BaseResultIterators extends ExplainTable implements Result
      * @return list of parallel scans to run for a given query.
      * @throws SQLException
      */
-    private List<List<Scan>> getParallelScans(byte[] startKey, byte[] stopKey) throws SQLException {
+    protected List<List<Scan>> getParallelScans(byte[] startKey, byte[] stopKey) throws SQLException {
         List<HRegionLocation> regionLocations = getRegionBoundaries(scanGrouper);
         List<byte[]> regionBoundaries = toBoundaries(regionLocations);
         ScanRanges scanRanges = context.getScanRanges();
@@ -967,10 +1034,17 @@ public abstract class BaseResultIterators extends ExplainTable implements Result
             boolean delayAddingEst = false;
             ImmutableBytesWritable firstRegionStartKey = null;
             if (gpsSize > 0) {
-                stream = new ByteArrayInputStream(guidePosts.get(), guidePosts.getOffset(), guidePosts.getLength());
+                firstRegionStartKey = new ImmutableBytesWritable(regionLocations.get(regionIndex).getRegionInfo().getStartKey());
+                // Skip the guideposts before both the first region and the start key, which
+                // play no part below, by starting at the closest preceding restart point
+                int restartPoint = gps.getRestartPoint(
+                    firstRegionStartKey.compareTo(currentKey) < 0 ? firstRegionStartKey : currentKey);
+                int restartOffset = gps.getRestartOffset(restartPoint);
+                guideIndex = gps.getRestartGuidePostIndex(restartPoint);
+                stream = new ByteArrayInputStream(guidePosts.get(), guidePosts.getOffset() + restartOffset,
+                    guidePosts.getLength() - restartOffset);
                 input = new DataInputStream(stream);
                 decoder = new PrefixByteDecoder(gps.getMaxLength());
-                firstRegionStartKey = new ImmutableBytesWritable(regionLocations.get(regionIndex).getRegionInfo().getStartKey());
                 try {
                     int c;
                     // Continue walking guideposts until we get past the currentKey
@@ -1265,8 +1339,32 @@ public abstract class BaseResultIterators extends ExplainTable implements Result
         SQLException toThrow = null;
         final HashCacheClient hashCacheClient = new HashCacheClient(context.getConnection());
         int queryTimeOut = context.getStatement().getQueryTimeoutInMillis();
+        final RunningQuery runningQuery = context.getRunningQuery();
+        RunningQuery.Cancellable futuresCancellable = null;
         try {
             submitWork(scan, futures, allIterators, splitSize, isReverse, scanGrouper);
+            if (runningQuery != null) {
+                int scanCount = 0;
+                for (List<Scan> scans : scan) {
+                    scanCount += scans.size();
+                }
+                runningQuery.addScans(scanCount);
+                futuresCancellable = new RunningQuery.Cancellable() {
+                    @Override
+                    public void cancel() {
+                        // Scans already running are stopped through the cancellation of their iterator
+                        for (List<Pair<Scan,Future<PeekingResultIterator>>> futureScans : futures) {
+                            for (Pair<Scan,Future<PeekingResultIterator>> futurePair : futureScans) {
+                                if (futurePair != null && futurePair.getSecond() != null) {
+                                    futurePair.getSecond().cancel(false);
+                                }
+                            }
+                        }
+                        context.getConnection().getQueryServices().getExecutor().purge();
+                    }
+                };
+                runningQuery.addCancellable(futuresCancellable);
+            }
             boolean clearedCache = false;
             for (List<Pair<Scan,Future<PeekingResultIterator>>> future : reverseIfNecessary(futures,isReverse)) {
                 List<PeekingResultIterator> concatIterators = Lists.newArrayListWithExpectedSize(future.size());
@@ -1274,6 +1372,9 @@ public abstract class BaseResultIterators extends ExplainTable implements Result
                 while (scanPairItr.hasNext()) {
                     Pair<Scan,Future<PeekingResultIterator>> scanPair = scanPairItr.next();
                     try {
+                        if (runningQuery != null) {
+                            runningQuery.checkCancelled();
+                        }
                         long timeOutForScan = maxQueryEndTime - EnvironmentEdgeManager.currentTimeMillis();
                         if (timeOutForScan < 0) {
                             throw new SQLExceptionInfo.Builder(SQLExceptionCode.OPERATION_TIMED_OUT).setMessage(". Query couldn't be completed in the alloted time: " + queryTimeOut + " ms").build().buildException(); 
@@ -1288,6 +1389,7 @@ public abstract class BaseResultIterators extends ExplainTable implements Result
                                     && Bytes.compareTo(scanPair.getFirst().getAttribute(SCAN_START_ROW_SUFFIX), previousScan.getScan().getAttribute(SCAN_START_ROW_SUFFIX))==0)) {
                             continue;
                         }
+                        runIfQueued(scanPair.getSecond());
                         PeekingResultIterator iterator = scanPair.getSecond().get(timeOutForScan, TimeUnit.MILLISECONDS);
                         concatIterators.add(iterator);
                         previousScan.setScan(scanPair.getFirst());
@@ -1340,6 +1442,9 @@ public abstract class BaseResultIterators extends ExplainTable implements Result
             toThrow = new SQLExceptionInfo.Builder(SQLExceptionCode.OPERATION_TIMED_OUT)
                     .setMessage(". Query couldn't be completed in the alloted time: " + queryTimeOut + " ms")
                     .setRootCause(e).build().buildException();
+        } catch (CancellationException e) {
+            toThrow = new SQLExceptionInfo.Builder(SQLExceptionCode.OPERATION_CANCELLED)
+                    .setRootCause(e).build().buildException();
         } catch (SQLException e) {
             toThrow = e;
         } catch (Exception e) {
@@ -1368,6 +1473,10 @@ public abstract class BaseResultIterators extends ExplainTable implements Result
                     }
                 }
             } finally {
+                // The futures are all done by now, their iterators being cancelled on their own
+                if (futuresCancellable != null) {
+                    runningQuery.removeCancellable(futuresCancellable);
+                }
                 if (toThrow != null) {
                     GLOBAL_FAILED_QUERY_COUNTER.increment();
                     context.getOverallQueryMetrics().queryFailed();
@@ -1378,6 +1487,20 @@ public abstract class BaseResultIterators extends ExplainTable implements Result
         return null; // Not reachable
     }
 
+    /*
+     * When all the threads of the pool are busy, possibly with the scans of other queries, run the
+     * chunk being waited for on the calling thread rather than leaving that thread idle until the
+     * chunk reaches the front of the queue. A chunk that was already picked up by the pool is
+     * simply waited for.
+     */
+    private void runIfQueued(Future<PeekingResultIterator> future) {
+        if (!(future instanceof RunnableFuture) || !context.getConnection().getQueryServices().getProps().getBoolean(
+                QueryServices.QUERY_WORK_STEALING_ENABLED_ATTRIB, QueryServicesOptions.DEFAULT_QUERY_WORK_STEALING_ENABLED)) {
+            return;
+        }
+        JobManager.runIfQueued(context.getConnection().getQueryServices().getExecutor(), (Runnable) future);
+    }
+
     private List<PeekingResultIterator> recreateIterators(ConnectionQueryServices services,
             boolean isLocalIndex, Queue<PeekingResultIterator> allIterators,
             List<PeekingResultIterator> iterators, boolean isReverse, long maxQueryEndTime,
@@ -1420,7 +1543,7 @@ public abstract class BaseResultIterators extends ExplainTable implements Result
                         // we randomize these and set them as they're submitted.
                         if (futurePair != null) {
                             Future<PeekingResultIterator> future = futurePair.getSecond();
-                            if (future != null) {
+                            if (future != null && !future.isCancelled()) {
                                 if (future.cancel(false)) {
                                     cancelledWork = true;
                                 } else {
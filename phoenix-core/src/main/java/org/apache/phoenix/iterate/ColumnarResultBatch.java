@@ -0,0 +1,333 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.iterate;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.query.QueryConstants;
+import org.apache.phoenix.util.KeyValueUtil;
+import org.apache.phoenix.util.TrustedByteArrayOutputStream;
+import org.iq80.snappy.Snappy;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Column oriented encoding of a batch of scanned rows, used to return many rows from the region
+ * server in a single cell instead of one {@link Result} of full {@link KeyValue}s per row. The
+ * row keys are prefix encoded, the column families and qualifiers are dictionary encoded, and
+ * the timestamps, types and number of cells per row are run length encoded. The encoded batch
+ * may additionally be compressed with Snappy.
+ *
+ * The cell holding the batch has the last row key of the batch, so that a scan restarted by the
+ * HBase client after this cell resumes after the last row of the batch.
+ *
+ * Rows are only materialized as {@link Result}s when they are read from a {@link Decoder}.
+ */
+public class ColumnarResultBatch {
+    public static final byte[] BATCH_COLUMN_FAMILY = QueryConstants.COLUMNAR_BATCH_COLUMN_FAMILY;
+    public static final byte[] BATCH_COLUMN_QUALIFIER = QueryConstants.COLUMNAR_BATCH_COLUMN_QUALIFIER;
+    private static final byte VERSION = 1;
+    private static final byte FLAG_COMPRESSED = 0x01;
+
+    private ColumnarResultBatch() {
+    }
+
+    /**
+     * @return true if the result holds a batch of rows encoded by an {@link Encoder}
+     */
+    public static boolean isBatch(Result result) {
+        Cell[] cells = result.rawCells();
+        return cells != null && cells.length == 1
+                && CellUtil.matchingColumn(cells[0], BATCH_COLUMN_FAMILY, BATCH_COLUMN_QUALIFIER);
+    }
+
+    public static Decoder decode(Result result) throws IOException {
+        Cell cell = result.rawCells()[0];
+        return new Decoder(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength());
+    }
+
+    private static void writeRuns(DataOutput output, long[] values, int count) throws IOException {
+        int i = 0;
+        while (i < count) {
+            int run = 1;
+            while (i + run < count && values[i + run] == values[i]) {
+                run++;
+            }
+            WritableUtils.writeVInt(output, run);
+            WritableUtils.writeVLong(output, values[i]);
+            i += run;
+        }
+    }
+
+    private static long[] readRuns(DataInput input, int count) throws IOException {
+        long[] values = new long[count];
+        int i = 0;
+        while (i < count) {
+            int run = WritableUtils.readVInt(input);
+            long value = WritableUtils.readVLong(input);
+            for (int j = 0; j < run; j++) {
+                values[i++] = value;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Accumulates the rows of a batch, which are encoded by {@link #toCell(boolean)}. The cells
+     * of the added rows must not be modified until then.
+     */
+    public static class Encoder {
+        private final List<List<Cell>> rows = new ArrayList<List<Cell>>();
+        private int cellCount;
+        private long rawSize;
+
+        public void add(List<Cell> row) {
+            rows.add(row);
+            cellCount += row.size();
+            for (Cell cell : row) {
+                rawSize += CellUtil.estimatedSerializedSizeOf(cell);
+            }
+        }
+
+        public int getRowCount() {
+            return rows.size();
+        }
+
+        /**
+         * @return the size in bytes of the rows as KeyValues
+         */
+        public long getRawSize() {
+            return rawSize;
+        }
+
+        private static void writeDictionaryEncoded(DataOutput output, List<ImmutableBytesPtr> values) throws IOException {
+            Map<ImmutableBytesPtr, Integer> dictionary = Maps.newLinkedHashMap();
+            long[] ids = new long[values.size()];
+            for (int i = 0; i < ids.length; i++) {
+                Integer id = dictionary.get(values.get(i));
+                if (id == null) {
+                    id = dictionary.size();
+                    dictionary.put(values.get(i), id);
+                }
+                ids[i] = id;
+            }
+            WritableUtils.writeVInt(output, dictionary.size());
+            for (ImmutableBytesPtr value : dictionary.keySet()) {
+                WritableUtils.writeVInt(output, value.getLength());
+                output.write(value.get(), value.getOffset(), value.getLength());
+            }
+            writeRuns(output, ids, ids.length);
+        }
+
+        /**
+         * Encode the rows added so far into a single cell keyed by the last row.
+         * @param compress whether to compress the encoded rows with Snappy
+         */
+        public KeyValue toCell(boolean compress) throws IOException {
+            TrustedByteArrayOutputStream stream = new TrustedByteArrayOutputStream((int) Math.min(rawSize, Integer.MAX_VALUE / 2));
+            DataOutputStream output = new DataOutputStream(stream);
+            try {
+                WritableUtils.writeVInt(output, rows.size());
+                long[] rowCellCounts = new long[rows.size()];
+                for (int i = 0; i < rowCellCounts.length; i++) {
+                    rowCellCounts[i] = rows.get(i).size();
+                }
+                writeRuns(output, rowCellCounts, rowCellCounts.length);
+
+                Cell previous = null;
+                for (List<Cell> row : rows) {
+                    Cell cell = row.get(0);
+                    int prefixLength = 0;
+                    if (previous != null) {
+                        int maxLength = Math.min(previous.getRowLength(), cell.getRowLength());
+                        while (prefixLength < maxLength
+                                && previous.getRowArray()[previous.getRowOffset() + prefixLength]
+                                        == cell.getRowArray()[cell.getRowOffset() + prefixLength]) {
+                            prefixLength++;
+                        }
+                    }
+                    WritableUtils.writeVInt(output, prefixLength);
+                    WritableUtils.writeVInt(output, cell.getRowLength() - prefixLength);
+                    output.write(cell.getRowArray(), cell.getRowOffset() + prefixLength, cell.getRowLength() - prefixLength);
+                    previous = cell;
+                }
+
+                List<ImmutableBytesPtr> families = new ArrayList<ImmutableBytesPtr>(cellCount);
+                List<ImmutableBytesPtr> qualifiers = new ArrayList<ImmutableBytesPtr>(cellCount);
+                long[] timestamps = new long[cellCount];
+                long[] types = new long[cellCount];
+                int i = 0;
+                for (List<Cell> row : rows) {
+                    for (Cell cell : row) {
+                        families.add(new ImmutableBytesPtr(cell.getFamilyArray(), cell.getFamilyOffset(), cell.getFamilyLength()));
+                        qualifiers.add(new ImmutableBytesPtr(cell.getQualifierArray(), cell.getQualifierOffset(), cell.getQualifierLength()));
+                        timestamps[i] = cell.getTimestamp();
+                        types[i] = cell.getTypeByte();
+                        i++;
+                    }
+                }
+                writeDictionaryEncoded(output, families);
+                writeDictionaryEncoded(output, qualifiers);
+                writeRuns(output, timestamps, cellCount);
+                writeRuns(output, types, cellCount);
+                for (List<Cell> row : rows) {
+                    for (Cell cell : row) {
+                        WritableUtils.writeVInt(output, cell.getValueLength());
+                    }
+                }
+                for (List<Cell> row : rows) {
+                    for (Cell cell : row) {
+                        output.write(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength());
+                    }
+                }
+                output.flush();
+            } finally {
+                output.close();
+            }
+            byte[] value;
+            if (compress) {
+                byte[] compressed = new byte[2 + Snappy.maxCompressedLength(stream.size())];
+                int compressedSize = Snappy.compress(stream.getBuffer(), 0, stream.size(), compressed, 2);
+                value = compressedSize + 2 == compressed.length ? compressed : Bytes.copy(compressed, 0, compressedSize + 2);
+                value[1] = FLAG_COMPRESSED;
+            } else {
+                value = new byte[2 + stream.size()];
+                System.arraycopy(stream.getBuffer(), 0, value, 2, stream.size());
+            }
+            value[0] = VERSION;
+            Cell lastCell = rows.get(rows.size() - 1).get(0);
+            return KeyValueUtil.newKeyValue(lastCell.getRowArray(), lastCell.getRowOffset(), lastCell.getRowLength(),
+                    BATCH_COLUMN_FAMILY, BATCH_COLUMN_QUALIFIER, QueryConstants.AGG_TIMESTAMP, value, 0, value.length);
+        }
+    }
+
+    /**
+     * Reads back the rows of a batch. The columns are decoded up front, while the cells of a row
+     * are only built when the row is read.
+     */
+    public static class Decoder {
+        private final int rowCount;
+        private final long[] rowCellCounts;
+        private final byte[][] rowKeys;
+        private final byte[][] familyDictionary;
+        private final long[] familyIds;
+        private final byte[][] qualifierDictionary;
+        private final long[] qualifierIds;
+        private final long[] timestamps;
+        private final long[] types;
+        private final int[] valueLengths;
+        private final byte[] buffer;
+        private int valueOffset;
+        private int rowIndex;
+        private int cellIndex;
+
+        private Decoder(byte[] b, int offset, int length) throws IOException {
+            if (b[offset] != VERSION) {
+                throw new IOException("Unknown version " + b[offset] + " of columnar result batch");
+            }
+            if ((b[offset + 1] & FLAG_COMPRESSED) != 0) {
+                buffer = new byte[Snappy.getUncompressedLength(b, offset + 2)];
+                Snappy.uncompress(b, offset + 2, length - 2, buffer, 0);
+                offset = 0;
+                length = buffer.length;
+            } else {
+                buffer = b;
+                offset += 2;
+                length -= 2;
+            }
+            try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(buffer, offset, length))) {
+                rowCount = WritableUtils.readVInt(input);
+                rowCellCounts = readRuns(input, rowCount);
+                rowKeys = new byte[rowCount][];
+                int cellCount = 0;
+                for (int i = 0; i < rowCount; i++) {
+                    int prefixLength = WritableUtils.readVInt(input);
+                    byte[] rowKey = new byte[prefixLength + WritableUtils.readVInt(input)];
+                    if (prefixLength > 0) {
+                        System.arraycopy(rowKeys[i - 1], 0, rowKey, 0, prefixLength);
+                    }
+                    input.readFully(rowKey, prefixLength, rowKey.length - prefixLength);
+                    rowKeys[i] = rowKey;
+                    cellCount += rowCellCounts[i];
+                }
+                familyDictionary = readDictionary(input);
+                familyIds = readRuns(input, cellCount);
+                qualifierDictionary = readDictionary(input);
+                qualifierIds = readRuns(input, cellCount);
+                timestamps = readRuns(input, cellCount);
+                types = readRuns(input, cellCount);
+                valueLengths = new int[cellCount];
+                for (int i = 0; i < cellCount; i++) {
+                    valueLengths[i] = WritableUtils.readVInt(input);
+                }
+                // The values follow and are referenced in place
+                valueOffset = offset + length - input.available();
+            }
+        }
+
+        private static byte[][] readDictionary(DataInput input) throws IOException {
+            byte[][] dictionary = new byte[WritableUtils.readVInt(input)][];
+            for (int i = 0; i < dictionary.length; i++) {
+                dictionary[i] = new byte[WritableUtils.readVInt(input)];
+                input.readFully(dictionary[i]);
+            }
+            return dictionary;
+        }
+
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        /**
+         * @return the next row of the batch or null if all rows were read
+         */
+        public Result next() {
+            if (rowIndex >= rowCount) {
+                return null;
+            }
+            byte[] rowKey = rowKeys[rowIndex];
+            int count = (int) rowCellCounts[rowIndex];
+            List<Cell> cells = new ArrayList<Cell>(count);
+            for (int i = 0; i < count; i++, cellIndex++) {
+                byte[] family = familyDictionary[(int) familyIds[cellIndex]];
+                byte[] qualifier = qualifierDictionary[(int) qualifierIds[cellIndex]];
+                cells.add(new KeyValue(rowKey, 0, rowKey.length, family, 0, family.length, qualifier, 0,
+                        qualifier.length, timestamps[cellIndex], KeyValue.Type.codeToType((byte) types[cellIndex]),
+                        buffer, valueOffset, valueLengths[cellIndex]));
+                valueOffset += valueLengths[cellIndex];
+            }
+            rowIndex++;
+            return Result.create(cells);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.iterate;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * 
+ * Merges sorted queues with a tree of losers: each internal node of the tree holds the
+ * queue which lost the comparison at that node, and the root holds the overall winner.
+ * Taking the next element only replays the comparisons on the path from the winning
+ * queue to the root, which is a single comparison per level instead of the two of a
+ * binary heap. Exhausted queues lose against all others, and ties are won by the queue
+ * which comes first in the list, so that the merge is stable.
+ *
+ */
+public class LoserTree<T, Q extends Queue<T>> {
+    private final List<Q> queues;
+    private final Comparator<? super Q> comparator;
+    private final int size;
+    // tree[0] is the winner, tree[1..size-1] are the losers of the internal nodes
+    private final int[] tree;
+
+    /**
+     * @param queues the sorted queues to merge
+     * @param comparator compares two non empty queues by their first element
+     */
+    public LoserTree(List<Q> queues, Comparator<? super Q> comparator) {
+        this.queues = queues;
+        this.comparator = comparator;
+        this.size = queues.size();
+        this.tree = new int[Math.max(size, 1)];
+        if (size > 0) {
+            tree[0] = build(1);
+        }
+    }
+
+    /**
+     * Build the subtree of a node, the leaves being the nodes size to 2*size-1
+     * @return the index of the queue winning the subtree
+     */
+    private int build(int node) {
+        if (node >= size) {
+            return node - size;
+        }
+        int left = build(2 * node);
+        int right = build(2 * node + 1);
+        if (beats(left, right)) {
+            tree[node] = right;
+            return left;
+        }
+        tree[node] = left;
+        return right;
+    }
+
+    private boolean beats(int index1, int index2) {
+        Q queue1 = queues.get(index1);
+        Q queue2 = queues.get(index2);
+        if (queue1.peek() == null) {
+            return false;
+        }
+        if (queue2.peek() == null) {
+            return true;
+        }
+        int c = comparator.compare(queue1, queue2);
+        return c < 0 || (c == 0 && index1 < index2);
+    }
+
+    public T peek() {
+        return size == 0 ? null : queues.get(tree[0]).peek();
+    }
+
+    public T poll() {
+        if (size == 0) {
+            return null;
+        }
+        int winner = tree[0];
+        T element = queues.get(winner).poll();
+        if (element == null) {
+            return null;
+        }
+        // Replay the matches on the path from the leaf of the winner to the root
+        for (int node = (winner + size) >>> 1; node > 0; node >>>= 1) {
+            if (beats(tree[node], winner)) {
+                int loser = winner;
+                winner = tree[node];
+                tree[node] = loser;
+            }
+        }
+        tree[0] = winner;
+        return element;
+    }
+
+    public boolean isEmpty() {
+        return peek() == null;
+    }
+}
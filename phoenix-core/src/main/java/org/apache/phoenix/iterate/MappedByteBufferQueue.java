@@ -32,14 +32,13 @@ import java.util.Queue;
 import java.util.UUID;
 
 import com.google.common.collect.Lists;
-import com.google.common.collect.MinMaxPriorityQueue;
 
 public abstract class MappedByteBufferQueue<T> extends AbstractQueue<T> {
     private final int thresholdBytes;
     private List<MappedByteBufferSegmentQueue<T>> queues;
     private int currentIndex;
     private MappedByteBufferSegmentQueue<T> currentQueue;
-    private MinMaxPriorityQueue<MappedByteBufferSegmentQueue<T>> mergedQueue;
+    private LoserTree<T, MappedByteBufferSegmentQueue<T>> mergedQueue;
 
     public MappedByteBufferQueue(int thresholdBytes) {
         this.thresholdBytes = thresholdBytes;
@@ -76,13 +75,8 @@ public abstract class MappedByteBufferQueue<T> extends AbstractQueue<T> {
     @Override
     public T poll() {
         initMergedQueue();
-        if (mergedQueue != null && !mergedQueue.isEmpty()) {
-            MappedByteBufferSegmentQueue<T> queue = mergedQueue.poll();
-            T re = queue.poll();
-            if (queue.peek() != null) {
-                mergedQueue.add(queue);
-            }
-            return re;
+        if (mergedQueue != null) {
+            return mergedQueue.poll();
         }
         return null;
     }
@@ -90,8 +84,8 @@ public abstract class MappedByteBufferQueue<T> extends AbstractQueue<T> {
     @Override
     public T peek() {
         initMergedQueue();
-        if (mergedQueue != null && !mergedQueue.isEmpty()) {
-            return mergedQueue.peek().peek();
+        if (mergedQueue != null) {
+            return mergedQueue.peek();
         }
         return null;
     }
@@ -124,6 +118,16 @@ public abstract class MappedByteBufferQueue<T> extends AbstractQueue<T> {
         return currentQueue == null ? 0 : currentQueue.getInMemByteSize();
     }
 
+    /**
+     * Write the elements held in memory to disk before the threshold is reached,
+     * so that their memory can be released. Subsequent elements go to a new segment.
+     */
+    public void spill() throws IOException {
+        if (currentQueue != null) {
+            currentQueue.spill();
+        }
+    }
+
     public void close() {
         for (MappedByteBufferSegmentQueue<T> queue : queues) {
             queue.close();
@@ -133,14 +137,9 @@ public abstract class MappedByteBufferQueue<T> extends AbstractQueue<T> {
     
     private void initMergedQueue() {
         if (mergedQueue == null && currentIndex >= 0) {
-            mergedQueue = MinMaxPriorityQueue.<MappedByteBufferSegmentQueue<T>> orderedBy(
-                    getSegmentQueueComparator()).maximumSize(currentIndex + 1).create();
-            for (MappedByteBufferSegmentQueue<T> queue : getSegmentQueues()) {
-                T re = queue.peek();
-                if (re != null) {
-                    mergedQueue.add(queue);
-                }
-            }
+            // k-way merge of the sorted segments
+            mergedQueue = new LoserTree<T, MappedByteBufferSegmentQueue<T>>(
+                    Lists.newArrayList(getSegmentQueues()), getSegmentQueueComparator());
         }        
     }
 
@@ -296,37 +295,51 @@ public abstract class MappedByteBufferQueue<T> extends AbstractQueue<T> {
             return ret;
         }
 
+        /**
+         * Write the elements held in memory to disk, regardless of the threshold
+         */
+        public void spill() throws IOException {
+            if (!isClosed && !flushBuffer && !getInMemoryQueue().isEmpty()) {
+                flushToFile();
+            }
+        }
+
         private void flush(T entry) throws IOException {
             Queue<T> inMemQueue = getInMemoryQueue();
             int resultSize = sizeOf(entry);
             maxResultSize = Math.max(maxResultSize, resultSize);
             totalResultSize = hasMaxQueueSize ? maxResultSize * inMemQueue.size() : (totalResultSize + resultSize);
             if (totalResultSize >= thresholdBytes) {
-                this.file = File.createTempFile(UUID.randomUUID().toString(), null);
-                RandomAccessFile af = new RandomAccessFile(file, "rw");
-                FileChannel fc = af.getChannel();
-                int writeIndex = 0;
-                mappingSize = Math.min(Math.max(maxResultSize, DEFAULT_MAPPING_SIZE), totalResultSize);
-                MappedByteBuffer writeBuffer = fc.map(MapMode.READ_WRITE, writeIndex, mappingSize);
+                flushToFile();
+            }
+        }
 
-                int resSize = inMemQueue.size();
-                for (int i = 0; i < resSize; i++) {                
-                    T e = inMemQueue.poll();
-                    writeToBuffer(writeBuffer, e);
-                    // buffer close to exhausted, re-map.
-                    if (mappingSize - writeBuffer.position() < maxResultSize) {
-                        writeIndex += writeBuffer.position();
-                        writeBuffer = fc.map(MapMode.READ_WRITE, writeIndex, mappingSize);
-                    }
+        private void flushToFile() throws IOException {
+            Queue<T> inMemQueue = getInMemoryQueue();
+            this.file = File.createTempFile(UUID.randomUUID().toString(), null);
+            RandomAccessFile af = new RandomAccessFile(file, "rw");
+            FileChannel fc = af.getChannel();
+            int writeIndex = 0;
+            mappingSize = Math.min(Math.max(maxResultSize, DEFAULT_MAPPING_SIZE), totalResultSize);
+            MappedByteBuffer writeBuffer = fc.map(MapMode.READ_WRITE, writeIndex, mappingSize);
+
+            int resSize = inMemQueue.size();
+            for (int i = 0; i < resSize; i++) {                
+                T e = inMemQueue.poll();
+                writeToBuffer(writeBuffer, e);
+                // buffer close to exhausted, re-map.
+                if (mappingSize - writeBuffer.position() < maxResultSize) {
+                    writeIndex += writeBuffer.position();
+                    writeBuffer = fc.map(MapMode.READ_WRITE, writeIndex, mappingSize);
                 }
-                writeBuffer.putInt(EOF); // end
-                fc.force(true);
-                fc.close();
-                af.close();
-                flushedCount = resSize;
-                inMemQueue.clear();
-                flushBuffer = true;
             }
+            writeBuffer.putInt(EOF); // end
+            fc.force(true);
+            fc.close();
+            af.close();
+            flushedCount = resSize;
+            inMemQueue.clear();
+            flushBuffer = true;
         }
         
         private class SegmentQueueFileIterator implements Iterator<T>, Closeable {
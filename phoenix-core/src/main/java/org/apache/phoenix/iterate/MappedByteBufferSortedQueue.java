@@ -19,8 +19,11 @@ package org.apache.phoenix.iterate;
 
 import java.io.IOException;
 import java.nio.MappedByteBuffer;
+import java.util.AbstractQueue;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Queue;
 import org.apache.hadoop.hbase.KeyValue;
@@ -62,13 +65,14 @@ public class MappedByteBufferSortedQueue extends MappedByteBufferQueue<ResultEnt
     }
 
     private static class MappedByteBufferResultEntryPriorityQueue extends MappedByteBufferSegmentQueue<ResultEntry> {    	
-        private MinMaxPriorityQueue<ResultEntry> results = null;
+        private Queue<ResultEntry> results = null;
         
     	public MappedByteBufferResultEntryPriorityQueue(int index,
                 int thresholdBytes, int limit, Comparator<ResultEntry> comparator) {
             super(index, thresholdBytes, limit >= 0);
+            // Without a limit, the segment is a run which only needs to be sorted once
             this.results = limit < 0 ? 
-                    MinMaxPriorityQueue.<ResultEntry> orderedBy(comparator).create()
+                    new SortedRunQueue<ResultEntry>(comparator)
                   : MinMaxPriorityQueue.<ResultEntry> orderedBy(comparator).maximumSize(limit).create();
         }
 
@@ -79,7 +83,7 @@ public class MappedByteBufferSortedQueue extends MappedByteBufferQueue<ResultEnt
 
         @Override
         protected int sizeOf(ResultEntry e) {
-            return sizeof(e.sortKeys) + sizeof(toKeyValues(e));
+            return sizeof(e.sortKey) + sizeof(toKeyValues(e));
         }
 
         @SuppressWarnings("deprecation")
@@ -96,17 +100,9 @@ public class MappedByteBufferSortedQueue extends MappedByteBufferQueue<ResultEnt
                 buffer.put(kv.getBuffer(), kv.getOffset(), kv
                         .getLength());
             }
-            ImmutableBytesWritable[] sortKeys = e.sortKeys;
-            buffer.putInt(sortKeys.length);
-            for (ImmutableBytesWritable sortKey : sortKeys) {
-                if (sortKey != null) {
-                    buffer.putInt(sortKey.getLength());
-                    buffer.put(sortKey.get(), sortKey.getOffset(),
-                            sortKey.getLength());
-                } else {
-                    buffer.putInt(0);
-                }
-            }
+            byte[] sortKey = e.sortKey;
+            buffer.putInt(sortKey.length);
+            buffer.put(sortKey);
         }
 
         @Override
@@ -119,20 +115,10 @@ public class MappedByteBufferSortedQueue extends MappedByteBufferQueue<ResultEnt
             buffer.get(rb);
             Result result = ResultUtil.toResult(new ImmutableBytesWritable(rb));
             ResultTuple rt = new ResultTuple(result);
-            int sortKeySize = buffer.getInt();
-            ImmutableBytesWritable[] sortKeys = new ImmutableBytesWritable[sortKeySize];
-            for (int i = 0; i < sortKeySize; i++) {
-                int contentLength = buffer.getInt();
-                if (contentLength > 0) {
-                    byte[] sortKeyContent = new byte[contentLength];
-                    buffer.get(sortKeyContent);
-                    sortKeys[i] = new ImmutableBytesWritable(sortKeyContent);
-                } else {
-                    sortKeys[i] = null;
-                }
-            }
+            byte[] sortKey = new byte[buffer.getInt()];
+            buffer.get(sortKey);
             
-            return new ResultEntry(sortKeys, rt);
+            return new ResultEntry(sortKey, rt);
         }
 
         private List<KeyValue> toKeyValues(ResultEntry entry) {
@@ -156,17 +142,77 @@ public class MappedByteBufferSortedQueue extends MappedByteBufferQueue<ResultEnt
             return size;
         }
 
-        private int sizeof(ImmutableBytesWritable[] sortKeys) {
-            int size = Bytes.SIZEOF_INT;
-            if (sortKeys != null) {
-                for (ImmutableBytesWritable sortKey : sortKeys) {
-                    if (sortKey != null) {
-                        size += sortKey.getLength();
-                    }
-                    size += Bytes.SIZEOF_INT;
-                }
+        private int sizeof(byte[] sortKey) {
+            return Bytes.SIZEOF_INT + sortKey.length;
+        }
+    }
+
+    /**
+     * Queue buffering the elements of a sorted run on the heap until the run is spilled. The
+     * elements are sorted once, when the first one is taken, instead of being kept in a heap
+     * as they are added.
+     */
+    private static class SortedRunQueue<T> extends AbstractQueue<T> {
+        private final Comparator<? super T> comparator;
+        private final List<T> elements = new ArrayList<T>();
+        private int position = 0;
+        private boolean sorted = true;
+
+        SortedRunQueue(Comparator<? super T> comparator) {
+            this.comparator = comparator;
+        }
+
+        private void sort() {
+            if (!sorted) {
+                Collections.sort(elements.subList(position, elements.size()), comparator);
+                sorted = true;
             }
-            return size;
+        }
+
+        @Override
+        public boolean offer(T e) {
+            elements.add(e);
+            sorted = false;
+            return true;
+        }
+
+        @Override
+        public T peek() {
+            sort();
+            return position < elements.size() ? elements.get(position) : null;
+        }
+
+        @Override
+        public T poll() {
+            sort();
+            if (position >= elements.size()) {
+                return null;
+            }
+            T e = elements.get(position);
+            // Release the element as soon as it is taken
+            elements.set(position++, null);
+            if (position == elements.size()) {
+                clear();
+            }
+            return e;
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            sort();
+            return Collections.unmodifiableList(elements.subList(position, elements.size())).iterator();
+        }
+
+        @Override
+        public int size() {
+            return elements.size() - position;
+        }
+
+        @Override
+        public void clear() {
+            elements.clear();
+            position = 0;
+            sorted = true;
         }
     }
 }
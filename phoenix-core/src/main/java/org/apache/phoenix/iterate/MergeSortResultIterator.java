@@ -76,12 +76,20 @@ public abstract class MergeSortResultIterator implements PeekingResultIterator {
                     itr.close();
                     continue;
                 }
-                minHeap.add(new MaterializedComparableResultIterator(itr, itrComparator));
+                minHeap.add(newComparableIterator(itr));
             }
         }
         return minHeap;
     }
 
+    /**
+     * Wrap an input iterator so that it is ordered in the heap by its current row. By default
+     * the rows are ordered through {@link #compare(Tuple, Tuple)}.
+     */
+    protected MaterializedComparableResultIterator newComparableIterator(PeekingResultIterator itr) throws SQLException {
+        return new MaterializedComparableResultIterator(itr, itrComparator);
+    }
+
     private class IteratorComparator implements Comparator<Tuple> {
         @Override
         public int compare(Tuple c1, Tuple c2) {
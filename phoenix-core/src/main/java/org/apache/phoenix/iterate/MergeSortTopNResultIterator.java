@@ -20,8 +20,7 @@ package org.apache.phoenix.iterate;
 import java.sql.SQLException;
 import java.util.List;
 
-import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
-import org.apache.phoenix.expression.Expression;
+import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.phoenix.expression.OrderByExpression;
 import org.apache.phoenix.schema.tuple.Tuple;
 
@@ -30,6 +29,9 @@ import org.apache.phoenix.schema.tuple.Tuple;
  * ResultIterator that does a merge sort on the list of iterators provided,
  * returning the rows ordered by the OrderByExpression. The input
  * iterators must be ordered by the OrderByExpression.
+ * <p>
+ * The rows are compared by their sort key, as encoded by {@link SortKeyEncoder}, which is
+ * computed once per row of each input iterator rather than on every comparison.
  *
  */
 public class MergeSortTopNResultIterator extends MergeSortResultIterator {
@@ -38,8 +40,7 @@ public class MergeSortTopNResultIterator extends MergeSortResultIterator {
     private int count = 0;
     private int offsetCount = 0;
     private final List<OrderByExpression> orderByColumns;
-    private final ImmutableBytesWritable ptr1 = new ImmutableBytesWritable();
-    private final ImmutableBytesWritable ptr2 = new ImmutableBytesWritable();
+    private final SortKeyEncoder sortKeyEncoder;
     private final int offset;
     
     public MergeSortTopNResultIterator(ResultIterators iterators, Integer limit, Integer offset,
@@ -48,29 +49,43 @@ public class MergeSortTopNResultIterator extends MergeSortResultIterator {
         this.limit = limit == null ? -1 : limit;
         this.offset = offset == null ? -1 : offset;
         this.orderByColumns = orderByColumns;
+        this.sortKeyEncoder = new SortKeyEncoder(orderByColumns);
     }
 
     @Override
     protected int compare(Tuple t1, Tuple t2) {
-        for (int i = 0; i < orderByColumns.size(); i++) {
-            OrderByExpression order = orderByColumns.get(i);
-            Expression orderExpr = order.getExpression();
-            boolean isNull1 = !orderExpr.evaluate(t1, ptr1) || ptr1.getLength() == 0;
-            boolean isNull2 = !orderExpr.evaluate(t2, ptr2) || ptr2.getLength() == 0;
-            if (isNull1 && isNull2) {
-                continue;
-            } else if (isNull1) {
-                return order.isNullsLast() ? 1 : -1;
-            } else if (isNull2) {
-                return order.isNullsLast() ? -1 : 1;
-            }
-            int cmp = ptr1.compareTo(ptr2);
-            if (cmp == 0) {
-                continue;
-            }
-            return order.isAscending() ? cmp : -cmp;
+        return Bytes.compareTo(sortKeyEncoder.encode(t1), sortKeyEncoder.encode(t2));
+    }
+
+    @Override
+    protected MaterializedComparableResultIterator newComparableIterator(PeekingResultIterator itr) throws SQLException {
+        return new SortKeyResultIterator(itr);
+    }
+
+    /** Caches the sort key of the current row of an input iterator. */
+    private class SortKeyResultIterator extends MaterializedComparableResultIterator {
+        private byte[] currentSortKey;
+
+        SortKeyResultIterator(PeekingResultIterator delegate) throws SQLException {
+            super(delegate, null);
+            this.currentSortKey = encode(getCurrent());
+        }
+
+        private byte[] encode(Tuple current) {
+            return current == null ? null : sortKeyEncoder.encode(current);
+        }
+
+        @Override
+        public Tuple next() throws SQLException {
+            Tuple next = super.next();
+            this.currentSortKey = encode(getCurrent());
+            return next;
+        }
+
+        @Override
+        public int compareTo(MaterializedComparableResultIterator o) {
+            return Bytes.compareTo(currentSortKey, ((SortKeyResultIterator)o).currentSortKey);
         }
-        return 0;
     }
 
     @Override
@@ -111,7 +126,6 @@ public class MergeSortTopNResultIterator extends MergeSortResultIterator {
 	@Override
 	public String toString() {
 		return "MergeSortTopNResultIterator [limit=" + limit + ", count="
-				+ count + ", orderByColumns=" + orderByColumns + ", ptr1="
-				+ ptr1 + ", ptr2=" + ptr2 + ",offset=" + offset + "]";
+				+ count + ", orderByColumns=" + orderByColumns + ",offset=" + offset + "]";
 	}
 }
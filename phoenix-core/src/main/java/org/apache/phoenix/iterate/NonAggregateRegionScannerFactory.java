@@ -42,6 +42,7 @@ import org.apache.phoenix.cache.TenantCache;
 import org.apache.phoenix.coprocessor.BaseRegionScanner;
 import org.apache.phoenix.coprocessor.BaseScannerRegionObserver;
 import org.apache.phoenix.coprocessor.HashJoinRegionScanner;
+import org.apache.phoenix.coprocessor.LateMaterializationRegionScanner;
 import org.apache.phoenix.execute.TupleProjector;
 import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.expression.KeyValueColumnExpression;
@@ -97,7 +98,7 @@ public class NonAggregateRegionScannerFactory extends RegionScannerFactory {
     if (scanOffsetBytes != null) {
       scanOffset = (Integer)PInteger.INSTANCE.toObject(scanOffsetBytes);
     }
-    RegionScanner innerScanner = s;
+    RegionScanner innerScanner = LateMaterializationRegionScanner.wrap(getRegion(), scan, s);
     PTable.QualifierEncodingScheme encodingScheme = EncodedColumnsUtil.getQualifierEncodingScheme(scan);
     boolean useNewValueColumnQualifier = EncodedColumnsUtil.useNewValueColumnQualifier(scan);
 
@@ -18,51 +18,52 @@
 package org.apache.phoenix.iterate;
 
 import static com.google.common.base.Preconditions.checkArgument;
-import static com.google.common.base.Preconditions.checkPositionIndex;
 
 import java.io.IOException;
 import java.sql.SQLException;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.hadoop.hbase.client.Result;
-import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
-import org.apache.phoenix.execute.DescVarLengthFastByteComparisons;
-import org.apache.phoenix.expression.Expression;
+import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.phoenix.expression.OrderByExpression;
-import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.memory.InsufficientMemoryException;
+import org.apache.phoenix.memory.MemoryManager;
+import org.apache.phoenix.memory.MemoryManager.MemoryChunk;
+import org.apache.phoenix.memory.MemoryManager.Spillable;
 import org.apache.phoenix.schema.tuple.Tuple;
 import org.apache.phoenix.util.ServerUtil;
 import org.apache.phoenix.util.SizedUtil;
 
-import com.google.common.base.Function;
-import com.google.common.collect.Collections2;
-import com.google.common.collect.Lists;
-import com.google.common.collect.Ordering;
-
 /**
  * Result scanner that sorts aggregated rows by columns specified in the ORDER BY clause.
  * <p>
- * Note that currently the sort is entirely done in memory. 
+ * Rows are buffered in memory, as heap objects keyed by the sort key of {@link SortKeyEncoder},
+ * until they exceed the threshold or, when a memory manager is given, the memory manager asks
+ * the sort to spill. The buffered rows are then spilled to disk as a sorted run in a memory-mapped
+ * file, and the runs are merged with a {@link LoserTree} once all the rows have been read.
  *  
  * 
  * @since 0.1
  */
 public class OrderedResultIterator implements PeekingResultIterator {
 
-    /** A container that holds pointers to a {@link Result} and its sort keys. */
+    /**
+     * A container that holds pointers to a {@link Result} and its sort key, as encoded
+     * by {@link SortKeyEncoder}.
+     */
     protected static class ResultEntry {
-        protected final ImmutableBytesWritable[] sortKeys;
+        protected final byte[] sortKey;
         protected final Tuple result;
 
-        ResultEntry(ImmutableBytesWritable[] sortKeys, Tuple result) {
-            this.sortKeys = sortKeys;
+        ResultEntry(byte[] sortKey, Tuple result) {
+            this.sortKey = sortKey;
             this.result = result;
         }
         
-        ImmutableBytesWritable getSortKey(int index) {
-            checkPositionIndex(index, sortKeys.length);
-            return sortKeys[index];
+        byte[] getSortKey() {
+            return sortKey;
         }
         
         Tuple getResult() {
@@ -70,26 +71,41 @@ public class OrderedResultIterator implements PeekingResultIterator {
         }
     }
     
-    /** A function that returns Nth key for a given {@link ResultEntry}. */
-    private static class NthKey implements Function<ResultEntry, ImmutableBytesWritable> {
-        private final int index;
+    /** Orders the entries by their sort key. */
+    private static final Comparator<ResultEntry> SORT_KEY_COMPARATOR = new Comparator<ResultEntry>() {
+        @Override
+        public int compare(ResultEntry o1, ResultEntry o2) {
+            return Bytes.compareTo(o1.sortKey, o2.sortKey);
+        }
+    };
+
+    /** Tracks the memory held by the rows buffered in memory, which can be released by spilling them. */
+    private static class SortSpillable implements Spillable {
+        private final MemoryChunk chunk;
+        private final AtomicBoolean spillRequested = new AtomicBoolean();
+        private volatile boolean resizing;
+        // Set once memory could not be reserved, until the rows in memory get spilled
+        private boolean memoryDenied;
 
-        NthKey(int index) {
-            this.index = index;
+        SortSpillable(MemoryChunk chunk) {
+            this.chunk = chunk;
         }
+
         @Override
-        public ImmutableBytesWritable apply(ResultEntry entry) {
-            return entry.getSortKey(index);
+        public long getSpillableBytes() {
+            // Cannot spill while waiting for memory itself, nor spill again before it did
+            return resizing || spillRequested.get() ? 0 : chunk.getSize();
         }
-    }
 
-    /** Returns the expression of a given {@link OrderByExpression}. */
-    private static final Function<OrderByExpression, Expression> TO_EXPRESSION = new Function<OrderByExpression, Expression>() {
         @Override
-        public Expression apply(OrderByExpression column) {
-            return column.getExpression();
+        public void requestSpill() {
+            spillRequested.set(true);
         }
-    };
+    }
+
+    // Smallest reservation of memory for the rows buffered in memory, so that the reservation
+    // does not grow a row at a time after a spill
+    private static final long MIN_RESERVED_BYTES = 64 * 1024;
 
     private final int thresholdBytes;
     private final Integer limit;
@@ -97,6 +113,7 @@ public class OrderedResultIterator implements PeekingResultIterator {
     private final ResultIterator delegate;
     private final List<OrderByExpression> orderByExpressions;
     private final long estimatedByteSize;
+    private final MemoryManager memoryManager;
     
     private PeekingResultIterator resultIterator;
     private long byteSize;
@@ -117,10 +134,20 @@ public class OrderedResultIterator implements PeekingResultIterator {
 
     public OrderedResultIterator(ResultIterator delegate, List<OrderByExpression> orderByExpressions, 
             int thresholdBytes, Integer limit, Integer offset,int estimatedRowSize) {
+        this(delegate, orderByExpressions, thresholdBytes, limit, offset, estimatedRowSize, null);
+    }
+
+    /**
+     * @param memoryManager the memory manager through which the memory of the rows buffered
+     * in memory is reserved, or null if it is not tracked
+     */
+    public OrderedResultIterator(ResultIterator delegate, List<OrderByExpression> orderByExpressions,
+            int thresholdBytes, Integer limit, Integer offset, int estimatedRowSize, MemoryManager memoryManager) {
         checkArgument(!orderByExpressions.isEmpty());
         this.delegate = delegate;
         this.orderByExpressions = orderByExpressions;
         this.thresholdBytes = thresholdBytes;
+        this.memoryManager = memoryManager;
         this.offset = offset == null ? 0 : offset;
         if (limit != null) {
             this.limit = limit + this.offset;
@@ -130,8 +157,8 @@ public class OrderedResultIterator implements PeekingResultIterator {
         long estimatedEntrySize =
             // ResultEntry
             SizedUtil.OBJECT_SIZE + 
-            // ImmutableBytesWritable[]
-            SizedUtil.ARRAY_SIZE + orderByExpressions.size() * SizedUtil.IMMUTABLE_BYTES_WRITABLE_SIZE +
+            // byte[] of the sort key, assuming short values
+            SizedUtil.ARRAY_SIZE + orderByExpressions.size() * SizedUtil.LONG_SIZE +
             // Tuple
             SizedUtil.OBJECT_SIZE + estimatedRowSize;
 
@@ -152,48 +179,6 @@ public class OrderedResultIterator implements PeekingResultIterator {
     public long getByteSize() {
         return byteSize;
     }
-    /**
-     * Builds a comparator from the list of columns in ORDER BY clause.
-     * @param orderByExpressions the columns in ORDER BY clause.
-     * @return the comparator built from the list of columns in ORDER BY clause.
-     */
-    // ImmutableBytesWritable.Comparator doesn't implement generics
-    @SuppressWarnings("unchecked")
-    private static Comparator<ResultEntry> buildComparator(List<OrderByExpression> orderByExpressions) {
-        Ordering<ResultEntry> ordering = null;
-        int pos = 0;
-        for (OrderByExpression col : orderByExpressions) {
-            Expression e = col.getExpression();
-            Comparator<ImmutableBytesWritable> comparator = 
-                    e.getSortOrder() == SortOrder.DESC && !e.getDataType().isFixedWidth() 
-                    ? buildDescVarLengthComparator() 
-                    : new ImmutableBytesWritable.Comparator();
-            Ordering<ImmutableBytesWritable> o = Ordering.from(comparator);
-            if(!col.isAscending()) o = o.reverse();
-            o = col.isNullsLast() ? o.nullsLast() : o.nullsFirst();
-            Ordering<ResultEntry> entryOrdering = o.onResultOf(new NthKey(pos++));
-            ordering = ordering == null ? entryOrdering : ordering.compound(entryOrdering);
-        }
-        return ordering;
-    }
-
-    /*
-     * Same as regular comparator, but if all the bytes match and the length is
-     * different, returns the longer length as bigger.
-     */
-    private static Comparator<ImmutableBytesWritable> buildDescVarLengthComparator() {
-        return new Comparator<ImmutableBytesWritable>() {
-
-            @Override
-            public int compare(ImmutableBytesWritable o1, ImmutableBytesWritable o2) {
-                return DescVarLengthFastByteComparisons.compareTo(
-                        o1.get(), o1.getOffset(), o1.getLength(),
-                        o2.get(), o2.getOffset(), o2.getLength());
-            }
-            
-        };
-    }
-    
     @Override
     public Tuple next() throws SQLException {
         return getResultIterator().next();
@@ -204,11 +189,10 @@ public class OrderedResultIterator implements PeekingResultIterator {
             return resultIterator;
         }
         
-        final int numSortKeys = orderByExpressions.size();
-        List<Expression> expressions = Lists.newArrayList(Collections2.transform(orderByExpressions, TO_EXPRESSION));
-        final Comparator<ResultEntry> comparator = buildComparator(orderByExpressions);
+        SortKeyEncoder sortKeyEncoder = new SortKeyEncoder(orderByExpressions);
+        final SortSpillable spillable = memoryManager == null ? null : new SortSpillable(memoryManager.allocate(0));
         try{
-            final MappedByteBufferSortedQueue queueEntries = new MappedByteBufferSortedQueue(comparator, limit,
+            final MappedByteBufferSortedQueue queueEntries = new MappedByteBufferSortedQueue(SORT_KEY_COMPARATOR, limit,
                     thresholdBytes);
             resultIterator = new PeekingResultIterator() {
                 int count = 0;
@@ -250,29 +234,71 @@ public class OrderedResultIterator implements PeekingResultIterator {
                 @Override
                 public void close() throws SQLException {
                     queueEntries.close();
+                    if (spillable != null) {
+                        spillable.chunk.close();
+                    }
                 }
             };
+            if (spillable != null) {
+                memoryManager.registerSpillable(spillable);
+            }
             for (Tuple result = delegate.next(); result != null; result = delegate.next()) {
-                int pos = 0;
-                ImmutableBytesWritable[] sortKeys = new ImmutableBytesWritable[numSortKeys];
-                for (Expression expression : expressions) {
-                    final ImmutableBytesWritable sortKey = new ImmutableBytesWritable();
-                    boolean evaluated = expression.evaluate(result, sortKey);
-                    // set the sort key that failed to get evaluated with null
-                    sortKeys[pos++] = evaluated && sortKey.getLength() > 0 ? sortKey : null;
+                // Evaluate the ORDER BY expressions once per row rather than on every comparison
+                queueEntries.add(new ResultEntry(sortKeyEncoder.encode(result), result));
+                if (spillable != null) {
+                    reserveMemory(queueEntries, spillable);
                 }
-                queueEntries.add(new ResultEntry(sortKeys, result));
             }
             this.byteSize = queueEntries.getByteSize();
         } catch (IOException e) {
             ServerUtil.createIOException(e.getMessage(), e);
         } finally {
+            if (spillable != null) {
+                memoryManager.unregisterSpillable(spillable);
+                if (resultIterator == null) {
+                    spillable.chunk.close();
+                }
+            }
             delegate.close();
         }
         
         return resultIterator;
     }
 
+    /**
+     * Reserve the memory of the rows buffered in memory, spilling them to disk when the memory
+     * manager asks for it. When the memory cannot be reserved, the rows keep being buffered until
+     * the spool threshold is reached rather than being spilled in runs of a few rows.
+     */
+    private void reserveMemory(MappedByteBufferSortedQueue queueEntries, SortSpillable spillable) throws IOException {
+        MemoryChunk chunk = spillable.chunk;
+        if (spillable.spillRequested.get()) {
+            queueEntries.spill();
+            spillable.spillRequested.set(false);
+        } else if (!spillable.memoryDenied) {
+            long inMemBytes = queueEntries.getByteSize();
+            if (inMemBytes > chunk.getSize()) {
+                spillable.resizing = true;
+                try {
+                    // Grow geometrically to limit the number of resizes
+                    long growBytes = Math.min(Math.max(2 * chunk.getSize(), MIN_RESERVED_BYTES), thresholdBytes);
+                    chunk.resize(Math.max(inMemBytes, growBytes));
+                } catch (InsufficientMemoryException e) {
+                    spillable.memoryDenied = true;
+                } finally {
+                    spillable.resizing = false;
+                }
+            }
+        }
+        // Release the memory once the rows were written to disk
+        if (queueEntries.getByteSize() == 0) {
+            spillable.memoryDenied = false;
+            if (chunk.getSize() > 0) {
+                chunk.resize(0);
+            }
+        }
+    }
+
     @Override
     public Tuple peek() throws SQLException {
         return getResultIterator().peek();
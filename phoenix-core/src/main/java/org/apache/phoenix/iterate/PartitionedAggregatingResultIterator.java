@@ -0,0 +1,471 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.iterate;
+
+import static org.apache.phoenix.query.QueryConstants.AGG_TIMESTAMP;
+import static org.apache.phoenix.query.QueryConstants.SINGLE_COLUMN;
+import static org.apache.phoenix.query.QueryConstants.SINGLE_COLUMN_FAMILY;
+import static org.apache.phoenix.query.QueryConstants.UNGROUPED_AGG_ROW_KEY;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.exception.SQLExceptionCode;
+import org.apache.phoenix.exception.SQLExceptionInfo;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.aggregator.Aggregator;
+import org.apache.phoenix.expression.aggregator.ServerAggregators;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.iterate.OrderedResultIterator.ResultEntry;
+import org.apache.phoenix.memory.MemoryManager;
+import org.apache.phoenix.memory.MemoryManager.MemoryChunk;
+import org.apache.phoenix.query.KeyRange;
+import org.apache.phoenix.schema.tuple.MultiKeyValueTuple;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.util.KeyValueUtil;
+import org.apache.phoenix.util.ServerUtil;
+import org.apache.phoenix.util.SizedUtil;
+import org.apache.phoenix.util.TupleUtil;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hashing;
+
+/**
+ * 
+ * Result iterator that aggregates the rows of the delegate iterator on the client in parallel.
+ * The rows are hash partitioned by their group key on the calling thread, and the rows of each
+ * partition are aggregated into a hash table on a thread of the executor, using the
+ * {@link ServerAggregators} of the partition. When the hash table of a partition exceeds its
+ * memory, its groups are moved to a sorted queue, which spills to disk when it grows too large.
+ * <p>
+ * The executor may be shared with the scans feeding the delegate iterator, so a partition never
+ * waits for rows on a thread of the executor: a task is only submitted once rows are queued for
+ * the partition, and it returns as soon as its queue is drained. When the executor rejects the
+ * task, the rows are aggregated on the calling thread instead.
+ * <p>
+ * The iterator returns the partial aggregates of each group ordered by group key, in the same
+ * form as the {@link ServerAggregators} of a grouped aggregation scan, so that they are combined
+ * by a {@link GroupedAggregatingResultIterator} over the client aggregators. The groups of
+ * different partitions are distinct, so they only need to be merged.
+ * <p>
+ * The group keys are evaluated on the calling thread, since expressions are not guaranteed to be
+ * thread safe, while each partition evaluates the arguments of its own aggregate functions.
+ *
+ */
+public class PartitionedAggregatingResultIterator implements ResultIterator {
+    private static final long QUEUE_TIMEOUT_MS = 100;
+    private static final int PARTITION_QUEUE_CAPACITY = 1000;
+    // Orders the partial aggregates by group key, which is their sort key
+    private static final Comparator<ResultEntry> GROUP_KEY_COMPARATOR = new Comparator<ResultEntry>() {
+        @Override
+        public int compare(ResultEntry o1, ResultEntry o2) {
+            return Bytes.compareTo(o1.sortKey, o2.sortKey);
+        }
+    };
+    // Marks the end of the rows of a partition
+    private static final GroupedRow END_OF_ROWS = new GroupedRow(null, null);
+
+    private static class GroupedRow {
+        private final ImmutableBytesPtr key;
+        private final Tuple tuple;
+
+        private GroupedRow(ImmutableBytesPtr key, Tuple tuple) {
+            this.key = key;
+            this.tuple = tuple;
+        }
+    }
+
+    private final ResultIterator delegate;
+    private final List<Expression> groupByExpressions;
+    private final List<ServerAggregators> partitionAggregators;
+    private final Configuration conf;
+    private final int thresholdBytes;
+    private final MemoryManager memoryManager;
+    private final ExecutorService executor;
+    private final List<Partition> partitions;
+    private final CountDownLatch finishedPartitions;
+    private volatile boolean closed;
+    private ResultIterator resultIterator;
+    private boolean started;
+    private int nextPartition;
+
+    /**
+     * @param delegate the rows to aggregate
+     * @param groupByExpressions the GROUP BY expressions, or an empty list for an ungrouped aggregation
+     * @param partitionAggregators the server aggregators of each partition, which may not be shared,
+     * since aggregators are not thread safe
+     * @param conf the configuration through which the aggregators are created
+     * @param thresholdBytes the size of the in memory groups above which all partitions spill to disk
+     * @param memoryManager the memory manager through which the memory of the hash tables is reserved
+     * @param executor the executor on which the partitions are aggregated
+     */
+    public PartitionedAggregatingResultIterator(ResultIterator delegate, List<Expression> groupByExpressions,
+            List<ServerAggregators> partitionAggregators, Configuration conf, int thresholdBytes,
+            MemoryManager memoryManager, ExecutorService executor) {
+        this.delegate = delegate;
+        this.groupByExpressions = groupByExpressions;
+        this.partitionAggregators = partitionAggregators;
+        this.conf = conf;
+        this.thresholdBytes = Math.max(1, thresholdBytes / partitionAggregators.size());
+        this.memoryManager = memoryManager;
+        this.executor = executor;
+        this.partitions = Lists.newArrayListWithExpectedSize(partitionAggregators.size());
+        this.finishedPartitions = new CountDownLatch(partitionAggregators.size());
+    }
+
+    @Override
+    public Tuple next() throws SQLException {
+        return getResultIterator().next();
+    }
+
+    private ResultIterator getResultIterator() throws SQLException {
+        if (resultIterator != null) {
+            return resultIterator;
+        }
+        if (started) {
+            throw new IllegalStateException("Aggregation of partitions failed");
+        }
+        started = true;
+        try {
+            for (ServerAggregators aggregators : partitionAggregators) {
+                partitions.add(new Partition(aggregators));
+            }
+            for (Tuple tuple = delegate.next(); tuple != null; tuple = delegate.next()) {
+                ImmutableBytesPtr key = getGroupKey(tuple);
+                put(partitions.get(getPartition(key)), new GroupedRow(key, tuple));
+            }
+            for (Partition partition : partitions) {
+                put(partition, END_OF_ROWS);
+            }
+            awaitPartitions();
+            List<PeekingResultIterator> iterators = Lists.newArrayListWithExpectedSize(partitions.size());
+            for (Partition partition : partitions) {
+                partition.checkFailure();
+                iterators.add(new SortedGroupsIterator(partition.sortedGroups));
+            }
+            resultIterator = new MergeSortRowKeyResultIterator(new PartitionResultIterators(iterators));
+        } catch (RuntimeException e) {
+            throw ServerUtil.parseServerException(e);
+        } finally {
+            delegate.close();
+        }
+        return resultIterator;
+    }
+
+    private ImmutableBytesPtr getGroupKey(Tuple tuple) throws SQLException {
+        if (groupByExpressions.isEmpty()) {
+            return new ImmutableBytesPtr(UNGROUPED_AGG_ROW_KEY);
+        }
+        try {
+            return TupleUtil.getConcatenatedValue(tuple, groupByExpressions);
+        } catch (IOException e) {
+            throw new SQLException(e);
+        }
+    }
+
+    private int getPartition(ImmutableBytesPtr key) {
+        if (groupByExpressions.isEmpty()) {
+            // All rows belong to the same group, so spread them evenly
+            nextPartition = (nextPartition + 1) % partitions.size();
+            return nextPartition;
+        }
+        // Rehash, so that the keys of a partition are spread over its own hash table
+        return Hashing.consistentHash(key.hashCode(), partitions.size());
+    }
+
+    /*
+     * Queue a row for its partition and make sure a task drains the queue of the partition.
+     * Waits for room in the queue, unless the aggregation of the partition failed in the meantime.
+     */
+    private void put(Partition partition, GroupedRow row) throws SQLException {
+        try {
+            while (!partition.rows.offer(row, QUEUE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                partition.checkFailure();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLExceptionInfo.Builder(SQLExceptionCode.INTERRUPTED_EXCEPTION).setRootCause(e).build().buildException();
+        }
+        partition.checkFailure();
+        partition.schedule();
+    }
+
+    private void awaitPartitions() throws SQLException {
+        try {
+            finishedPartitions.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLExceptionInfo.Builder(SQLExceptionCode.INTERRUPTED_EXCEPTION).setRootCause(e).build().buildException();
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (resultIterator != null) {
+                resultIterator.close();
+            } else if (!partitions.isEmpty()) {
+                // Let the partitions still running discard their rows and finish
+                for (Partition partition : partitions) {
+                    partition.rows.clear();
+                    partition.rows.offer(END_OF_ROWS);
+                    partition.schedule();
+                }
+                awaitPartitions();
+                for (Partition partition : partitions) {
+                    if (partition.sortedGroups != null) {
+                        partition.sortedGroups.close();
+                    }
+                }
+            }
+        } finally {
+            delegate.close();
+        }
+    }
+
+    @Override
+    public void explain(List<String> planSteps) {
+        delegate.explain(planSteps);
+    }
+
+    @Override
+    public String toString() {
+        return "PartitionedAggregatingResultIterator [delegate=" + delegate + ", groupByExpressions="
+                + groupByExpressions + ", partitions=" + partitionAggregators.size() + "]";
+    }
+
+    /**
+     * Aggregates the rows of a partition into a hash table, and moves its groups to a sorted queue
+     * once the hash table is full or once all the rows of the partition were aggregated. At most
+     * one task drains the rows of a partition at a time.
+     */
+    private class Partition implements Runnable {
+        private final ServerAggregators aggregators;
+        private final BlockingQueue<GroupedRow> rows = new ArrayBlockingQueue<GroupedRow>(PARTITION_QUEUE_CAPACITY);
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final Map<ImmutableBytesPtr, Aggregator[]> groups = Maps.newHashMap();
+        private final long groupSize;
+        private MappedByteBufferSortedQueue sortedGroups;
+        private MemoryChunk chunk;
+        private long size;
+        private boolean finished;
+        private volatile Throwable failure;
+
+        private Partition(ServerAggregators aggregators) {
+            this.aggregators = aggregators;
+            this.groupSize = SizedUtil.sizeOfMap(1, SizedUtil.IMMUTABLE_BYTES_PTR_SIZE,
+                    aggregators.getEstimatedByteSize());
+        }
+
+        private void schedule() {
+            if (!scheduled.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                executor.submit(this);
+            } catch (RejectedExecutionException e) {
+                run();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                GroupedRow row = rows.poll();
+                if (row == null) {
+                    scheduled.set(false);
+                    // Rows queued after the poll but before the reset are drained by this task
+                    if (rows.isEmpty() || !scheduled.compareAndSet(false, true)) {
+                        return;
+                    }
+                    continue;
+                }
+                if (finished) {
+                    continue;
+                }
+                try {
+                    if (row == END_OF_ROWS) {
+                        finish();
+                    } else if (!closed) {
+                        aggregate(row);
+                    }
+                } catch (Throwable t) {
+                    failure = t;
+                    groups.clear();
+                    releaseMemory();
+                    finished = true;
+                    finishedPartitions.countDown();
+                }
+            }
+        }
+
+        private void aggregate(GroupedRow row) throws IOException {
+            if (sortedGroups == null) {
+                sortedGroups = new MappedByteBufferSortedQueue(GROUP_KEY_COMPARATOR, null, thresholdBytes);
+                chunk = memoryManager.allocate(0, thresholdBytes);
+            }
+            Aggregator[] rowAggregators = groups.get(row.key);
+            if (rowAggregators == null) {
+                rowAggregators = aggregators.newAggregators(conf);
+                groups.put(new ImmutableBytesPtr(row.key.copyBytes()), rowAggregators);
+                size += groupSize + row.key.getLength();
+            }
+            aggregators.aggregate(rowAggregators, row.tuple);
+            if (size >= chunk.getSize()) {
+                flushGroups();
+            }
+        }
+
+        /*
+         * Move the groups of the hash table to the sorted queue
+         */
+        private void flushGroups() {
+            for (Map.Entry<ImmutableBytesPtr, Aggregator[]> group : groups.entrySet()) {
+                byte[] key = group.getKey().copyBytesIfNecessary();
+                byte[] value = aggregators.toBytes(group.getValue());
+                Tuple tuple = new MultiKeyValueTuple(Collections.<Cell> singletonList(KeyValueUtil.newKeyValue(
+                        key, SINGLE_COLUMN_FAMILY, SINGLE_COLUMN, AGG_TIMESTAMP, value, 0, value.length)));
+                sortedGroups.add(new ResultEntry(key, tuple));
+            }
+            groups.clear();
+            size = 0;
+        }
+
+        private void finish() throws IOException {
+            if (sortedGroups == null) {
+                sortedGroups = new MappedByteBufferSortedQueue(GROUP_KEY_COMPARATOR, null, thresholdBytes);
+            } else if (!closed) {
+                flushGroups();
+            }
+            groups.clear();
+            releaseMemory();
+            finished = true;
+            finishedPartitions.countDown();
+        }
+
+        private void releaseMemory() {
+            if (chunk != null) {
+                chunk.close();
+                chunk = null;
+            }
+        }
+
+        private void checkFailure() throws SQLException {
+            if (failure != null) {
+                throw ServerUtil.parseLocalOrRemoteServerException(failure);
+            }
+        }
+    }
+
+    /**
+     * Returns the partial aggregates of a partition in group key order.
+     */
+    private static class SortedGroupsIterator extends LookAheadResultIterator {
+        private final MappedByteBufferSortedQueue sortedGroups;
+
+        private SortedGroupsIterator(MappedByteBufferSortedQueue sortedGroups) {
+            this.sortedGroups = sortedGroups;
+        }
+
+        @Override
+        protected Tuple advance() throws SQLException {
+            ResultEntry entry = sortedGroups.poll();
+            return entry == null ? null : entry.getResult();
+        }
+
+        @Override
+        public void close() throws SQLException {
+            sortedGroups.close();
+        }
+
+        @Override
+        public void explain(List<String> planSteps) {
+        }
+    }
+
+    private static class PartitionResultIterators implements ResultIterators {
+        private final List<PeekingResultIterator> iterators;
+
+        private PartitionResultIterators(List<PeekingResultIterator> iterators) {
+            this.iterators = iterators;
+        }
+
+        @Override
+        public int size() {
+            return iterators.size();
+        }
+
+        @Override
+        public List<KeyRange> getSplits() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<List<Scan>> getScans() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void explain(List<String> planSteps) {
+        }
+
+        @Override
+        public List<PeekingResultIterator> getIterators() throws SQLException {
+            return iterators;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            SQLException exception = null;
+            for (PeekingResultIterator iterator : iterators) {
+                try {
+                    iterator.close();
+                } catch (SQLException e) {
+                    if (exception == null) {
+                        exception = e;
+                    } else {
+                        exception.setNextException(e);
+                    }
+                }
+            }
+            if (exception != null) {
+                throw exception;
+            }
+        }
+    }
+}
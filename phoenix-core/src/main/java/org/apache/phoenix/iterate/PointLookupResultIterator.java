@@ -0,0 +1,296 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.iterate;
+
+import static org.apache.phoenix.monitoring.GlobalClientHistograms.SCAN_TIME_HISTOGRAM;
+import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_HBASE_COUNT_BYTES_REGION_SERVER_RESULTS;
+import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_HBASE_COUNT_ROWS_SCANNED;
+import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_QUERY_TIMEOUT_COUNTER;
+import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_SCAN_BYTES;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.HTableInterface;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.PageFilter;
+import org.apache.phoenix.compile.ScanRanges;
+import org.apache.phoenix.compile.StatementContext;
+import org.apache.phoenix.coprocessor.BaseScannerRegionObserver;
+import org.apache.phoenix.exception.SQLExceptionCode;
+import org.apache.phoenix.exception.SQLExceptionInfo;
+import org.apache.phoenix.filter.SkipScanFilter;
+import org.apache.phoenix.monitoring.RunningQuery;
+import org.apache.phoenix.monitoring.ScanMetricsHolder;
+import org.apache.phoenix.query.KeyRange;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.query.QueryServicesOptions;
+import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.schema.PTable.IndexType;
+import org.apache.phoenix.schema.tuple.ResultTuple;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.util.PhoenixRuntime;
+import org.apache.phoenix.util.ScanUtil;
+import org.apache.phoenix.util.ServerUtil;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+
+/**
+ * Iterates over the rows of a point lookup (i.e. a query for which every primary key column
+ * is bound to one or more values) by issuing a batch of {@link Get}s for the keys instead of
+ * a skip scan per region. The HBase client groups the Gets by region server, so that each
+ * server is hit by a single RPC without any scanner being opened. The column projection and
+ * the filter of the scan, other than the key filtering, are still applied on the server side.
+ *
+ * Since Gets bypass the Phoenix scanner coprocessors, this may only be used for scans that do
+ * not rely on any server side processing, as checked by
+ * {@link #isSupported(StatementContext, PTable, Scan)}. For the same reason, no server scan
+ * metrics are returned for the Gets, while the bytes and rows read are recorded as for scans.
+ */
+public class PointLookupResultIterator implements ResultIterator {
+    // Scan attributes that carry no information needed to process the scan on the server side
+    private static final Set<String> SUPPORTED_ATTRIBUTES = ImmutableSet.of(
+            BaseScannerRegionObserver.NON_AGGREGATE_QUERY,
+            BaseScannerRegionObserver.CLIENT_VERSION,
+            BaseScannerRegionObserver.CUSTOM_ANNOTATIONS,
+            BaseScannerRegionObserver.SCAN_REGION_SERVER,
+            BaseScannerRegionObserver.SCAN_ACTUAL_START_ROW,
+            BaseScannerRegionObserver.SKIP_REGION_BOUNDARY_CHECK,
+            BaseScannerRegionObserver.EMPTY_CF,
+            BaseScannerRegionObserver.EMPTY_COLUMN_QUALIFIER,
+            BaseScannerRegionObserver.MIN_QUALIFIER,
+            BaseScannerRegionObserver.MAX_QUALIFIER,
+            BaseScannerRegionObserver.QUALIFIER_ENCODING_SCHEME,
+            BaseScannerRegionObserver.IMMUTABLE_STORAGE_ENCODING_SCHEME,
+            BaseScannerRegionObserver.USE_NEW_VALUE_COLUMN_QUALIFIER,
+            BaseScannerRegionObserver.USE_ENCODED_COLUMN_QUALIFIER_LIST,
+            BaseScannerRegionObserver.COLUMNAR_RESULT_BATCH_SIZE,
+            BaseScannerRegionObserver.COLUMNAR_RESULT_COMPRESSION,
+            // Metrics only returned by the coprocessors or the client side scanners
+            BaseScannerRegionObserver.SERVER_SCAN_METRICS,
+            Scan.SCAN_ATTRIBUTES_METRICS_ENABLE,
+            PhoenixRuntime.TENANT_ID_ATTRIB);
+
+    private final StatementContext context;
+    private final PTable table;
+    private final Scan scan;
+    private final ResultIterators iterators;
+    private Iterator<Result> results;
+
+    /**
+     * @param iterators the scan based iterators over the same query, only used to explain
+     *        the plan
+     */
+    public PointLookupResultIterator(StatementContext context, PTable table, Scan scan, ResultIterators iterators) {
+        this.context = context;
+        this.table = table;
+        this.scan = scan;
+        this.iterators = iterators;
+    }
+
+    /**
+     * @return true if the rows of the scan may be fetched through Gets, which is the case for
+     *         point lookups over a bounded number of keys and scans that do not require any
+     *         processing by the Phoenix coprocessors.
+     */
+    public static boolean isSupported(StatementContext context, PTable table, Scan scan) {
+        if (!context.getConnection().getQueryServices().getProps().getBoolean(
+                QueryServices.POINT_LOOKUP_USE_GETS_ATTRIB, QueryServicesOptions.DEFAULT_POINT_LOOKUP_USE_GETS)) {
+            return false;
+        }
+        ScanRanges scanRanges = context.getScanRanges();
+        int threshold = context.getConnection().getQueryServices().getProps().getInt(
+                QueryServices.POINT_LOOKUP_GETS_THRESHOLD_ATTRIB, QueryServicesOptions.DEFAULT_POINT_LOOKUP_GETS_THRESHOLD);
+        if (!scanRanges.isPointLookup() || scanRanges.getPointLookupCount() > threshold) {
+            return false;
+        }
+        if (table.isTransactional() || table.getIndexType() == IndexType.LOCAL) {
+            return false;
+        }
+        if (ScanUtil.isReversed(scan) || scan.isRaw() || scan.getBatch() > 0) {
+            return false;
+        }
+        if (!SUPPORTED_ATTRIBUTES.containsAll(scan.getAttributesMap().keySet())) {
+            return false;
+        }
+        Filter filter = scan.getFilter();
+        return !(filter instanceof FilterList)
+                || ((FilterList) filter).getOperator() == FilterList.Operator.MUST_PASS_ALL;
+    }
+
+    /*
+     * The keys of the Gets already restrict the rows, as would the skip scan filter, and any limit
+     * is enforced on the client side.
+     */
+    private static boolean isKeyFilter(Filter filter) {
+        return filter instanceof SkipScanFilter || filter instanceof PageFilter;
+    }
+
+    private static Filter getGetFilter(Filter filter) {
+        if (filter instanceof FilterList) {
+            List<Filter> filters = Lists.newArrayList();
+            for (Filter f : ((FilterList) filter).getFilters()) {
+                if (!isKeyFilter(f)) {
+                    filters.add(f);
+                }
+            }
+            if (filters.isEmpty()) {
+                return null;
+            }
+            return filters.size() == 1 ? filters.get(0) : new FilterList(FilterList.Operator.MUST_PASS_ALL, filters);
+        }
+        return filter == null || isKeyFilter(filter) ? null : filter;
+    }
+
+    private Get newGet(byte[] key, Filter filter) throws IOException {
+        Get get = new Get(key);
+        for (Map.Entry<byte[], NavigableSet<byte[]>> entry : scan.getFamilyMap().entrySet()) {
+            if (entry.getValue() == null) {
+                get.addFamily(entry.getKey());
+            } else {
+                for (byte[] qualifier : entry.getValue()) {
+                    get.addColumn(entry.getKey(), qualifier);
+                }
+            }
+        }
+        get.setTimeRange(scan.getTimeRange().getMin(), scan.getTimeRange().getMax());
+        get.setMaxVersions(scan.getMaxVersions());
+        get.setCacheBlocks(scan.getCacheBlocks());
+        get.setConsistency(scan.getConsistency());
+        get.setFilter(filter);
+        return get;
+    }
+
+    private Iterator<Result> fetch() throws SQLException {
+        ScanRanges scanRanges = context.getScanRanges();
+        final List<Get> gets = Lists.newArrayListWithExpectedSize(scanRanges.getPointLookupCount());
+        try {
+            Filter filter = getGetFilter(scan.getFilter());
+            Iterator<KeyRange> keys = scanRanges.getPointLookupKeyIterator();
+            while (keys.hasNext()) {
+                gets.add(newGet(keys.next().getLowerRange(), filter));
+            }
+        } catch (IOException e) {
+            throw ServerUtil.parseServerException(e);
+        }
+        String tableName = table.getPhysicalName().getString();
+        ScanMetricsHolder scanMetricsHolder = ScanMetricsHolder.getInstance(context.getReadMetricsQueue(),
+                tableName, scan, context.getConnection().getLogLevel());
+        RunningQuery runningQuery = context.getRunningQuery();
+        if (runningQuery != null) {
+            runningQuery.addScans(1);
+        }
+        long startTime = System.nanoTime();
+        Result[] results = get(gets);
+        SCAN_TIME_HISTOGRAM.update(tableName, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+        List<Result> nonEmptyResults = Lists.newArrayListWithExpectedSize(results.length);
+        long bytes = 0;
+        for (Result result : results) {
+            if (result != null && !result.isEmpty()) {
+                nonEmptyResults.add(result);
+                bytes += Result.getTotalSizeOfCells(result);
+            }
+        }
+        scanMetricsHolder.getCountOfRowsScanned().change(gets.size());
+        scanMetricsHolder.getCountOfBytesInResults().change(bytes);
+        GLOBAL_HBASE_COUNT_ROWS_SCANNED.update(gets.size());
+        GLOBAL_HBASE_COUNT_BYTES_REGION_SERVER_RESULTS.update(bytes);
+        GLOBAL_SCAN_BYTES.update(bytes);
+        if (runningQuery != null) {
+            runningQuery.addRowsRead(nonEmptyResults.size());
+            runningQuery.addBytesRead(bytes);
+            runningQuery.scanCompleted();
+        }
+        return nonEmptyResults.iterator();
+    }
+
+    /*
+     * The Gets are issued from the executor, so that waiting for them is bounded by the query
+     * timeout as for the scans
+     */
+    private Result[] get(final List<Get> gets) throws SQLException {
+        final HTableInterface htable = context.getConnection().getMutationState().getHTable(table);
+        Future<Result[]> future = context.getConnection().getQueryServices().getExecutor().submit(
+                new Callable<Result[]>() {
+                    @Override
+                    public Result[] call() throws Exception {
+                        try {
+                            return htable.get(gets);
+                        } finally {
+                            htable.close();
+                        }
+                    }
+                });
+        int queryTimeOut = context.getStatement().getQueryTimeoutInMillis();
+        try {
+            return future.get(queryTimeOut, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(false);
+            context.getOverallQueryMetrics().queryTimedOut();
+            GLOBAL_QUERY_TIMEOUT_COUNTER.increment();
+            throw new SQLExceptionInfo.Builder(SQLExceptionCode.OPERATION_TIMED_OUT)
+                    .setMessage(". Query couldn't be completed in the alloted time: " + queryTimeOut + " ms")
+                    .setRootCause(e).build().buildException();
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+            throw ServerUtil.parseServerException(e);
+        } catch (ExecutionException e) {
+            throw ServerUtil.parseServerException(e);
+        }
+    }
+
+    @Override
+    public Tuple next() throws SQLException {
+        if (results == null) {
+            results = fetch();
+        }
+        return results.hasNext() ? new ResultTuple(results.next()) : null;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        results = Collections.emptyIterator();
+    }
+
+    @Override
+    public void explain(List<String> planSteps) {
+        iterators.explain(planSteps);
+    }
+
+    @Override
+    public String toString() {
+        return "PointLookupResultIterator [scan=" + scan + "]";
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.iterate;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValueUtil;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.phoenix.exception.SQLExceptionCode;
+import org.apache.phoenix.exception.SQLExceptionInfo;
+import org.apache.phoenix.memory.InsufficientMemoryException;
+import org.apache.phoenix.memory.MemoryManager;
+import org.apache.phoenix.memory.MemoryManager.MemoryChunk;
+import org.apache.phoenix.schema.tuple.ResultTuple;
+import org.apache.phoenix.schema.tuple.SingleKeyValueTuple;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.util.ServerUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Result iterator that fetches the rows of the delegate iterator ahead of time on a background
+ * thread, so that the I/O of the query overlaps with the processing of the rows by the caller.
+ * At most a bounded number of rows are buffered, for which memory is reserved up front through
+ * the {@link MemoryManager}. As the delegate may reuse its tuples, the buffered rows are copies.
+ */
+public class PrefetchingResultIterator implements ResultIterator {
+    private static final Logger logger = LoggerFactory.getLogger(PrefetchingResultIterator.class);
+    // Marks the end of the rows, or an error of the background fetch
+    private static final Tuple END_OF_ROWS = new SingleKeyValueTuple();
+    private static final long OFFER_TIMEOUT_MS = 100;
+
+    private final ResultIterator delegate;
+    private final MemoryChunk memoryChunk;
+    private final BlockingQueue<Tuple> buffer;
+    private Future<?> future;
+    private volatile boolean closed;
+    private volatile SQLException exception;
+    private boolean done;
+    // Guarded by this: whether the background fetch is using the delegate
+    private boolean fetching;
+
+    private PrefetchingResultIterator(ResultIterator delegate, MemoryChunk memoryChunk, int capacity) {
+        this.delegate = delegate;
+        this.memoryChunk = memoryChunk;
+        this.buffer = new ArrayBlockingQueue<Tuple>(capacity);
+    }
+
+    /**
+     * Wrap an iterator so that up to prefetchRows rows are fetched ahead of time. Fewer rows are
+     * buffered if not enough memory is available for all of them.
+     * @return the wrapping iterator, or the given iterator if the background fetch could not be
+     *         started
+     */
+    public static ResultIterator wrap(ResultIterator delegate, int prefetchRows, long estimatedRowSize,
+            MemoryManager memoryManager, ExecutorService executor) {
+        long rowSize = Math.max(1, estimatedRowSize);
+        MemoryChunk chunk;
+        try {
+            chunk = memoryManager.allocate(rowSize, rowSize * prefetchRows);
+        } catch (InsufficientMemoryException e) {
+            logger.debug("Unable to reserve memory to prefetch rows, reading them on demand", e);
+            return delegate;
+        }
+        int capacity = (int) Math.max(1, Math.min(prefetchRows, chunk.getSize() / rowSize));
+        final PrefetchingResultIterator iterator = new PrefetchingResultIterator(delegate, chunk, capacity);
+        try {
+            iterator.future = executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    iterator.fetch();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.debug("Unable to prefetch rows, reading them on demand", e);
+            chunk.close();
+            return delegate;
+        }
+        return iterator;
+    }
+
+    /*
+     * Whatever happens, the end marker is always queued last, as the caller would otherwise wait
+     * for the next row forever
+     */
+    private void fetch() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            fetching = true;
+        }
+        try {
+            Tuple tuple;
+            do {
+                tuple = delegate.next();
+                if (tuple != null) {
+                    put(copy(tuple));
+                }
+            } while (tuple != null && !closed);
+        } catch (SQLException e) {
+            exception = e;
+        } catch (InterruptedException e) {
+            exception = new SQLExceptionInfo.Builder(SQLExceptionCode.INTERRUPTED_EXCEPTION).setRootCause(e).build().buildException();
+        } catch (Throwable t) {
+            exception = ServerUtil.parseServerException(t);
+        } finally {
+            putEnd();
+            endFetch();
+        }
+    }
+
+    /*
+     * The delegate is not thread safe, so when the iterator was closed while fetching, the
+     * delegate is closed here instead, once done with it
+     */
+    private void endFetch() {
+        boolean closeDelegate;
+        synchronized (this) {
+            fetching = false;
+            closeDelegate = closed;
+        }
+        if (closeDelegate) {
+            try {
+                delegate.close();
+            } catch (SQLException e) {
+                logger.debug("Failed to close the iterator rows were prefetched from", e);
+            }
+        }
+    }
+
+    private static Tuple copy(Tuple tuple) {
+        int size = tuple.size();
+        List<Cell> cells = Lists.newArrayListWithExpectedSize(size);
+        for (int i = 0; i < size; i++) {
+            cells.add(KeyValueUtil.copyToNewKeyValue(tuple.getValue(i)));
+        }
+        return new ResultTuple(Result.create(cells));
+    }
+
+    private void putEnd() {
+        boolean interrupted = false;
+        while (!closed) {
+            try {
+                if (buffer.offer(END_OF_ROWS, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /*
+     * Wait for room in the buffer, unless the iterator gets closed in the meantime
+     */
+    private void put(Tuple tuple) throws InterruptedException {
+        while (!closed && !buffer.offer(tuple, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+        }
+    }
+
+    @Override
+    public Tuple next() throws SQLException {
+        if (done) {
+            return null;
+        }
+        Tuple tuple;
+        try {
+            tuple = buffer.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLExceptionInfo.Builder(SQLExceptionCode.INTERRUPTED_EXCEPTION).setRootCause(e).build().buildException();
+        }
+        if (tuple == END_OF_ROWS) {
+            done = true;
+            if (exception != null) {
+                throw exception;
+            }
+            return null;
+        }
+        return tuple;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        boolean closeDelegate;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            closeDelegate = !fetching;
+        }
+        // Not waited for: a fetch still using the delegate closes it when done
+        future.cancel(false);
+        try {
+            buffer.clear();
+            memoryChunk.close();
+        } finally {
+            if (closeDelegate) {
+                delegate.close();
+            }
+        }
+    }
+
+    @Override
+    public void explain(List<String> planSteps) {
+        delegate.explain(planSteps);
+    }
+
+    @Override
+    public String toString() {
+        return "PrefetchingResultIterator [delegate=" + delegate + ", buffered=" + buffer.size() + "]";
+    }
+}
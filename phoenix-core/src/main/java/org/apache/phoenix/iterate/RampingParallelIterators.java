@@ -0,0 +1,390 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.iterate;
+
+import static org.apache.phoenix.coprocessor.BaseScannerRegionObserver.SCAN_ACTUAL_START_ROW;
+import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_NUM_PARALLEL_SCANS;
+import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_QUERY_TIMEOUT_COUNTER;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.util.Pair;
+import org.apache.phoenix.cache.ServerCacheClient.ServerCache;
+import org.apache.phoenix.compile.QueryPlan;
+import org.apache.phoenix.compile.StatementContext;
+import org.apache.phoenix.exception.SQLExceptionCode;
+import org.apache.phoenix.exception.SQLExceptionInfo;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.job.JobManager.JobCallable;
+import org.apache.phoenix.monitoring.ReadMetricQueue;
+import org.apache.phoenix.monitoring.ScanMetricsHolder;
+import org.apache.phoenix.monitoring.TaskExecutionMetricsHolder;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.query.QueryServicesOptions;
+import org.apache.phoenix.schema.StaleRegionBoundaryCacheException;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.trace.util.Tracing;
+import org.apache.phoenix.util.EnvironmentEdgeManager;
+import org.apache.phoenix.util.ServerUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
+
+/**
+ * Iterators for queries with a limit and no ordering that dispatch the scans of the chunks
+ * incrementally instead of all at once: first a single chunk, then batches of 2, 4, 8, ...
+ * chunks run in parallel, each batch being submitted only once the previous one is exhausted
+ * and the limit is not yet reached. As soon as enough rows were produced, queued scans are
+ * removed from the executor and started ones are closed, so that a small limit over a large
+ * table does not run a scan for every chunk.
+ *
+ * Rows are returned in the order of the chunks, as with {@link ParallelIterators}.
+ */
+public class RampingParallelIterators extends BaseResultIterators {
+    private static final Logger logger = LoggerFactory.getLogger(RampingParallelIterators.class);
+    // Same name as ParallelIterators since the chunks are still scanned in parallel
+    private static final String NAME = "PARALLEL";
+    private final ParallelIteratorFactory iteratorFactory;
+    private final int limit;
+
+    public RampingParallelIterators(QueryPlan plan, Integer perScanLimit, ParallelIteratorFactory iteratorFactory,
+            ParallelScanGrouper scanGrouper, Scan scan, Map<ImmutableBytesPtr,ServerCache> caches, QueryPlan dataPlan)
+            throws SQLException {
+        super(plan, perScanLimit, null, scanGrouper, scan, caches, dataPlan);
+        Preconditions.checkArgument(perScanLimit != null);
+        this.iteratorFactory = iteratorFactory;
+        this.limit = perScanLimit;
+    }
+
+    public static boolean isEnabled(StatementContext context) {
+        return context.getConnection().getQueryServices().getProps().getBoolean(
+                QueryServices.LIMIT_RAMPED_DISPATCH_ENABLED_ATTRIB, QueryServicesOptions.DEFAULT_LIMIT_RAMPED_DISPATCH_ENABLED);
+    }
+
+    @Override
+    protected boolean isSerial() {
+        return false;
+    }
+
+    @Override
+    protected void submitWork(List<List<Scan>> nestedScans, List<List<Pair<Scan,Future<PeekingResultIterator>>>> nestedFutures,
+            Queue<PeekingResultIterator> allIterators, int estFlattenedSize, boolean isReverse, ParallelScanGrouper scanGrouper) {
+        List<Scan> flattenedScans = Lists.newArrayListWithExpectedSize(estFlattenedSize);
+        for (List<Scan> list : nestedScans) {
+            flattenedScans.addAll(list);
+        }
+        if (flattenedScans.isEmpty()) {
+            return;
+        }
+        if (isReverse) {
+            flattenedScans = Lists.reverse(flattenedScans);
+        }
+        // The iterator dispatches the scans itself as rows are consumed
+        PeekingResultIterator iterator = new RampingIterator(flattenedScans, isReverse);
+        allIterators.add(iterator);
+        Future<PeekingResultIterator> future = Futures.immediateFuture(iterator);
+        nestedFutures.add(Collections.singletonList(new Pair<Scan, Future<PeekingResultIterator>>(flattenedScans.get(0), future)));
+    }
+
+    @Override
+    protected String getName() {
+        return NAME;
+    }
+
+    /**
+     * The scan of a chunk submitted to the executor. Whichever of the job and its cancellation
+     * comes last closes the iterators of the scan, so that they are closed exactly once whether
+     * the job never ran, is still running or already completed when it is cancelled.
+     */
+    private static class ScanJob {
+        private final Scan scan;
+        private final TableResultIterator tableResultItr;
+        private Future<PeekingResultIterator> future;
+        private boolean started;
+        private boolean cancelled;
+        private PeekingResultIterator iterator;
+
+        private ScanJob(Scan scan, TableResultIterator tableResultItr) {
+            this.scan = scan;
+            this.tableResultItr = tableResultItr;
+        }
+
+        /**
+         * @return false if the job was cancelled before it started, in which case it must not run
+         */
+        private synchronized boolean start() {
+            started = !cancelled;
+            return started;
+        }
+
+        /**
+         * @return the iterator of the scan, or null if the job was cancelled in the meantime
+         */
+        private PeekingResultIterator complete(PeekingResultIterator iterator) throws SQLException {
+            synchronized (this) {
+                if (!cancelled) {
+                    this.iterator = iterator;
+                    return iterator;
+                }
+            }
+            iterator.close();
+            return null;
+        }
+
+        private void cancel() throws SQLException {
+            PeekingResultIterator toClose;
+            synchronized (this) {
+                cancelled = true;
+                toClose = started ? iterator : tableResultItr;
+                iterator = null;
+            }
+            if (toClose != null) {
+                toClose.close();
+            }
+        }
+    }
+
+    private class RampingIterator implements PeekingResultIterator {
+        private final List<Scan> scans;
+        private final boolean isReverse;
+        private final String physicalTableName;
+        private final long renewLeaseThreshold;
+        private final ThreadPoolExecutor executor;
+        private final long maxQueryEndTime;
+        private final LinkedList<ScanJob> pending = Lists.newLinkedList();
+        private int nextScanIndex;
+        private int batchSize = 1;
+        private long rowCount;
+        private PeekingResultIterator currentIterator;
+        private boolean clearedCache;
+        private boolean closed;
+
+        private RampingIterator(List<Scan> scans, boolean isReverse) {
+            this.scans = scans;
+            this.isReverse = isReverse;
+            this.physicalTableName = tableRef.getTable().getPhysicalName().getString();
+            this.renewLeaseThreshold = context.getConnection().getQueryServices().getRenewLeaseThresholdMilliSeconds();
+            this.executor = context.getConnection().getQueryServices().getExecutor();
+            this.maxQueryEndTime = EnvironmentEdgeManager.currentTimeMillis() + context.getStatement().getQueryTimeoutInMillis();
+        }
+
+        private ScanJob submit(final Scan scan) throws SQLException {
+            ReadMetricQueue readMetrics = context.getReadMetricsQueue();
+            ScanMetricsHolder scanMetricsHolder = ScanMetricsHolder.getInstance(readMetrics, physicalTableName,
+                    scan, context.getConnection().getLogLevel());
+            final TaskExecutionMetricsHolder taskMetrics = new TaskExecutionMetricsHolder(readMetrics, physicalTableName);
+            final TableResultIterator tableResultItr =
+                    context.getConnection().getTableResultIteratorFactory().newIterator(
+                        mutationState, tableRef, scan, scanMetricsHolder, renewLeaseThreshold, plan,
+                        scanGrouper, caches);
+            context.getConnection().addIteratorForLeaseRenewal(tableResultItr);
+            final ScanJob job = new ScanJob(scan, tableResultItr);
+            job.future = executor.submit(Tracing.wrap(new JobCallable<PeekingResultIterator>() {
+                @Override
+                public PeekingResultIterator call() throws Exception {
+                    if (!job.start()) {
+                        return null;
+                    }
+                    PeekingResultIterator iterator = tableResultItr;
+                    try {
+                        iterator = iteratorFactory.newIterator(context, tableResultItr, scan,
+                                physicalTableName, RampingParallelIterators.this.plan);
+                        iterator.peek();
+                    } catch (SQLException | RuntimeException e) {
+                        iterator.close();
+                        throw e;
+                    }
+                    return job.complete(iterator);
+                }
+
+                @Override
+                public Object getJobId() {
+                    return RampingParallelIterators.this;
+                }
+
+                @Override
+                public TaskExecutionMetricsHolder getTaskExecutionMetric() {
+                    return taskMetrics;
+                }
+            }, "Parallel scanner for table: " + physicalTableName));
+            return job;
+        }
+
+        private void submitBatch() throws SQLException {
+            int numScans = Math.min(batchSize, scans.size() - nextScanIndex);
+            context.getOverallQueryMetrics().updateNumParallelScans(numScans);
+            GLOBAL_NUM_PARALLEL_SCANS.update(numScans);
+            for (int i = 0; i < numScans; i++) {
+                pending.add(submit(scans.get(nextScanIndex++)));
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug("Id: " + scanId + ", submitted " + numScans + " of the remaining "
+                        + (scans.size() - nextScanIndex + numScans) + " scans");
+            }
+            batchSize = Math.min(batchSize * 2, Math.max(1, executor.getMaximumPoolSize()));
+        }
+
+        /*
+         * Replace the scan of a chunk whose region boundaries changed by the scans of the
+         * regions now covering it, run ahead of the scans already submitted to keep the order.
+         */
+        private void resubmit(Scan oldScan) throws SQLException {
+            if (!clearedCache) { // Clear cache once so that we rejigger job based on new boundaries
+                context.getConnection().getQueryServices().clearTableRegionCache(
+                        tableRef.getTable().getPhysicalName().getBytes());
+                context.getOverallQueryMetrics().cacheRefreshedDueToSplits();
+                clearedCache = true;
+            }
+            List<Scan> newScans = Lists.newArrayList();
+            for (List<Scan> list : getParallelScans(oldScan.getAttribute(SCAN_ACTUAL_START_ROW), oldScan.getStopRow())) {
+                newScans.addAll(list);
+            }
+            if (isReverse) {
+                newScans = Lists.reverse(newScans);
+            }
+            context.getOverallQueryMetrics().updateNumParallelScans(newScans.size());
+            GLOBAL_NUM_PARALLEL_SCANS.update(newScans.size());
+            List<ScanJob> jobs = Lists.newArrayListWithExpectedSize(newScans.size());
+            for (Scan scan : newScans) {
+                jobs.add(submit(scan));
+            }
+            pending.addAll(0, jobs);
+        }
+
+        /*
+         * Wait for the scan at the front, for at most the time left to the query
+         * @return the iterator of the scan, or null if the scan was resubmitted
+         */
+        private PeekingResultIterator await(ScanJob job) throws SQLException {
+            int queryTimeOut = context.getStatement().getQueryTimeoutInMillis();
+            try {
+                long timeOutForScan = maxQueryEndTime - EnvironmentEdgeManager.currentTimeMillis();
+                if (timeOutForScan < 0) {
+                    throw new TimeoutException();
+                }
+                return job.future.get(timeOutForScan, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                context.getOverallQueryMetrics().queryTimedOut();
+                GLOBAL_QUERY_TIMEOUT_COUNTER.increment();
+                throw new SQLExceptionInfo.Builder(SQLExceptionCode.OPERATION_TIMED_OUT)
+                        .setMessage(". Query couldn't be completed in the alloted time: " + queryTimeOut + " ms")
+                        .setRootCause(e).build().buildException();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw ServerUtil.parseServerException(e);
+            } catch (ExecutionException e) {
+                try { // Rethrow as SQLException
+                    throw ServerUtil.parseServerException(e);
+                } catch (StaleRegionBoundaryCacheException e2) {
+                    resubmit(job.scan);
+                    return null;
+                }
+            }
+        }
+
+        private PeekingResultIterator currentIterator() throws SQLException {
+            while (!closed) {
+                if (currentIterator != null) {
+                    if (currentIterator.peek() != null) {
+                        return currentIterator;
+                    }
+                    currentIterator.close();
+                    currentIterator = null;
+                }
+                if (pending.isEmpty()) {
+                    if (nextScanIndex >= scans.size() || rowCount >= limit) {
+                        break;
+                    }
+                    submitBatch();
+                }
+                // Left pending while awaited, so that it is cancelled on close if the wait fails
+                ScanJob job = pending.getFirst();
+                PeekingResultIterator iterator = await(job);
+                pending.remove(job);
+                currentIterator = iterator;
+            }
+            return EMPTY_ITERATOR;
+        }
+
+        /*
+         * Drop the scans that did not start yet and close the ones that did, without waiting
+         * for them. Started scans are not interrupted, as interrupting them may leave the
+         * HConnection in a bad state; they close their iterator themselves once done.
+         */
+        private void cancelPending() {
+            while (!pending.isEmpty()) {
+                ScanJob job = pending.removeFirst();
+                if (job.future instanceof Runnable) {
+                    executor.remove((Runnable) job.future);
+                }
+                job.future.cancel(false);
+                try {
+                    job.cancel();
+                } catch (SQLException e) {
+                    logger.info("Failed to close scan after limit was reached", e);
+                }
+            }
+        }
+
+        @Override
+        public Tuple peek() throws SQLException {
+            return currentIterator().peek();
+        }
+
+        @Override
+        public Tuple next() throws SQLException {
+            Tuple tuple = currentIterator().next();
+            if (tuple != null && ++rowCount >= limit) {
+                // Enough rows for the limit, so the rows of the other chunks are not needed
+                cancelPending();
+            }
+            return tuple;
+        }
+
+        @Override
+        public void explain(List<String> planSteps) {
+        }
+
+        @Override
+        public void close() throws SQLException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            cancelPending();
+            if (currentIterator != null) {
+                currentIterator.close();
+                currentIterator = null;
+            }
+        }
+    }
+}
@@ -17,6 +17,7 @@
  */
 package org.apache.phoenix.iterate;
 
+import static org.apache.phoenix.monitoring.GlobalClientHistograms.SCAN_TIME_HISTOGRAM;
 import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_HBASE_COUNT_BYTES_IN_REMOTE_RESULTS;
 import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_HBASE_COUNT_BYTES_REGION_SERVER_RESULTS;
 import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_HBASE_COUNT_MILLS_BETWEEN_NEXTS;
@@ -34,12 +35,18 @@ import java.io.IOException;
 import java.sql.SQLException;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.client.ResultScanner;
 import org.apache.hadoop.hbase.client.Scan;
+import org.apache.phoenix.compile.StatementContext;
+import org.apache.phoenix.coprocessor.BaseScannerRegionObserver;
 import org.apache.phoenix.monitoring.CombinableMetric;
+import org.apache.phoenix.monitoring.OverAllQueryMetrics;
+import org.apache.phoenix.monitoring.RunningQuery;
 import org.apache.phoenix.monitoring.ScanMetricsHolder;
+import org.apache.phoenix.monitoring.ServerScanMetrics;
 import org.apache.phoenix.schema.tuple.ResultTuple;
 import org.apache.phoenix.schema.tuple.Tuple;
 import org.apache.phoenix.util.ServerUtil;
@@ -50,6 +57,25 @@ public class ScanningResultIterator implements ResultIterator {
     private final ScanMetricsHolder scanMetricsHolder;
     boolean scanMetricsUpdated;
     boolean scanMetricsEnabled;
+    private final boolean isColumnarBatchScan;
+    private ColumnarResultBatch.Decoder batch;
+    private final String tableName;
+    private final boolean isServerScanMetricsScan;
+    private final OverAllQueryMetrics overAllQueryMetrics;
+    // Bytes of the results holding server scan metrics, which HBase counts in the bytes in
+    // results but which are not rows. The bytes in remote results still include them, as HBase
+    // doesn't tell which of the region servers were remote.
+    private long serverScanMetricsBytes;
+    // Number of results received from the scanner between two measurements of their size
+    private static final int BYTES_READ_SAMPLING_INTERVAL = 16;
+
+    private final RunningQuery runningQuery;
+    private boolean closed;
+    private long rowCount;
+    private long resultCount;
+    // Time spent waiting for the scanner, in nanoseconds
+    private long scanTime;
+    private boolean scanTimeRecorded;
 
     // These metric names are how HBase refers them
     // Since HBase stores these strings as static final, we are using the same here
@@ -67,16 +93,48 @@ public class ScanningResultIterator implements ResultIterator {
     static final String GLOBAL_BYTES_IN_RESULTS_METRIC_NAME = "BYTES_IN_RESULTS";
 
     public ScanningResultIterator(ResultScanner scanner, Scan scan, ScanMetricsHolder scanMetricsHolder) {
+        this(scanner, scan, scanMetricsHolder, null);
+    }
+
+    /**
+     * @param tableName physical name of the scanned table, under which the scan time is recorded
+     */
+    public ScanningResultIterator(ResultScanner scanner, Scan scan, ScanMetricsHolder scanMetricsHolder, String tableName) {
+        this(scanner, scan, scanMetricsHolder, tableName, null);
+    }
+
+    /**
+     * @param tableName physical name of the scanned table, under which the scan time is recorded
+     * @param context context of the query, to whose metrics and progress the scan contributes, or null
+     */
+    public ScanningResultIterator(ResultScanner scanner, Scan scan, ScanMetricsHolder scanMetricsHolder, String tableName,
+            StatementContext context) {
         this.scanner = scanner;
+        this.tableName = tableName;
+        this.overAllQueryMetrics = context == null ? null : context.getOverallQueryMetrics();
+        this.runningQuery = context == null ? null : context.getRunningQuery();
         this.scan = scan;
         this.scanMetricsHolder = scanMetricsHolder;
         scanMetricsUpdated = false;
         scanMetricsEnabled = scan.isScanMetricsEnabled();
+        isColumnarBatchScan = scan.getAttribute(BaseScannerRegionObserver.COLUMNAR_RESULT_BATCH_SIZE) != null;
+        isServerScanMetricsScan = scan.getAttribute(BaseScannerRegionObserver.SERVER_SCAN_METRICS) != null;
     }
 
     @Override
     public void close() throws SQLException {
         getScanMetrics();
+        if (!scanTimeRecorded) {
+            scanTimeRecorded = true;
+            SCAN_TIME_HISTOGRAM.update(tableName, TimeUnit.NANOSECONDS.toMillis(scanTime));
+        }
+        if (!closed) {
+            closed = true;
+            if (runningQuery != null) {
+                runningQuery.addRowsRead(rowCount);
+                runningQuery.scanCompleted();
+            }
+        }
         scanner.close();
     }
 
@@ -102,8 +160,11 @@ public class ScanningResultIterator implements ResultIterator {
                     scanMetricsMap.get(MILLIS_BETWEEN_NEXTS_METRIC_NAME));
             changeMetric(scanMetricsHolder.getCountOfNSRE(),
                     scanMetricsMap.get(NOT_SERVING_REGION_EXCEPTION_METRIC_NAME));
-            changeMetric(scanMetricsHolder.getCountOfBytesInResults(),
-                    scanMetricsMap.get(BYTES_IN_RESULTS_METRIC_NAME));
+            Long bytesInResults = scanMetricsMap.get(BYTES_IN_RESULTS_METRIC_NAME);
+            if (bytesInResults != null) {
+                bytesInResults = Math.max(0, bytesInResults - serverScanMetricsBytes);
+            }
+            changeMetric(scanMetricsHolder.getCountOfBytesInResults(), bytesInResults);
             changeMetric(scanMetricsHolder.getCountOfBytesInRemoteResults(),
                     scanMetricsMap.get(BYTES_IN_REMOTE_RESULTS_METRIC_NAME));
             changeMetric(scanMetricsHolder.getCountOfRegions(),
@@ -112,18 +173,18 @@ public class ScanningResultIterator implements ResultIterator {
                     scanMetricsMap.get(RPC_RETRIES_METRIC_NAME));
             changeMetric(scanMetricsHolder.getCountOfRemoteRPCRetries(),
                     scanMetricsMap.get(REMOTE_RPC_RETRIES_METRIC_NAME));
-            changeMetric(scanMetricsHolder.getCountOfRowsFiltered(),
+            changeMetric(scanMetricsHolder.getCountOfRowsScanned(),
                     scanMetricsMap.get(COUNT_OF_ROWS_SCANNED_KEY_METRIC_NAME));
             changeMetric(scanMetricsHolder.getCountOfRowsFiltered(),
                     scanMetricsMap.get(COUNT_OF_ROWS_FILTERED_KEY_METRIC_NAME));
 
-            GLOBAL_SCAN_BYTES.update(scanMetricsMap.get(GLOBAL_BYTES_IN_RESULTS_METRIC_NAME));
+            GLOBAL_SCAN_BYTES.update(bytesInResults);
 
             GLOBAL_HBASE_COUNT_RPC_CALLS.update(scanMetricsMap.get(RPC_CALLS_METRIC_NAME));
             GLOBAL_HBASE_COUNT_REMOTE_RPC_CALLS.update(scanMetricsMap.get(REMOTE_RPC_CALLS_METRIC_NAME));
             GLOBAL_HBASE_COUNT_MILLS_BETWEEN_NEXTS.update(scanMetricsMap.get(MILLIS_BETWEEN_NEXTS_METRIC_NAME));
             GLOBAL_HBASE_COUNT_NOT_SERVING_REGION_EXCEPTION.update(scanMetricsMap.get(NOT_SERVING_REGION_EXCEPTION_METRIC_NAME));
-            GLOBAL_HBASE_COUNT_BYTES_REGION_SERVER_RESULTS.update(scanMetricsMap.get(BYTES_IN_RESULTS_METRIC_NAME));
+            GLOBAL_HBASE_COUNT_BYTES_REGION_SERVER_RESULTS.update(bytesInResults);
             GLOBAL_HBASE_COUNT_BYTES_IN_REMOTE_RESULTS.update(scanMetricsMap.get(BYTES_IN_REMOTE_RESULTS_METRIC_NAME));
             GLOBAL_HBASE_COUNT_SCANNED_REGIONS.update(scanMetricsMap.get(REGIONS_SCANNED_METRIC_NAME));
             GLOBAL_HBASE_COUNT_RPC_RETRIES.update(scanMetricsMap.get(RPC_RETRIES_METRIC_NAME));
@@ -139,11 +200,34 @@ public class ScanningResultIterator implements ResultIterator {
     @Override
     public Tuple next() throws SQLException {
         try {
-            Result result = scanner.next();
+            Result result = nextBatchedResult();
+            if (result != null) {
+                rowCount++;
+                return new ResultTuple(result);
+            }
+            long startTime = System.nanoTime();
+            result = scanner.next();
+            // The metrics of the scan are returned after the last row of each region
+            while (isServerScanMetricsScan && result != null && ServerScanMetrics.isMetrics(result)) {
+                updateServerScanMetrics(ServerScanMetrics.fromResult(result));
+                serverScanMetricsBytes += ServerScanMetrics.getResultBytes(result);
+                result = scanner.next();
+            }
+            scanTime += System.nanoTime() - startTime;
             if (result == null) {
                 close(); // Free up resources early
                 return null;
             }
+            // Only a sample of the results is measured, which is enough for an estimate
+            if (runningQuery != null && resultCount++ % BYTES_READ_SAMPLING_INTERVAL == 0) {
+                runningQuery.addBytesRead(BYTES_READ_SAMPLING_INTERVAL * Result.getTotalSizeOfCells(result));
+            }
+            if (isColumnarBatchScan && ColumnarResultBatch.isBatch(result)) {
+                batch = ColumnarResultBatch.decode(result);
+                // Batches are never empty
+                result = nextBatchedResult();
+            }
+            rowCount++;
             // TODO: use ResultTuple.setResult(result)?
             // Need to create a new one if holding on to it (i.e. OrderedResultIterator)
             return new ResultTuple(result);
@@ -152,6 +236,24 @@ public class ScanningResultIterator implements ResultIterator {
         }
     }
 
+    private void updateServerScanMetrics(ServerScanMetrics metrics) {
+        scanMetricsHolder.updateServerScanMetrics(metrics);
+        if (overAllQueryMetrics != null) {
+            overAllQueryMetrics.addServerScanMetrics(metrics);
+        }
+    }
+
+    private Result nextBatchedResult() {
+        if (batch == null) {
+            return null;
+        }
+        Result result = batch.next();
+        if (result == null) {
+            batch = null;
+        }
+        return result;
+    }
+
     @Override
     public void explain(List<String> planSteps) {
     }
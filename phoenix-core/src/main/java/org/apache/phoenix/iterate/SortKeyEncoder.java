@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.iterate;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.OrderByExpression;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.tuple.Tuple;
+
+/**
+ * 
+ * Encodes the values of the ORDER BY expressions of a row into a single normalized key,
+ * so that rows are ordered by comparing their keys with {@link Bytes#compareTo(byte[], byte[])}
+ * instead of evaluating and comparing each expression on every comparison.
+ * <p>
+ * Each expression is encoded as a byte telling whether it is null, so that nulls sort first
+ * or last, followed by its value when not null. The value is escaped and terminated so that
+ * its encoding is not a prefix of the encoding of another value: a shorter value sorts first,
+ * except for variable length values in descending sort order, which sort last as in
+ * {@link org.apache.phoenix.execute.DescVarLengthFastByteComparisons}. The encoded value is
+ * inverted when the expression is in descending order.
+ *
+ */
+public class SortKeyEncoder {
+    private static final byte LOW = 0x00;
+    private static final byte HIGH = 0x01;
+
+    private final Expression[] expressions;
+    private final boolean[] isAscending;
+    private final boolean[] isNullsLast;
+    private final boolean[] isShorterLast;
+    private final ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+    private byte[] buffer = new byte[64];
+
+    public SortKeyEncoder(List<OrderByExpression> orderByExpressions) {
+        int size = orderByExpressions.size();
+        this.expressions = new Expression[size];
+        this.isAscending = new boolean[size];
+        this.isNullsLast = new boolean[size];
+        this.isShorterLast = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            OrderByExpression orderByExpression = orderByExpressions.get(i);
+            Expression expression = orderByExpression.getExpression();
+            expressions[i] = expression;
+            isAscending[i] = orderByExpression.isAscending();
+            isNullsLast[i] = orderByExpression.isNullsLast();
+            isShorterLast[i] = expression.getSortOrder() == SortOrder.DESC
+                    && !expression.getDataType().isFixedWidth();
+        }
+    }
+
+    /**
+     * Compute the normalized key of a row. Not thread safe.
+     * @param tuple the row
+     * @return the key of the row
+     */
+    public byte[] encode(Tuple tuple) {
+        int length = 0;
+        for (int i = 0; i < expressions.length; i++) {
+            boolean evaluated = expressions[i].evaluate(tuple, ptr);
+            if (!evaluated || ptr.getLength() == 0) {
+                ensureCapacity(length + 1);
+                buffer[length++] = isNullsLast[i] ? HIGH : LOW;
+                continue;
+            }
+            // Worst case: every byte escaped, plus the null byte and the terminator
+            ensureCapacity(length + 2 * ptr.getLength() + 3);
+            buffer[length++] = isNullsLast[i] ? LOW : HIGH;
+            int start = length;
+            length = isShorterLast[i] ? encodeShorterLast(length) : encodeShorterFirst(length);
+            if (!isAscending[i]) {
+                for (int j = start; j < length; j++) {
+                    buffer[j] = (byte)~buffer[j];
+                }
+            }
+        }
+        return Arrays.copyOf(buffer, length);
+    }
+
+    /**
+     * Escape 0x00 as 0x00 0xFF and terminate with 0x00 0x01, which sorts before any byte of a
+     * longer value.
+     */
+    private int encodeShorterFirst(int length) {
+        byte[] bytes = ptr.get();
+        int end = ptr.getOffset() + ptr.getLength();
+        for (int i = ptr.getOffset(); i < end; i++) {
+            byte b = bytes[i];
+            buffer[length++] = b;
+            if (b == 0) {
+                buffer[length++] = (byte)0xFF;
+            }
+        }
+        buffer[length++] = 0x00;
+        buffer[length++] = 0x01;
+        return length;
+    }
+
+    /**
+     * Escape 0xFF as 0xFF 0x00 and terminate with 0xFF 0xFF, which sorts after any byte of a
+     * longer value.
+     */
+    private int encodeShorterLast(int length) {
+        byte[] bytes = ptr.get();
+        int end = ptr.getOffset() + ptr.getLength();
+        for (int i = ptr.getOffset(); i < end; i++) {
+            byte b = bytes[i];
+            buffer[length++] = b;
+            if (b == (byte)0xFF) {
+                buffer[length++] = 0x00;
+            }
+        }
+        buffer[length++] = (byte)0xFF;
+        buffer[length++] = (byte)0xFF;
+        return length;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (buffer.length < capacity) {
+            buffer = Arrays.copyOf(buffer, Math.max(capacity, 2 * buffer.length));
+        }
+    }
+}
@@ -17,6 +17,7 @@
  */
 package org.apache.phoenix.iterate;
 
+import static org.apache.phoenix.monitoring.GlobalClientHistograms.MEMORY_WAIT_TIME_HISTOGRAM;
 import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_MEMORY_CHUNK_BYTES;
 import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_MEMORY_WAIT_TIME;
 import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_SPOOL_FILE_COUNTER;
@@ -31,6 +32,7 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.io.output.DeferredFileOutputStream;
 import org.apache.hadoop.hbase.client.Scan;
@@ -40,8 +42,10 @@ import org.apache.phoenix.compile.QueryPlan;
 import org.apache.phoenix.compile.StatementContext;
 import org.apache.phoenix.memory.MemoryManager;
 import org.apache.phoenix.memory.MemoryManager.MemoryChunk;
+import org.apache.phoenix.memory.MemoryManager.Spillable;
 import org.apache.phoenix.monitoring.MemoryMetricsHolder;
 import org.apache.phoenix.monitoring.ReadMetricQueue;
+import org.apache.phoenix.monitoring.RunningQuery;
 import org.apache.phoenix.monitoring.SpoolingMetricsHolder;
 import org.apache.phoenix.query.QueryServices;
 import org.apache.phoenix.query.QueryServicesOptions;
@@ -89,15 +93,21 @@ public class SpoolingResultIterator implements PeekingResultIterator {
             ReadMetricQueue readRequestMetric = context.getReadMetricsQueue();
             SpoolingMetricsHolder spoolMetrics = new SpoolingMetricsHolder(readRequestMetric, physicalTableName);
             MemoryMetricsHolder memoryMetrics = new MemoryMetricsHolder(readRequestMetric, physicalTableName);
-            return new SpoolingResultIterator(spoolMetrics, memoryMetrics, scanner, services);
+            return new SpoolingResultIterator(spoolMetrics, memoryMetrics, scanner, services, context.getMemoryManager(),
+                    context.getRunningQuery());
         }
     }
 
-    private SpoolingResultIterator(SpoolingMetricsHolder spoolMetrics, MemoryMetricsHolder memoryMetrics, ResultIterator scanner, QueryServices services) throws SQLException {
-        this (spoolMetrics, memoryMetrics, scanner, services.getMemoryManager(),
+    private SpoolingResultIterator(SpoolingMetricsHolder spoolMetrics, MemoryMetricsHolder memoryMetrics, ResultIterator scanner, QueryServices services, MemoryManager memoryManager, RunningQuery runningQuery) throws SQLException {
+        this (spoolMetrics, memoryMetrics, scanner, memoryManager,
                 services.getProps().getInt(QueryServices.SPOOL_THRESHOLD_BYTES_ATTRIB, QueryServicesOptions.DEFAULT_SPOOL_THRESHOLD_BYTES),
                 services.getProps().getLong(QueryServices.MAX_SPOOL_TO_DISK_BYTES_ATTRIB, QueryServicesOptions.DEFAULT_MAX_SPOOL_TO_DISK_BYTES),
-                services.getProps().get(QueryServices.SPOOL_DIRECTORY, QueryServicesOptions.DEFAULT_SPOOL_DIRECTORY));
+                services.getProps().get(QueryServices.SPOOL_DIRECTORY, QueryServicesOptions.DEFAULT_SPOOL_DIRECTORY),
+                runningQuery);
+    }
+
+    SpoolingResultIterator(SpoolingMetricsHolder sMetrics, MemoryMetricsHolder mMetrics, ResultIterator scanner, MemoryManager mm, final int thresholdBytes, final long maxSpoolToDisk, final String spoolDirectory) throws SQLException {
+        this(sMetrics, mMetrics, scanner, mm, thresholdBytes, maxSpoolToDisk, spoolDirectory, null);
     }
 
     /**
@@ -107,9 +117,10 @@ public class SpoolingResultIterator implements PeekingResultIterator {
     * @param mm memory manager tracking memory usage across threads.
     * @param thresholdBytes the requested threshold.  Will be dialed down if memory usage (as determined by
     *  the memory manager) is exceeded.
+    * @param runningQuery the query to which the size of the spool file is reported, or null
     * @throws SQLException
     */
-    SpoolingResultIterator(SpoolingMetricsHolder sMetrics, MemoryMetricsHolder mMetrics, ResultIterator scanner, MemoryManager mm, final int thresholdBytes, final long maxSpoolToDisk, final String spoolDirectory) throws SQLException {
+    SpoolingResultIterator(SpoolingMetricsHolder sMetrics, MemoryMetricsHolder mMetrics, ResultIterator scanner, MemoryManager mm, final int thresholdBytes, final long maxSpoolToDisk, final String spoolDirectory, RunningQuery runningQuery) throws SQLException {
         this.spoolMetrics = sMetrics;
         this.memoryMetrics = mMetrics;
         boolean success = false;
@@ -117,26 +128,36 @@ public class SpoolingResultIterator implements PeekingResultIterator {
         final MemoryChunk chunk = mm.allocate(0, thresholdBytes);
         long waitTime = System.currentTimeMillis() - startTime;
         GLOBAL_MEMORY_WAIT_TIME.update(waitTime);
+        MEMORY_WAIT_TIME_HISTOGRAM.update(memoryMetrics.getTableName(), waitTime);
         memoryMetrics.getMemoryWaitTimeMetric().change(waitTime);
-        DeferredFileOutputStream spoolTo = null;
+        final AtomicBoolean spillRequested = new AtomicBoolean();
+        // Spill to disk before the threshold is reached when memory is needed by others
+        Spillable spillable = new Spillable() {
+            @Override
+            public long getSpillableBytes() {
+                // Report nothing while a requested spill is pending, as the contract requires
+                return spillRequested.get() ? 0 : chunk.getSize();
+            }
+
+            @Override
+            public void requestSpill() {
+                spillRequested.set(true);
+            }
+        };
+        mm.registerSpillable(spillable);
+        SpoolOutputStream spoolTo = null;
         try {
             // Can't be bigger than int, since it's the max of the above allocation
             int size = (int)chunk.getSize();
-            spoolTo = new DeferredFileOutputStream(size, "ResultSpooler",".bin", new File(spoolDirectory)) {
-                @Override
-                protected void thresholdReached() throws IOException {
-                    try {
-                        super.thresholdReached();
-                    } finally {
-                        chunk.close();
-                    }
-                }
-            };
+            spoolTo = new SpoolOutputStream(size, new File(spoolDirectory), chunk);
             DataOutputStream out = new DataOutputStream(spoolTo);
             final long maxBytesAllowed = maxSpoolToDisk == -1 ?
             		Long.MAX_VALUE : thresholdBytes + maxSpoolToDisk;
             long bytesWritten = 0L;
             for (Tuple result = scanner.next(); result != null; result = scanner.next()) {
+                if (spillRequested.get()) {
+                    spoolTo.spill();
+                }
                 int length = TupleUtil.write(result, out);
                 bytesWritten += length;
                 if(bytesWritten > maxBytesAllowed){
@@ -155,6 +176,9 @@ public class SpoolingResultIterator implements PeekingResultIterator {
                 GLOBAL_SPOOL_FILE_COUNTER.increment();
                 spoolMetrics.getNumSpoolFileMetric().increment();
                 spoolMetrics.getSpoolFileSizeMetric().change(sizeOfSpoolFile);
+                if (runningQuery != null) {
+                    runningQuery.addSpoolBytes(sizeOfSpoolFile);
+                }
                 spoolFrom = new OnDiskResultIterator(spoolTo.getFile());
                 if (spoolTo.getFile() != null) {
                     spoolTo.getFile().deleteOnExit();
@@ -164,6 +188,7 @@ public class SpoolingResultIterator implements PeekingResultIterator {
         } catch (IOException e) {
             throw ServerUtil.parseServerException(e);
         } finally {
+            mm.unregisterSpillable(spillable);
             try {
                 scanner.close();
             } finally {
@@ -200,6 +225,39 @@ public class SpoolingResultIterator implements PeekingResultIterator {
         spoolFrom.close();
     }
 
+    /**
+     * 
+     * Output stream holding the spooled results in memory until the threshold is reached,
+     * or until asked to spill, and releasing their memory once written to disk.
+     *
+     */
+    private static class SpoolOutputStream extends DeferredFileOutputStream {
+        private final MemoryChunk chunk;
+
+        SpoolOutputStream(int thresholdBytes, File spoolDirectory, MemoryChunk chunk) {
+            super(thresholdBytes, "ResultSpooler", ".bin", spoolDirectory);
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected void thresholdReached() throws IOException {
+            try {
+                super.thresholdReached();
+            } finally {
+                chunk.close();
+            }
+        }
+
+        /**
+         * Write the results held in memory to disk, regardless of the threshold
+         */
+        void spill() throws IOException {
+            if (!isThresholdExceeded()) {
+                checkThreshold(Integer.MAX_VALUE);
+            }
+        }
+    }
+
     /**
      *
      * Backing result iterator if it was not necessary to spool results to disk.
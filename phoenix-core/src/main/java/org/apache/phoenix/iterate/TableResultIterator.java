@@ -48,6 +48,7 @@ import org.apache.phoenix.execute.BaseQueryPlan;
 import org.apache.phoenix.execute.MutationState;
 import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
 import org.apache.phoenix.join.HashCacheClient;
+import org.apache.phoenix.monitoring.RunningQuery;
 import org.apache.phoenix.monitoring.ScanMetricsHolder;
 import org.apache.phoenix.query.QueryConstants;
 import org.apache.phoenix.schema.PTable;
@@ -97,6 +98,8 @@ public class TableResultIterator implements ResultIterator {
     private int retry;
     private Map<ImmutableBytesPtr,ServerCache> caches;
     private HashCacheClient hashCacheClient;
+    private final RunningQuery runningQuery;
+    private final RunningQuery.Cancellable cancellable;
 
     @VisibleForTesting // Exposed for testing. DON'T USE ANYWHERE ELSE!
     TableResultIterator() {
@@ -108,6 +111,8 @@ public class TableResultIterator implements ResultIterator {
         this.scanGrouper = null;
         this.caches = null;
         this.retry = 0;
+        this.runningQuery = null;
+        this.cancellable = null;
     }
 
     public static enum RenewLeaseStatus {
@@ -133,6 +138,28 @@ public class TableResultIterator implements ResultIterator {
         this.caches = caches;
         this.retry=plan.getContext().getConnection().getQueryServices().getProps()
                 .getInt(QueryConstants.HASH_JOIN_CACHE_RETRIES, QueryConstants.DEFAULT_HASH_JOIN_CACHE_RETRIES);
+        this.runningQuery = plan.getContext().getRunningQuery();
+        if (runningQuery != null) {
+            cancellable = new RunningQuery.Cancellable() {
+                @Override
+                public void cancel() {
+                    // Only close the scanner if it is idle, as a thread fetching rows through
+                    // it fails on its next call once the query is cancelled
+                    if (renewLeaseLock.tryLock()) {
+                        try {
+                            close();
+                        } catch (SQLException e) {
+                            logger.warn("Failed to close scanner of cancelled query " + runningQuery.getId(), e);
+                        } finally {
+                            renewLeaseLock.unlock();
+                        }
+                    }
+                }
+            };
+            runningQuery.addCancellable(cancellable);
+        } else {
+            cancellable = null;
+        }
     }
 
     @Override
@@ -152,12 +179,18 @@ public class TableResultIterator implements ResultIterator {
             }
         } finally {
             renewLeaseLock.unlock();
+            if (cancellable != null) {
+                runningQuery.removeCancellable(cancellable);
+            }
         }
 
     }
 
     @Override
     public Tuple next() throws SQLException {
+        if (runningQuery != null) {
+            runningQuery.checkCancelled();
+        }
         try {
             renewLeaseLock.lock();
             initScanner();
@@ -229,7 +262,9 @@ public class TableResultIterator implements ResultIterator {
             if (delegate == UNINITIALIZED_SCANNER) {
                 try {
                     this.scanIterator =
-                            new ScanningResultIterator(htable.getScanner(scan), scan, scanMetricsHolder);
+                            new ScanningResultIterator(htable.getScanner(scan), scan, scanMetricsHolder, plan == null
+                                    ? null : plan.getTableRef().getTable().getPhysicalName().getString(),
+                                    plan == null ? null : plan.getContext());
                 } catch (IOException e) {
                     Closeables.closeQuietly(htable);
                     throw ServerUtil.parseServerException(e);
@@ -53,9 +53,14 @@ import org.apache.phoenix.iterate.ResultIterator;
 import org.apache.phoenix.log.QueryLogInfo;
 import org.apache.phoenix.log.QueryLogger;
 import org.apache.phoenix.log.QueryStatus;
+import org.apache.phoenix.monitoring.GlobalClientHistograms;
 import org.apache.phoenix.monitoring.MetricType;
 import org.apache.phoenix.monitoring.OverAllQueryMetrics;
 import org.apache.phoenix.monitoring.ReadMetricQueue;
+import org.apache.phoenix.monitoring.RunningQuery;
+import org.apache.phoenix.monitoring.StatementStats;
+import org.apache.phoenix.schema.PName;
+import org.apache.phoenix.schema.TableRef;
 import org.apache.phoenix.schema.tuple.ResultTuple;
 import org.apache.phoenix.schema.tuple.Tuple;
 import org.apache.phoenix.schema.types.PBoolean;
@@ -126,12 +131,14 @@ public class PhoenixResultSet implements ResultSet, SQLCloseable {
     private boolean isClosed = false;
     private boolean wasNull = false;
     private boolean firstRecordRead = false;
+    private boolean firstRecordTimeRecorded = false;
 
     private QueryLogger queryLogger;
 
     private Long count = 0L;
 
     private Object exception;
+    private boolean failed;
 
 
     
@@ -177,6 +184,11 @@ public class PhoenixResultSet implements ResultSet, SQLCloseable {
         } finally {
             isClosed = true;
             statement.getResultSets().remove(this);
+            if (context.getRunningQuery() != null) {
+                context.getRunningQuery().close();
+            }
+            recordStatementStats();
+            updateHistogram(GlobalClientHistograms.QUERY_TIME_HISTOGRAM);
             overAllQueryMetrics.endQuery();
             overAllQueryMetrics.stopResultSetWatch();
             if (!queryLogger.isSynced()) {
@@ -195,6 +207,30 @@ public class PhoenixResultSet implements ResultSet, SQLCloseable {
         }
     }
 
+    private void recordStatementStats() {
+        StatementStats statementStats = context.getStatementStats();
+        long queryStartTime = overAllQueryMetrics.getQueryStartTime();
+        if (statementStats == null || queryStartTime == 0) {
+            return;
+        }
+        RunningQuery runningQuery = context.getRunningQuery();
+        statementStats.record(System.currentTimeMillis() - queryStartTime,
+                runningQuery == null ? 0 : runningQuery.getRowsRead(),
+                runningQuery == null ? 0 : runningQuery.getBytesRead(),
+                failed || exception != null);
+    }
+
+    private void updateHistogram(GlobalClientHistograms histogram) {
+        long queryStartTime = overAllQueryMetrics.getQueryStartTime();
+        if (queryStartTime == 0) {
+            return;
+        }
+        TableRef tableRef = context.getCurrentTable();
+        PName physicalName = tableRef == null ? null : tableRef.getTable().getPhysicalName();
+        histogram.update(physicalName == null ? null : physicalName.getString(),
+                System.currentTimeMillis() - queryStartTime);
+    }
+
     @Override
     public void deleteRow() throws SQLException {
         throw new SQLFeatureNotSupportedException();
@@ -798,17 +834,27 @@ public class PhoenixResultSet implements ResultSet, SQLCloseable {
     public boolean next() throws SQLException {
         checkOpen();
         try {
+            if (context.getRunningQuery() != null) {
+                context.getRunningQuery().checkCancelled();
+            }
             if (!firstRecordRead) {
                 firstRecordRead = true;
                 overAllQueryMetrics.startResultSetWatch();
             }
             currentRow = scanner.next();
+            if (!firstRecordTimeRecorded) {
+                firstRecordTimeRecorded = true;
+                updateHistogram(GlobalClientHistograms.TIME_TO_FIRST_ROW_HISTOGRAM);
+            }
             if (currentRow == null) {
                 close();
             }else{
                 count++;
             }
             rowProjector.reset();
+        } catch (SQLException e) {
+            failed = true;
+            throw e;
         } catch (RuntimeException e) {
             // FIXME: Expression.evaluate does not throw SQLException
             // so this will unwrap throws from that.
@@ -91,11 +91,19 @@ import org.apache.phoenix.expression.KeyValueColumnExpression;
 import org.apache.phoenix.expression.RowKeyColumnExpression;
 import org.apache.phoenix.iterate.MaterializedResultIterator;
 import org.apache.phoenix.iterate.ParallelScanGrouper;
+import org.apache.phoenix.iterate.PrefetchingResultIterator;
 import org.apache.phoenix.iterate.ResultIterator;
+import org.apache.phoenix.log.LogLevel;
 import org.apache.phoenix.log.QueryLogInfo;
 import org.apache.phoenix.log.QueryStatus;
 import org.apache.phoenix.log.QueryLogger;
 import org.apache.phoenix.log.QueryLoggerUtil;
+import org.apache.phoenix.memory.ChildMemoryManager;
+import org.apache.phoenix.memory.MemoryManager;
+import org.apache.phoenix.monitoring.QueryRegistry;
+import org.apache.phoenix.monitoring.RunningQuery;
+import org.apache.phoenix.monitoring.StatementStats;
+import org.apache.phoenix.monitoring.StatementStatsRegistry;
 import org.apache.phoenix.optimize.Cost;
 import org.apache.phoenix.parse.AddColumnStatement;
 import org.apache.phoenix.parse.AddJarsStatement;
@@ -142,6 +150,7 @@ import org.apache.phoenix.parse.ParseNodeFactory;
 import org.apache.phoenix.parse.PrimaryKeyConstraint;
 import org.apache.phoenix.parse.SQLParser;
 import org.apache.phoenix.parse.SelectStatement;
+import org.apache.phoenix.parse.StatementFingerprinter;
 import org.apache.phoenix.parse.TableName;
 import org.apache.phoenix.parse.TableNode;
 import org.apache.phoenix.parse.TraceStatement;
@@ -173,6 +182,7 @@ import org.apache.phoenix.schema.stats.StatisticsCollectionScope;
 import org.apache.phoenix.schema.tuple.MultiKeyValueTuple;
 import org.apache.phoenix.schema.tuple.Tuple;
 import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.schema.types.PDouble;
 import org.apache.phoenix.schema.types.PLong;
 import org.apache.phoenix.schema.types.PVarchar;
 import org.apache.phoenix.trace.util.Tracing;
@@ -250,6 +260,10 @@ public class PhoenixStatement implements Statement, SQLCloseable {
     private int maxRows;
     private int fetchSize = -1;
     private int queryTimeoutMillis;
+    private CompilableStatement fingerprintedStatement;
+    private String fingerprint;
+    private String tokenFingerprintedSql;
+    private String tokenFingerprint;
     
     public PhoenixStatement(PhoenixConnection connection) {
         this.connection = connection;
@@ -292,8 +306,15 @@ public class PhoenixStatement implements Statement, SQLCloseable {
                 @Override
                     public PhoenixResultSet call() throws SQLException {
                     final long startTime = System.currentTimeMillis();
+                    RunningQuery runningQuery = null;
+                    StatementStats statementStats = null;
                     try {
                         PhoenixConnection conn = getConnection();
+                        StatementStatsRegistry statementStatsRegistry =
+                                conn.getQueryServices().getQueryRegistry().getStatementStats();
+                        if (statementStatsRegistry.isEnabled()) {
+                            statementStats = statementStatsRegistry.getStatementStats(getFingerprint(stmt));
+                        }
                         
                         if (conn.getQueryServices().isUpgradeRequired() && !conn.isRunningUpgrade()
                                 && stmt.getOperation() != Operation.UPGRADE) {
@@ -307,6 +328,27 @@ public class PhoenixStatement implements Statement, SQLCloseable {
                         Iterator<TableRef> tableRefs = plan.getSourceRefs().iterator();
                         connection.getMutationState().sendUncommitted(tableRefs);
                         plan = connection.getQueryServices().getOptimizer().optimize(PhoenixStatement.this, plan);
+                        MemoryManager memoryManager = connection.getQueryServices().getMemoryManager();
+                        int maxQueryMemoryPerc = connection.getQueryServices().getProps().getInt(
+                                QueryServices.MAX_QUERY_MEMORY_PERC_ATTRIB, QueryServicesOptions.DEFAULT_MAX_QUERY_MEMORY_PERC);
+                        if (maxQueryMemoryPerc < 100) {
+                            // Reserve the memory of the query within its share of the global memory
+                            memoryManager = new ChildMemoryManager(memoryManager, maxQueryMemoryPerc);
+                        }
+                        QueryRegistry queryRegistry = connection.getQueryServices().getQueryRegistry();
+                        // Only render the statement when it is tracked
+                        if (queryRegistry.isEnabled()) {
+                            runningQuery = queryRegistry.register(PhoenixStatement.this, stmt.toString(), memoryManager);
+                        }
+                        if (runningQuery != null) {
+                            plan.getContext().setRunningQuery(runningQuery);
+                            memoryManager = runningQuery.getMemoryManager();
+                        }
+                        plan.getContext().setMemoryManager(memoryManager);
+                        if (statementStats != null) {
+                            statementStats.setPlanType(StatementStats.getPlanType(plan));
+                            plan.getContext().setStatementStats(statementStats);
+                        }
                          // this will create its own trace internally, so we don't wrap this
                          // whole thing in tracing
                         ResultIterator resultIterator = plan.iterator();
@@ -320,8 +362,23 @@ public class PhoenixStatement implements Statement, SQLCloseable {
                             queryLogger.log(QueryLogInfo.EXPLAIN_PLAN_I, QueryUtil.getExplainPlan(resultIterator));
                             queryLogger.log(QueryLogInfo.GLOBAL_SCAN_DETAILS_I, context.getScan()!=null?context.getScan().toString():null);
                         }
-                        context.getOverallQueryMetrics().startQuery();
+                        context.getOverallQueryMetrics().startQuery(startTime);
+                        int prefetchRows = connection.getQueryServices().getProps().getInt(
+                                QueryServices.RESULT_SET_PREFETCH_ROWS_ATTRIB, QueryServicesOptions.DEFAULT_RESULT_SET_PREFETCH_ROWS);
+                        if (prefetchRows > 0) {
+                            resultIterator = PrefetchingResultIterator.wrap(resultIterator, prefetchRows,
+                                    plan.getProjector().getEstimatedRowByteSize(),
+                                    memoryManager,
+                                    connection.getQueryServices().getPrefetchExecutor());
+                        }
                         PhoenixResultSet rs = newResultSet(resultIterator, plan.getProjector(), plan.getContext());
+                        if (runningQuery != null) {
+                            runningQuery.setIterator(resultIterator);
+                            // No longer tracked once the result set is closed
+                            runningQuery = null;
+                        }
+                        // Recorded by the result set once closed
+                        statementStats = null;
                         resultSets.add(rs);
                         setLastQueryPlan(plan);
                         setLastResultSet(rs);
@@ -342,6 +399,7 @@ public class PhoenixStatement implements Statement, SQLCloseable {
                             if(new MetaDataClient(connection).updateCache(connection.getTenantId(),
                                 e.getSchemaName(), e.getTableName(), true).wasUpdated()){
                                 //TODO we can log retry count and error for debugging in LOG table
+                                statementStats = null;
                                 return executeQuery(stmt, false, queryLogger);
                             }
                         }
@@ -355,6 +413,12 @@ public class PhoenixStatement implements Statement, SQLCloseable {
                         }
                         throw e;
                     } finally {
+                        if (runningQuery != null) {
+                            runningQuery.close();
+                        }
+                        if (statementStats != null) {
+                            statementStats.record(System.currentTimeMillis() - startTime, 0, 0, true);
+                        }
                         // Regardless of whether the query was successfully handled or not, 
                         // update the time spent so far. If needed, we can separate out the
                         // success times and failure times.
@@ -550,6 +614,16 @@ public class PhoenixStatement implements Statement, SQLCloseable {
                 SortOrder.getDefault(), 0, null, false, null, false, false,
                 EXPLAIN_PLAN_ESTIMATE_INFO_TS);
 
+    private static final String EXPLAIN_PLAN_COST_ESTIMATE_COLUMN_NAME = "CostEstimate";
+    private static final byte[] EXPLAIN_PLAN_COST_ESTIMATE =
+            PVarchar.INSTANCE.toBytes(EXPLAIN_PLAN_COST_ESTIMATE_COLUMN_NAME);
+    public static final String EXPLAIN_PLAN_COST_ESTIMATE_COLUMN_ALIAS = "EST_COST";
+    private static final PColumnImpl EXPLAIN_PLAN_COST_ESTIMATE_COLUMN =
+            new PColumnImpl(PNameFactory.newName(EXPLAIN_PLAN_COST_ESTIMATE),
+                PNameFactory.newName(EXPLAIN_PLAN_FAMILY), PDouble.INSTANCE, null, null, true, 4,
+                SortOrder.getDefault(), 0, null, false, null, false, false,
+                EXPLAIN_PLAN_COST_ESTIMATE);
+
     private static final RowProjector EXPLAIN_PLAN_ROW_PROJECTOR_WITH_BYTE_ROW_ESTIMATES =
             new RowProjector(Arrays
                     .<ColumnProjector> asList(
@@ -569,6 +643,10 @@ public class PhoenixStatement implements Statement, SQLCloseable {
                         new ExpressionProjector(EXPLAIN_PLAN_ESTIMATE_INFO_TS_COLUMN_ALIAS,
                                 EXPLAIN_PLAN_TABLE_NAME,
                                 new KeyValueColumnExpression(EXPLAIN_PLAN_ESTIMATE_INFO_TS_COLUMN),
+                                false),
+                        new ExpressionProjector(EXPLAIN_PLAN_COST_ESTIMATE_COLUMN_ALIAS,
+                                EXPLAIN_PLAN_TABLE_NAME,
+                                new KeyValueColumnExpression(EXPLAIN_PLAN_COST_ESTIMATE_COLUMN),
                                 false)),
                     0, true);
 
@@ -605,9 +683,17 @@ public class PhoenixStatement implements Statement, SQLCloseable {
             Long estimatedBytesToScan = plan.getEstimatedBytesToScan();
             Long estimatedRowsToScan = plan.getEstimatedRowsToScan();
             Long estimateInfoTimestamp = plan.getEstimateInfoTimestamp();
+            // The cost by which the optimizer compares alternative plans, in bytes processed
+            Double estimatedCost = null;
+            if (plan instanceof QueryPlan) {
+                Cost cost = ((QueryPlan) plan).getCost();
+                if (!cost.isUnknown()) {
+                    estimatedCost = cost.getIo();
+                }
+            }
             for (String planStep : planSteps) {
                 byte[] row = PVarchar.INSTANCE.toBytes(planStep);
-                List<Cell> cells = Lists.newArrayListWithCapacity(3);
+                List<Cell> cells = Lists.newArrayListWithCapacity(4);
                 cells.add(KeyValueUtil.newKeyValue(row, EXPLAIN_PLAN_FAMILY, EXPLAIN_PLAN_COLUMN,
                     MetaDataProtocol.MIN_TABLE_TIMESTAMP, ByteUtil.EMPTY_BYTE_ARRAY));
                 if (estimatedBytesToScan != null) {
@@ -625,6 +711,11 @@ public class PhoenixStatement implements Statement, SQLCloseable {
                         MetaDataProtocol.MIN_TABLE_TIMESTAMP,
                         PLong.INSTANCE.toBytes(estimateInfoTimestamp)));
                 }
+                if (estimatedCost != null) {
+                    cells.add(KeyValueUtil.newKeyValue(row, EXPLAIN_PLAN_FAMILY, EXPLAIN_PLAN_COST_ESTIMATE,
+                        MetaDataProtocol.MIN_TABLE_TIMESTAMP,
+                        PDouble.INSTANCE.toBytes(estimatedCost)));
+                }
                 Collections.sort(cells, KeyValue.COMPARATOR);
                 Tuple tuple = new MultiKeyValueTuple(cells);
                 tuples.add(tuple);
@@ -1686,9 +1777,21 @@ public class PhoenixStatement implements Statement, SQLCloseable {
         }
     }
 
+    /**
+     * Cancel the queries being executed by this statement, which fail with
+     * {@link SQLExceptionCode#OPERATION_CANCELLED}. Requires the query registry to be enabled.
+     */
     @Override
     public void cancel() throws SQLException {
-        throw new SQLFeatureNotSupportedException();
+        QueryRegistry registry = connection.getQueryServices().getQueryRegistry();
+        if (!registry.isEnabled()) {
+            throw new SQLFeatureNotSupportedException();
+        }
+        for (RunningQuery query : registry.getRunningQueries()) {
+            if (query.getStatement() == this) {
+                query.cancel();
+            }
+        }
     }
 
     @Override
@@ -1760,6 +1863,51 @@ public class PhoenixStatement implements Statement, SQLCloseable {
         return compileMutation(stmt, sql);
     }
 
+    /**
+     * Get the fingerprint of a statement, cached for the last statement so that prepared
+     * statements are only fingerprinted once.
+     * @return the fingerprint of the statement, or null if it is not a query
+     */
+    private String getFingerprint(CompilableStatement stmt) {
+        if (stmt != fingerprintedStatement) {
+            String newFingerprint = null;
+            if (stmt instanceof SelectStatement) {
+                try {
+                    newFingerprint = StatementFingerprinter.fingerprint((SelectStatement)stmt);
+                } catch (SQLException | RuntimeException e) {
+                    logger.debug("Unable to fingerprint statement " + stmt, e);
+                }
+            }
+            fingerprintedStatement = stmt;
+            fingerprint = newFingerprint;
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Get the fingerprint under which the executions of a statement are logged: the fingerprint
+     * of a query, or the tokens of any other statement with its literals replaced by '?'. The
+     * fingerprint of the last statement is cached, as for queries.
+     * @return the fingerprint of the statement, or its SQL if it cannot be fingerprinted
+     */
+    private String getLogFingerprint(CompilableStatement stmt, String sql) {
+        String queryFingerprint = getFingerprint(stmt);
+        if (queryFingerprint != null) {
+            return queryFingerprint;
+        }
+        if (sql != tokenFingerprintedSql) {
+            String newFingerprint = sql;
+            try {
+                newFingerprint = StatementFingerprinter.fingerprint(sql);
+            } catch (SQLException e) {
+                logger.debug("Unable to fingerprint statement " + sql, e);
+            }
+            tokenFingerprintedSql = sql;
+            tokenFingerprint = newFingerprint;
+        }
+        return tokenFingerprint;
+    }
+
     public QueryLogger createQueryLogger(CompilableStatement stmt, String sql) throws SQLException {
         boolean isSystemTable=false;
         if(stmt instanceof ExecutableSelectStatement){
@@ -1774,7 +1922,12 @@ public class PhoenixStatement implements Statement, SQLCloseable {
                 }
             }
         }
-        QueryLogger queryLogger = QueryLogger.getInstance(connection,isSystemTable);
+        String statementKey = sql;
+        if (connection.getLogLevel() != LogLevel.OFF && sql != null) {
+            // Sample the executions of a statement with different values together
+            statementKey = getLogFingerprint(stmt, sql);
+        }
+        QueryLogger queryLogger = QueryLogger.getInstance(connection, isSystemTable, statementKey);
         QueryLoggerUtil.logInitialDetails(queryLogger, connection.getTenantId(),
                 connection.getQueryServices(), sql, getParameters());
         return queryLogger;
@@ -197,6 +197,38 @@ public abstract class AbstractRoundRobinQueue<E> extends AbstractQueue<E>
         return null;
     }
 
+    /**
+     * Removes a single instance of the given element, so that it will not be handed out to a
+     * consumer of the queue. Overridden as the iterator of this queue is over a copy of the
+     * elements.
+     */
+    @Override
+    public boolean remove(Object o) {
+        if (o == null) {
+            return false;
+        }
+        synchronized(lock) {
+            int index = 0;
+            for (ProducerList<E> tList : this.producerLists) {
+                if (tList.list.remove(o)) {
+                    this.size--;
+                    if (tList.list.isEmpty()) {
+                        this.producerLists.remove(index);
+                        this.producerMap.remove(tList.producer);
+                        if (index < this.currentProducer) {
+                            this.currentProducer--;
+                        }
+                        adjustCurrentProducerPointer();
+                    }
+                    lock.notifyAll();
+                    return true;
+                }
+                index++;
+            }
+        }
+        return false;
+    }
+
     @Override
     public E peek() {
         synchronized(lock) {
@@ -39,6 +39,8 @@ import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.Nullable;
 
 import org.apache.phoenix.monitoring.TaskExecutionMetricsHolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 /**
@@ -51,6 +53,7 @@ import com.google.common.util.concurrent.ThreadFactoryBuilder;
 @SuppressWarnings("rawtypes")
 public class JobManager<T> extends AbstractRoundRobinQueue<T> {
 	
+    private static final Logger logger = LoggerFactory.getLogger(JobManager.class);
     private static final AtomicLong PHOENIX_POOL_INDEX = new AtomicLong(1);
 	
     public JobManager(int maxSize) {
@@ -71,6 +74,37 @@ public class JobManager<T> extends AbstractRoundRobinQueue<T> {
     }
 
     public static ThreadPoolExecutor createThreadPoolExec(int keepAliveMs, int size, int queueSize, boolean useInstrumentedThreadPool) {
+        return createThreadPoolExec(keepAliveMs, size, queueSize, useInstrumentedThreadPool, Executors.defaultThreadFactory());
+    }
+
+    /**
+     * Creates an executor running each task on its own virtual thread, so that tasks blocked on
+     * RPCs do not hold on to platform threads. The number of tasks running at the same time, and
+     * thus of RPCs in flight, is bounded by maxConcurrency while further tasks wait in the queue.
+     * @return the executor, or null if virtual threads are not supported by the JVM (before JDK 21)
+     */
+    public static ThreadPoolExecutor createVirtualThreadPoolExec(int keepAliveMs, int maxConcurrency, int queueSize, boolean useInstrumentedThreadPool) {
+        ThreadFactory virtualThreadFactory = getVirtualThreadFactory();
+        if (virtualThreadFactory == null) {
+            logger.warn("Virtual threads are not supported by this JVM, using platform threads for parallel scans");
+            return null;
+        }
+        return createThreadPoolExec(keepAliveMs, maxConcurrency, queueSize, useInstrumentedThreadPool, virtualThreadFactory);
+    }
+
+    /*
+     * Looked up through reflection as Thread.ofVirtual() is only available from JDK 21 on
+     */
+    private static ThreadFactory getVirtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static ThreadPoolExecutor createThreadPoolExec(int keepAliveMs, int size, int queueSize, boolean useInstrumentedThreadPool, ThreadFactory baseThreadFactory) {
         BlockingQueue<Runnable> queue;
         if (queueSize == 0) {
             queue = new SynchronousQueue<Runnable>(); // Specialized for 0 length.
@@ -82,7 +116,7 @@ public class JobManager<T> extends AbstractRoundRobinQueue<T> {
                 .setNameFormat(name + "-thread-%s")
                 .setDaemon(true)
                 .setThreadFactory(
-                        new ContextClassLoaderThreadFactory(JobManager.class.getClassLoader()))
+                        new ContextClassLoaderThreadFactory(JobManager.class.getClassLoader(), baseThreadFactory))
                 .build();
         ThreadPoolExecutor exec;
         if (useInstrumentedThreadPool) {
@@ -117,6 +151,23 @@ public class JobManager<T> extends AbstractRoundRobinQueue<T> {
         return exec;
     }
 
+    /**
+     * Run a task still waiting in the queue of the executor on the calling thread, recording the
+     * same task metrics as if the task was run by a thread of the executor.
+     * @return true if the task was run, or false if it was already picked up by the executor
+     */
+    public static boolean runIfQueued(ThreadPoolExecutor executor, Runnable task) {
+        if (!executor.remove(task)) {
+            return false;
+        }
+        if (executor instanceof InstrumentedThreadPoolExecutor) {
+            ((InstrumentedThreadPoolExecutor) executor).runOnCallerThread(task);
+        } else {
+            task.run();
+        }
+        return true;
+    }
+
     /**
      * Subclasses FutureTask for the sole purpose of providing {@link #getCallable()}, which is used to extract the producer in the {@link JobBasedRoundRobinQueue}
      */
@@ -215,7 +266,11 @@ public class JobManager<T> extends AbstractRoundRobinQueue<T> {
         private final ClassLoader contextClassLoader;
 
         public ContextClassLoaderThreadFactory(ClassLoader contextClassLoader) {
-            baseFactory = Executors.defaultThreadFactory();
+            this(contextClassLoader, Executors.defaultThreadFactory());
+        }
+
+        public ContextClassLoaderThreadFactory(ClassLoader contextClassLoader, ThreadFactory baseFactory) {
+            this.baseFactory = baseFactory;
             this.contextClassLoader = contextClassLoader;
         }
 
@@ -291,6 +346,19 @@ public class JobManager<T> extends AbstractRoundRobinQueue<T> {
             }
         }
 
+        /*
+         * Run a task removed from the queue, so that its time in the queue and its execution
+         * time are accounted for as well
+         */
+        private void runOnCallerThread(Runnable task) {
+            beforeExecute(Thread.currentThread(), task);
+            try {
+                task.run();
+            } finally {
+                afterExecute(task, null);
+            }
+        }
+
         private static TaskExecutionMetricsHolder getRequestMetric(Runnable task) {
             return ((JobFutureTask)task).taskMetric;
         }
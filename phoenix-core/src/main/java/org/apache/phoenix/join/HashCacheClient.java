@@ -21,6 +21,7 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.hbase.util.Bytes;
@@ -32,8 +33,10 @@ import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.expression.ExpressionType;
 import org.apache.phoenix.expression.LiteralExpression;
 import org.apache.phoenix.expression.RowValueConstructorExpression;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
 import org.apache.phoenix.iterate.ResultIterator;
 import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.memory.MemoryManager;
 import org.apache.phoenix.query.QueryServices;
 import org.apache.phoenix.query.QueryServicesOptions;
 import org.apache.phoenix.schema.PTable;
@@ -66,23 +69,35 @@ public class HashCacheClient  {
         serverCache = new ServerCacheClient(connection);
     }
 
+    /**
+     * @param connection the client connection
+     * @param memoryManager the memory manager of the query, through which the caches kept on the client are allocated
+     */
+    public HashCacheClient(PhoenixConnection connection, MemoryManager memoryManager) {
+        serverCache = new ServerCacheClient(connection, memoryManager);
+    }
+
     /**
      * Send the results of scanning through the scanner to all
      * region servers for regions of the table that will use the cache
      * that intersect with the minMaxKeyRange.
      * @param scanner scanner for the table or intermediate results being cached
+     * @param joinKeys if not null, collects the distinct join keys of the cached rows, up to
+     * one more than {@link QueryServices#RUNTIME_JOIN_FILTER_MAX_KEYS_ATTRIB}
      * @return client-side {@link ServerCache} representing the added hash cache
      * @throws SQLException 
      * @throws MaxServerCacheSizeExceededException if size of hash cache exceeds max allowed
      * size
      */
-    public ServerCache addHashCache(ScanRanges keyRanges, ResultIterator iterator, long estimatedSize, List<Expression> onExpressions, boolean singleValueOnly, PTable cacheUsingTable, Expression keyRangeRhsExpression, List<Expression> keyRangeRhsValues) throws SQLException {
+    public ServerCache addHashCache(ScanRanges keyRanges, ResultIterator iterator, long estimatedSize, List<Expression> onExpressions, boolean singleValueOnly, PTable cacheUsingTable, Expression keyRangeRhsExpression, List<Expression> keyRangeRhsValues, Set<ImmutableBytesPtr> joinKeys) throws SQLException {
         /**
          * Serialize and compress hashCacheTable
          */
         ImmutableBytesWritable ptr = new ImmutableBytesWritable();
-        serialize(ptr, iterator, estimatedSize, onExpressions, singleValueOnly, keyRangeRhsExpression, keyRangeRhsValues);
-        ServerCache cache = serverCache.addServerCache(keyRanges, ptr, ByteUtil.EMPTY_BYTE_ARRAY, new HashCacheFactory(), cacheUsingTable, true);
+        serialize(ptr, iterator, estimatedSize, onExpressions, singleValueOnly, keyRangeRhsExpression, keyRangeRhsValues, joinKeys);
+        boolean shared = serverCache.getConnection().getQueryServices().getProps().getBoolean(
+                QueryServices.SHARED_HASH_CACHE_ENABLED_ATTRIB, QueryServicesOptions.DEFAULT_SHARED_HASH_CACHE_ENABLED);
+        ServerCache cache = serverCache.addServerCache(keyRanges, ptr, ByteUtil.EMPTY_BYTE_ARRAY, new HashCacheFactory(), cacheUsingTable, true, shared);
         return cache;
     }
     
@@ -100,8 +115,9 @@ public class HashCacheClient  {
         return serverCache.addServerCache(startkeyOfRegion, cache, new HashCacheFactory(), ByteUtil.EMPTY_BYTE_ARRAY, pTable);
     }
     
-    private void serialize(ImmutableBytesWritable ptr, ResultIterator iterator, long estimatedSize, List<Expression> onExpressions, boolean singleValueOnly, Expression keyRangeRhsExpression, List<Expression> keyRangeRhsValues) throws SQLException {
+    private void serialize(ImmutableBytesWritable ptr, ResultIterator iterator, long estimatedSize, List<Expression> onExpressions, boolean singleValueOnly, Expression keyRangeRhsExpression, List<Expression> keyRangeRhsValues, Set<ImmutableBytesPtr> joinKeys) throws SQLException {
         long maxSize = serverCache.getConnection().getQueryServices().getProps().getLong(QueryServices.MAX_SERVER_CACHE_SIZE_ATTRIB, QueryServicesOptions.DEFAULT_MAX_SERVER_CACHE_SIZE);
+        int maxJoinKeys = serverCache.getConnection().getQueryServices().getProps().getInt(QueryServices.RUNTIME_JOIN_FILTER_MAX_KEYS_ATTRIB, QueryServicesOptions.DEFAULT_RUNTIME_JOIN_FILTER_MAX_KEYS);
         estimatedSize = Math.min(estimatedSize, maxSize);
         if (estimatedSize > Integer.MAX_VALUE) {
             throw new IllegalStateException("Estimated size(" + estimatedSize + ") must not be greater than Integer.MAX_VALUE(" + Integer.MAX_VALUE + ")");
@@ -129,6 +145,11 @@ public class HashCacheClient  {
                 if (keyRangeRhsExpression != null) {
                     keyRangeRhsValues.add(evaluateKeyExpression(keyRangeRhsExpression, result, tempPtr));
                 }
+                // Collect join keys for the runtime join filter, giving up once there are too many.
+                if (joinKeys != null && joinKeys.size() <= maxJoinKeys) {
+                    ImmutableBytesPtr key = TupleUtil.getConcatenatedValue(result, onExpressions);
+                    joinKeys.add(new ImmutableBytesPtr(key.copyBytes()));
+                }
                 nRows++;
             }
             TrustedByteArrayOutputStream sizeOut = new TrustedByteArrayOutputStream(Bytes.SIZEOF_INT);
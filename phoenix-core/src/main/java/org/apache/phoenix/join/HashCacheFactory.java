@@ -158,6 +158,11 @@ public class HashCacheFactory implements ServerCacheFactory {
         public int getClientVersion() {
             return clientVersion;
         }
+
+        @Override
+        public long getEstimatedSize() {
+            return memoryChunk.getSize();
+        }
     }
 }
 
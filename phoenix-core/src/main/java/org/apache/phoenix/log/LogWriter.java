@@ -35,6 +35,15 @@ public interface LogWriter {
      */
     void write(RingBufferEvent event) throws SQLException, IOException, ClassNotFoundException;
 
+    /**
+     * Called by ring buffer event handler once done with a batch of events, so that the events
+     * written since the last flush are persisted
+     * 
+     * @throws SQLException
+     * @throws IOException
+     */
+    void flush() throws SQLException, IOException;
+
     /**
      * will be called when disruptor is getting shutdown
      * 
@@ -41,8 +41,15 @@ public class QueryLogDetailsEventHandler implements SequenceReportingEventHandle
 
     @Override
     public void onEvent(final RingBufferEvent event, final long sequence, final boolean endOfBatch) throws Exception {
-        logWriter.write(event);
-        event.clear();
+        try {
+            logWriter.write(event);
+        } finally {
+            event.clear();
+            // Commit the logs of all the events available to the handler at once
+            if (endOfBatch) {
+                logWriter.flush();
+            }
+        }
     }
 
     @Override
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.log;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.query.QueryServicesOptions;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * Decides which queries are logged. Each statement is sampled separately, so that the first
+ * execution of a statement is always logged and then one out of every 1/sampleRate executions,
+ * instead of rare statements being drowned by frequent ones. When a slow query threshold is
+ * configured, the queries which are not sampled are still logged if they fail or take longer
+ * than the threshold.
+ */
+public class QueryLogSampler {
+    private static final int MAX_TRACKED_STATEMENTS = 10000;
+
+    private final long slowQueryThresholdMs;
+    private final LoadingCache<String, AtomicLong> executionCounts;
+
+    public QueryLogSampler(Configuration configuration) {
+        this.slowQueryThresholdMs = configuration.getLong(QueryServices.LOG_SLOW_QUERY_THRESHOLD_MS_ATTRIB,
+                QueryServicesOptions.DEFAULT_LOG_SLOW_QUERY_THRESHOLD_MS);
+        this.executionCounts = CacheBuilder.newBuilder().maximumSize(MAX_TRACKED_STATEMENTS)
+                .build(new CacheLoader<String, AtomicLong>() {
+                    @Override
+                    public AtomicLong load(String statement) {
+                        return new AtomicLong();
+                    }
+                });
+    }
+
+    /**
+     * @return whether the queries which are not sampled are still logged when slow or failed
+     */
+    public boolean isSlowQueryLoggingEnabled() {
+        return slowQueryThresholdMs >= 0;
+    }
+
+    /**
+     * Count an execution of a statement, and decide whether it is sampled
+     * @param statement the statement being executed
+     * @param sampleRate the fraction of the executions of the statement to sample
+     */
+    public boolean isSampled(String statement, double sampleRate) {
+        if (sampleRate >= 1) {
+            return true;
+        }
+        if (sampleRate <= 0 || statement == null) {
+            return false;
+        }
+        long count;
+        try {
+            count = executionCounts.get(statement).getAndIncrement();
+        } catch (ExecutionException e) {
+            return false; // Impossible
+        }
+        return count == 0 || (long)(count * sampleRate) > (long)((count - 1) * sampleRate);
+    }
+
+    /**
+     * @return whether a query which was not sampled must be logged
+     */
+    public boolean isLoggedAnyway(boolean failed, long elapsedTimeMs) {
+        return isSlowQueryLoggingEnabled() && (failed || elapsedTimeMs >= slowQueryThresholdMs);
+    }
+}
@@ -41,14 +41,20 @@ public class QueryLogger {
     private LogLevel logLevel;
     private Builder<QueryLogInfo, Object> queryLogBuilder = ImmutableMap.builder();
     private boolean isSynced;
+    // Whether the query was sampled, otherwise it is only logged if slow or failed
+    private boolean isSampled;
+    private boolean isFailed;
+    private long startTime;
     private static final Log LOG = LogFactory.getLog(QueryLoggerDisruptor.class);
     
-    private QueryLogger(PhoenixConnection connection) {
+    private QueryLogger(PhoenixConnection connection, boolean isSampled) {
         this.queryId = UUID.randomUUID().toString();
         this.queryDisruptor = connection.getQueryServices().getQueryDisruptor();
+        this.isSampled = isSampled;
         logLevel = connection.getLogLevel();
+        startTime = EnvironmentEdgeManager.currentTimeMillis();
         log(QueryLogInfo.QUERY_ID_I, queryId);
-        log(QueryLogInfo.START_TIME_I, EnvironmentEdgeManager.currentTimeMillis());
+        log(QueryLogInfo.START_TIME_I, startTime);
     }
     
     private QueryLogger() {
@@ -95,7 +101,24 @@ public class QueryLogger {
     public static QueryLogger getInstance(PhoenixConnection connection, boolean isSystemTable) {
         if (connection.getLogLevel() == LogLevel.OFF || isSystemTable || ThreadLocalRandom.current()
                 .nextDouble() > connection.getLogSamplingRate()) { return NO_OP_INSTANCE; }
-        return new QueryLogger(connection);
+        return new QueryLogger(connection, true);
+    }
+
+    /**
+     * Get the logger of an execution of the given statement, sampled per statement through the
+     * {@link QueryLogSampler} of the connection.
+     * @param statement the fingerprint of the statement, or its SQL
+     */
+    public static QueryLogger getInstance(PhoenixConnection connection, boolean isSystemTable, String statement) {
+        QueryLoggerDisruptor queryDisruptor = connection.getQueryServices().getQueryDisruptor();
+        if (queryDisruptor == null) {
+            return getInstance(connection, isSystemTable);
+        }
+        if (connection.getLogLevel() == LogLevel.OFF || isSystemTable) { return NO_OP_INSTANCE; }
+        QueryLogSampler sampler = queryDisruptor.getSampler();
+        boolean isSampled = sampler.isSampled(statement, connection.getLogSamplingRate());
+        if (!isSampled && !sampler.isSlowQueryLoggingEnabled()) { return NO_OP_INSTANCE; }
+        return new QueryLogger(connection, isSampled);
     }
 
     /**
@@ -103,6 +126,9 @@ public class QueryLogger {
      */
     public void log(QueryLogInfo queryLogInfo, Object info) {
         try {
+            if (queryLogInfo == QueryLogInfo.QUERY_STATUS_I && QueryStatus.FAILED.toString().equals(info)) {
+                isFailed = true;
+            }
             queryLogBuilder.put(queryLogInfo, info);
         } catch (Exception e) {
             LOG.warn("Unable to add log info because of " + e.getMessage());
@@ -157,6 +183,10 @@ public class QueryLogger {
     public void sync(Map<String, Map<MetricType, Long>> readMetrics, Map<MetricType, Long> overAllMetrics) {
         if (!isSynced) {
             isSynced = true;
+            if (!isSampled && queryDisruptor != null && !queryDisruptor.getSampler().isLoggedAnyway(isFailed,
+                    EnvironmentEdgeManager.currentTimeMillis() - startTime)) {
+                return;
+            }
             final RingBufferEventTranslator translator = getCachedTranslator();
             translator.setQueryInfo(logLevel, queryLogBuilder.build(), readMetrics, overAllMetrics);
             publishLogs(translator);
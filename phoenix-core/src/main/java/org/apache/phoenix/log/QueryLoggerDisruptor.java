@@ -42,6 +42,7 @@ import com.lmax.disruptor.dsl.ProducerType;
 public class QueryLoggerDisruptor implements Closeable{
     
     private volatile Disruptor<RingBufferEvent> disruptor;
+    private final QueryLogSampler sampler;
     private boolean isClosed = false;
     //number of elements to create within the ring buffer.
     private static final int RING_BUFFER_SIZE = 8 * 1024;
@@ -49,6 +50,7 @@ public class QueryLoggerDisruptor implements Closeable{
     private static final String DEFAULT_WAIT_STRATEGY = BlockingWaitStrategy.class.getName();
     
     public QueryLoggerDisruptor(Configuration configuration) throws SQLException{
+        sampler = new QueryLogSampler(configuration);
         WaitStrategy waitStrategy;
         try {
             waitStrategy = (WaitStrategy)Class
@@ -98,6 +100,13 @@ public class QueryLoggerDisruptor implements Closeable{
     }
     
 
+    /**
+     * @return the sampler deciding which queries are logged
+     */
+    public QueryLogSampler getSampler() {
+        return sampler;
+    }
+
     public boolean isClosed() {
         return isClosed ;
     }
@@ -31,6 +31,8 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.phoenix.monitoring.MetricType;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.query.QueryServicesOptions;
 import org.apache.phoenix.util.QueryUtil;
 
 import com.google.common.collect.ImmutableMap;
@@ -46,9 +48,13 @@ public class TableLogWriter implements LogWriter {
     private PreparedStatement upsertStatement;
     private Configuration config;
     private Map<MetricType,Integer> metricOrdinals=new HashMap<MetricType,Integer>();
+    private final int batchSize;
+    private int uncommittedEvents;
 
     public TableLogWriter(Configuration configuration) {
         this.config=configuration;
+        this.batchSize = configuration.getInt(QueryServices.LOG_BATCH_SIZE_ATTRIB,
+                QueryServicesOptions.DEFAULT_LOG_BATCH_SIZE);
     }
     
     private PreparedStatement buildUpsertStatement(Connection conn) throws SQLException {
@@ -131,12 +137,30 @@ public class TableLogWriter implements LogWriter {
         } else {
             upsertStatement.executeUpdate();
         }
+        // Logs are committed in batches, on flush or once enough of them are pending
+        if (++uncommittedEvents >= batchSize) {
+            flush();
+        }
+    }
+
+    @Override
+    public void flush() throws SQLException {
+        if (uncommittedEvents == 0 || connection == null) {
+            return;
+        }
         connection.commit();
+        // Only reset once committed, so that the pending logs are retried on the next flush
+        uncommittedEvents = 0;
     }
     
     @Override
     public void close() throws IOException {
         if (isClosed()) { return; }
+        try {
+            flush();
+        } catch (SQLException e) {
+            LOG.warn("Unable to commit query logs on close", e);
+        }
         isClosed = true;
         try {
             if (connection != null) {
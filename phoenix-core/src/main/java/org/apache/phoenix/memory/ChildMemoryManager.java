@@ -17,33 +17,33 @@
  */
 package org.apache.phoenix.memory;
 
-import org.apache.http.annotation.GuardedBy;
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.apache.http.annotation.ThreadSafe;
 import org.apache.phoenix.exception.SQLExceptionCode;
 import org.apache.phoenix.exception.SQLExceptionInfo;
 
 /**
  * 
- * Child memory manager that delegates through to global memory manager,
- * but enforces that at most a threshold percentage is used by this
- * memory manager.  No blocking is done if the threshold is exceeded,
+ * Child memory manager that delegates through to a parent memory manager,
+ * but enforces that at most a threshold percentage of the parent's memory is
+ * used by this memory manager.  No blocking is done if the threshold is exceeded,
  * but the standard blocking will be done by the global memory manager.
+ * Child memory managers may be nested, for example to limit the memory of a
+ * query within the memory of a tenant. The memory of an allocation is reserved
+ * against the threshold before being allocated from the parent, so that no lock
+ * is held while the parent allocates.
  *
  * 
  * @since 0.1
  */
 @ThreadSafe
 public class ChildMemoryManager extends DelegatingMemoryManager {
-    private final Object sync = new Object();
     private final int maxPercOfTotal;
-    @GuardedBy("sync")
-    private long allocatedBytes;
+    private final AtomicLong allocatedBytes = new AtomicLong();
     
     public ChildMemoryManager(MemoryManager mm, int maxPercOfTotal) {
         super(mm);
-        if (mm instanceof ChildMemoryManager) {
-            throw new IllegalStateException("ChildMemoryManager cannot delegate to another ChildMemoryManager");
-        }
         this.maxPercOfTotal = maxPercOfTotal;
         if (maxPercOfTotal <= 0 || maxPercOfTotal > 100) {
             throw new IllegalArgumentException("Max percentage of total memory (" + maxPercOfTotal + "%) must be greater than zero and less than or equal to 100");
@@ -51,67 +51,85 @@ public class ChildMemoryManager extends DelegatingMemoryManager {
     }
 
 
-    private long adjustAllocation(long minBytes, long reqBytes) {
+    /**
+     * Reserve at most reqBytes, but at least minBytes, of the memory of this memory manager
+     * @return the number of reserved bytes
+     */
+    private long reserveBytes(long minBytes, long reqBytes) {
         assert(reqBytes >= minBytes);
-        long availBytes = getAvailableMemory();
-        // Check if this memory managers percentage of allocated bytes exceeds its allowed maximum
-        if (minBytes > availBytes) {
-            throw new InsufficientMemoryException(
-                    new SQLExceptionInfo.Builder(SQLExceptionCode.INSUFFICIENT_MEMORY)
-                    .setMessage("Attempt to allocate more memory than the max allowed of " + maxPercOfTotal + "%")
-                    .build().buildException());
+        long maxBytes = getMaxMemory();
+        while (true) {
+            long allocated = allocatedBytes.get();
+            long availBytes = maxBytes - allocated;
+            // Check if this memory managers percentage of allocated bytes exceeds its allowed maximum
+            if (minBytes > availBytes) {
+                throw new InsufficientMemoryException(
+                        new SQLExceptionInfo.Builder(SQLExceptionCode.INSUFFICIENT_MEMORY)
+                        .setMessage("Attempt to allocate more memory than the max allowed of " + maxPercOfTotal + "%")
+                        .build().buildException());
+            }
+            // Revise reqBytes down to available memory if necessary
+            long nBytes = Math.min(reqBytes, availBytes);
+            if (allocatedBytes.compareAndSet(allocated, allocated + nBytes)) {
+                return nBytes;
+            }
         }
-        // Revise reqBytes down to available memory if necessary
-        return Math.min(reqBytes,availBytes);
     }
     
     @Override
     public MemoryChunk allocate(long minBytes, long nBytes) {
-        synchronized (sync) {
-            nBytes = adjustAllocation(minBytes, nBytes);
-            final MemoryChunk chunk = super.allocate(minBytes, nBytes);
-            allocatedBytes += chunk.getSize();
-            // Instantiate delegate chunk to track allocatedBytes correctly
-            return new MemoryChunk() {
-                @Override
-                public void close() {
-                    synchronized (sync) {
-                        allocatedBytes -= chunk.getSize();
-                        chunk.close();
-                    }
-                }
-    
-                @Override
-                public long getSize() {
-                    return chunk.getSize();
-                }
-    
-                @Override
-                public void resize(long nBytes) {
-                    synchronized (sync) {
-                        long size = getSize();
-                        long deltaBytes = nBytes - size;
-                        if (deltaBytes > 0) {
-                            adjustAllocation(deltaBytes,deltaBytes); // Throw if too much memory
-                        }
+        long reservedBytes = reserveBytes(minBytes, nBytes);
+        final MemoryChunk chunk;
+        try {
+            chunk = super.allocate(minBytes, reservedBytes);
+        } catch (RuntimeException e) {
+            allocatedBytes.addAndGet(-reservedBytes);
+            throw e;
+        }
+        // Release the part of the reservation not granted by the parent
+        allocatedBytes.addAndGet(chunk.getSize() - reservedBytes);
+        // Instantiate delegate chunk to track allocatedBytes correctly
+        return new MemoryChunk() {
+            @Override
+            public synchronized void close() {
+                long size = chunk.getSize();
+                chunk.close();
+                allocatedBytes.addAndGet(-size);
+            }
+
+            @Override
+            public long getSize() {
+                return chunk.getSize();
+            }
+
+            @Override
+            public synchronized void resize(long nBytes) {
+                long size = getSize();
+                long deltaBytes = nBytes - size;
+                if (deltaBytes > 0) {
+                    reserveBytes(deltaBytes,deltaBytes); // Throw if too much memory
+                    try {
                         chunk.resize(nBytes);
-                        allocatedBytes += deltaBytes;
+                    } catch (RuntimeException e) {
+                        allocatedBytes.addAndGet(-deltaBytes);
+                        throw e;
                     }
+                } else {
+                    chunk.resize(nBytes);
+                    allocatedBytes.addAndGet(deltaBytes);
                 }
-            };
-        }
+            }
+        };
     }
 
     @Override
     public long getAvailableMemory() {
-        synchronized (sync) {
-            long availBytes = getMaxMemory() - allocatedBytes;
-            // Sanity check (should never happen)
-            if (availBytes < 0) {
-                throw new IllegalStateException("Available memory has become negative: " + availBytes + " bytes.  Allocated memory: " + allocatedBytes + " bytes.");
-            }
-            return availBytes;
+        long availBytes = getMaxMemory() - allocatedBytes.get();
+        // Sanity check (should never happen)
+        if (availBytes < 0) {
+            throw new IllegalStateException("Available memory has become negative: " + availBytes + " bytes.  Allocated memory: " + allocatedBytes.get() + " bytes.");
         }
+        return availBytes;
     }
     
     @Override
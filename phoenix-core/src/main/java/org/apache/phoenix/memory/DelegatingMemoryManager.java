@@ -52,6 +52,16 @@ public class DelegatingMemoryManager implements MemoryManager {
         return allocate(nBytes, nBytes);
     }
 
+    @Override
+    public void registerSpillable(Spillable spillable) {
+        parent.registerSpillable(spillable);
+    }
+
+    @Override
+    public void unregisterSpillable(Spillable spillable) {
+        parent.unregisterSpillable(spillable);
+    }
+
     public MemoryManager getParent() {
         return parent;
     }
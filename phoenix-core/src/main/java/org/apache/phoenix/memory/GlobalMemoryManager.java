@@ -17,39 +17,89 @@
  */
 package org.apache.phoenix.memory;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
 import org.apache.http.annotation.GuardedBy;
+import org.apache.http.annotation.ThreadSafe;
 import org.apache.phoenix.exception.SQLExceptionCode;
 import org.apache.phoenix.exception.SQLExceptionInfo;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Maps;
 /**
  *
  * Global memory manager to track course grained memory usage across all requests.
+ * The used memory is accounted for with compare-and-set operations, so that concurrent
+ * allocations and resizes do not contend on a lock. When a maximum wait time is configured,
+ * the allocations which cannot be satisfied wait in line for memory to be freed, and are
+ * served in the order in which they started waiting. When an allocation cannot be
+ * satisfied, the largest registered {@link Spillable} consumers are asked to spill to disk,
+ * and the allocation waits for the memory they release instead of failing.
  *
  *
  * @since 0.1
  */
+@ThreadSafe
 public class GlobalMemoryManager implements MemoryManager {
     private static final Logger logger = LoggerFactory.getLogger(GlobalMemoryManager.class);
 
-    private final Object sync = new Object();
     private final long maxMemoryBytes;
-    @GuardedBy("sync")
-    private volatile long usedMemoryBytes;
+    private final long maxWaitMs;
+    private final long spillWaitMs;
+    private final AtomicLong usedMemoryBytes = new AtomicLong();
+    private final Queue<Thread> waiters = new ConcurrentLinkedQueue<Thread>();
+    private final Set<Spillable> spillables = Collections.newSetFromMap(new ConcurrentHashMap<Spillable, Boolean>());
+
     public GlobalMemoryManager(long maxBytes) {
+        this(maxBytes, 0);
+    }
+
+    /**
+     * @param maxBytes the size of the global pool of memory
+     * @param maxWaitMs the maximum time an allocation waits for memory to be freed
+     * before failing, or 0 to fail immediately
+     */
+    public GlobalMemoryManager(long maxBytes, long maxWaitMs) {
+        this(maxBytes, maxWaitMs, 0);
+    }
+
+    /**
+     * @param maxBytes the size of the global pool of memory
+     * @param maxWaitMs the maximum time an allocation waits for memory to be freed
+     * before failing, or 0 to fail immediately
+     * @param spillWaitMs the maximum time an allocation waits for memory to be freed
+     * when consumers were asked to spill, if greater than maxWaitMs
+     */
+    public GlobalMemoryManager(long maxBytes, long maxWaitMs, long spillWaitMs) {
         if (maxBytes <= 0) {
             throw new IllegalStateException(
                     "Total number of available bytes (" + maxBytes + ") must be greater than zero");
         }
+        if (maxWaitMs < 0) {
+            throw new IllegalStateException(
+                    "Maximum wait time (" + maxWaitMs + " ms) must not be negative");
+        }
+        if (spillWaitMs < 0) {
+            throw new IllegalStateException(
+                    "Maximum spill wait time (" + spillWaitMs + " ms) must not be negative");
+        }
         this.maxMemoryBytes = maxBytes;
-        this.usedMemoryBytes = 0;
+        this.maxWaitMs = maxWaitMs;
+        this.spillWaitMs = spillWaitMs;
     }
 
     @Override
     public long getAvailableMemory() {
-        synchronized(sync) {
-            return maxMemoryBytes - usedMemoryBytes;
-        }
+        return maxMemoryBytes - usedMemoryBytes.get();
     }
 
     @Override
@@ -57,7 +107,73 @@ public class GlobalMemoryManager implements MemoryManager {
         return maxMemoryBytes;
     }
 
-    // TODO: Work on fairness: One big memory request can cause all others to fail here.
+    /**
+     * Get the number of allocations currently waiting for memory to be freed
+     */
+    public int getWaiterCount() {
+        return waiters.size();
+    }
+
+    @Override
+    public void registerSpillable(Spillable spillable) {
+        spillables.add(spillable);
+    }
+
+    @Override
+    public void unregisterSpillable(Spillable spillable) {
+        spillables.remove(spillable);
+    }
+
+    /**
+     * Ask the largest spillable consumers to spill, until enough memory would be released
+     * @param nBytes the number of bytes missing
+     * @return the number of bytes the consumers were asked to release
+     */
+    private long requestSpills(long nBytes) {
+        if (nBytes <= 0 || spillables.isEmpty()) {
+            return 0;
+        }
+        // Snapshot the sizes, since they change as the consumers progress
+        Map<Spillable, Long> spillableBytes = Maps.newHashMap();
+        for (Spillable spillable : spillables) {
+            long size = spillable.getSpillableBytes();
+            if (size > 0) {
+                spillableBytes.put(spillable, size);
+            }
+        }
+        long requestedBytes = 0;
+        while (requestedBytes < nBytes && !spillableBytes.isEmpty()) {
+            Map.Entry<Spillable, Long> largest = null;
+            for (Map.Entry<Spillable, Long> entry : spillableBytes.entrySet()) {
+                if (largest == null || entry.getValue() > largest.getValue()) {
+                    largest = entry;
+                }
+            }
+            largest.getKey().requestSpill();
+            requestedBytes += largest.getValue();
+            spillableBytes.remove(largest.getKey());
+        }
+        return requestedBytes;
+    }
+
+    /**
+     * Allocate at most reqBytes, but at least minBytes, without waiting
+     * @return the number of allocated bytes, or -1 if less than minBytes are available
+     */
+    private long tryAllocateBytes(long minBytes, long reqBytes) {
+        while (true) {
+            long usedBytes = usedMemoryBytes.get();
+            long availBytes = maxMemoryBytes - usedBytes;
+            if (availBytes < minBytes) {
+                return -1;
+            }
+            long nBytes = Math.min(reqBytes, availBytes);
+            if (usedMemoryBytes.compareAndSet(usedBytes, usedBytes + nBytes)) {
+                return nBytes;
+            }
+        }
+    }
+
     private long allocateBytes(long minBytes, long reqBytes) {
         if (minBytes < 0 || reqBytes < 0) {
             throw new IllegalStateException("Minimum requested bytes (" + minBytes
@@ -70,27 +186,88 @@ public class GlobalMemoryManager implements MemoryManager {
                               + " bytes is larger than global pool of " + maxMemoryBytes + " bytes.")
                     .build().buildException());
         }
-        long nBytes;
-        synchronized(sync) {
-            if (usedMemoryBytes + minBytes > maxMemoryBytes) {
-                throw new InsufficientMemoryException(
-                        new SQLExceptionInfo.Builder(SQLExceptionCode.INSUFFICIENT_MEMORY)
-                        .setMessage("Requested memory of " + minBytes
-                                + " bytes could not be allocated. Using memory of " + usedMemoryBytes
-                                + " bytes from global pool of " + maxMemoryBytes)
-                        .build().buildException());
+        long nBytes = -1;
+        // Do not overtake the allocations already waiting in line
+        if (waiters.isEmpty()) {
+            nBytes = tryAllocateBytes(minBytes, reqBytes);
+        } else if (minBytes == 0) {
+            nBytes = 0;
+        }
+        if (nBytes < 0) {
+            long waitMs = maxWaitMs;
+            // Consumers asked to spill earlier report no spillable bytes until they did, so
+            // neither are they asked again nor is the memory they are spilling waited for again
+            // Without any wait the allocation fails right away, so nothing would benefit from a spill
+            if (Math.max(maxWaitMs, spillWaitMs) > 0
+                    && requestSpills(minBytes - getAvailableMemory()) > 0) {
+                // Wait for the memory being spilled rather than failing
+                waitMs = Math.max(waitMs, spillWaitMs);
             }
-            // Allocate at most reqBytes, but at least minBytes
-            nBytes = Math.min(reqBytes, maxMemoryBytes - usedMemoryBytes);
-            if (nBytes < minBytes) {
-                throw new IllegalStateException("Allocated bytes (" + nBytes
-                        + ") should be at least the minimum requested bytes (" + minBytes + ")");
+            if (waitMs > 0) {
+                nBytes = waitForBytes(minBytes, reqBytes, waitMs);
             }
-            usedMemoryBytes += nBytes;
+        }
+        if (nBytes < 0) {
+            throw new InsufficientMemoryException(
+                    new SQLExceptionInfo.Builder(SQLExceptionCode.INSUFFICIENT_MEMORY)
+                    .setMessage("Requested memory of " + minBytes
+                            + " bytes could not be allocated. Using memory of " + usedMemoryBytes.get()
+                            + " bytes from global pool of " + maxMemoryBytes)
+                    .build().buildException());
+        }
+        if (nBytes < minBytes) {
+            throw new IllegalStateException("Allocated bytes (" + nBytes
+                    + ") should be at least the minimum requested bytes (" + minBytes + ")");
         }
         return nBytes;
     }
 
+    /**
+     * Wait in line until the allocation can be satisfied, for at most waitMs. Only the
+     * allocation at the head of the line attempts to allocate, so that a large allocation
+     * is not starved by a stream of smaller ones.
+     * @return the number of allocated bytes, or -1 if the wait timed out or was interrupted
+     */
+    private long waitForBytes(long minBytes, long reqBytes, long waitMs) {
+        Thread currentThread = Thread.currentThread();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMs);
+        waiters.add(currentThread);
+        try {
+            while (true) {
+                if (waiters.peek() == currentThread) {
+                    long nBytes = tryAllocateBytes(minBytes, reqBytes);
+                    if (nBytes >= 0) {
+                        return nBytes;
+                    }
+                }
+                long remainingNanos = deadline - System.nanoTime();
+                if (remainingNanos <= 0) {
+                    return -1;
+                }
+                LockSupport.parkNanos(this, remainingNanos);
+                if (Thread.interrupted()) {
+                    currentThread.interrupt();
+                    return -1;
+                }
+            }
+        } finally {
+            waiters.remove(currentThread);
+            signalNextWaiter();
+        }
+    }
+
+    private void signalNextWaiter() {
+        Thread waiter = waiters.peek();
+        if (waiter != null) {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    private void freeBytes(long nBytes) {
+        usedMemoryBytes.addAndGet(-nBytes);
+        signalNextWaiter();
+    }
+
     @Override
     public MemoryChunk allocate(long minBytes, long reqBytes) {
         long nBytes = allocateBytes(minBytes, reqBytes);
@@ -107,6 +284,7 @@ public class GlobalMemoryManager implements MemoryManager {
     }
 
     private class GlobalMemoryChunk implements MemoryChunk {
+        @GuardedBy("this")
         private volatile long size;
         //private volatile String stack;
 
@@ -125,20 +303,18 @@ public class GlobalMemoryManager implements MemoryManager {
         }
 
         @Override
-        public void resize(long nBytes) {
+        public synchronized void resize(long nBytes) {
             if (nBytes < 0) {
                 throw new IllegalStateException("Number of bytes to resize to must be greater than zero, but instead is " + nBytes);
             }
-            synchronized(sync) {
-                long nAdditionalBytes = (nBytes - size);
-                if (nAdditionalBytes < 0) {
-                    usedMemoryBytes += nAdditionalBytes;
-                    size = nBytes;
-                } else {
-                    allocateBytes(nAdditionalBytes, nAdditionalBytes);
-                    size = nBytes;
-                    //this.stack = ExceptionUtils.getStackTrace(new Throwable());
-                }
+            long nAdditionalBytes = (nBytes - size);
+            if (nAdditionalBytes < 0) {
+                freeBytes(-nAdditionalBytes);
+                size = nBytes;
+            } else {
+                allocateBytes(nAdditionalBytes, nAdditionalBytes);
+                size = nBytes;
+                //this.stack = ExceptionUtils.getStackTrace(new Throwable());
             }
         }
 
@@ -158,9 +334,9 @@ public class GlobalMemoryManager implements MemoryManager {
             }
         }
 
-        private void freeMemory() {
-            synchronized(sync) {
-                usedMemoryBytes -= size;
+        private synchronized void freeMemory() {
+            if (size > 0) {
+                freeBytes(size);
                 size = 0;
             }
         }
@@ -171,4 +347,3 @@ public class GlobalMemoryManager implements MemoryManager {
         }
     }
 }
-
@@ -58,6 +58,18 @@ public interface MemoryManager {
      * minBytes and reqBytes being the same.
      */
     MemoryChunk allocate(long nBytes);
+
+    /**
+     * Register a consumer of memory which can spill to disk, so that it is asked
+     * to release its memory when an allocation cannot be satisfied.
+     */
+    void registerSpillable(Spillable spillable);
+
+    /**
+     * Stop asking a consumer of memory to spill, typically because it no
+     * longer holds memory which can be spilled.
+     */
+    void unregisterSpillable(Spillable spillable);
     
     /**
      * 
@@ -92,4 +104,26 @@ public interface MemoryManager {
          */
         void resize(long nBytes); 
     }
+
+    /**
+     * 
+     * Consumer of memory which can release its memory by spilling its data to disk.
+     * Spilling is cooperative: the consumer is only asked to spill, and does so from its
+     * own thread at its next opportunity, by closing or resizing down its memory chunks.
+     *
+     */
+    public static interface Spillable {
+        /**
+         * Get the number of bytes of memory which would be released by spilling,
+         * or 0 if the consumer cannot spill at the moment, including while a spill
+         * requested earlier is still pending.
+         */
+        long getSpillableBytes();
+
+        /**
+         * Ask the consumer to spill to disk. Must not block, as it is called from
+         * the thread of the allocation which could not be satisfied.
+         */
+        void requestSpill();
+    }
 }
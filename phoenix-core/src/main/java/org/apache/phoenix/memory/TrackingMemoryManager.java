@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.memory;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.annotation.GuardedBy;
+import org.apache.http.annotation.ThreadSafe;
+
+/**
+ *
+ * Memory manager that delegates through to another memory manager,
+ * keeping track of the memory currently held by the chunks it allocated.
+ * Used to report the memory held by a single query.
+ *
+ */
+@ThreadSafe
+public class TrackingMemoryManager extends DelegatingMemoryManager {
+    private final AtomicLong allocatedBytes = new AtomicLong();
+
+    public TrackingMemoryManager(MemoryManager mm) {
+        super(mm);
+    }
+
+    /**
+     * Get the number of bytes held by the chunks allocated through this memory manager
+     * and not yet closed.
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes.get();
+    }
+
+    @Override
+    public MemoryChunk allocate(long minBytes, long reqBytes) {
+        final MemoryChunk chunk = super.allocate(minBytes, reqBytes);
+        allocatedBytes.addAndGet(chunk.getSize());
+        return new MemoryChunk() {
+            @GuardedBy("this")
+            private boolean closed;
+
+            @Override
+            public synchronized void close() {
+                if (!closed) {
+                    closed = true;
+                    allocatedBytes.addAndGet(-chunk.getSize());
+                }
+                chunk.close();
+            }
+
+            @Override
+            public long getSize() {
+                return chunk.getSize();
+            }
+
+            @Override
+            public synchronized void resize(long nBytes) {
+                long size = chunk.getSize();
+                chunk.resize(nBytes);
+                if (!closed) {
+                    allocatedBytes.addAndGet(chunk.getSize() - size);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.monitoring;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Latency histograms collected at the client JVM level, globally and per physical table. While
+ * {@link GlobalClientMetrics} only keep the sum and number of samples of each metric, these allow
+ * reading percentiles of the latencies. They are collected when global client metrics are enabled.
+ */
+public enum GlobalClientHistograms {
+    QUERY_TIME_HISTOGRAM("QueryTime", "Wall clock time in milliseconds from the execution of a query to the close of its result set"),
+    TIME_TO_FIRST_ROW_HISTOGRAM("TimeToFirstRow", "Time in milliseconds from the execution of a query to the read of its first row"),
+    SCAN_TIME_HISTOGRAM("ScanTime", "Time in milliseconds each scan spent waiting for the region servers"),
+    MUTATION_COMMIT_TIME_HISTOGRAM("MutationCommitTime", "Time in milliseconds it took to commit the mutations of a table"),
+    MEMORY_WAIT_TIME_HISTOGRAM("MemoryWaitTime", "Time in milliseconds threads needed to wait for memory to be allocated through memory manager");
+
+    // Slower operations are counted as taking an hour
+    private static final long HIGHEST_TRACKABLE_VALUE = TimeUnit.HOURS.toMillis(1);
+
+    private final String metricName;
+    private final String description;
+    private final LatencyHistogram histogram = new LatencyHistogram(HIGHEST_TRACKABLE_VALUE);
+    private final ConcurrentMap<String, LatencyHistogram> tableHistograms = Maps.newConcurrentMap();
+
+    private GlobalClientHistograms(String metricName, String description) {
+        this.metricName = metricName;
+        this.description = description;
+    }
+
+    public String metricName() {
+        return metricName;
+    }
+
+    public String description() {
+        return description;
+    }
+
+    /**
+     * Record a latency in the global histogram and, if not null, in the histogram of the given table
+     */
+    public void update(String tableName, long value) {
+        if (!GlobalClientMetrics.isMetricsEnabled()) {
+            return;
+        }
+        histogram.record(value);
+        if (tableName != null) {
+            LatencyHistogram tableHistogram = tableHistograms.get(tableName);
+            if (tableHistogram == null) {
+                LatencyHistogram newHistogram = new LatencyHistogram(HIGHEST_TRACKABLE_VALUE);
+                tableHistogram = tableHistograms.putIfAbsent(tableName, newHistogram);
+                if (tableHistogram == null) {
+                    tableHistogram = newHistogram;
+                }
+            }
+            tableHistogram.record(value);
+        }
+    }
+
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+
+    /**
+     * @return the histogram of the given physical table, or null if no latency was recorded for it
+     */
+    public LatencyHistogram getTableHistogram(String tableName) {
+        return tableHistograms.get(tableName);
+    }
+
+    /**
+     * @return the physical tables for which a latency was recorded
+     */
+    public Set<String> getTableNames() {
+        return Collections.unmodifiableSet(tableHistograms.keySet());
+    }
+
+    /**
+     * Reset the global and table histograms
+     */
+    public void reset() {
+        histogram.reset();
+        tableHistograms.clear();
+    }
+}
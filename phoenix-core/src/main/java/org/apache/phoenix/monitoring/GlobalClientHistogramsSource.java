@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.monitoring;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.metrics2.MetricsCollector;
+import org.apache.hadoop.metrics2.MetricsRecordBuilder;
+import org.apache.hadoop.metrics2.MetricsSource;
+import org.apache.hadoop.metrics2.MetricsSystem;
+import org.apache.hadoop.metrics2.lib.Interns;
+import org.apache.phoenix.metrics.Metrics;
+
+/**
+ * Hadoop metrics2 source publishing the {@link GlobalClientHistograms}. Once registered, the
+ * count, min, max, mean and percentiles of each histogram, globally and per table, are sent to
+ * the configured metrics2 sinks and exposed through JMX as attributes of the
+ * {@code Hadoop:service=phoenix,name=PhoenixClientHistograms} MBean.
+ */
+public class GlobalClientHistogramsSource implements MetricsSource {
+    private static final Log LOG = LogFactory.getLog(GlobalClientHistogramsSource.class);
+
+    public static final String SOURCE_NAME = "PhoenixClientHistograms";
+    public static final String SOURCE_DESCRIPTION = "Latency histograms of the Phoenix client";
+    public static final String SOURCE_CONTEXT = "phoenix";
+
+    private static final double[] PERCENTILES = { 50, 75, 95, 99, 99.9 };
+    private static final String[] PERCENTILE_SUFFIXES =
+            { "_median", "_75th_percentile", "_95th_percentile", "_99th_percentile", "_99.9th_percentile" };
+
+    private static boolean registered;
+
+    /**
+     * Register the source with the metrics system, if not already registered
+     */
+    public static synchronized void register() {
+        if (registered) {
+            return;
+        }
+        MetricsSystem metricsSystem = Metrics.initialize();
+        if (metricsSystem == null) {
+            return;
+        }
+        metricsSystem.register(SOURCE_NAME, SOURCE_DESCRIPTION, new GlobalClientHistogramsSource());
+        registered = true;
+        LOG.info("Registered metrics source " + SOURCE_NAME);
+    }
+
+    @Override
+    public void getMetrics(MetricsCollector collector, boolean all) {
+        MetricsRecordBuilder builder = collector.addRecord(SOURCE_NAME).setContext(SOURCE_CONTEXT);
+        for (GlobalClientHistograms histogram : GlobalClientHistograms.values()) {
+            addSnapshot(builder, histogram.metricName(), histogram.description(),
+                    histogram.getHistogram().getSnapshot());
+            for (String tableName : histogram.getTableNames()) {
+                LatencyHistogram tableHistogram = histogram.getTableHistogram(tableName);
+                if (tableHistogram != null) {
+                    addSnapshot(builder, tableName + "." + histogram.metricName(),
+                            histogram.description() + " for table " + tableName, tableHistogram.getSnapshot());
+                }
+            }
+        }
+    }
+
+    private static void addSnapshot(MetricsRecordBuilder builder, String name, String description,
+            LatencyHistogram.Snapshot snapshot) {
+        builder.addCounter(Interns.info(name + "_num_ops", description), snapshot.getCount());
+        builder.addGauge(Interns.info(name + "_min", description), snapshot.getMin());
+        builder.addGauge(Interns.info(name + "_max", description), snapshot.getMax());
+        builder.addGauge(Interns.info(name + "_mean", description), snapshot.getMean());
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            builder.addGauge(Interns.info(name + PERCENTILE_SUFFIXES[i], description),
+                    snapshot.getValueAtPercentile(PERCENTILES[i]));
+        }
+    }
+}
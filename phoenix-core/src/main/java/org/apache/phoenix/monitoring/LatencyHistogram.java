@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.monitoring;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free histogram of non negative values, typically latencies in milliseconds, from which
+ * percentiles may be read. Like in HdrHistogram, values are counted in buckets covering
+ * exponentially growing ranges, each divided in {@link #SUB_BUCKET_HALF_COUNT} linear sub buckets,
+ * so that values are recorded with a relative error under 2% without any allocation or locking.
+ * Values smaller than {@link #SUB_BUCKET_COUNT} are recorded exactly, and values larger than the
+ * highest trackable value are counted with it.
+ *
+ * Values may be recorded concurrently with {@link #getSnapshot()} or {@link #reset()}, in which
+ * case they may or may not be part of the snapshot, or be cleared.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT >> 1;
+
+    private final long highestTrackableValue;
+    private final AtomicLongArray counts;
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param highestTrackableValue largest value counted in its own bucket
+     */
+    public LatencyHistogram(long highestTrackableValue) {
+        this.highestTrackableValue = Math.max(highestTrackableValue, SUB_BUCKET_COUNT);
+        this.counts = new AtomicLongArray(getIndex(this.highestTrackableValue) + 1);
+    }
+
+    static int getIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int)value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        int subBucket = (int)(value >>> shift);
+        return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF_COUNT + subBucket - SUB_BUCKET_HALF_COUNT;
+    }
+
+    /**
+     * @return the highest value counted in the bucket of the given index
+     */
+    static long getHighestEquivalentValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF_COUNT + 1;
+        long subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_HALF_COUNT + SUB_BUCKET_HALF_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * Record a value, negative values being recorded as 0
+     */
+    public void record(long value) {
+        value = Math.max(value, 0);
+        counts.incrementAndGet(getIndex(Math.min(value, highestTrackableValue)));
+        sum.addAndGet(value);
+        long current;
+        while (value < (current = min.get()) && !min.compareAndSet(current, value)) {
+        }
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+        }
+    }
+
+    /**
+     * Clear the recorded values. Typically called after the histogram has been published and a
+     * new interval is starting.
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        sum.set(0);
+        min.set(Long.MAX_VALUE);
+        max.set(0);
+    }
+
+    /**
+     * @return a copy of the recorded values, from which several consistent percentiles may be read
+     */
+    public Snapshot getSnapshot() {
+        long[] snapshotCounts = new long[counts.length()];
+        long count = 0;
+        for (int i = 0; i < snapshotCounts.length; i++) {
+            snapshotCounts[i] = counts.get(i);
+            count += snapshotCounts[i];
+        }
+        return new Snapshot(snapshotCounts, count, sum.get(), count == 0 ? 0 : min.get(), max.get());
+    }
+
+    /**
+     * Immutable copy of the values recorded by a {@link LatencyHistogram}
+     */
+    public static class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long min;
+        private final long max;
+
+        private Snapshot(long[] counts, long count, long sum, long min, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.min = min;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getSum() {
+            return sum;
+        }
+
+        public long getMin() {
+            return min;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0 : (double)sum / count;
+        }
+
+        /**
+         * @param percentile between 0 and 100
+         * @return the value below or at which the given percentage of the values fall, or 0 if
+         * no value was recorded
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long)Math.ceil(Math.min(percentile, 100.0) / 100.0 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.max(min, Math.min(max, getHighestEquivalentValue(i)));
+                }
+            }
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return "Count: " + count + ", Min: " + min + ", Max: " + max + ", Mean: " + getMean()
+                    + ", Median: " + getValueAtPercentile(50) + ", 95th percentile: " + getValueAtPercentile(95)
+                    + ", 99th percentile: " + getValueAtPercentile(99);
+        }
+    }
+}
@@ -26,8 +26,10 @@ import static org.apache.phoenix.monitoring.MetricType.MEMORY_WAIT_TIME;
 public class MemoryMetricsHolder {
     private final CombinableMetric memoryChunkSizeMetric;
     private final CombinableMetric memoryWaitTimeMetric;
+    private final String tableName;
     
     public MemoryMetricsHolder(ReadMetricQueue readMetrics, String tableName) {
+        this.tableName = tableName;
         this.memoryChunkSizeMetric = readMetrics.allotMetric(MEMORY_CHUNK_BYTES, tableName);
         this.memoryWaitTimeMetric = readMetrics.allotMetric(MEMORY_WAIT_TIME, tableName);
     }
@@ -39,4 +41,8 @@ public class MemoryMetricsHolder {
     public CombinableMetric getMemoryWaitTimeMetric() {
         return memoryWaitTimeMetric;
     }
+
+    public String getTableName() {
+        return tableName;
+    }
 }
@@ -73,7 +73,14 @@ public enum MetricType {
     COUNT_RPC_RETRIES("rpr", "Number of RPC retries",LogLevel.DEBUG, PLong.INSTANCE),
     COUNT_REMOTE_RPC_RETRIES("rrr", "Number of remote RPC retries",LogLevel.DEBUG, PLong.INSTANCE),
     COUNT_ROWS_SCANNED("ws", "Number of rows scanned",LogLevel.DEBUG, PLong.INSTANCE),
-    COUNT_ROWS_FILTERED("wf", "Number of rows filtered",LogLevel.DEBUG,PLong.INSTANCE);
+    COUNT_ROWS_FILTERED("wf", "Number of rows filtered",LogLevel.DEBUG,PLong.INSTANCE),
+    // server side metrics returned to the client with the scan results
+    SERVER_ROWS_RETURNED("srw", "Number of rows returned by the region scanners after the scan filters",LogLevel.OFF, PLong.INSTANCE),
+    SERVER_SKIP_SCAN_FILTERED_CELLS("ssf", "Number of cells filtered out by skip scan filters on the region servers",LogLevel.OFF, PLong.INSTANCE),
+    SERVER_SCAN_TIME("sst", "Time in milliseconds the region servers spent processing scans",LogLevel.OFF, PLong.INSTANCE),
+    SERVER_AGGREGATION_TIME("sat", "Time in milliseconds the region servers spent reading and aggregating rows of aggregate queries",LogLevel.OFF, PLong.INSTANCE),
+    SERVER_SPILL_BYTES("ssb", "Number of bytes spilled to disk by the region servers during aggregation",LogLevel.OFF, PLong.INSTANCE),
+    SERVER_HASH_CACHE_BYTES("shc", "Number of bytes of the hash join caches used by the region servers",LogLevel.OFF, PLong.INSTANCE);
 	
     private final String description;
     private final String shortName;
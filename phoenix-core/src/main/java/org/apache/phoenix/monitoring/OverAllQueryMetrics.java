@@ -41,6 +41,9 @@ public class OverAllQueryMetrics {
     private final CombinableMetric queryTimedOut;
     private final CombinableMetric queryFailed;
     private final CombinableMetric cacheRefreshedDueToSplits;
+    // Metrics returned by the region servers, in the order of ServerScanMetrics.TYPES
+    private final CombinableMetric[] serverMetrics;
+    private long queryStartTime;
 
     public OverAllQueryMetrics(boolean isRequestMetricsEnabled, LogLevel connectionLogLevel) {
         queryWatch = new MetricsStopWatch(WALL_CLOCK_TIME_MS.isLoggingEnabled(connectionLogLevel));
@@ -51,6 +54,10 @@ public class OverAllQueryMetrics {
         queryTimedOut = MetricUtil.getCombinableMetric(isRequestMetricsEnabled,connectionLogLevel, QUERY_TIMEOUT_COUNTER);
         queryFailed = MetricUtil.getCombinableMetric(isRequestMetricsEnabled,connectionLogLevel, QUERY_FAILED_COUNTER);
         cacheRefreshedDueToSplits = MetricUtil.getCombinableMetric(isRequestMetricsEnabled,connectionLogLevel, CACHE_REFRESH_SPLITS_COUNTER);
+        serverMetrics = new CombinableMetric[ServerScanMetrics.TYPES.length];
+        for (int i = 0; i < serverMetrics.length; i++) {
+            serverMetrics[i] = MetricUtil.getCombinableMetric(isRequestMetricsEnabled,connectionLogLevel, ServerScanMetrics.TYPES[i]);
+        }
     }
 
     public void updateNumParallelScans(long numParallelScans) {
@@ -69,10 +76,35 @@ public class OverAllQueryMetrics {
         cacheRefreshedDueToSplits.increment();
     }
 
+    /**
+     * Add the metrics returned by a region server after processing one of the scans of the query.
+     * Called concurrently by the threads running the scans.
+     */
+    public synchronized void addServerScanMetrics(ServerScanMetrics metrics) {
+        for (int i = 0; i < serverMetrics.length; i++) {
+            serverMetrics[i].change(metrics.get(ServerScanMetrics.TYPES[i]));
+        }
+    }
+
     public void startQuery() {
+        startQuery(System.currentTimeMillis());
+    }
+
+    /**
+     * @param queryStartTime time at which the execution of the query started, before its compilation
+     */
+    public void startQuery(long queryStartTime) {
+        this.queryStartTime = queryStartTime;
         queryWatch.start();
     }
 
+    /**
+     * @return the time at which the execution of the query started, or 0 if it was not started
+     */
+    public long getQueryStartTime() {
+        return queryStartTime;
+    }
+
     public void endQuery() {
         queryWatch.stop();
         wallClockTimeMS.change(queryWatch.getElapsedTimeInMs());
@@ -95,6 +127,11 @@ public class OverAllQueryMetrics {
         metricsForPublish.put(queryTimedOut.getMetricType(), queryTimedOut.getValue());
         metricsForPublish.put(queryFailed.getMetricType(), queryFailed.getValue());
         metricsForPublish.put(cacheRefreshedDueToSplits.getMetricType(), cacheRefreshedDueToSplits.getValue());
+        synchronized (this) {
+            for (CombinableMetric serverMetric : serverMetrics) {
+                metricsForPublish.put(serverMetric.getMetricType(), serverMetric.getValue());
+            }
+        }
         return metricsForPublish;
     }
 
@@ -105,6 +142,11 @@ public class OverAllQueryMetrics {
         queryTimedOut.reset();
         queryFailed.reset();
         cacheRefreshedDueToSplits.reset();
+        synchronized (this) {
+            for (CombinableMetric serverMetric : serverMetrics) {
+                serverMetric.reset();
+            }
+        }
         queryWatch.stop();
         resultSetWatch.stop();
     }
@@ -114,6 +156,9 @@ public class OverAllQueryMetrics {
         queryFailed.combine(metric.queryFailed);
         queryTimedOut.combine(metric.queryTimedOut);
         numParallelScans.combine(metric.numParallelScans);
+        for (int i = 0; i < serverMetrics.length; i++) {
+            serverMetrics[i].combine(metric.serverMetrics[i]);
+        }
         return this;
     }
 
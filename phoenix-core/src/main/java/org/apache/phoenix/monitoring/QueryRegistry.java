@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.monitoring;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.phoenix.jdbc.PhoenixStatement;
+import org.apache.phoenix.memory.MemoryManager;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Registry of the queries being executed through the connections of a
+ * {@link org.apache.phoenix.query.ConnectionQueryServices}, from which they may be
+ * listed and cancelled, through {@link org.apache.phoenix.util.PhoenixRuntime} or JMX.
+ */
+public class QueryRegistry implements QueryRegistryMXBean {
+    private static final Log LOG = LogFactory.getLog(QueryRegistry.class);
+    private static final AtomicInteger REGISTRY_COUNT = new AtomicInteger();
+
+    private final boolean enabled;
+    private final StatementStatsRegistry statementStats;
+    private final AtomicLong nextQueryId = new AtomicLong();
+    private final ConcurrentMap<Long, RunningQuery> runningQueries = Maps.newConcurrentMap();
+    private ObjectName objectName;
+
+    public QueryRegistry(boolean enabled, StatementStatsRegistry statementStats) {
+        this.enabled = enabled;
+        this.statementStats = statementStats;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Start tracking a query
+     * @param sql the statement being executed
+     * @param memoryManager the memory manager used by the query
+     * @return the tracked query, or null if the registry is disabled
+     */
+    public RunningQuery register(PhoenixStatement statement, String sql, MemoryManager memoryManager) {
+        if (!enabled) {
+            return null;
+        }
+        RunningQuery query = new RunningQuery(this, nextQueryId.incrementAndGet(), statement, sql, memoryManager);
+        runningQueries.put(query.getId(), query);
+        return query;
+    }
+
+    void unregister(RunningQuery query) {
+        runningQueries.remove(query.getId(), query);
+    }
+
+    public Collection<RunningQuery> getRunningQueries() {
+        return Collections.unmodifiableCollection(runningQueries.values());
+    }
+
+    /**
+     * @return the query with the given id, or null if it is not running
+     */
+    public RunningQuery getRunningQuery(long queryId) {
+        return runningQueries.get(queryId);
+    }
+
+    /**
+     * @return the statistics of the executed statements, aggregated per fingerprint
+     */
+    public StatementStatsRegistry getStatementStats() {
+        return statementStats;
+    }
+
+    @Override
+    public int getRunningQueryCount() {
+        return runningQueries.size();
+    }
+
+    @Override
+    public String[] getRunningQueryDescriptions() {
+        List<String> descriptions = Lists.newArrayListWithExpectedSize(runningQueries.size());
+        for (RunningQuery query : runningQueries.values()) {
+            descriptions.add(query.toString());
+        }
+        return descriptions.toArray(new String[descriptions.size()]);
+    }
+
+    @Override
+    public String getExplainPlan(long queryId) {
+        RunningQuery query = runningQueries.get(queryId);
+        return query == null ? null : query.getExplainPlan();
+    }
+
+    @Override
+    public boolean cancelQuery(long queryId) {
+        RunningQuery query = runningQueries.get(queryId);
+        if (query == null) {
+            return false;
+        }
+        LOG.info("Cancelling query " + query);
+        query.cancel();
+        return true;
+    }
+
+    @Override
+    public String[] getTopStatements(int count) {
+        List<StatementStats> topStatements = statementStats.getTopStatements(count);
+        List<String> descriptions = Lists.newArrayListWithExpectedSize(topStatements.size());
+        for (StatementStats stats : topStatements) {
+            descriptions.add(stats.toString());
+        }
+        return descriptions.toArray(new String[descriptions.size()]);
+    }
+
+    @Override
+    public void resetStatementStats() {
+        statementStats.reset();
+    }
+
+    /**
+     * Register the registry with the platform MBean server
+     */
+    public synchronized void registerMBean() {
+        if (objectName != null) {
+            return;
+        }
+        try {
+            ObjectName name = new ObjectName("org.apache.phoenix:type=QueryRegistry,id="
+                    + REGISTRY_COUNT.incrementAndGet());
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(this, name);
+            objectName = name;
+        } catch (Exception e) {
+            LOG.warn("Unable to register the query registry MBean", e);
+        }
+    }
+
+    /**
+     * Unregister the registry from the platform MBean server, if it was registered
+     */
+    public synchronized void unregisterMBean() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (Exception e) {
+            LOG.warn("Unable to unregister the query registry MBean", e);
+        } finally {
+            objectName = null;
+        }
+    }
+
+    /**
+     * Release the resources of the registry, once its query services are closed
+     */
+    public void close() {
+        unregisterMBean();
+        statementStats.close();
+    }
+}
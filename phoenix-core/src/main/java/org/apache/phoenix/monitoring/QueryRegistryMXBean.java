@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.monitoring;
+
+/**
+ * JMX view of the {@link QueryRegistry}
+ */
+public interface QueryRegistryMXBean {
+    /**
+     * @return the number of queries being executed
+     */
+    int getRunningQueryCount();
+
+    /**
+     * @return the id, SQL, progress and resources used by each query being executed
+     */
+    String[] getRunningQueryDescriptions();
+
+    /**
+     * @return the explain plan of the query with the given id, or null if it is not running
+     */
+    String getExplainPlan(long queryId);
+
+    /**
+     * Cancel the query with the given id
+     * @return false if the query is not running
+     */
+    boolean cancelQuery(long queryId);
+
+    /**
+     * @return the statistics of at most count statement fingerprints, by decreasing total execution time
+     */
+    String[] getTopStatements(int count);
+
+    /**
+     * Clear the statistics of all the statement fingerprints
+     */
+    void resetStatementStats();
+}
@@ -0,0 +1,266 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.monitoring;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.phoenix.exception.SQLExceptionCode;
+import org.apache.phoenix.exception.SQLExceptionInfo;
+import org.apache.phoenix.iterate.ResultIterator;
+import org.apache.phoenix.jdbc.PhoenixStatement;
+import org.apache.phoenix.memory.MemoryManager;
+import org.apache.phoenix.memory.TrackingMemoryManager;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+
+/**
+ * A query being executed, tracked by the {@link QueryRegistry} of its connection query services
+ * from its execution to the close of its result set. Holds the progress of the query and the
+ * resources it uses, and allows cancelling it from any thread.
+ */
+public class RunningQuery {
+    private static final Log LOG = LogFactory.getLog(RunningQuery.class);
+
+    /**
+     * Part of the execution of a query that must be stopped when the query is cancelled.
+     * Called from the thread cancelling the query, so must not block on the threads
+     * executing the query.
+     */
+    public interface Cancellable {
+        void cancel();
+    }
+
+    private final QueryRegistry registry;
+    private final long id;
+    private final PhoenixStatement statement;
+    private final String sql;
+    private final long startTime;
+    private final TrackingMemoryManager memoryManager;
+    private final AtomicInteger totalScans = new AtomicInteger();
+    private final AtomicInteger completedScans = new AtomicInteger();
+    private final AtomicLong rowsRead = new AtomicLong();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong spoolBytes = new AtomicLong();
+    private final Set<Cancellable> cancellables =
+            Collections.newSetFromMap(new ConcurrentHashMap<Cancellable, Boolean>());
+    private volatile boolean cancelled;
+    private volatile ResultIterator iterator;
+    private String explainPlan;
+
+    RunningQuery(QueryRegistry registry, long id, PhoenixStatement statement, String sql, MemoryManager memoryManager) {
+        this.registry = registry;
+        this.id = id;
+        this.statement = statement;
+        this.sql = sql;
+        this.startTime = System.currentTimeMillis();
+        this.memoryManager = new TrackingMemoryManager(memoryManager);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public PhoenixStatement getStatement() {
+        return statement;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public long getElapsedTime() {
+        return System.currentTimeMillis() - startTime;
+    }
+
+    /**
+     * @return the memory manager through which the memory used by the query on the client is allocated
+     */
+    public MemoryManager getMemoryManager() {
+        return memoryManager;
+    }
+
+    /**
+     * @return the number of bytes of memory currently held by the query
+     */
+    public long getMemoryBytes() {
+        return memoryManager.getAllocatedBytes();
+    }
+
+    public void addScans(int count) {
+        totalScans.addAndGet(count);
+    }
+
+    public void scanCompleted() {
+        completedScans.incrementAndGet();
+    }
+
+    /**
+     * @return the number of scans, or chunks of parallel work, of the query
+     */
+    public int getTotalScans() {
+        return totalScans.get();
+    }
+
+    /**
+     * @return the number of scans of the query which were read until their end, or closed
+     */
+    public int getCompletedScans() {
+        return Math.min(completedScans.get(), totalScans.get());
+    }
+
+    public void addRowsRead(long rows) {
+        rowsRead.addAndGet(rows);
+    }
+
+    /**
+     * @return the number of rows received from the region servers by the completed scans
+     */
+    public long getRowsRead() {
+        return rowsRead.get();
+    }
+
+    public void addBytesRead(long bytes) {
+        bytesRead.addAndGet(bytes);
+    }
+
+    /**
+     * @return the estimated number of bytes of the results received from the region servers,
+     * extrapolated from a sample of the results
+     */
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    public void addSpoolBytes(long bytes) {
+        spoolBytes.addAndGet(bytes);
+    }
+
+    /**
+     * @return the number of bytes spooled to disk on the client
+     */
+    public long getSpoolBytes() {
+        return spoolBytes.get();
+    }
+
+    /**
+     * @param iterator the iterator of the query, from which its plan is explained
+     */
+    public void setIterator(ResultIterator iterator) {
+        this.iterator = iterator;
+    }
+
+    /**
+     * @return the explain plan of the query, or null if it is not known yet
+     */
+    public synchronized String getExplainPlan() {
+        if (explainPlan == null && iterator != null) {
+            try {
+                List<String> planSteps = Lists.newArrayListWithExpectedSize(5);
+                iterator.explain(planSteps);
+                explainPlan = Joiner.on('\n').join(planSteps);
+            } catch (RuntimeException e) {
+                // The plan may not be explained while the query is being executed
+                LOG.debug("Unable to explain query " + id, e);
+            }
+        }
+        return explainPlan;
+    }
+
+    /**
+     * Add a part of the execution of the query to stop when it is cancelled. If the query
+     * was already cancelled, the part is cancelled right away.
+     */
+    public void addCancellable(Cancellable cancellable) {
+        cancellables.add(cancellable);
+        if (cancelled && cancellables.remove(cancellable)) {
+            cancellable.cancel();
+        }
+    }
+
+    /**
+     * Stop tracking a part of the execution of the query once it is done, so that it is not
+     * retained until the query is closed.
+     */
+    public void removeCancellable(Cancellable cancellable) {
+        cancellables.remove(cancellable);
+    }
+
+    /**
+     * Cancel the query. Queued scans are cancelled and idle scanners closed, while the threads
+     * executing the query fail with {@link SQLExceptionCode#OPERATION_CANCELLED} as soon as they
+     * check whether the query was cancelled.
+     */
+    public void cancel() {
+        cancelled = true;
+        for (Cancellable cancellable : cancellables) {
+            // Parts removed concurrently, or cancelled by another thread, are skipped
+            if (!cancellables.remove(cancellable)) {
+                continue;
+            }
+            try {
+                cancellable.cancel();
+            } catch (RuntimeException e) {
+                LOG.warn("Failed to cancel part of query " + id, e);
+            }
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @throws SQLException if the query was cancelled
+     */
+    public void checkCancelled() throws SQLException {
+        if (cancelled) {
+            throw new SQLExceptionInfo.Builder(SQLExceptionCode.OPERATION_CANCELLED)
+                    .setMessage("Query " + id + " was cancelled.").build().buildException();
+        }
+    }
+
+    /**
+     * Stop tracking the query, once it is done executing
+     */
+    public void close() {
+        cancellables.clear();
+        iterator = null;
+        registry.unregister(this);
+    }
+
+    @Override
+    public String toString() {
+        return "id=" + id + ", sql=" + sql + ", elapsedTimeMs=" + getElapsedTime()
+                + ", scans=" + getCompletedScans() + "/" + getTotalScans()
+                + ", rowsRead=" + getRowsRead() + ", bytesRead=" + getBytesRead() + ", memoryBytes=" + getMemoryBytes()
+                + ", spoolBytes=" + getSpoolBytes() + (cancelled ? ", cancelled" : "");
+    }
+}
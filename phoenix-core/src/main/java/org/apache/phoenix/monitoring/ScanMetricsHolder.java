@@ -34,7 +34,9 @@ import java.util.Map;
 
 import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.util.JsonMapper;
+import org.apache.phoenix.coprocessor.BaseScannerRegionObserver;
 import org.apache.phoenix.log.LogLevel;
+import org.apache.phoenix.schema.types.PDataType;
 
 public class ScanMetricsHolder {
 
@@ -49,6 +51,8 @@ public class ScanMetricsHolder {
     private final CombinableMetric countOfRemoteRPCRetries;
     private final CombinableMetric countOfRowsScanned;
     private final CombinableMetric countOfRowsFiltered;
+    // Metrics returned by the region servers, in the order of ServerScanMetrics.TYPES
+    private final CombinableMetric[] serverMetrics;
     private  Map<String, Long> scanMetricMap;
     private Object scan;
 
@@ -59,6 +63,9 @@ public class ScanMetricsHolder {
             Scan scan, LogLevel connectionLogLevel) {
         if (connectionLogLevel == LogLevel.OFF && !readMetrics.isRequestMetricsEnabled()) { return NO_OP_INSTANCE; }
         scan.setScanMetricsEnabled(true);
+        if (readMetrics.isRequestMetricsEnabled()) {
+            scan.setAttribute(BaseScannerRegionObserver.SERVER_SCAN_METRICS, PDataType.TRUE_BYTES);
+        }
         return new ScanMetricsHolder(readMetrics, tableName, scan);
     }
 
@@ -78,6 +85,19 @@ public class ScanMetricsHolder {
         countOfRemoteRPCRetries = readMetrics.allotMetric(COUNT_REMOTE_RPC_RETRIES, tableName);
         countOfRowsScanned = readMetrics.allotMetric(COUNT_ROWS_SCANNED, tableName);
         countOfRowsFiltered = readMetrics.allotMetric(COUNT_ROWS_FILTERED, tableName);
+        serverMetrics = new CombinableMetric[ServerScanMetrics.TYPES.length];
+        for (int i = 0; i < serverMetrics.length; i++) {
+            serverMetrics[i] = readMetrics.allotMetric(ServerScanMetrics.TYPES[i], tableName);
+        }
+    }
+
+    /**
+     * Add the metrics returned by a region server after processing the scan
+     */
+    public void updateServerScanMetrics(ServerScanMetrics metrics) {
+        for (int i = 0; i < serverMetrics.length; i++) {
+            serverMetrics[i].change(metrics.get(ServerScanMetrics.TYPES[i]));
+        }
     }
 
     public CombinableMetric getCountOfRemoteRPCcalls() {
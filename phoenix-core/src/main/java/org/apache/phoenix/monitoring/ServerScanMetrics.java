@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.monitoring;
+
+import static org.apache.phoenix.monitoring.MetricType.SERVER_AGGREGATION_TIME;
+import static org.apache.phoenix.monitoring.MetricType.SERVER_HASH_CACHE_BYTES;
+import static org.apache.phoenix.monitoring.MetricType.SERVER_ROWS_RETURNED;
+import static org.apache.phoenix.monitoring.MetricType.SERVER_SCAN_TIME;
+import static org.apache.phoenix.monitoring.MetricType.SERVER_SKIP_SCAN_FILTERED_CELLS;
+import static org.apache.phoenix.monitoring.MetricType.SERVER_SPILL_BYTES;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.phoenix.query.QueryConstants;
+import org.apache.phoenix.util.KeyValueUtil;
+import org.apache.phoenix.util.TrustedByteArrayOutputStream;
+
+/**
+ * Resources used by the region server to process a scan. When requested through the
+ * {@link org.apache.phoenix.coprocessor.BaseScannerRegionObserver#SERVER_SCAN_METRICS} scan
+ * attribute, they are collected while the scan is processed, and returned to the client in a
+ * single cell {@link Result} following the last row of each scanned region.
+ *
+ * These results are added above the region scanner, so the rows scanned and filtered counted by
+ * HBase never include them. The client does count their bytes in the bytes in results of its scan
+ * metrics, which ScanningResultIterator takes out through {@link #getResultBytes(Result)}.
+ *
+ * The metrics of the scan being processed by a thread are reachable through {@link #update(MetricType, long)},
+ * so that the parts of the server side processing which do not have access to the scan may
+ * account for the resources they use.
+ */
+public class ServerScanMetrics {
+    public static final byte[] METRICS_COLUMN_FAMILY = QueryConstants.SERVER_SCAN_METRICS_COLUMN_FAMILY;
+    public static final byte[] METRICS_COLUMN_QUALIFIER = QueryConstants.SERVER_SCAN_METRICS_COLUMN_QUALIFIER;
+
+    /**
+     * Metrics collected on the server, in the order in which they are serialized. New metrics
+     * must be added at the end, metrics unknown to the client being ignored.
+     */
+    public static final MetricType[] TYPES = { SERVER_ROWS_RETURNED, SERVER_SKIP_SCAN_FILTERED_CELLS,
+            SERVER_SCAN_TIME, SERVER_AGGREGATION_TIME, SERVER_SPILL_BYTES, SERVER_HASH_CACHE_BYTES };
+    // Times are collected in nanoseconds, but returned in milliseconds
+    private static final boolean[] IS_NANO_TIME = { false, false, true, true, false, false };
+
+    private static final ThreadLocal<ServerScanMetrics> CURRENT = new ThreadLocal<ServerScanMetrics>();
+
+    private final long[] values = new long[MetricType.values().length];
+
+    /**
+     * Set the metrics of the scan being processed by the current thread
+     * @return the previously set metrics, to be restored once done with the scan
+     */
+    public static ServerScanMetrics setCurrent(ServerScanMetrics metrics) {
+        ServerScanMetrics previous = CURRENT.get();
+        if (metrics == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(metrics);
+        }
+        return previous;
+    }
+
+    /**
+     * Update a metric of the scan being processed by the current thread, if its metrics are collected.
+     * Times are given in nanoseconds.
+     */
+    public static void update(MetricType type, long delta) {
+        ServerScanMetrics metrics = CURRENT.get();
+        if (metrics != null) {
+            metrics.add(type, delta);
+        }
+    }
+
+    public void add(MetricType type, long delta) {
+        values[type.ordinal()] += delta;
+    }
+
+    public long get(MetricType type) {
+        return values[type.ordinal()];
+    }
+
+    /**
+     * @return true if the result holds the metrics of a scan instead of a row
+     */
+    public static boolean isMetrics(Result result) {
+        Cell[] cells = result.rawCells();
+        return cells != null && cells.length == 1
+                && CellUtil.matchingColumn(cells[0], METRICS_COLUMN_FAMILY, METRICS_COLUMN_QUALIFIER);
+    }
+
+    /**
+     * @return the size HBase accounts for in the bytes in results of a scan for a result for which
+     * {@link #isMetrics(Result)} is true
+     */
+    public static long getResultBytes(Result result) {
+        return CellUtil.estimatedSerializedSizeOf(result.rawCells()[0]);
+    }
+
+    /**
+     * @param row row key of the cell, which must not be before the last row returned by the scan
+     * @return the cell holding the metrics, with the values of times in milliseconds
+     */
+    public Cell toCell(byte[] row) {
+        TrustedByteArrayOutputStream stream = new TrustedByteArrayOutputStream(TYPES.length * 2 + 1);
+        try (DataOutputStream output = new DataOutputStream(stream)) {
+            WritableUtils.writeVInt(output, TYPES.length);
+            for (int i = 0; i < TYPES.length; i++) {
+                long value = get(TYPES[i]);
+                WritableUtils.writeVLong(output, IS_NANO_TIME[i] ? TimeUnit.NANOSECONDS.toMillis(value) : value);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e); // Impossible
+        }
+        return KeyValueUtil.newKeyValue(row, METRICS_COLUMN_FAMILY, METRICS_COLUMN_QUALIFIER,
+                QueryConstants.AGG_TIMESTAMP, stream.toByteArray());
+    }
+
+    /**
+     * @return the metrics held by a result for which {@link #isMetrics(Result)} is true
+     */
+    public static ServerScanMetrics fromResult(Result result) throws IOException {
+        Cell cell = result.rawCells()[0];
+        ServerScanMetrics metrics = new ServerScanMetrics();
+        try (DataInputStream input = new DataInputStream(
+                new ByteArrayInputStream(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength()))) {
+            int count = WritableUtils.readVInt(input);
+            for (int i = 0; i < count; i++) {
+                long value = WritableUtils.readVLong(input);
+                if (i < TYPES.length) {
+                    metrics.add(TYPES[i], value);
+                }
+            }
+        }
+        return metrics;
+    }
+}
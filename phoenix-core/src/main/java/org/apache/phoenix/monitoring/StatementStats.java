@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.monitoring;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.phoenix.compile.QueryPlan;
+import org.apache.phoenix.compile.ScanRanges;
+import org.apache.phoenix.execute.AggregatePlan;
+import org.apache.phoenix.execute.ClientProcessingPlan;
+import org.apache.phoenix.execute.DelegateQueryPlan;
+import org.apache.phoenix.execute.HashJoinPlan;
+import org.apache.phoenix.execute.LiteralResultIterationPlan;
+import org.apache.phoenix.execute.SortMergeJoinPlan;
+import org.apache.phoenix.execute.UnionPlan;
+
+/**
+ * Statistics aggregated over the executions of all the queries sharing the same fingerprint,
+ * as computed by {@link org.apache.phoenix.parse.StatementFingerprinter}.
+ */
+public class StatementStats {
+    private static final long MAX_TRACKED_LATENCY_MS = TimeUnit.MINUTES.toMillis(10);
+
+    private final String fingerprint;
+    private final long firstExecutionTime;
+    private final LatencyHistogram latencies = new LatencyHistogram(MAX_TRACKED_LATENCY_MS);
+    private final AtomicLong failureCount = new AtomicLong();
+    private final AtomicLong rowsRead = new AtomicLong();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private volatile long lastExecutionTime;
+    private volatile String planType;
+
+    StatementStats(String fingerprint) {
+        this.fingerprint = fingerprint;
+        this.firstExecutionTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Record an execution of the statement
+     * @param elapsedTimeMs time from the execution of the query to the close of its result set
+     * @param rows number of rows read from the region servers
+     * @param bytes number of bytes read from the region servers
+     * @param failed whether the query failed
+     */
+    public void record(long elapsedTimeMs, long rows, long bytes, boolean failed) {
+        latencies.record(elapsedTimeMs);
+        rowsRead.addAndGet(rows);
+        bytesRead.addAndGet(bytes);
+        if (failed) {
+            failureCount.incrementAndGet();
+        }
+        lastExecutionTime = System.currentTimeMillis();
+    }
+
+    public void setPlanType(String planType) {
+        this.planType = planType;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public long getFirstExecutionTime() {
+        return firstExecutionTime;
+    }
+
+    public long getLastExecutionTime() {
+        return lastExecutionTime;
+    }
+
+    /**
+     * @return the type of the plan of the last execution of the statement, such as FULL SCAN or HASH JOIN
+     */
+    public String getPlanType() {
+        return planType;
+    }
+
+    /**
+     * @return the latencies of the executions of the statement
+     */
+    public LatencyHistogram.Snapshot getLatencies() {
+        return latencies.getSnapshot();
+    }
+
+    public long getExecutionCount() {
+        return latencies.getSnapshot().getCount();
+    }
+
+    public long getTotalTimeMs() {
+        return latencies.getSnapshot().getSum();
+    }
+
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    public long getRowsRead() {
+        return rowsRead.get();
+    }
+
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    /**
+     * Get the type of a query plan, as reported by {@link #getPlanType()}
+     */
+    public static String getPlanType(QueryPlan plan) {
+        if (plan instanceof HashJoinPlan) {
+            return "HASH JOIN";
+        }
+        if (plan instanceof SortMergeJoinPlan) {
+            return "SORT MERGE JOIN";
+        }
+        if (plan instanceof UnionPlan) {
+            return "UNION ALL";
+        }
+        if (plan instanceof LiteralResultIterationPlan) {
+            return "LITERAL";
+        }
+        if (plan instanceof ClientProcessingPlan) {
+            return "CLIENT " + getPlanType(((ClientProcessingPlan)plan).getDelegate());
+        }
+        if (plan instanceof DelegateQueryPlan) {
+            return getPlanType(((DelegateQueryPlan)plan).getDelegate());
+        }
+        String planType;
+        ScanRanges scanRanges = plan.getContext().getScanRanges();
+        if (scanRanges.isEverything()) {
+            planType = "FULL SCAN";
+        } else if (scanRanges.isPointLookup()) {
+            planType = "POINT LOOKUP";
+        } else if (scanRanges.useSkipScanFilter()) {
+            planType = "SKIP SCAN";
+        } else {
+            planType = "RANGE SCAN";
+        }
+        return plan instanceof AggregatePlan ? planType + " AGGREGATE" : planType;
+    }
+
+    @Override
+    public String toString() {
+        LatencyHistogram.Snapshot snapshot = latencies.getSnapshot();
+        return "fingerprint=" + fingerprint + ", planType=" + planType + ", count=" + snapshot.getCount()
+                + ", failures=" + getFailureCount() + ", totalTimeMs=" + snapshot.getSum()
+                + ", meanTimeMs=" + String.format("%.1f", snapshot.getMean())
+                + ", p50TimeMs=" + snapshot.getValueAtPercentile(50)
+                + ", p99TimeMs=" + snapshot.getValueAtPercentile(99)
+                + ", maxTimeMs=" + snapshot.getMax() + ", rowsRead=" + getRowsRead()
+                + ", bytesRead=" + getBytesRead();
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.monitoring;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.query.QueryServicesOptions;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Statistics of the statements executed through the connections of a
+ * {@link org.apache.phoenix.query.ConnectionQueryServices}, aggregated per statement fingerprint.
+ * The least recently executed statements are evicted once the maximum number of tracked
+ * statements is reached. The most expensive statements are optionally written to the client
+ * log at a fixed interval.
+ */
+public class StatementStatsRegistry {
+    private static final Log LOG = LogFactory.getLog(StatementStatsRegistry.class);
+    private static final int LOGGED_STATEMENT_COUNT = 10;
+
+    /**
+     * Total time of a statement taken once, as the live total keeps changing while sorting
+     */
+    private static final class TotalTime {
+        private final long totalTimeMs;
+        private final StatementStats stats;
+
+        private TotalTime(StatementStats stats) {
+            this.totalTimeMs = stats.getTotalTimeMs();
+            this.stats = stats;
+        }
+    }
+
+    private static final Comparator<TotalTime> TOTAL_TIME_COMPARATOR = new Comparator<TotalTime>() {
+        @Override
+        public int compare(TotalTime o1, TotalTime o2) {
+            return Long.compare(o2.totalTimeMs, o1.totalTimeMs);
+        }
+    };
+
+    private final boolean enabled;
+    private final LoadingCache<String, StatementStats> statementStats;
+    private ScheduledExecutorService logExecutor;
+
+    public StatementStatsRegistry(Configuration config) {
+        this.enabled = config.getBoolean(QueryServices.STATEMENT_STATS_ENABLED_ATTRIB,
+                QueryServicesOptions.DEFAULT_STATEMENT_STATS_ENABLED);
+        this.statementStats = CacheBuilder.newBuilder()
+                .maximumSize(config.getInt(QueryServices.STATEMENT_STATS_MAX_STATEMENTS_ATTRIB,
+                        QueryServicesOptions.DEFAULT_STATEMENT_STATS_MAX_STATEMENTS))
+                .build(new CacheLoader<String, StatementStats>() {
+                    @Override
+                    public StatementStats load(String fingerprint) {
+                        return new StatementStats(fingerprint);
+                    }
+                });
+        long logIntervalMs = config.getLong(QueryServices.STATEMENT_STATS_LOG_INTERVAL_MS_ATTRIB,
+                QueryServicesOptions.DEFAULT_STATEMENT_STATS_LOG_INTERVAL_MS);
+        if (enabled && logIntervalMs > 0) {
+            logExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                    .setNameFormat("StatementStatsLogger-thread-%s").setDaemon(true).build());
+            logExecutor.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    logTopStatements();
+                }
+            }, logIntervalMs, logIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param fingerprint the fingerprint of a statement
+     * @return the statistics of the statement, into which its executions are recorded, or null if
+     * the statistics are disabled
+     */
+    public StatementStats getStatementStats(String fingerprint) {
+        if (!enabled || fingerprint == null) {
+            return null;
+        }
+        try {
+            return statementStats.get(fingerprint);
+        } catch (ExecutionException e) {
+            return null; // Impossible
+        }
+    }
+
+    public Collection<StatementStats> getStatementStats() {
+        return Collections.unmodifiableCollection(statementStats.asMap().values());
+    }
+
+    /**
+     * @return the statistics of at most count statements, by decreasing total execution time
+     */
+    public List<StatementStats> getTopStatements(int count) {
+        Collection<StatementStats> allStats = statementStats.asMap().values();
+        List<TotalTime> totalTimes = Lists.newArrayListWithExpectedSize(allStats.size());
+        for (StatementStats stats : allStats) {
+            totalTimes.add(new TotalTime(stats));
+        }
+        Collections.sort(totalTimes, TOTAL_TIME_COMPARATOR);
+        int size = Math.min(count, totalTimes.size());
+        List<StatementStats> topStatements = Lists.newArrayListWithExpectedSize(size);
+        for (int i = 0; i < size; i++) {
+            topStatements.add(totalTimes.get(i).stats);
+        }
+        return topStatements;
+    }
+
+    public void reset() {
+        statementStats.invalidateAll();
+    }
+
+    private void logTopStatements() {
+        List<StatementStats> topStatements = getTopStatements(LOGGED_STATEMENT_COUNT);
+        if (topStatements.isEmpty()) {
+            return;
+        }
+        StringBuilder buf = new StringBuilder("Top statements by total execution time:");
+        for (StatementStats stats : topStatements) {
+            buf.append("\n  ").append(stats);
+        }
+        LOG.info(buf);
+    }
+
+    /**
+     * Stop writing the statistics to the log
+     */
+    public void close() {
+        if (logExecutor != null) {
+            logExecutor.shutdownNow();
+        }
+    }
+}
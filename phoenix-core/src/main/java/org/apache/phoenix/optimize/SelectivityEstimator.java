@@ -0,0 +1,238 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.optimize;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.filter.CompareFilter.CompareOp;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.compile.StatementContext;
+import org.apache.phoenix.expression.AndExpression;
+import org.apache.phoenix.expression.ComparisonExpression;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.InListExpression;
+import org.apache.phoenix.expression.IsNullExpression;
+import org.apache.phoenix.expression.KeyValueColumnExpression;
+import org.apache.phoenix.expression.LiteralExpression;
+import org.apache.phoenix.expression.NotExpression;
+import org.apache.phoenix.expression.OrExpression;
+import org.apache.phoenix.expression.SingleCellColumnExpression;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.TableRef;
+import org.apache.phoenix.schema.stats.ColumnStatistics;
+import org.apache.phoenix.schema.stats.GuidePostsInfo;
+import org.apache.phoenix.schema.stats.GuidePostsKey;
+import org.apache.phoenix.schema.stats.StatisticsUtil;
+import org.apache.phoenix.util.ByteUtil;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Estimates the fraction of rows that pass a filter based on the per column statistics
+ * (null counts, distinct value counts and histograms) collected in SYSTEM.STATS. Terms for
+ * which no statistics are available are assumed to have a selectivity of
+ * {@link #DEFAULT_SELECTIVITY}.
+ */
+public class SelectivityEstimator {
+    public static final double DEFAULT_SELECTIVITY = 0.5;
+
+    private final StatementContext context;
+    private final Map<ImmutableBytesPtr, GuidePostsInfo> statsByFamily = Maps.newHashMap();
+    private boolean usedStats = false;
+
+    private SelectivityEstimator(StatementContext context) {
+        this.context = context;
+    }
+
+    /**
+     * @return the estimated fraction of rows of the current table of the context that pass
+     *         the filter, or {@link #DEFAULT_SELECTIVITY} if no column statistics apply.
+     */
+    public static double estimate(StatementContext context, Expression filter) {
+        if (filter == null) {
+            return 1;
+        }
+        if (context == null || context.getCurrentTable() == null) {
+            return DEFAULT_SELECTIVITY;
+        }
+        SelectivityEstimator estimator = new SelectivityEstimator(context);
+        double selectivity = estimator.selectivity(filter);
+        return estimator.usedStats ? selectivity : DEFAULT_SELECTIVITY;
+    }
+
+    private double selectivity(Expression expression) {
+        if (expression instanceof AndExpression) {
+            double selectivity = 1;
+            for (Expression child : expression.getChildren()) {
+                selectivity *= selectivity(child);
+            }
+            return selectivity;
+        }
+        if (expression instanceof OrExpression) {
+            double notSelected = 1;
+            for (Expression child : expression.getChildren()) {
+                notSelected *= 1 - selectivity(child);
+            }
+            return 1 - notSelected;
+        }
+        if (expression instanceof NotExpression) {
+            return 1 - selectivity(expression.getChildren().get(0));
+        }
+        if (expression instanceof IsNullExpression) {
+            ColumnStatistics stats = getColumnStatistics(expression.getChildren().get(0));
+            if (stats == null) {
+                return DEFAULT_SELECTIVITY;
+            }
+            double nullFraction = stats.getNullFraction();
+            return ((IsNullExpression) expression).isNegate() ? 1 - nullFraction : nullFraction;
+        }
+        if (expression instanceof InListExpression) {
+            ColumnStatistics stats = getColumnStatistics(expression.getChildren().get(0));
+            if (stats == null) {
+                return DEFAULT_SELECTIVITY;
+            }
+            int count = ((InListExpression) expression).getKeyExpressions().size();
+            return Math.min(1 - stats.getNullFraction(), count * stats.getEqualitySelectivity());
+        }
+        if (expression instanceof ComparisonExpression) {
+            return comparisonSelectivity((ComparisonExpression) expression);
+        }
+        return DEFAULT_SELECTIVITY;
+    }
+
+    private double comparisonSelectivity(ComparisonExpression expression) {
+        List<Expression> children = expression.getChildren();
+        CompareOp op = expression.getFilterOp();
+        Expression column = children.get(0);
+        Expression literal = children.get(1);
+        if (column instanceof LiteralExpression) {
+            column = children.get(1);
+            literal = children.get(0);
+            op = invert(op);
+        }
+        if (!(literal instanceof LiteralExpression) || literal.getSortOrder() != SortOrder.ASC) {
+            return DEFAULT_SELECTIVITY;
+        }
+        ColumnStatistics stats = getColumnStatistics(column);
+        if (stats == null) {
+            return DEFAULT_SELECTIVITY;
+        }
+        ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+        if (!literal.evaluate(null, ptr) || ptr.getLength() == 0) {
+            // Comparisons against null never pass
+            return 0;
+        }
+        if (op == CompareOp.EQUAL) {
+            return stats.getEqualitySelectivity();
+        }
+        if (op == CompareOp.NOT_EQUAL) {
+            return Math.max(0, 1 - stats.getNullFraction() - stats.getEqualitySelectivity());
+        }
+        // The histogram bounds may only be compared with values serialized the same way
+        if (literal.getDataType() != column.getDataType()) {
+            return DEFAULT_SELECTIVITY;
+        }
+        byte[] value = ByteUtil.copyKeyBytesIfNecessary(ptr);
+        double selectivity;
+        switch (op) {
+        case LESS:
+            selectivity = stats.getRangeSelectivity(null, true, value, false);
+            break;
+        case LESS_OR_EQUAL:
+            selectivity = stats.getRangeSelectivity(null, true, value, true);
+            break;
+        case GREATER:
+            selectivity = stats.getRangeSelectivity(value, false, null, true);
+            break;
+        case GREATER_OR_EQUAL:
+            selectivity = stats.getRangeSelectivity(value, true, null, true);
+            break;
+        default:
+            return DEFAULT_SELECTIVITY;
+        }
+        return selectivity < 0 ? DEFAULT_SELECTIVITY : selectivity;
+    }
+
+    private static CompareOp invert(CompareOp op) {
+        switch (op) {
+        case LESS:
+            return CompareOp.GREATER;
+        case LESS_OR_EQUAL:
+            return CompareOp.GREATER_OR_EQUAL;
+        case GREATER:
+            return CompareOp.LESS;
+        case GREATER_OR_EQUAL:
+            return CompareOp.LESS_OR_EQUAL;
+        default:
+            return op;
+        }
+    }
+
+    /*
+     * Statistics are collected per cell, so they are not available for columns packed
+     * together into a single cell.
+     */
+    private ColumnStatistics getColumnStatistics(Expression expression) {
+        if (!(expression instanceof KeyValueColumnExpression)
+                || expression instanceof SingleCellColumnExpression
+                || expression.getSortOrder() != SortOrder.ASC) {
+            return null;
+        }
+        KeyValueColumnExpression column = (KeyValueColumnExpression) expression;
+        ImmutableBytesPtr family = new ImmutableBytesPtr(column.getColumnFamily());
+        GuidePostsInfo info;
+        if (statsByFamily.containsKey(family)) {
+            info = statsByFamily.get(family);
+        } else {
+            info = getGuidePosts(family.copyBytesIfNecessary());
+            statsByFamily.put(family, info);
+        }
+        if (info == null) {
+            return null;
+        }
+        ColumnStatistics stats = info.getColumnStatistics(new ImmutableBytesPtr(column.getColumnQualifier()));
+        if (stats != null) {
+            usedStats = true;
+        }
+        return stats;
+    }
+
+    private GuidePostsInfo getGuidePosts(byte[] family) {
+        TableRef tableRef = context.getCurrentTable();
+        PTable table = tableRef.getTable();
+        if (table.getPhysicalName() == null) {
+            return null;
+        }
+        byte[] physicalName = table.getPhysicalName().getBytes();
+        if (!StatisticsUtil.isStatsEnabled(TableName.valueOf(physicalName))) {
+            return null;
+        }
+        try {
+            return context.getConnection().getQueryServices().getTableStats(
+                new GuidePostsKey(physicalName, family));
+        } catch (SQLException e) {
+            // Fall back to the default selectivity
+            return null;
+        }
+    }
+}
@@ -251,7 +251,7 @@ public class SQLParser {
         }
     }
 
-    private static class CaseInsensitiveReaderStream extends ANTLRReaderStream {
+    static class CaseInsensitiveReaderStream extends ANTLRReaderStream {
         CaseInsensitiveReaderStream(Reader script) throws IOException {
             super(script);
         }
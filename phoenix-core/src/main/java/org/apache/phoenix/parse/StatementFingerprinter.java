@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.parse;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.antlr.runtime.Token;
+import org.apache.phoenix.compile.ColumnResolver;
+
+/**
+ *
+ * Class that computes the fingerprint of a select statement: its SQL with all the literals
+ * and bind parameters replaced by '?', so that the executions of a statement with
+ * different values share the same fingerprint. IN lists of constants are collapsed to a
+ * single value, so that they do not depend on the number of values either.
+ *
+ * Literals of derived tables are kept.
+ *
+ * Other statements are fingerprinted from their tokens, with the literal and bind parameter
+ * tokens replaced by '?'.
+ *
+ */
+public class StatementFingerprinter extends ParseNodeRewriter {
+    private static final ParseNode PLACEHOLDER = new LiteralParseNode(null) {
+        @Override
+        public void toSQL(ColumnResolver resolver, StringBuilder buf) {
+            buf.append('?');
+        }
+    };
+
+    /**
+     * Get the fingerprint of a select statement
+     * @param statement the select statement
+     * @return the SQL of the statement, with its literals replaced by '?'
+     * @throws SQLException
+     */
+    public static String fingerprint(SelectStatement statement) throws SQLException {
+        return rewrite(statement, new StatementFingerprinter()).toString().trim();
+    }
+
+    /**
+     * Get the fingerprint of a statement of any type from its tokens
+     * @param sql the SQL of the statement
+     * @return the tokens of the statement separated by a single space, with its literals
+     * replaced by '?'
+     * @throws SQLException if the statement cannot be tokenized
+     */
+    public static String fingerprint(String sql) throws SQLException {
+        StringBuilder buf = new StringBuilder();
+        try {
+            PhoenixSQLLexer lexer = new PhoenixSQLLexer(
+                    new SQLParser.CaseInsensitiveReaderStream(new StringReader(sql)));
+            for (Token token = lexer.nextToken(); token.getType() != Token.EOF; token = lexer.nextToken()) {
+                if (token.getChannel() == Token.HIDDEN_CHANNEL) {
+                    continue;
+                }
+                if (buf.length() > 0) {
+                    buf.append(' ');
+                }
+                switch (token.getType()) {
+                case PhoenixSQLLexer.STRING_LITERAL:
+                case PhoenixSQLLexer.NUMBER:
+                case PhoenixSQLLexer.DECIMAL:
+                case PhoenixSQLLexer.DOUBLE:
+                case PhoenixSQLLexer.BIND_NAME:
+                    buf.append('?');
+                    break;
+                default:
+                    buf.append(token.getText());
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            throw new SQLException("Unable to tokenize statement " + sql, e);
+        }
+        return buf.toString();
+    }
+
+    private StatementFingerprinter() {
+    }
+
+    @Override
+    public ParseNode visit(LiteralParseNode node) throws SQLException {
+        return PLACEHOLDER;
+    }
+
+    @Override
+    public ParseNode visit(BindParseNode node) throws SQLException {
+        return PLACEHOLDER;
+    }
+
+    @Override
+    public ParseNode visit(SubqueryParseNode node) throws SQLException {
+        SelectStatement select = node.getSelectNode();
+        SelectStatement normSelect = rewrite(select, new StatementFingerprinter());
+        return normSelect == select ? node : NODE_FACTORY.subquery(normSelect, node.expectSingleRow());
+    }
+
+    @Override
+    public ParseNode visitLeave(InListParseNode node, List<ParseNode> nodes) throws SQLException {
+        for (int i = 1; i < nodes.size(); i++) {
+            if (nodes.get(i) != PLACEHOLDER) {
+                return super.visitLeave(node, nodes);
+            }
+        }
+        return NODE_FACTORY.inList(Arrays.asList(nodes.get(0), PLACEHOLDER), node.isNegate());
+    }
+}
@@ -36,27 +36,65 @@ import org.apache.phoenix.util.ReadOnlyProps;
  */
 public abstract class BaseQueryServicesImpl implements QueryServices {
     private final ThreadPoolExecutor executor;
+    private final ThreadPoolExecutor prefetchExecutor;
     private final MemoryManager memoryManager;
     private final ReadOnlyProps props;
     private final QueryOptimizer queryOptimizer;
     
     public BaseQueryServicesImpl(ReadOnlyProps defaultProps, QueryServicesOptions options) {
-        this.executor =  JobManager.createThreadPoolExec(
-                options.getKeepAliveMs(), 
-                options.getThreadPoolSize(), 
-                options.getQueueSize(),
-                options.isGlobalMetricsEnabled());
+        this.executor = createExecutor(options);
+        this.prefetchExecutor = createPrefetchExecutor(options);
         this.memoryManager = new GlobalMemoryManager(
-                Runtime.getRuntime().maxMemory() * options.getMaxMemoryPerc() / 100);
+                Runtime.getRuntime().maxMemory() * options.getMaxMemoryPerc() / 100,
+                options.getMaxMemoryWaitMs(),
+                options.getMemorySpillWaitMs());
         this.props = options.getProps(defaultProps);
         this.queryOptimizer = new QueryOptimizer(this);
     }
     
+    private static ThreadPoolExecutor createExecutor(QueryServicesOptions options) {
+        if (options.isUseVirtualThreads()) {
+            ThreadPoolExecutor executor = JobManager.createVirtualThreadPoolExec(
+                    options.getKeepAliveMs(),
+                    options.getVirtualThreadsMaxConcurrency(),
+                    options.getQueueSize(),
+                    options.isGlobalMetricsEnabled());
+            if (executor != null) {
+                return executor;
+            }
+        }
+        return JobManager.createThreadPoolExec(
+                options.getKeepAliveMs(), 
+                options.getThreadPoolSize(), 
+                options.getQueueSize(),
+                options.isGlobalMetricsEnabled());
+    }
+
+    /*
+     * Prefetching threads block while the buffer of their result set is full, so they are kept
+     * apart from the threads of the parallel scans. Without a queue, result sets beyond the
+     * maximum number of threads are rejected and read their rows on demand instead.
+     */
+    private static ThreadPoolExecutor createPrefetchExecutor(QueryServicesOptions options) {
+        ThreadPoolExecutor executor = JobManager.createThreadPoolExec(
+                options.getKeepAliveMs(),
+                options.getResultSetPrefetchThreads(),
+                0,
+                false);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     @Override
     public ThreadPoolExecutor getExecutor() {
         return executor;
     }
 
+    @Override
+    public ThreadPoolExecutor getPrefetchExecutor() {
+        return prefetchExecutor;
+    }
+
     @Override
     public MemoryManager getMemoryManager() {
         return memoryManager;
@@ -32,12 +32,14 @@ import org.apache.hadoop.hbase.client.Mutation;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.hbase.security.User;
 import org.apache.hadoop.hbase.util.Pair;
+import org.apache.phoenix.cache.ServerCacheRegistry;
 import org.apache.phoenix.compile.MutationPlan;
 import org.apache.phoenix.coprocessor.MetaDataProtocol.MetaDataMutationResult;
 import org.apache.phoenix.execute.MutationState;
 import org.apache.phoenix.hbase.index.util.KeyValueBuilder;
 import org.apache.phoenix.jdbc.PhoenixConnection;
 import org.apache.phoenix.log.QueryLoggerDisruptor;
+import org.apache.phoenix.monitoring.QueryRegistry;
 import org.apache.phoenix.parse.PFunction;
 import org.apache.phoenix.schema.PColumn;
 import org.apache.phoenix.schema.PName;
@@ -154,6 +156,16 @@ public interface ConnectionQueryServices extends QueryServices, MetaDataMutated
     public User getUser();
 
     public QueryLoggerDisruptor getQueryDisruptor();
+
+    /**
+     * Get the registry of the server caches shared by the queries of all the connections
+     */
+    public ServerCacheRegistry getServerCacheRegistry();
+
+    /**
+     * Get the registry of the queries being executed through all the connections
+     */
+    public QueryRegistry getQueryRegistry();
     
     public PhoenixTransactionClient initTransactionClient(TransactionFactory.Provider provider);
 }
\ No newline at end of file
@@ -132,6 +132,7 @@ import org.apache.hadoop.hbase.util.Pair;
 import org.apache.hadoop.hbase.util.VersionInfo;
 import org.apache.hadoop.hbase.zookeeper.ZKConfig;
 import org.apache.hadoop.ipc.RemoteException;
+import org.apache.phoenix.cache.ServerCacheRegistry;
 import org.apache.phoenix.compile.MutationPlan;
 import org.apache.phoenix.coprocessor.GroupedAggregateRegionObserver;
 import org.apache.phoenix.coprocessor.MetaDataEndpointImpl;
@@ -187,6 +188,9 @@ import org.apache.phoenix.jdbc.PhoenixConnection;
 import org.apache.phoenix.jdbc.PhoenixDatabaseMetaData;
 import org.apache.phoenix.jdbc.PhoenixEmbeddedDriver.ConnectionInfo;
 import org.apache.phoenix.log.QueryLoggerDisruptor;
+import org.apache.phoenix.monitoring.GlobalClientHistogramsSource;
+import org.apache.phoenix.monitoring.QueryRegistry;
+import org.apache.phoenix.monitoring.StatementStatsRegistry;
 import org.apache.phoenix.parse.PFunction;
 import org.apache.phoenix.parse.PSchema;
 import org.apache.phoenix.protobuf.ProtobufUtil;
@@ -347,6 +351,8 @@ public class ConnectionQueryServicesImpl extends DelegateQueryServices implement
                 }
             });
     private QueryLoggerDisruptor queryDisruptor;
+    private final ServerCacheRegistry serverCacheRegistry = new ServerCacheRegistry();
+    private final QueryRegistry queryRegistry;
 
     private PMetaData newEmptyMetaData() {
         return new PSynchronizedMetaData(new PMetaDataImpl(INITIAL_META_DATA_TABLE_CAPACITY, getProps()));
@@ -408,6 +414,8 @@ public class ConnectionQueryServicesImpl extends DelegateQueryServices implement
         this.maxConnectionsAllowed = config.getInt(QueryServices.CLIENT_CONNECTION_MAX_ALLOWED_CONNECTIONS,
             QueryServicesOptions.DEFAULT_CLIENT_CONNECTION_MAX_ALLOWED_CONNECTIONS);
         this.shouldThrottleNumConnections = (maxConnectionsAllowed > 0);
+        this.queryRegistry = new QueryRegistry(config.getBoolean(QueryServices.QUERY_REGISTRY_ENABLED_ATTRIB,
+                QueryServicesOptions.DEFAULT_QUERY_REGISTRY_ENABLED), new StatementStatsRegistry(config));
         if (!QueryUtil.isServerConnection(props)) {
             //Start queryDistruptor everytime as log level can be change at connection level as well, but we can avoid starting for server connections.
             try {
@@ -416,6 +424,14 @@ public class ConnectionQueryServicesImpl extends DelegateQueryServices implement
                 logger.warn("Unable to initiate qeuery logging service !!");
                 e.printStackTrace();
             }
+            if (config.getBoolean(QueryServices.CLIENT_HISTOGRAMS_PUBLISHER_ENABLED_ATTRIB,
+                    QueryServicesOptions.DEFAULT_CLIENT_HISTOGRAMS_PUBLISHER_ENABLED)) {
+                GlobalClientHistogramsSource.register();
+            }
+            if (queryRegistry.isEnabled() && config.getBoolean(QueryServices.QUERY_REGISTRY_JMX_ENABLED_ATTRIB,
+                    QueryServicesOptions.DEFAULT_QUERY_REGISTRY_JMX_ENABLED)) {
+                queryRegistry.registerMBean();
+            }
         }
 
     }
@@ -486,6 +502,7 @@ public class ConnectionQueryServicesImpl extends DelegateQueryServices implement
             }
             closed = true;
             GLOBAL_QUERY_SERVICES_COUNTER.decrement();
+            queryRegistry.close();
             try {
                 if (this.queryDisruptor != null) {
                     this.queryDisruptor.close();
@@ -4660,6 +4677,16 @@ public class ConnectionQueryServicesImpl extends DelegateQueryServices implement
         return this.queryDisruptor;
     }
 
+    @Override
+    public ServerCacheRegistry getServerCacheRegistry() {
+        return this.serverCacheRegistry;
+    }
+
+    @Override
+    public QueryRegistry getQueryRegistry() {
+        return this.queryRegistry;
+    }
+
     @Override
     public synchronized PhoenixTransactionClient initTransactionClient(Provider provider) {
         PhoenixTransactionClient client = txClients[provider.ordinal()];
@@ -44,6 +44,7 @@ import org.apache.hadoop.hbase.security.User;
 import org.apache.hadoop.hbase.util.Addressing;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.util.Pair;
+import org.apache.phoenix.cache.ServerCacheRegistry;
 import org.apache.phoenix.compile.MutationPlan;
 import org.apache.phoenix.coprocessor.MetaDataProtocol;
 import org.apache.phoenix.coprocessor.MetaDataProtocol.MetaDataMutationResult;
@@ -57,6 +58,8 @@ import org.apache.phoenix.jdbc.PhoenixConnection;
 import org.apache.phoenix.jdbc.PhoenixDatabaseMetaData;
 import org.apache.phoenix.jdbc.PhoenixEmbeddedDriver.ConnectionInfo;
 import org.apache.phoenix.log.QueryLoggerDisruptor;
+import org.apache.phoenix.monitoring.QueryRegistry;
+import org.apache.phoenix.monitoring.StatementStatsRegistry;
 import org.apache.phoenix.parse.PFunction;
 import org.apache.phoenix.parse.PSchema;
 import org.apache.phoenix.schema.FunctionNotFoundException;
@@ -117,6 +120,8 @@ public class ConnectionlessQueryServicesImpl extends DelegateQueryServices imple
     private volatile SQLException initializationException;
     private final Map<String, List<HRegionLocation>> tableSplits = Maps.newHashMap();
     private final GuidePostsCache guidePostsCache;
+    private final ServerCacheRegistry serverCacheRegistry = new ServerCacheRegistry();
+    private final QueryRegistry queryRegistry;
     private final Configuration config;
 
     private User user;
@@ -146,6 +151,8 @@ public class ConnectionlessQueryServicesImpl extends DelegateQueryServices imple
         // on the server side during testing.
         this.config = HBaseFactoryProvider.getConfigurationFactory().getConfiguration(config);
         this.guidePostsCache = new GuidePostsCache(this, config);
+        this.queryRegistry = new QueryRegistry(config.getBoolean(QueryServices.QUERY_REGISTRY_ENABLED_ATTRIB,
+                QueryServicesOptions.DEFAULT_QUERY_REGISTRY_ENABLED), new StatementStatsRegistry(config));
         // set replication required parameter
         ConfigUtil.setReplicationConfigIfAbsent(this.config);
         this.props = new ReadOnlyProps(this.config.iterator());
@@ -716,6 +723,16 @@ public class ConnectionlessQueryServicesImpl extends DelegateQueryServices imple
     public QueryLoggerDisruptor getQueryDisruptor() {
         return null;
     }
+
+    @Override
+    public ServerCacheRegistry getServerCacheRegistry() {
+        return serverCacheRegistry;
+    }
+
+    @Override
+    public QueryRegistry getQueryRegistry() {
+        return queryRegistry;
+    }
     
     @Override
     public PhoenixTransactionClient initTransactionClient(Provider provider) {
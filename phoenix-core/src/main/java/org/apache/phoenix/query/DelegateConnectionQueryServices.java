@@ -32,12 +32,14 @@ import org.apache.hadoop.hbase.client.Mutation;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.hbase.security.User;
 import org.apache.hadoop.hbase.util.Pair;
+import org.apache.phoenix.cache.ServerCacheRegistry;
 import org.apache.phoenix.compile.MutationPlan;
 import org.apache.phoenix.coprocessor.MetaDataProtocol.MetaDataMutationResult;
 import org.apache.phoenix.execute.MutationState;
 import org.apache.phoenix.hbase.index.util.KeyValueBuilder;
 import org.apache.phoenix.jdbc.PhoenixConnection;
 import org.apache.phoenix.log.QueryLoggerDisruptor;
+import org.apache.phoenix.monitoring.QueryRegistry;
 import org.apache.phoenix.parse.PFunction;
 import org.apache.phoenix.parse.PSchema;
 import org.apache.phoenix.schema.PColumn;
@@ -365,6 +367,16 @@ public class DelegateConnectionQueryServices extends DelegateQueryServices imple
     public QueryLoggerDisruptor getQueryDisruptor() {
         return getDelegate().getQueryDisruptor();
     }
+
+    @Override
+    public ServerCacheRegistry getServerCacheRegistry() {
+        return getDelegate().getServerCacheRegistry();
+    }
+
+    @Override
+    public QueryRegistry getQueryRegistry() {
+        return getDelegate().getQueryRegistry();
+    }
     
     @Override
     public PhoenixTransactionClient initTransactionClient(Provider provider) {
@@ -50,6 +50,11 @@ public class DelegateQueryServices implements QueryServices {
         return parent.getExecutor();
     }
 
+    @Override
+    public ThreadPoolExecutor getPrefetchExecutor() {
+        return parent.getPrefetchExecutor();
+    }
+
     @Override
     public MemoryManager getMemoryManager() {
         return parent.getMemoryManager();
@@ -172,6 +172,11 @@ public class KeyRange implements Writable {
         if (singletonRange != null) {
             return singletonRange;
         }
+        // Share the bytes of the bounds of a single key, as is the case for one built through
+        // getKeyRange(byte[]), which halves the memory held by deserialized IN lists
+        if (range.isSingleKey) {
+            range.upperRange = range.lowerRange;
+        }
         // Otherwise, just keep the range we read
         return range;
     }
@@ -42,6 +42,10 @@ public interface QueryServices extends SQLCloseable {
     public static final String KEEP_ALIVE_MS_ATTRIB = "phoenix.query.keepAliveMs";
     public static final String THREAD_POOL_SIZE_ATTRIB = "phoenix.query.threadPoolSize";
     public static final String QUEUE_SIZE_ATTRIB = "phoenix.query.queueSize";
+    // Whether parallel scans run on virtual threads, when supported by the JVM (JDK 21 and later)
+    public static final String USE_VIRTUAL_THREADS_ATTRIB = "phoenix.query.useVirtualThreads";
+    // Maximum number of parallel scans running at the same time on virtual threads
+    public static final String VIRTUAL_THREADS_MAX_CONCURRENCY_ATTRIB = "phoenix.query.virtualThreads.maxConcurrency";
     public static final String THREAD_TIMEOUT_MS_ATTRIB = "phoenix.query.timeoutMs";
     public static final String SPOOL_THRESHOLD_BYTES_ATTRIB = "phoenix.query.spoolThresholdBytes";
     public static final String HBASE_CLIENT_KEYTAB = "hbase.myclient.keytab";
@@ -75,6 +79,12 @@ public interface QueryServices extends SQLCloseable {
 
     public static final String MAX_MEMORY_PERC_ATTRIB = "phoenix.query.maxGlobalMemoryPercentage";
     public static final String MAX_TENANT_MEMORY_PERC_ATTRIB = "phoenix.query.maxTenantMemoryPercentage";
+    // Maximum time to wait in line for global memory to be freed before failing an allocation
+    public static final String MAX_MEMORY_WAIT_MS_ATTRIB = "phoenix.query.maxGlobalMemoryWaitMs";
+    // Maximum time to wait for memory being spilled to disk by other consumers before failing an allocation
+    public static final String MEMORY_SPILL_WAIT_MS_ATTRIB = "phoenix.query.memorySpillWaitMs";
+    // Maximum percentage of the global memory a single query may hold on the client
+    public static final String MAX_QUERY_MEMORY_PERC_ATTRIB = "phoenix.query.maxQueryMemoryPercentage";
     public static final String MAX_SERVER_CACHE_SIZE_ATTRIB = "phoenix.query.maxServerCacheBytes";
     public static final String DATE_FORMAT_TIMEZONE_ATTRIB = "phoenix.query.dateFormatTimeZone";
     public static final String DATE_FORMAT_ATTRIB = "phoenix.query.dateFormat";
@@ -189,6 +199,17 @@ public interface QueryServices extends SQLCloseable {
     public static final String STATS_GUIDEPOST_WIDTH_BYTES_ATTRIB = "phoenix.stats.guidepost.width";
     public static final String STATS_GUIDEPOST_PER_REGION_ATTRIB = "phoenix.stats.guidepost.per.region";
     public static final String STATS_USE_CURRENT_TIME_ATTRIB = "phoenix.stats.useCurrentTime";
+    // Whether to merge guideposts for flushed data into the stats between major compactions
+    public static final String STATS_COLLECT_ON_FLUSH_ATTRIB = "phoenix.stats.collectOnFlush";
+    // Whether to collect NDV sketches, histograms and null counts per column
+    public static final String STATS_COLUMN_STATS_ENABLED_ATTRIB = "phoenix.stats.column.enabled";
+    public static final String STATS_COLUMN_HISTOGRAM_BUCKETS_ATTRIB = "phoenix.stats.column.histogram.buckets";
+    // Whether to derive the guidepost width of each region from its size and read load when
+    // no width is set on the table or statement
+    public static final String STATS_GUIDEPOST_ADAPTIVE_ENABLED_ATTRIB = "phoenix.stats.guidepost.adaptive.enabled";
+    public static final String STATS_GUIDEPOST_ADAPTIVE_TARGET_PER_REGION_ATTRIB = "phoenix.stats.guidepost.adaptive.target.per.region";
+    public static final String STATS_GUIDEPOST_ADAPTIVE_MIN_WIDTH_BYTES_ATTRIB = "phoenix.stats.guidepost.adaptive.min.width";
+    public static final String STATS_GUIDEPOST_ADAPTIVE_MAX_WIDTH_BYTES_ATTRIB = "phoenix.stats.guidepost.adaptive.max.width";
     
     @Deprecated // use STATS_COLLECTION_ENABLED config instead
     public static final String STATS_ENABLED_ATTRIB = "phoenix.stats.enabled";
@@ -309,15 +330,65 @@ public interface QueryServices extends SQLCloseable {
     // Whether to enable cost-based-decision in the query optimizer
     public static final String COST_BASED_OPTIMIZER_ENABLED = "phoenix.costbased.optimizer.enabled";
     public static final String SMALL_SCAN_THRESHOLD_ATTRIB = "phoenix.query.smallScanThreshold";
+    // Whether to execute point lookups over a full primary key through batched Gets rather than scans
+    public static final String POINT_LOOKUP_USE_GETS_ATTRIB = "phoenix.query.pointLookup.useGets";
+    // Maximum number of keys of a point lookup executed through batched Gets
+    public static final String POINT_LOOKUP_GETS_THRESHOLD_ATTRIB = "phoenix.query.pointLookup.getsThreshold";
+    // Whether a query runs its own queued parallel scans on the calling thread rather than waiting for them
+    public static final String QUERY_WORK_STEALING_ENABLED_ATTRIB = "phoenix.query.workStealing.enabled";
+    // Whether the chunks of a query with a limit are scanned in growing batches until the limit is reached
+    public static final String LIMIT_RAMPED_DISPATCH_ENABLED_ATTRIB = "phoenix.query.limit.rampedDispatch.enabled";
+    // Number of rows of a result set fetched ahead of time on a background thread, 0 to disable prefetching
+    public static final String RESULT_SET_PREFETCH_ROWS_ATTRIB = "phoenix.query.resultSet.prefetchRows";
+    // Maximum number of result sets prefetching their rows at the same time, further ones read their rows on demand
+    public static final String RESULT_SET_PREFETCH_THREADS_ATTRIB = "phoenix.query.resultSet.prefetchThreads";
+    // Whether non aggregate scans return their rows in column oriented batches rather than one result per row
+    public static final String COLUMNAR_RESULTS_ENABLED_ATTRIB = "phoenix.query.columnarResults.enabled";
+    // Maximum number of rows of a column oriented batch
+    public static final String COLUMNAR_RESULTS_BATCH_SIZE_ATTRIB = "phoenix.query.columnarResults.batchSize";
+    // Whether column oriented batches are compressed
+    public static final String COLUMNAR_RESULTS_COMPRESSION_ATTRIB = "phoenix.query.columnarResults.compression";
+    // Whether projected columns not referenced by the filter of a scan are only read for the rows passing the filter
+    public static final String LATE_MATERIALIZATION_ENABLED_ATTRIB = "phoenix.query.lateMaterialization.enabled";
+    // Whether inner hash joins filter the rows of the probe side scan by the join keys of the build side
+    public static final String RUNTIME_JOIN_FILTER_ENABLED_ATTRIB = "phoenix.query.join.runtimeFilter.enabled";
+    // Maximum number of distinct build side join keys for which a runtime join filter is built
+    public static final String RUNTIME_JOIN_FILTER_MAX_KEYS_ATTRIB = "phoenix.query.join.runtimeFilter.maxKeys";
+    // Whether identical hash join caches added by concurrent queries share the same server cache
+    public static final String SHARED_HASH_CACHE_ENABLED_ATTRIB = "phoenix.query.join.sharedHashCache.enabled";
+    // Whether the latency histograms of the client are published through metrics2 and JMX
+    public static final String CLIENT_HISTOGRAMS_PUBLISHER_ENABLED_ATTRIB = "phoenix.client.metrics.histograms.publisher.enabled";
+    // Whether the queries being executed are tracked, so that they may be listed and cancelled
+    public static final String QUERY_REGISTRY_ENABLED_ATTRIB = "phoenix.query.registry.enabled";
+    // Whether the query registry is registered as an MBean
+    public static final String QUERY_REGISTRY_JMX_ENABLED_ATTRIB = "phoenix.query.registry.jmx.enabled";
+    // Whether statistics are aggregated per statement fingerprint
+    public static final String STATEMENT_STATS_ENABLED_ATTRIB = "phoenix.query.statementStats.enabled";
+    // Maximum number of statement fingerprints for which statistics are kept
+    public static final String STATEMENT_STATS_MAX_STATEMENTS_ATTRIB = "phoenix.query.statementStats.maxStatements";
+    // Interval at which the most expensive statements are written to the client log, disabled when not positive
+    public static final String STATEMENT_STATS_LOG_INTERVAL_MS_ATTRIB = "phoenix.query.statementStats.logIntervalMs";
+    // Number of partitions aggregated in parallel by client side aggregations, such as a GROUP BY over a join,
+    // or 1 to aggregate on the calling thread
+    public static final String CLIENT_AGGREGATION_PARALLELISM_ATTRIB = "phoenix.query.clientAggregation.parallelism";
     public static final String LOG_LEVEL = "phoenix.log.level";
     public static final String LOG_BUFFER_SIZE = "phoenix.log.buffer.size";
     public static final String LOG_BUFFER_WAIT_STRATEGY = "phoenix.log.wait.strategy";
     public static final String LOG_SAMPLE_RATE = "phoenix.log.sample.rate";
+    // Queries failing or taking longer than this many milliseconds are logged regardless of the sample rate.
+    // Disabled when negative
+    public static final String LOG_SLOW_QUERY_THRESHOLD_MS_ATTRIB = "phoenix.log.slowQuery.thresholdMs";
+    // Maximum number of query log rows written to the log table in a single commit
+    public static final String LOG_BATCH_SIZE_ATTRIB = "phoenix.log.batch.size";
 
     /**
      * Get executor service used for parallel scans
      */
     public ThreadPoolExecutor getExecutor();
+    /**
+     * Get executor service used to prefetch the rows of result sets
+     */
+    public ThreadPoolExecutor getPrefetchExecutor();
     /**
      * Get the memory manager used to track memory usage
      */
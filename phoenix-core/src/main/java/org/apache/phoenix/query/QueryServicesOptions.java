@@ -52,6 +52,8 @@ import static org.apache.phoenix.query.QueryServices.LOG_SAMPLE_RATE;
 import static org.apache.phoenix.query.QueryServices.MASTER_INFO_PORT_ATTRIB;
 import static org.apache.phoenix.query.QueryServices.MAX_CLIENT_METADATA_CACHE_SIZE_ATTRIB;
 import static org.apache.phoenix.query.QueryServices.MAX_MEMORY_PERC_ATTRIB;
+import static org.apache.phoenix.query.QueryServices.MAX_MEMORY_WAIT_MS_ATTRIB;
+import static org.apache.phoenix.query.QueryServices.MEMORY_SPILL_WAIT_MS_ATTRIB;
 import static org.apache.phoenix.query.QueryServices.MAX_MUTATION_SIZE_ATTRIB;
 import static org.apache.phoenix.query.QueryServices.MAX_SERVER_CACHE_SIZE_ATTRIB;
 import static org.apache.phoenix.query.QueryServices.MAX_SERVER_CACHE_TIME_TO_LIVE_MS_ATTRIB;
@@ -72,6 +74,7 @@ import static org.apache.phoenix.query.QueryServices.REGIONSERVER_INFO_PORT_ATTR
 import static org.apache.phoenix.query.QueryServices.RENEW_LEASE_ENABLED;
 import static org.apache.phoenix.query.QueryServices.RENEW_LEASE_THREAD_POOL_SIZE;
 import static org.apache.phoenix.query.QueryServices.RENEW_LEASE_THRESHOLD_MILLISECONDS;
+import static org.apache.phoenix.query.QueryServices.RESULT_SET_PREFETCH_THREADS_ATTRIB;
 import static org.apache.phoenix.query.QueryServices.ROW_KEY_ORDER_SALTED_TABLE_ATTRIB;
 import static org.apache.phoenix.query.QueryServices.RPC_TIMEOUT_ATTRIB;
 import static org.apache.phoenix.query.QueryServices.RUN_RENEW_LEASE_FREQUENCY_INTERVAL_MILLISECONDS;
@@ -98,6 +101,8 @@ import static org.apache.phoenix.query.QueryServices.UPLOAD_BINARY_DATA_TYPE_ENC
 import static org.apache.phoenix.query.QueryServices.USE_BYTE_BASED_REGEX_ATTRIB;
 import static org.apache.phoenix.query.QueryServices.USE_INDEXES_ATTRIB;
 import static org.apache.phoenix.query.QueryServices.USE_STATS_FOR_PARALLELIZATION;
+import static org.apache.phoenix.query.QueryServices.USE_VIRTUAL_THREADS_ATTRIB;
+import static org.apache.phoenix.query.QueryServices.VIRTUAL_THREADS_MAX_CONCURRENCY_ATTRIB;
 
 import java.util.HashSet;
 import java.util.Map.Entry;
@@ -131,11 +136,16 @@ public class QueryServicesOptions {
 	public static final int DEFAULT_KEEP_ALIVE_MS = 60000;
 	public static final int DEFAULT_THREAD_POOL_SIZE = 128;
 	public static final int DEFAULT_QUEUE_SIZE = 5000;
+    public static final boolean DEFAULT_USE_VIRTUAL_THREADS = false;
+    public static final int DEFAULT_VIRTUAL_THREADS_MAX_CONCURRENCY = 1024;
 	public static final int DEFAULT_THREAD_TIMEOUT_MS = 600000; // 10min
 	public static final int DEFAULT_SPOOL_THRESHOLD_BYTES = 1024 * 1024 * 20; // 20m
     public static final String DEFAULT_SPOOL_DIRECTORY = System.getProperty("java.io.tmpdir");
 	public static final int DEFAULT_MAX_MEMORY_PERC = 15; // 15% of heap
 	public static final int DEFAULT_MAX_TENANT_MEMORY_PERC = 100;
+    public static final int DEFAULT_MAX_MEMORY_WAIT_MS = 0; // fail immediately
+    public static final int DEFAULT_MEMORY_SPILL_WAIT_MS = 0; // fail immediately
+    public static final int DEFAULT_MAX_QUERY_MEMORY_PERC = 100;
 	public static final long DEFAULT_MAX_SERVER_CACHE_SIZE = 1024*1024*100;  // 100 Mb
     public static final int DEFAULT_TARGET_QUERY_CONCURRENCY = 32;
     public static final int DEFAULT_MAX_QUERY_CONCURRENCY = 64;
@@ -238,6 +248,13 @@ public class QueryServicesOptions {
     // compression we're getting)
     public static final long DEFAULT_STATS_GUIDEPOST_WIDTH_BYTES = 3* 100 * 1024 *1024;
     public static final boolean DEFAULT_STATS_USE_CURRENT_TIME = true;
+    public static final boolean DEFAULT_STATS_COLLECT_ON_FLUSH = false;
+    public static final boolean DEFAULT_STATS_COLUMN_STATS_ENABLED = false;
+    public static final int DEFAULT_STATS_COLUMN_HISTOGRAM_BUCKETS = 16;
+    public static final boolean DEFAULT_STATS_GUIDEPOST_ADAPTIVE_ENABLED = false;
+    public static final int DEFAULT_STATS_GUIDEPOST_ADAPTIVE_TARGET_PER_REGION = 100;
+    public static final long DEFAULT_STATS_GUIDEPOST_ADAPTIVE_MIN_WIDTH_BYTES = 10 * 1024 * 1024; // 10MB
+    public static final long DEFAULT_STATS_GUIDEPOST_ADAPTIVE_MAX_WIDTH_BYTES = 3L * 1024 * 1024 * 1024; // 3GB
     public static final boolean DEFAULT_RUN_UPDATE_STATS_ASYNC = true;
     public static final boolean DEFAULT_COMMIT_STATS_ASYNC = true;
     public static final int DEFAULT_STATS_POOL_SIZE = 4;
@@ -336,6 +353,26 @@ public class QueryServicesOptions {
     //default update cache frequency
     public static final int DEFAULT_UPDATE_CACHE_FREQUENCY = 0;
     public static final int DEFAULT_SMALL_SCAN_THRESHOLD = 100;
+    public static final boolean DEFAULT_POINT_LOOKUP_USE_GETS = false;
+    public static final int DEFAULT_POINT_LOOKUP_GETS_THRESHOLD = 1000;
+    public static final boolean DEFAULT_QUERY_WORK_STEALING_ENABLED = false;
+    public static final boolean DEFAULT_LIMIT_RAMPED_DISPATCH_ENABLED = false;
+    public static final int DEFAULT_RESULT_SET_PREFETCH_ROWS = 0;
+    public static final int DEFAULT_RESULT_SET_PREFETCH_THREADS = 16;
+    public static final boolean DEFAULT_COLUMNAR_RESULTS_ENABLED = false;
+    public static final int DEFAULT_COLUMNAR_RESULTS_BATCH_SIZE = 1000;
+    public static final boolean DEFAULT_COLUMNAR_RESULTS_COMPRESSION = false;
+    public static final boolean DEFAULT_LATE_MATERIALIZATION_ENABLED = false;
+    public static final boolean DEFAULT_RUNTIME_JOIN_FILTER_ENABLED = false;
+    public static final int DEFAULT_RUNTIME_JOIN_FILTER_MAX_KEYS = 100000;
+    public static final boolean DEFAULT_SHARED_HASH_CACHE_ENABLED = false;
+    public static final boolean DEFAULT_CLIENT_HISTOGRAMS_PUBLISHER_ENABLED = false;
+    public static final boolean DEFAULT_QUERY_REGISTRY_ENABLED = false;
+    public static final boolean DEFAULT_QUERY_REGISTRY_JMX_ENABLED = false;
+    public static final boolean DEFAULT_STATEMENT_STATS_ENABLED = false;
+    public static final int DEFAULT_STATEMENT_STATS_MAX_STATEMENTS = 1000;
+    public static final long DEFAULT_STATEMENT_STATS_LOG_INTERVAL_MS = 0;
+    public static final int DEFAULT_CLIENT_AGGREGATION_PARALLELISM = 1;
 
     @SuppressWarnings("serial")
     public static final Set<String> DEFAULT_QUERY_SERVER_SKIP_WORDS = new HashSet<String>() {
@@ -357,6 +394,8 @@ public class QueryServicesOptions {
     public static final boolean DEFAULT_COST_BASED_OPTIMIZER_ENABLED = false;
     public static final String DEFAULT_LOGGING_LEVEL = LogLevel.OFF.name();
     public static final String DEFAULT_LOG_SAMPLE_RATE = "1.0";
+    public static final long DEFAULT_LOG_SLOW_QUERY_THRESHOLD_MS = -1;
+    public static final int DEFAULT_LOG_BATCH_SIZE = 100;
     public static final int DEFAULT_LOG_SALT_BUCKETS = 32;
 
     private final Configuration config;
@@ -390,6 +429,8 @@ public class QueryServicesOptions {
             .setIfUnset(SPOOL_DIRECTORY, DEFAULT_SPOOL_DIRECTORY)
             .setIfUnset(MAX_MEMORY_PERC_ATTRIB, DEFAULT_MAX_MEMORY_PERC)
             .setIfUnset(MAX_TENANT_MEMORY_PERC_ATTRIB, DEFAULT_MAX_TENANT_MEMORY_PERC)
+            .setIfUnset(MAX_MEMORY_WAIT_MS_ATTRIB, DEFAULT_MAX_MEMORY_WAIT_MS)
+            .setIfUnset(MEMORY_SPILL_WAIT_MS_ATTRIB, DEFAULT_MEMORY_SPILL_WAIT_MS)
             .setIfUnset(MAX_SERVER_CACHE_SIZE_ATTRIB, DEFAULT_MAX_SERVER_CACHE_SIZE)
             .setIfUnset(SCAN_CACHE_SIZE_ATTRIB, DEFAULT_SCAN_CACHE_SIZE)
             .setIfUnset(DATE_FORMAT_ATTRIB, DEFAULT_DATE_FORMAT)
@@ -513,6 +554,14 @@ public class QueryServicesOptions {
         return set(MAX_TENANT_MEMORY_PERC_ATTRIB, maxTenantMemoryPerc);
     }
 
+    public QueryServicesOptions setMaxMemoryWaitMs(int maxMemoryWaitMs) {
+        return set(MAX_MEMORY_WAIT_MS_ATTRIB, maxMemoryWaitMs);
+    }
+
+    public QueryServicesOptions setMemorySpillWaitMs(int memorySpillWaitMs) {
+        return set(MEMORY_SPILL_WAIT_MS_ATTRIB, memorySpillWaitMs);
+    }
+
     public QueryServicesOptions setMaxServerCacheSize(long maxServerCacheSize) {
         return set(MAX_SERVER_CACHE_SIZE_ATTRIB, maxServerCacheSize);
     }
@@ -590,14 +639,34 @@ public class QueryServicesOptions {
         return config.getInt(THREAD_POOL_SIZE_ATTRIB, DEFAULT_THREAD_POOL_SIZE);
     }
 
+    public int getResultSetPrefetchThreads() {
+        return config.getInt(RESULT_SET_PREFETCH_THREADS_ATTRIB, DEFAULT_RESULT_SET_PREFETCH_THREADS);
+    }
+
     public int getQueueSize() {
         return config.getInt(QUEUE_SIZE_ATTRIB, DEFAULT_QUEUE_SIZE);
     }
 
+    public boolean isUseVirtualThreads() {
+        return config.getBoolean(USE_VIRTUAL_THREADS_ATTRIB, DEFAULT_USE_VIRTUAL_THREADS);
+    }
+
+    public int getVirtualThreadsMaxConcurrency() {
+        return config.getInt(VIRTUAL_THREADS_MAX_CONCURRENCY_ATTRIB, DEFAULT_VIRTUAL_THREADS_MAX_CONCURRENCY);
+    }
+
     public int getMaxMemoryPerc() {
         return config.getInt(MAX_MEMORY_PERC_ATTRIB, DEFAULT_MAX_MEMORY_PERC);
     }
 
+    public int getMaxMemoryWaitMs() {
+        return config.getInt(MAX_MEMORY_WAIT_MS_ATTRIB, DEFAULT_MAX_MEMORY_WAIT_MS);
+    }
+
+    public int getMemorySpillWaitMs() {
+        return config.getInt(MEMORY_SPILL_WAIT_MS_ATTRIB, DEFAULT_MEMORY_SPILL_WAIT_MS);
+    }
+
     public int getMaxMutateSize() {
         return config.getInt(MAX_MUTATION_SIZE_ATTRIB, DEFAULT_MAX_MUTATION_SIZE);
     }
@@ -0,0 +1,320 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.schema.stats;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.phoenix.util.EquiDepthStreamHistogram;
+import org.apache.phoenix.util.EquiDepthStreamHistogram.Bucket;
+import org.apache.phoenix.util.SizedUtil;
+import org.apache.phoenix.util.TrustedByteArrayOutputStream;
+
+import com.clearspring.analytics.stream.cardinality.CardinalityMergeException;
+import com.clearspring.analytics.stream.cardinality.HyperLogLogPlus;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * Statistics for a single column (i.e. column qualifier of a column family) of a table: the
+ * number of null values, a HyperLogLog sketch of the number of distinct values and an
+ * equi-depth histogram of the values. Instances collected for different regions may be
+ * combined through {@link #merge(ColumnStatistics)}.
+ */
+public class ColumnStatistics {
+    // Same precisions as used by APPROX_COUNT_DISTINCT
+    private static final int NORMAL_SET_PRECISION = 16;
+    private static final int SPARSE_SET_PRECISION = 25;
+    // Caps the number of buckets retained when combining the histograms of regions
+    private static final int MAX_MERGED_HISTOGRAM_BUCKETS = 64;
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+    private static final Comparator<Bucket> BUCKET_COMPARATOR = new Comparator<Bucket>() {
+        @Override
+        public int compare(Bucket b1, Bucket b2) {
+            return Bytes.compareTo(b1.getLeftBoundInclusive(), b2.getLeftBoundInclusive());
+        }
+    };
+
+    private final long rowCount;
+    private final long nonNullCount;
+    private final HyperLogLogPlus ndvSketch;
+    private final List<Bucket> histogram;
+    private final long histogramCount;
+
+    private ColumnStatistics(long rowCount, long nonNullCount, HyperLogLogPlus ndvSketch, List<Bucket> histogram) {
+        this.rowCount = rowCount;
+        this.nonNullCount = nonNullCount;
+        this.ndvSketch = ndvSketch;
+        this.histogram = histogram;
+        long histogramCount = 0;
+        for (Bucket bucket : histogram) {
+            histogramCount += bucket.getCountEstimate();
+        }
+        this.histogramCount = histogramCount;
+    }
+
+    /**
+     * @return the number of rows of the column family over which the statistics were collected
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public long getNonNullCount() {
+        return nonNullCount;
+    }
+
+    public long getDistinctCount() {
+        return Math.min(nonNullCount, Math.max(1, ndvSketch.cardinality()));
+    }
+
+    public List<Bucket> getHistogram() {
+        return histogram;
+    }
+
+    public double getNullFraction() {
+        if (rowCount <= 0) {
+            return 0;
+        }
+        return Math.max(0, rowCount - nonNullCount) / (double) rowCount;
+    }
+
+    /**
+     * @return the estimated fraction of rows for which the column equals a given value
+     */
+    public double getEqualitySelectivity() {
+        if (nonNullCount == 0) {
+            return 0;
+        }
+        return (1 - getNullFraction()) / getDistinctCount();
+    }
+
+    /**
+     * Estimate the fraction of rows for which the column lies within the given range, based
+     * on the histogram of the column. Buckets that only partially overlap the range count
+     * for half of their values.
+     * @param lower the lower bound or null if unbounded
+     * @param upper the upper bound or null if unbounded
+     * @return the estimated selectivity or a negative value if no histogram is available
+     */
+    public double getRangeSelectivity(byte[] lower, boolean lowerInclusive, byte[] upper, boolean upperInclusive) {
+        if (histogramCount == 0) {
+            return -1;
+        }
+        double count = 0;
+        for (Bucket bucket : histogram) {
+            byte[] left = bucket.getLeftBoundInclusive();
+            byte[] right = bucket.getRightBoundExclusive();
+            if (upper != null) {
+                int c = Bytes.compareTo(left, upper);
+                if (c > 0 || (c == 0 && !upperInclusive)) {
+                    continue;
+                }
+            }
+            if (lower != null) {
+                int c = Bytes.compareTo(right, lower);
+                if (c < 0 || (c == 0 && !lowerInclusive)) {
+                    continue;
+                }
+            }
+            boolean contained = (lower == null || Bytes.compareTo(left, lower) >= 0)
+                    && (upper == null || Bytes.compareTo(right, upper) <= 0);
+            count += contained ? bucket.getCountEstimate() : bucket.getCountEstimate() / 2.0;
+        }
+        return (1 - getNullFraction()) * count / histogramCount;
+    }
+
+    /**
+     * Rebase the statistics on the number of rows of the column family, as the statistics of a
+     * column are only collected for the regions in which it has a value. The rows which were not
+     * accounted for have a null value.
+     * @param familyRowCount the number of rows of the column family over all regions
+     */
+    public ColumnStatistics withFamilyRowCount(long familyRowCount) {
+        if (familyRowCount <= rowCount) {
+            return this;
+        }
+        return new ColumnStatistics(familyRowCount, nonNullCount, ndvSketch, histogram);
+    }
+
+    /**
+     * Combine the statistics of the same column collected over disjoint sets of rows.
+     */
+    public ColumnStatistics merge(ColumnStatistics other) {
+        HyperLogLogPlus sketch = new HyperLogLogPlus(NORMAL_SET_PRECISION, SPARSE_SET_PRECISION);
+        try {
+            sketch.addAll(this.ndvSketch);
+            sketch.addAll(other.ndvSketch);
+        } catch (CardinalityMergeException e) {
+            // Cannot happen as all sketches use the same precision
+            throw new IllegalStateException(e);
+        }
+        List<Bucket> buckets = new ArrayList<Bucket>(histogram.size() + other.histogram.size());
+        buckets.addAll(histogram);
+        buckets.addAll(other.histogram);
+        Collections.sort(buckets, BUCKET_COMPARATOR);
+        return new ColumnStatistics(rowCount + other.rowCount, nonNullCount + other.nonNullCount, sketch,
+                compact(buckets, MAX_MERGED_HISTOGRAM_BUCKETS));
+    }
+
+    /*
+     * Coalesce adjacent buckets, sorted by their left bound, into at most maxBuckets buckets of
+     * roughly equal count.
+     */
+    private static List<Bucket> compact(List<Bucket> buckets, int maxBuckets) {
+        if (buckets.size() <= maxBuckets) {
+            return buckets;
+        }
+        long total = 0;
+        for (Bucket bucket : buckets) {
+            total += bucket.getCountEstimate();
+        }
+        long target = Math.max(1, total / maxBuckets);
+        List<Bucket> compacted = new ArrayList<Bucket>(maxBuckets + 1);
+        Bucket current = null;
+        for (Bucket bucket : buckets) {
+            if (current == null) {
+                current = new Bucket(bucket.getLeftBoundInclusive(), bucket.getRightBoundExclusive());
+            } else if (Bytes.compareTo(bucket.getRightBoundExclusive(), current.getRightBoundExclusive()) > 0) {
+                current.setRightBoundExclusive(bucket.getRightBoundExclusive());
+            }
+            current.incrementCountEstimate(bucket.getCountEstimate());
+            if (current.getCountEstimate() >= target) {
+                compacted.add(current);
+                current = null;
+            }
+        }
+        if (current != null) {
+            compacted.add(current);
+        }
+        return compacted;
+    }
+
+    public int getEstimatedSize() {
+        int size = SizedUtil.OBJECT_SIZE + 3 * SizedUtil.LONG_SIZE
+                + SizedUtil.OBJECT_SIZE + ndvSketch.sizeof()
+                + SizedUtil.ARRAY_SIZE;
+        for (Bucket bucket : histogram) {
+            size += SizedUtil.OBJECT_SIZE + SizedUtil.LONG_SIZE
+                    + 2 * SizedUtil.ARRAY_SIZE
+                    + bucket.getLeftBoundInclusive().length
+                    + bucket.getRightBoundExclusive().length;
+        }
+        return size;
+    }
+
+    public byte[] toBytes() throws IOException {
+        TrustedByteArrayOutputStream stream = new TrustedByteArrayOutputStream(256);
+        DataOutputStream output = new DataOutputStream(stream);
+        try {
+            WritableUtils.writeVLong(output, rowCount);
+            WritableUtils.writeVLong(output, nonNullCount);
+            byte[] sketch = ndvSketch.getBytes();
+            WritableUtils.writeVInt(output, sketch.length);
+            output.write(sketch);
+            WritableUtils.writeVInt(output, histogram.size());
+            for (Bucket bucket : histogram) {
+                Bytes.writeByteArray(output, bucket.getLeftBoundInclusive());
+                Bytes.writeByteArray(output, bucket.getRightBoundExclusive());
+                WritableUtils.writeVLong(output, bucket.getCountEstimate());
+            }
+            return stream.toByteArray();
+        } finally {
+            output.close();
+        }
+    }
+
+    public static ColumnStatistics fromBytes(byte[] b, int offset, int length) throws IOException {
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(b, offset, length))) {
+            long rowCount = WritableUtils.readVLong(input);
+            long nonNullCount = WritableUtils.readVLong(input);
+            byte[] sketch = new byte[WritableUtils.readVInt(input)];
+            input.readFully(sketch);
+            int bucketCount = WritableUtils.readVInt(input);
+            List<Bucket> histogram = new ArrayList<Bucket>(bucketCount);
+            for (int i = 0; i < bucketCount; i++) {
+                histogram.add(readBucket(input));
+            }
+            return new ColumnStatistics(rowCount, nonNullCount, HyperLogLogPlus.Builder.build(sketch), histogram);
+        }
+    }
+
+    private static Bucket readBucket(DataInput input) throws IOException {
+        Bucket bucket = new Bucket(Bytes.readByteArray(input), Bytes.readByteArray(input));
+        bucket.incrementCountEstimate(WritableUtils.readVLong(input));
+        return bucket;
+    }
+
+    /**
+     * Accumulates the statistics of a column while scanning a region. Cells must be provided in
+     * row order and only the first (i.e. latest) cell of a column in a row is taken into account.
+     */
+    public static class Builder {
+        private final HyperLogLogPlus ndvSketch = new HyperLogLogPlus(NORMAL_SET_PRECISION, SPARSE_SET_PRECISION);
+        private final EquiDepthStreamHistogram histogram;
+        private final int histogramBuckets;
+        private long nonNullCount;
+        private byte[] lastRow;
+        private int lastRowOffset;
+        private int lastRowLength;
+
+        public Builder(int histogramBuckets) {
+            this.histogram = new EquiDepthStreamHistogram(histogramBuckets);
+            this.histogramBuckets = histogramBuckets;
+        }
+
+        public void update(byte[] row, int rowOffset, int rowLength, byte[] value, int valueOffset, int valueLength) {
+            if (lastRow != null && Bytes.equals(lastRow, lastRowOffset, lastRowLength, row, rowOffset, rowLength)) {
+                return;
+            }
+            lastRow = row;
+            lastRowOffset = rowOffset;
+            lastRowLength = rowLength;
+            nonNullCount++;
+            ndvSketch.offerHashed(HASH_FUNCTION.hashBytes(value, valueOffset, valueLength).asLong());
+            histogram.addValue(Bytes.copy(value, valueOffset, valueLength));
+        }
+
+        /**
+         * @param rowCount the number of rows of the column family over which the column was scanned
+         */
+        public ColumnStatistics build(long rowCount) {
+            List<Bucket> buckets;
+            if (histogram.getTotalCount() >= histogramBuckets) {
+                try {
+                    buckets = histogram.computeBuckets();
+                } catch (IllegalStateException | IllegalArgumentException e) {
+                    // Not enough distinct values to fill or split the buckets
+                    buckets = Collections.emptyList();
+                }
+            } else {
+                buckets = Collections.emptyList();
+            }
+            return new ColumnStatistics(Math.max(rowCount, nonNullCount), nonNullCount, ndvSketch, buckets);
+        }
+    }
+}
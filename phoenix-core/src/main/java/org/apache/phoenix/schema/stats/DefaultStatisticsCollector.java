@@ -18,6 +18,7 @@
 package org.apache.phoenix.schema.stats;
 
 import java.io.IOException;
+import java.security.PrivilegedExceptionAction;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
@@ -41,6 +42,7 @@ import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.hbase.regionserver.InternalScanner;
 import org.apache.hadoop.hbase.regionserver.Region;
 import org.apache.hadoop.hbase.regionserver.Store;
+import org.apache.hadoop.hbase.security.User;
 import org.apache.hadoop.hbase.util.Pair;
 import org.apache.phoenix.coprocessor.MetaDataProtocol;
 import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
@@ -85,6 +87,13 @@ class DefaultStatisticsCollector implements StatisticsCollector {
     private final long clientTimeStamp;
     private final String tableName;
     private final boolean isViewIndexTable;
+    // Only set when collecting stats for a single column family
+    private final byte[] family;
+    // Only set when collecting stats for flushed data
+    private FlushSketch flushSketch;
+    private GuidePostsDelta guidePostsDelta;
+    // Only set when per column statistics are enabled
+    private final Map<ImmutableBytesPtr, FamilyColumnStatistics> columnStatsMap;
 
     DefaultStatisticsCollector(RegionCoprocessorEnvironment env, String tableName, long clientTimeStamp, byte[] family,
             byte[] gp_width_bytes, byte[] gp_per_region_bytes) throws IOException {
@@ -110,8 +119,15 @@ class DefaultStatisticsCollector implements StatisticsCollector {
             isViewIndexTable = false;
         }
         ptableKey = SchemaUtil.getTableKeyFromFullName(pName);
+        if (env.getConfiguration().getBoolean(QueryServices.STATS_COLUMN_STATS_ENABLED_ATTRIB,
+                QueryServicesOptions.DEFAULT_STATS_COLUMN_STATS_ENABLED)) {
+            columnStatsMap = Maps.newHashMap();
+        } else {
+            columnStatsMap = null;
+        }
         this.clientTimeStamp = clientTimeStamp;
         this.tableName = tableName;
+        this.family = family;
         // in a compaction we know the one family ahead of time
         if (family != null) {
             ImmutableBytesPtr cfKey = new ImmutableBytesPtr(family);
@@ -203,8 +219,55 @@ class DefaultStatisticsCollector implements StatisticsCollector {
                         QueryServices.STATS_GUIDEPOST_WIDTH_BYTES_ATTRIB,
                         QueryServicesOptions.DEFAULT_STATS_GUIDEPOST_WIDTH_BYTES),
                     env.getRegion().getTableDesc());
+                // A zero width disables stats collection, which the adaptive mode doesn't override
+                if (this.guidePostDepth > 0 && config.getBoolean(
+                        QueryServices.STATS_GUIDEPOST_ADAPTIVE_ENABLED_ATTRIB,
+                        QueryServicesOptions.DEFAULT_STATS_GUIDEPOST_ADAPTIVE_ENABLED)) {
+                    this.guidePostDepth = getAdaptiveGuidePostDepth(config);
+                }
+            }
+        }
+    }
+
+    private long getAdaptiveGuidePostDepth(Configuration config) {
+        Region region = env.getRegion();
+        // Guideposts are collected per column family, so size them after the family's store
+        long storeSize = 0;
+        if (family != null) {
+            Store store = region.getStore(family);
+            if (store != null) {
+                storeSize = store.getStorefilesSize();
+            }
+        } else {
+            // All the families share the width, so size it after the largest one
+            for (Store store : region.getStores()) {
+                storeSize = Math.max(storeSize, store.getStorefilesSize());
             }
         }
+        double accessRatio = Double.NaN;
+        if (env.getRegionServerServices() != null) {
+            List<Region> regions = env.getRegionServerServices().getOnlineRegions(region.getTableDesc().getTableName());
+            long totalReadRequests = 0;
+            for (Region r : regions) {
+                totalReadRequests += r.getReadRequestsCount();
+            }
+            if (totalReadRequests > 0) {
+                accessRatio = region.getReadRequestsCount() / ((double) totalReadRequests / regions.size());
+            }
+        }
+        long depth = StatisticsUtil.getAdaptiveGuidePostDepth(storeSize, accessRatio,
+                config.getInt(QueryServices.STATS_GUIDEPOST_ADAPTIVE_TARGET_PER_REGION_ATTRIB,
+                        QueryServicesOptions.DEFAULT_STATS_GUIDEPOST_ADAPTIVE_TARGET_PER_REGION),
+                config.getLong(QueryServices.STATS_GUIDEPOST_ADAPTIVE_MIN_WIDTH_BYTES_ATTRIB,
+                        QueryServicesOptions.DEFAULT_STATS_GUIDEPOST_ADAPTIVE_MIN_WIDTH_BYTES),
+                config.getLong(QueryServices.STATS_GUIDEPOST_ADAPTIVE_MAX_WIDTH_BYTES_ATTRIB,
+                        QueryServicesOptions.DEFAULT_STATS_GUIDEPOST_ADAPTIVE_MAX_WIDTH_BYTES));
+        if (logger.isDebugEnabled()) {
+            logger.debug("Using adaptive guidepost width of " + depth + " bytes for region "
+                    + region.getRegionInfo().getRegionNameAsString() + " with a store of " + storeSize
+                    + " bytes and a read access ratio of " + accessRatio);
+        }
+        return depth;
     }
 
     @Override
@@ -272,6 +335,7 @@ class DefaultStatisticsCollector implements StatisticsCollector {
                 // If we've disabled stats, don't write any, just delete them
                 if (this.guidePostDepth > 0) {
                     statsWriter.addStats(this, fam, mutations);
+                    statsWriter.addColumnStats(region, this, fam, mutations);
                 }
             }
         } catch (IOException e) {
@@ -293,8 +357,9 @@ class DefaultStatisticsCollector implements StatisticsCollector {
      */
     @Override
     public void collectStatistics(final List<Cell> results) {
-        // A guide posts depth of zero disables the collection of stats
-        if (guidePostDepth == 0 || results.size() == 0) {
+        // A guide posts depth of zero disables the collection of stats. For a flush, the depth
+        // is only known once the flushed data is merged.
+        if ((guidePostDepth == 0 && flushSketch == null) || results.size() == 0) {
             return;
         }
         Map<ImmutableBytesPtr, Boolean> famMap = Maps.newHashMap();
@@ -310,9 +375,21 @@ class DefaultStatisticsCollector implements StatisticsCollector {
             currentRow = row;
             incrementRow = true;
         }
+        if (flushSketch != null) {
+            for (Cell cell : results) {
+                KeyValue kv = KeyValueUtil.ensureKeyValue(cell);
+                maxTimeStamp = Math.max(maxTimeStamp, kv.getTimestamp());
+                flushSketch.update(row, kv.getLength(), incrementRow);
+                incrementRow = false;
+            }
+            return;
+        }
         for (Cell cell : results) {
             KeyValue kv = KeyValueUtil.ensureKeyValue(cell);
             maxTimeStamp = Math.max(maxTimeStamp, kv.getTimestamp());
+            if (columnStatsMap != null) {
+                updateColumnStatistics(kv);
+            }
             Pair<Long, GuidePostsInfoBuilder> gps;
             if (cachedGuidePosts == null) {
                 ImmutableBytesPtr cfKey = new ImmutableBytesPtr(kv.getFamilyArray(), kv.getFamilyOffset(),
@@ -346,6 +423,19 @@ class DefaultStatisticsCollector implements StatisticsCollector {
         }
     }
 
+    private void updateColumnStatistics(KeyValue kv) {
+        ImmutableBytesPtr cfKey = new ImmutableBytesPtr(kv.getFamilyArray(), kv.getFamilyOffset(),
+                kv.getFamilyLength());
+        FamilyColumnStatistics familyStats = columnStatsMap.get(cfKey);
+        if (familyStats == null) {
+            familyStats = new FamilyColumnStatistics(env.getConfiguration().getInt(
+                QueryServices.STATS_COLUMN_HISTOGRAM_BUCKETS_ATTRIB,
+                QueryServicesOptions.DEFAULT_STATS_COLUMN_HISTOGRAM_BUCKETS));
+            columnStatsMap.put(new ImmutableBytesPtr(cfKey.copyBytesIfNecessary()), familyStats);
+        }
+        familyStats.update(kv);
+    }
+
     @Override
     public InternalScanner createCompactionScanner(RegionCoprocessorEnvironment env, Store store,
             InternalScanner s) throws IOException {
@@ -361,6 +451,60 @@ class DefaultStatisticsCollector implements StatisticsCollector {
         return scanner;
     }
 
+    @Override
+    public InternalScanner createFlushScanner(RegionCoprocessorEnvironment env, Store store,
+            InternalScanner s) throws IOException {
+        if (logger.isDebugEnabled()) {
+            logger.debug("Flush scanner created for stats");
+        }
+        ImmutableBytesPtr cfKey = new ImmutableBytesPtr(store.getFamily().getName());
+        // The guidepost width and the current guideposts of the region are only read when
+        // merging, so that the flush doesn't wait on SYSTEM.CATALOG and SYSTEM.STATS
+        flushSketch = new FlushSketch(store.getFlushableSize());
+        return new StatisticsScanner(this, null, env, s, cfKey, true);
+    }
+
+    @Override
+    public void mergeFlushStatistics(final ImmutableBytesPtr fam) throws IOException {
+        if (flushSketch == null || flushSketch.getChunkCount() == 0) {
+            return;
+        }
+        // Same as for compaction, switch to the login user context to ensure we have the
+        // expected security context for the cross cluster RPCs to the stats table.
+        User.runAsLoginUser(new PrivilegedExceptionAction<Void>() {
+            @Override
+            public Void run() throws Exception {
+                mergeFlushedData(fam);
+                return null;
+            }
+        });
+    }
+
+    private void mergeFlushedData(ImmutableBytesPtr fam) throws IOException {
+        init();
+        if (guidePostDepth == 0) {
+            return;
+        }
+        GuidePostsInfo existing = statsWriter.readStatsForRegion(env.getRegion(), fam);
+        guidePostsDelta = new GuidePostsDelta(existing, guidePostDepth);
+        flushSketch.mergeInto(guidePostsDelta);
+        GuidePostsInfo gps = getGuidePosts(fam);
+        if (gps == null || gps.getGuidePostsCount() == 0) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("No stats to merge for the region "
+                        + env.getRegion().getRegionInfo().getRegionNameAsString() + " as part of flush");
+            }
+            return;
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Merging " + gps.getGuidePostsCount() + " guideposts into the stats for the region "
+                    + env.getRegion().getRegionInfo().getRegionNameAsString() + " as part of flush");
+        }
+        List<Mutation> mutations = new ArrayList<Mutation>();
+        statsWriter.addStats(this, fam, mutations, false);
+        statsWriter.commitStats(mutations, this, false);
+    }
+
     @Override
     public void init() throws IOException {
         try {
@@ -373,6 +517,9 @@ class DefaultStatisticsCollector implements StatisticsCollector {
 
     @Override
     public GuidePostsInfo getGuidePosts(ImmutableBytesPtr fam) {
+        if (guidePostsDelta != null) {
+            return guidePostsInfoWriterMap.containsKey(fam) ? guidePostsDelta.build() : null;
+        }
         Pair<Long, GuidePostsInfoBuilder> pair = guidePostsInfoWriterMap.get(fam);
         if (pair != null) {
             return pair.getSecond().build();
@@ -380,6 +527,24 @@ class DefaultStatisticsCollector implements StatisticsCollector {
         return null;
     }
 
+    @Override
+    public Map<ImmutableBytesPtr, ColumnStatistics> getColumnStatistics(ImmutableBytesPtr fam) {
+        if (columnStatsMap == null || flushSketch != null) {
+            return null;
+        }
+        FamilyColumnStatistics familyStats = columnStatsMap.get(fam);
+        return familyStats == null ? null : familyStats.build();
+    }
+
+    @Override
+    public long getColumnStatisticsRowCount(ImmutableBytesPtr fam) {
+        if (columnStatsMap == null || flushSketch != null) {
+            return 0;
+        }
+        FamilyColumnStatistics familyStats = columnStatsMap.get(fam);
+        return familyStats == null ? 0 : familyStats.getRowCount();
+    }
+
     @VisibleForTesting // Don't call this method anywhere else
     public long getGuidePostDepth() {
         return guidePostDepth;
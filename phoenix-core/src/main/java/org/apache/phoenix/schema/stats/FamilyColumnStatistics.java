@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.schema.stats;
+
+import java.util.Map;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.query.QueryConstants;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Collects the {@link ColumnStatistics} of all the columns of a column family while scanning
+ * a region.
+ */
+class FamilyColumnStatistics {
+    private final Map<ImmutableBytesPtr, ColumnStatistics.Builder> builders = Maps.newHashMap();
+    private final int histogramBuckets;
+    private long rowCount;
+    private Cell lastCell;
+
+    FamilyColumnStatistics(int histogramBuckets) {
+        this.histogramBuckets = histogramBuckets;
+    }
+
+    /**
+     * Account for a cell of the family. Must be called in row key order.
+     */
+    void update(Cell cell) {
+        if (lastCell == null || !Bytes.equals(lastCell.getRowArray(), lastCell.getRowOffset(),
+                lastCell.getRowLength(), cell.getRowArray(), cell.getRowOffset(), cell.getRowLength())) {
+            rowCount++;
+            lastCell = cell;
+        }
+        if (cell.getTypeByte() != KeyValue.Type.Put.getCode() || isEmptyColumn(cell)) {
+            return;
+        }
+        ImmutableBytesPtr qualifier = new ImmutableBytesPtr(cell.getQualifierArray(),
+                cell.getQualifierOffset(), cell.getQualifierLength());
+        ColumnStatistics.Builder builder = builders.get(qualifier);
+        if (builder == null) {
+            builder = new ColumnStatistics.Builder(histogramBuckets);
+            builders.put(new ImmutableBytesPtr(qualifier.copyBytesIfNecessary()), builder);
+        }
+        builder.update(cell.getRowArray(), cell.getRowOffset(), cell.getRowLength(),
+            cell.getValueArray(), cell.getValueOffset(), cell.getValueLength());
+    }
+
+    /*
+     * The empty column carries no data. With column encoding its qualifier is the encoded
+     * value zero, whatever the number of bytes used by the encoding scheme.
+     */
+    private static boolean isEmptyColumn(Cell cell) {
+        byte[] b = cell.getQualifierArray();
+        int offset = cell.getQualifierOffset();
+        int length = cell.getQualifierLength();
+        if (Bytes.equals(b, offset, length, QueryConstants.EMPTY_COLUMN_BYTES, 0,
+                QueryConstants.EMPTY_COLUMN_BYTES.length)) {
+            return true;
+        }
+        if (length > QueryConstants.ENCODED_EMPTY_COLUMN_BYTES.length) {
+            return false;
+        }
+        for (int i = offset; i < offset + length; i++) {
+            if (b[i] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of rows of the column family, whether or not they have a value for any column
+     */
+    long getRowCount() {
+        return rowCount;
+    }
+
+    Map<ImmutableBytesPtr, ColumnStatistics> build() {
+        Map<ImmutableBytesPtr, ColumnStatistics> columnStats = Maps.newHashMapWithExpectedSize(builders.size());
+        for (Map.Entry<ImmutableBytesPtr, ColumnStatistics.Builder> entry : builders.entrySet()) {
+            columnStats.put(entry.getKey(), entry.getValue().build(rowCount));
+        }
+        return columnStats;
+    }
+}
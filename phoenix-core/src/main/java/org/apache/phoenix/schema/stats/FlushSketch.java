@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.schema.stats;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.util.ByteUtil;
+
+/**
+ * Summary of the data flushed for a column family, collected on the flush path without reading
+ * SYSTEM.STATS. The flushed data is cut into chunks of about the same number of bytes, each
+ * keyed by its last row. Once the flush completed, the chunks are merged into the existing
+ * guideposts of the region through a {@link GuidePostsDelta}, at the resolution of a chunk.
+ */
+class FlushSketch {
+    // Bounds the number of row keys retained for a flush
+    static final int MAX_CHUNKS = 1024;
+
+    private final long chunkDepth;
+    private final List<ImmutableBytesWritable> keys = new ArrayList<ImmutableBytesWritable>();
+    private final List<Long> byteCounts = new ArrayList<Long>();
+    private final List<Long> rowCounts = new ArrayList<Long>();
+    // Copy of the current row, as the cells of the flush don't outlive it
+    private byte[] lastRow = ByteUtil.EMPTY_BYTE_ARRAY;
+    private int lastRowLength;
+    private long byteCount;
+    private long rowCount;
+
+    /**
+     * @param flushSize the estimated size in bytes of the data being flushed
+     */
+    FlushSketch(long flushSize) {
+        this.chunkDepth = Math.max(1, flushSize / MAX_CHUNKS);
+    }
+
+    /**
+     * Account for a cell of the flushed data. Must be called in row key order.
+     * @param row the row key of the cell
+     * @param cellByteCount the size in bytes of the cell
+     * @param newRow true if this is the first cell of the row
+     */
+    void update(ImmutableBytesWritable row, long cellByteCount, boolean newRow) {
+        if (newRow) {
+            if (lastRow.length < row.getLength()) {
+                lastRow = new byte[row.getLength()];
+            }
+            System.arraycopy(row.get(), row.getOffset(), lastRow, 0, row.getLength());
+            lastRowLength = row.getLength();
+            rowCount++;
+        } else if (byteCount == 0 && !keys.isEmpty()) {
+            // Remaining cells of the row that closed the last chunk
+            int last = keys.size() - 1;
+            byteCounts.set(last, byteCounts.get(last) + cellByteCount);
+            return;
+        }
+        byteCount += cellByteCount;
+        if (byteCount >= chunkDepth) {
+            keys.add(new ImmutableBytesWritable(Arrays.copyOf(lastRow, lastRowLength)));
+            byteCounts.add(byteCount);
+            rowCounts.add(rowCount);
+            byteCount = 0;
+            rowCount = 0;
+        }
+    }
+
+    /**
+     * Merge the flushed data into the given guideposts, including the last partial chunk.
+     */
+    void mergeInto(GuidePostsDelta delta) {
+        for (int i = 0; i < keys.size(); i++) {
+            delta.update(keys.get(i), byteCounts.get(i), rowCounts.get(i));
+        }
+        if (byteCount > 0) {
+            delta.update(new ImmutableBytesWritable(Arrays.copyOf(lastRow, lastRowLength)), byteCount, rowCount);
+        }
+    }
+
+    int getChunkCount() {
+        return keys.size() + (byteCount > 0 ? 1 : 0);
+    }
+}
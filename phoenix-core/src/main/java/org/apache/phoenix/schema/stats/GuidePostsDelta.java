@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.schema.stats;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.util.ByteUtil;
+import org.apache.phoenix.util.PrefixByteDecoder;
+
+/**
+ * Tracks the guideposts of newly flushed data relative to the guideposts already stored
+ * in SYSTEM.STATS for a region and column family. This allows stats to be kept close to
+ * the real data distribution between major compactions without rescanning the region.
+ *
+ * The existing guideposts partition the region into intervals. Bytes and rows of the chunks
+ * of a {@link FlushSketch} are accumulated per interval: once an interval accumulates at least
+ * the guidepost depth a new guidepost is created at the last row of the current chunk, while
+ * any remainder is added to the counts of the existing guidepost that closes the interval. As
+ * with a full collection, the remainder after the last guidepost of the region is not tracked.
+ */
+class GuidePostsDelta {
+    private final long guidePostDepth;
+    private final ImmutableBytesWritable[] keys;
+    private final long[] byteCounts;
+    private final long[] rowCounts;
+    // One more slot than the number of existing guideposts for the tail of the region
+    private final long[] pendingByteCounts;
+    private final long[] pendingRowCounts;
+    private final List<ImmutableBytesWritable> newKeys = new ArrayList<ImmutableBytesWritable>();
+    private final List<Long> newByteCounts = new ArrayList<Long>();
+    private final List<Long> newRowCounts = new ArrayList<Long>();
+    private int interval = 0;
+
+    /**
+     * @param existing guideposts currently stored for the region and column family
+     * @param guidePostDepth the guidepost width in bytes
+     */
+    GuidePostsDelta(GuidePostsInfo existing, long guidePostDepth) throws IOException {
+        this.guidePostDepth = guidePostDepth;
+        int count = existing == null ? 0 : existing.getGuidePostsCount();
+        this.keys = new ImmutableBytesWritable[count];
+        this.byteCounts = new long[count];
+        this.rowCounts = new long[count];
+        this.pendingByteCounts = new long[count + 1];
+        this.pendingRowCounts = new long[count + 1];
+        if (count > 0) {
+            ImmutableBytesWritable guidePosts = existing.getGuidePosts();
+            try (ByteArrayInputStream stream = new ByteArrayInputStream(guidePosts.get(),
+                    guidePosts.getOffset(), guidePosts.getLength())) {
+                DataInput input = new DataInputStream(stream);
+                // Allocates a new byte array per key, so the decoded keys may be retained
+                PrefixByteDecoder decoder = new PrefixByteDecoder();
+                for (int i = 0; i < count; i++) {
+                    keys[i] = new ImmutableBytesWritable(decoder.decode(input));
+                    byteCounts[i] = existing.getByteCounts()[i];
+                    rowCounts[i] = existing.getRowCounts()[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Account for a chunk of the flushed data. Must be called in row key order.
+     * @param row the last row key of the chunk
+     * @param byteCount the size in bytes of the chunk
+     * @param rowCount the number of rows starting in the chunk
+     */
+    void update(ImmutableBytesWritable row, long byteCount, long rowCount) {
+        while (interval < keys.length && keys[interval].compareTo(row) < 0) {
+            interval++;
+        }
+        pendingByteCounts[interval] += byteCount;
+        pendingRowCounts[interval] += rowCount;
+        if (pendingByteCounts[interval] >= guidePostDepth
+                // Leave it to the existing guidepost when the row is the guidepost itself
+                && (interval == keys.length || keys[interval].compareTo(row) != 0)
+                && (newKeys.isEmpty() || newKeys.get(newKeys.size() - 1).compareTo(row) < 0)) {
+            newKeys.add(new ImmutableBytesWritable(ByteUtil.copyKeyBytesIfNecessary(row)));
+            newByteCounts.add(pendingByteCounts[interval]);
+            newRowCounts.add(pendingRowCounts[interval]);
+            pendingByteCounts[interval] = 0;
+            pendingRowCounts[interval] = 0;
+        }
+    }
+
+    /**
+     * @return the guideposts that must be written to SYSTEM.STATS to merge in the flushed
+     *         data: the newly created guideposts as well as the existing guideposts whose
+     *         counts changed, in row key order.
+     */
+    GuidePostsInfo build() {
+        GuidePostsInfoBuilder builder = new GuidePostsInfoBuilder();
+        int newIndex = 0;
+        for (int i = 0; i < keys.length; i++) {
+            while (newIndex < newKeys.size() && newKeys.get(newIndex).compareTo(keys[i]) < 0) {
+                builder.addGuidePostOnCollection(newKeys.get(newIndex), newByteCounts.get(newIndex),
+                    newRowCounts.get(newIndex));
+                newIndex++;
+            }
+            if (pendingByteCounts[i] > 0) {
+                builder.addGuidePostOnCollection(keys[i], byteCounts[i] + pendingByteCounts[i],
+                    rowCounts[i] + pendingRowCounts[i]);
+            }
+        }
+        for (; newIndex < newKeys.size(); newIndex++) {
+            builder.addGuidePostOnCollection(newKeys.get(newIndex), newByteCounts.get(newIndex),
+                newRowCounts.get(newIndex));
+        }
+        return builder.build();
+    }
+}
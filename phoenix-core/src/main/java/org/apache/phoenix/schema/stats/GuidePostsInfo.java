@@ -19,9 +19,12 @@ package org.apache.phoenix.schema.stats;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
 import org.apache.phoenix.util.ByteUtil;
 import org.apache.phoenix.util.SizedUtil;
 
@@ -71,6 +74,20 @@ public class GuidePostsInfo {
      * The timestamps at which guideposts were created/updated
      */
     private final long[] gpTimestamps;
+    /**
+     * Per column statistics keyed by column qualifier, if collected
+     */
+    private final Map<ImmutableBytesPtr, ColumnStatistics> columnStatistics;
+    /**
+     * Number of guideposts between restart points
+     */
+    private final int restartInterval;
+    /**
+     * Offsets into guidePosts of the restart points, i.e. of the guideposts at every
+     * restartInterval index, which are encoded without a shared prefix and may be
+     * decoded without decoding the guideposts that precede them
+     */
+    private final int[] restartOffsets;
 
     /**
      * Constructor that creates GuidePostsInfo per region
@@ -90,7 +107,23 @@ public class GuidePostsInfo {
      */
     public GuidePostsInfo(List<Long> byteCounts, ImmutableBytesWritable guidePosts, List<Long> rowCounts, int maxLength,
             int guidePostsCount, List<Long> updateTimes) {
+        this(byteCounts, guidePosts, rowCounts, maxLength, guidePostsCount, updateTimes, 0, new int[0]);
+    }
+
+    /**
+     * Constructor that creates GuidePostsInfo per region with an index of restart points
+     * 
+     * @param restartInterval
+     *            Number of guidePosts between restart points
+     * @param restartOffsets
+     *            Offsets into guidePosts of the restart points
+     * @see #GuidePostsInfo(List, ImmutableBytesWritable, List, int, int, List)
+     */
+    public GuidePostsInfo(List<Long> byteCounts, ImmutableBytesWritable guidePosts, List<Long> rowCounts, int maxLength,
+            int guidePostsCount, List<Long> updateTimes, int restartInterval, int[] restartOffsets) {
         this.guidePosts = new ImmutableBytesWritable(guidePosts);
+        this.restartInterval = restartInterval;
+        this.restartOffsets = restartOffsets;
         this.maxLength = maxLength;
         this.guidePostsCount = guidePostsCount;
         this.rowCounts = Longs.toArray(rowCounts);
@@ -101,9 +134,38 @@ public class GuidePostsInfo {
                 + SizedUtil.INT_SIZE // guidePostsCount
                 + SizedUtil.ARRAY_SIZE + this.rowCounts.length * SizedUtil.LONG_SIZE // rowCounts
                 + SizedUtil.ARRAY_SIZE + this.byteCounts.length * SizedUtil.LONG_SIZE // byteCounts
+                + SizedUtil.INT_SIZE // restartInterval
+                + SizedUtil.ARRAY_SIZE + this.restartOffsets.length * SizedUtil.INT_SIZE // restartOffsets
                 + SizedUtil.INT_SIZE; // estimatedSize
         this.estimatedSize = estimatedSize;
         this.gpTimestamps = Longs.toArray(updateTimes);
+        this.columnStatistics = Collections.emptyMap();
+    }
+
+    /**
+     * Constructor that adds per column statistics to the given guideposts
+     *
+     * @param info
+     *            The guideposts
+     * @param columnStatistics
+     *            Statistics of the columns of the column family keyed by column qualifier
+     */
+    public GuidePostsInfo(GuidePostsInfo info, Map<ImmutableBytesPtr, ColumnStatistics> columnStatistics) {
+        this.guidePosts = info.guidePosts;
+        this.maxLength = info.maxLength;
+        this.guidePostsCount = info.guidePostsCount;
+        this.rowCounts = info.rowCounts;
+        this.byteCounts = info.byteCounts;
+        this.gpTimestamps = info.gpTimestamps;
+        this.restartInterval = info.restartInterval;
+        this.restartOffsets = info.restartOffsets;
+        this.columnStatistics = columnStatistics;
+        int estimatedSize = info.getEstimatedSize() + (int) SizedUtil.sizeOfMap(columnStatistics.size(),
+            SizedUtil.IMMUTABLE_BYTES_PTR_SIZE, SizedUtil.POINTER_SIZE);
+        for (ColumnStatistics stats : columnStatistics.values()) {
+            estimatedSize += stats.getEstimatedSize();
+        }
+        this.estimatedSize = estimatedSize;
     }
     
     public ImmutableBytesWritable getGuidePosts() {
@@ -134,6 +196,76 @@ public class GuidePostsInfo {
         return estimatedSize;
     }
 
+    /**
+     * Find the restart point from which to decode the guideposts to reach a given key,
+     * through a binary search of the guideposts at the restart points.
+     * @param key the key to reach
+     * @return the last restart point whose guidepost is less than or equal to the key,
+     *         or -1 if decoding must start from the first guidepost
+     */
+    public int getRestartPoint(ImmutableBytesWritable key) {
+        int low = 0;
+        int high = restartOffsets.length - 1;
+        int restartPoint = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (compareRestartKey(mid, key) <= 0) {
+                restartPoint = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return restartPoint;
+    }
+
+    /**
+     * @return the offset into the guideposts from which to decode for the given restart point
+     */
+    public int getRestartOffset(int restartPoint) {
+        return restartPoint < 0 ? 0 : restartOffsets[restartPoint];
+    }
+
+    /**
+     * @return the index of the guidepost at the given restart point
+     */
+    public int getRestartGuidePostIndex(int restartPoint) {
+        return restartPoint < 0 ? 0 : restartPoint * restartInterval;
+    }
+
+    /*
+     * The guidepost at a restart point is encoded as a zero prefix length followed by the
+     * length and bytes of the whole guidepost.
+     */
+    private int compareRestartKey(int restartPoint, ImmutableBytesWritable key) {
+        byte[] b = guidePosts.get();
+        int offset = guidePosts.getOffset() + restartOffsets[restartPoint];
+        offset += WritableUtils.decodeVIntSize(b[offset]);
+        int length = readVInt(b, offset);
+        offset += WritableUtils.decodeVIntSize(b[offset]);
+        return Bytes.compareTo(b, offset, length, key.get(), key.getOffset(), key.getLength());
+    }
+
+    private static int readVInt(byte[] b, int offset) {
+        byte firstByte = b[offset];
+        int size = WritableUtils.decodeVIntSize(firstByte);
+        if (size == 1) {
+            return firstByte;
+        }
+        long i = 0;
+        for (int idx = 1; idx < size; idx++) {
+            i = (i << 8) | (b[offset + idx] & 0xFF);
+        }
+        return (int) (WritableUtils.isNegativeVInt(firstByte) ? ~i : i);
+    }
+
+    /**
+     * @return the statistics of the given column or null if none were collected
+     */
+    public ColumnStatistics getColumnStatistics(ImmutableBytesPtr columnQualifier) {
+        return columnStatistics.get(columnQualifier);
+    }
+
     public boolean isEmptyGuidePost() {
         return guidePosts.equals(EMPTY_GUIDEPOST_KEY) && guidePostsCount == 0
                 && byteCounts.length == 1 && gpTimestamps.length == 1;
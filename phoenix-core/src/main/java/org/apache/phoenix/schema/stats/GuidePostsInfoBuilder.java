@@ -27,11 +27,19 @@ import org.apache.phoenix.util.ByteUtil;
 import org.apache.phoenix.util.PrefixByteEncoder;
 import org.apache.phoenix.util.TrustedByteArrayOutputStream;
 
+import com.google.common.primitives.Ints;
+
 /*
  * Builder to help in adding guidePosts and building guidePostInfo. This is used when we are collecting stats or reading stats for a table.
  */
 
 public class GuidePostsInfoBuilder {
+    /**
+     * Number of guideposts between restart points, at which the guideposts are encoded
+     * without a shared prefix so that they may be binary searched
+     */
+    static final int RESTART_INTERVAL = 64;
+
     private PrefixByteEncoder encoder;
     private ImmutableBytesWritable lastRow;
     private ImmutableBytesWritable guidePosts=new ImmutableBytesWritable(ByteUtil.EMPTY_BYTE_ARRAY);
@@ -51,6 +59,7 @@ public class GuidePostsInfoBuilder {
     private List<Long> rowCounts = new ArrayList<Long>();
     private List<Long> byteCounts = new ArrayList<Long>();
     private List<Long> guidePostsTimestamps = new ArrayList<Long>();
+    private List<Integer> restartOffsets = new ArrayList<Integer>();
 
     public boolean isEmpty() {
         return rowCounts.size() == 0;
@@ -99,7 +108,15 @@ public class GuidePostsInfoBuilder {
             long updateTimestamp) {
         if (row.getLength() != 0 && lastRow.compareTo(row) < 0) {
             try {
+                int offset = stream.size();
+                boolean isRestartPoint = guidePostsCount % RESTART_INTERVAL == 0;
+                if (isRestartPoint) {
+                    encoder.reset();
+                }
                 encoder.encode(output, row.get(), row.getOffset(), row.getLength());
+                if (isRestartPoint) {
+                    restartOffsets.add(offset);
+                }
                 rowCounts.add(rowCount);
                 byteCounts.add(byteCount);
                 guidePostsTimestamps.add(updateTimestamp);
@@ -117,7 +134,8 @@ public class GuidePostsInfoBuilder {
     public GuidePostsInfo build() {
         this.guidePosts.set(stream.getBuffer(), 0, stream.size());
         GuidePostsInfo guidePostsInfo = new GuidePostsInfo(this.byteCounts, this.guidePosts, this.rowCounts,
-                this.maxLength, this.guidePostsCount, this.guidePostsTimestamps);
+                this.maxLength, this.guidePostsCount, this.guidePostsTimestamps, RESTART_INTERVAL,
+                Ints.toArray(this.restartOffsets));
         return guidePostsInfo;
     }
 
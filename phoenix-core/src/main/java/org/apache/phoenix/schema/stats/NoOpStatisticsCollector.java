@@ -19,6 +19,7 @@ package org.apache.phoenix.schema.stats;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.client.Scan;
@@ -60,6 +61,17 @@ public class NoOpStatisticsCollector implements StatisticsCollector {
         return delegate;
     }
 
+    @Override
+    public InternalScanner createFlushScanner(RegionCoprocessorEnvironment env, Store store,
+            InternalScanner delegate) throws IOException {
+        return delegate;
+    }
+
+    @Override
+    public void mergeFlushStatistics(ImmutableBytesPtr fam) {
+        // No-op
+    }
+
     @Override 
     public void init() {
         // No-op
@@ -68,4 +80,14 @@ public class NoOpStatisticsCollector implements StatisticsCollector {
     @Override public GuidePostsInfo getGuidePosts(ImmutableBytesPtr fam) {
         return null;
     }
+
+    @Override
+    public Map<ImmutableBytesPtr, ColumnStatistics> getColumnStatistics(ImmutableBytesPtr fam) {
+        return null;
+    }
+
+    @Override
+    public long getColumnStatisticsRowCount(ImmutableBytesPtr fam) {
+        return 0;
+    }
 }
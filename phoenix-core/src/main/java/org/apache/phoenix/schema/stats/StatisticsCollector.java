@@ -20,6 +20,7 @@ package org.apache.phoenix.schema.stats;
 import java.io.Closeable;
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.client.Scan;
@@ -60,6 +61,21 @@ public interface StatisticsCollector extends Closeable {
     InternalScanner createCompactionScanner(RegionCoprocessorEnvironment env, Store store,
             InternalScanner delegate) throws IOException;
 
+    /**
+     * Wrap a flush scanner with a scanner that will collect statistics for the flushed data using
+     * this instance and merge them into the existing statistics of the region once closed,
+     * through {@link #mergeFlushStatistics(ImmutableBytesPtr)}.
+     */
+    InternalScanner createFlushScanner(RegionCoprocessorEnvironment env, Store store,
+            InternalScanner delegate) throws IOException;
+
+    /**
+     * Merge the statistics collected for flushed data through {@link #createFlushScanner} into
+     * the existing statistics of the region. Reads the guidepost width and the current
+     * guideposts of the region, so it's called after the flush rather than on its path.
+     */
+    void mergeFlushStatistics(ImmutableBytesPtr fam) throws IOException;
+
     /**
      * Called before beginning the collection of statistics through {@link #collectStatistics(List)}
      * @throws IOException 
@@ -70,4 +86,16 @@ public interface StatisticsCollector extends Closeable {
      * Retrieve the calculated guide post info for the given column family.
      */
     GuidePostsInfo getGuidePosts(ImmutableBytesPtr fam);
+
+    /**
+     * Retrieve the calculated statistics of each column, keyed by column qualifier, for the
+     * given column family or null if per column statistics are not collected.
+     */
+    Map<ImmutableBytesPtr, ColumnStatistics> getColumnStatistics(ImmutableBytesPtr fam);
+
+    /**
+     * Retrieve the number of rows of the given column family over which the statistics of its
+     * columns were collected, or 0 if per column statistics are not collected.
+     */
+    long getColumnStatisticsRowCount(ImmutableBytesPtr fam);
 }
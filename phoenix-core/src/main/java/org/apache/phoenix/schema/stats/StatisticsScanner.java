@@ -41,6 +41,8 @@ import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
 
 /**
  * The scanner that does the scanning to collect the stats during major compaction.{@link DefaultStatisticsCollector}
+ * When created for a flush, the collected stats are merged into the existing stats of the region instead of
+ * replacing them, by the collector itself which then owns the stats writer.
  */
 public class StatisticsScanner implements InternalScanner {
     private static final Log LOG = LogFactory.getLog(StatisticsScanner.class);
@@ -51,9 +53,15 @@ public class StatisticsScanner implements InternalScanner {
     private ImmutableBytesPtr family;
     private final Configuration config;
     private final RegionServerServices regionServerServices;
+    private final boolean incremental;
 
     public StatisticsScanner(StatisticsCollector tracker, StatisticsWriter stats, RegionCoprocessorEnvironment env,
             InternalScanner delegate, ImmutableBytesPtr family) {
+        this(tracker, stats, env, delegate, family, false);
+    }
+
+    public StatisticsScanner(StatisticsCollector tracker, StatisticsWriter stats, RegionCoprocessorEnvironment env,
+            InternalScanner delegate, ImmutableBytesPtr family, boolean incremental) {
         this.tracker = tracker;
         this.statsWriter = stats;
         this.delegate = delegate;
@@ -61,7 +69,10 @@ public class StatisticsScanner implements InternalScanner {
         this.region = env.getRegion();
         this.family = family;
         this.config = env.getConfiguration();
-        StatisticsCollectionRunTracker.getInstance(config).addCompactingRegion(region.getRegionInfo());
+        this.incremental = incremental;
+        if (!incremental) {
+            StatisticsCollectionRunTracker.getInstance(config).addCompactingRegion(region.getRegionInfo());
+        }
     }
 
     @Override
@@ -91,6 +102,11 @@ public class StatisticsScanner implements InternalScanner {
 
     @Override
     public void close() throws IOException {
+        if (incremental) {
+            // The flush cannot complete until the memstore snapshot scanner is closed, so don't
+            // defer this to the (possibly asynchronous) stats commit
+            getDelegate().close();
+        }
         boolean async = getConfig().getBoolean(COMMIT_STATS_ASYNC, DEFAULT_COMMIT_STATS_ASYNC);
         StatisticsCollectionRunTracker collectionTracker = getStatsCollectionRunTracker(config);
         StatisticsScannerCallable callable = createCallable();
@@ -145,6 +161,10 @@ public class StatisticsScanner implements InternalScanner {
             StatisticsCollectionRunTracker collectionTracker = getStatsCollectionRunTracker(config);
             final HRegionInfo regionInfo = getRegion().getRegionInfo();
             try {
+                if (incremental) {
+                    mergeStats(collectionTracker, regionInfo);
+                    return null;
+                }
                 // update the statistics table
                 // Just verify if this if fine
                 ArrayList<Mutation> mutations = new ArrayList<Mutation>();
@@ -159,6 +179,7 @@ public class StatisticsScanner implements InternalScanner {
                             + " as part of major compaction");
                 }
                 getStatisticsWriter().addStats(tracker, family, mutations);
+                getStatisticsWriter().addColumnStats(region, tracker, family, mutations);
                 if (LOG.isDebugEnabled()) {
                     LOG.debug("Committing new stats for the region " + regionInfo.getRegionNameAsString()
                             + " as part of major compaction");
@@ -173,8 +194,12 @@ public class StatisticsScanner implements InternalScanner {
                 }
             } finally {
                 try {
-                    collectionTracker.removeCompactingRegion(regionInfo);
-                    getStatisticsWriter().close();// close the writer
+                    if (!incremental) {
+                        collectionTracker.removeCompactingRegion(regionInfo);
+                    }
+                    if (getStatisticsWriter() != null) {
+                        getStatisticsWriter().close();// close the writer
+                    }
                     getTracker().close();// close the tracker
                 } catch (IOException e) {
                     if (toThrow == null) toThrow = e;
@@ -182,7 +207,9 @@ public class StatisticsScanner implements InternalScanner {
                 } finally {
                     // close the delegate scanner
                     try {
-                        getDelegate().close();
+                        if (!incremental) {
+                            getDelegate().close();
+                        }
                     } catch (IOException e) {
                         if (toThrow == null) toThrow = e;
                         LOG.error("Error while closing the scanner", e);
@@ -193,6 +220,16 @@ public class StatisticsScanner implements InternalScanner {
             }
             return null;
         }
+
+        private void mergeStats(StatisticsCollectionRunTracker collectionTracker, HRegionInfo regionInfo)
+                throws IOException {
+            if (collectionTracker.areStatsBeingCollectedOnCompaction(regionInfo)) {
+                // The stats of the entire region are about to be replaced anyway
+                LOG.debug("Not merging stats for the flush because the region is being major compacted");
+                return;
+            }
+            getTracker().mergeFlushStatistics(family);
+        }
     }
 
 }
@@ -19,6 +19,7 @@ package org.apache.phoenix.schema.stats;
 import static org.apache.phoenix.util.SchemaUtil.getVarCharLength;
 
 import java.io.IOException;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.hadoop.hbase.Cell;
@@ -33,6 +34,7 @@ import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.phoenix.coprocessor.MetaDataProtocol;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
 import org.apache.phoenix.jdbc.PhoenixDatabaseMetaData;
 import org.apache.phoenix.query.QueryConstants;
 import org.apache.phoenix.schema.SortOrder;
@@ -41,6 +43,7 @@ import org.apache.phoenix.util.ByteUtil;
 import org.apache.phoenix.util.MetaDataUtil;
 import org.apache.phoenix.util.SchemaUtil;
 
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 /**
@@ -75,6 +78,33 @@ public class StatisticsUtil {
 
     /** Number of parts in our complex key */
     protected static final int NUM_KEY_PARTS = 3;
+
+    /*
+     * Per column statistics are stored per region in rows keyed by the region start key under
+     * the column family name prefixed with this byte, which keeps them out of the key range
+     * of the guideposts of the column family. Their qualifiers are the column qualifiers
+     * prefixed with the same byte so that they never clash with the columns of SYSTEM.STATS.
+     */
+    private static final byte COLUMN_STATS_PREFIX = 0x01;
+
+    public static ImmutableBytesWritable getColumnStatsFamily(ImmutableBytesWritable fam) {
+        byte[] b = new byte[fam.getLength() + 1];
+        b[0] = COLUMN_STATS_PREFIX;
+        System.arraycopy(fam.get(), fam.getOffset(), b, 1, fam.getLength());
+        return new ImmutableBytesWritable(b);
+    }
+
+    public static byte[] getColumnStatsQualifier(ImmutableBytesWritable columnQualifier) {
+        byte[] b = new byte[columnQualifier.getLength() + 1];
+        b[0] = COLUMN_STATS_PREFIX;
+        System.arraycopy(columnQualifier.get(), columnQualifier.getOffset(), b, 1, columnQualifier.getLength());
+        return b;
+    }
+
+    private static boolean isColumnStatsQualifier(Cell cell) {
+        return cell.getQualifierLength() > 0
+                && cell.getQualifierArray()[cell.getQualifierOffset()] == COLUMN_STATS_PREFIX;
+    }
     
     public static byte[] getRowKey(byte[] table, ImmutableBytesWritable fam, byte[] guidePostStartKey) {
         return getRowKey(table, fam, new ImmutableBytesWritable(guidePostStartKey,0,guidePostStartKey.length));
@@ -193,7 +223,57 @@ public class StatisticsUtil {
         }
         // We write a row with an empty KeyValue in the case that stats were generated but without enough data
         // for any guideposts. If we have no rows, it means stats were never generated.
-        return current == null ? GuidePostsInfo.NO_GUIDEPOST : guidePostsInfoBuilder.isEmpty() ? emptyGuidePost : guidePostsInfoBuilder.build();
+        if (current == null) {
+            return GuidePostsInfo.NO_GUIDEPOST;
+        }
+        GuidePostsInfo info = guidePostsInfoBuilder.isEmpty() ? emptyGuidePost : guidePostsInfoBuilder.build();
+        Map<ImmutableBytesPtr, ColumnStatistics> columnStats =
+                readColumnStatistics(statsHTable, tableNameBytes, key.getColumnFamily(), clientTimeStamp);
+        return columnStats.isEmpty() || info == null ? info : new GuidePostsInfo(info, columnStats);
+    }
+
+    /**
+     * Read the per column statistics of a column family, combining those collected for each region.
+     */
+    private static Map<ImmutableBytesPtr, ColumnStatistics> readColumnStatistics(HTableInterface statsHTable,
+            byte[] tableNameBytes, byte[] family, long clientTimeStamp) throws IOException {
+        ImmutableBytesWritable columnStatsFamily = getColumnStatsFamily(new ImmutableBytesWritable(family));
+        Scan s = MetaDataUtil.newTableRowsScan(getStartKey(tableNameBytes, columnStatsFamily),
+                getEndKey(tableNameBytes, columnStatsFamily), MetaDataProtocol.MIN_TABLE_TIMESTAMP, clientTimeStamp);
+        s.addFamily(QueryConstants.DEFAULT_COLUMN_FAMILY_BYTES);
+        Map<ImmutableBytesPtr, ColumnStatistics> columnStats = Maps.newHashMap();
+        long familyRowCount = 0;
+        try (ResultScanner scanner = statsHTable.getScanner(s)) {
+            Result result = null;
+            while ((result = scanner.next()) != null) {
+                CellScanner cellScanner = result.cellScanner();
+                while (cellScanner.advance()) {
+                    Cell cell = cellScanner.current();
+                    if (Bytes.equals(cell.getQualifierArray(), cell.getQualifierOffset(),
+                            cell.getQualifierLength(), PhoenixDatabaseMetaData.GUIDE_POSTS_ROW_COUNT_BYTES, 0,
+                            PhoenixDatabaseMetaData.GUIDE_POSTS_ROW_COUNT_BYTES.length)) {
+                        familyRowCount += PLong.INSTANCE.getCodec().decodeLong(cell.getValueArray(),
+                                cell.getValueOffset(), SortOrder.getDefault());
+                        continue;
+                    }
+                    if (!isColumnStatsQualifier(cell)) {
+                        continue;
+                    }
+                    ImmutableBytesPtr qualifier = new ImmutableBytesPtr(ByteUtil.copyKeyBytesIfNecessary(
+                        new ImmutableBytesWritable(cell.getQualifierArray(), cell.getQualifierOffset() + 1,
+                                cell.getQualifierLength() - 1)));
+                    ColumnStatistics stats = ColumnStatistics.fromBytes(cell.getValueArray(),
+                        cell.getValueOffset(), cell.getValueLength());
+                    ColumnStatistics existing = columnStats.get(qualifier);
+                    columnStats.put(qualifier, existing == null ? stats : existing.merge(stats));
+                }
+            }
+        }
+        // Account for the regions in which a column has no value
+        for (Map.Entry<ImmutableBytesPtr, ColumnStatistics> entry : columnStats.entrySet()) {
+            entry.setValue(entry.getValue().withFamilyRowCount(familyRowCount));
+        }
+        return columnStats;
     }
 
     public static long getGuidePostDepth(int guidepostPerRegion, long guidepostWidth, HTableDescriptor tableDesc) {
@@ -211,6 +291,26 @@ public class StatisticsUtil {
         }
     }
     
+    /**
+     * Derive the guidepost width of a column family of a region so that it holds roughly the
+     * target number of guideposts. Regions serving more reads than their peers get proportionally more (at most
+     * twice as many) guideposts, so that queries against them are split into more chunks, while
+     * cold regions get fewer (at most half as many).
+     * @param storeSize the size in bytes of the store files of the column family in the region
+     * @param accessRatio the read request count of the region relative to the average of the
+     *        regions of the same table, or {@link Double#NaN} if unknown
+     * @param targetPerRegion the targeted number of guideposts for a region of average load
+     * @param minWidth the minimum guidepost width, which caps the number of guideposts
+     * @param maxWidth the maximum guidepost width
+     */
+    public static long getAdaptiveGuidePostDepth(long storeSize, double accessRatio, int targetPerRegion,
+            long minWidth, long maxWidth) {
+        double accessFactor = Double.isNaN(accessRatio) ? 1 : Math.min(2, Math.max(0.5, accessRatio));
+        long target = Math.max(1, Math.round(targetPerRegion * accessFactor));
+        long width = storeSize / target;
+        return Math.max(minWidth, Math.min(maxWidth, width));
+    }
+
     public static byte[] getGuidePostsInfoFromRowKey(byte[] tableNameBytes, byte[] fam, byte[] row) {
 	    if (row.length > tableNameBytes.length + 1 + fam.length) {
     		ImmutableBytesWritable ptr = new ImmutableBytesWritable();
@@ -29,7 +29,9 @@ import java.security.PrivilegedExceptionAction;
 import java.sql.Date;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
+import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.DoNotRetryIOException;
 import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.client.Delete;
@@ -53,6 +55,7 @@ import org.apache.phoenix.coprocessor.MetaDataProtocol;
 import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
 import org.apache.phoenix.jdbc.PhoenixDatabaseMetaData;
 import org.apache.phoenix.query.QueryConstants;
+import org.apache.phoenix.schema.SortOrder;
 import org.apache.phoenix.schema.types.PDate;
 import org.apache.phoenix.schema.types.PLong;
 import org.apache.phoenix.util.ByteUtil;
@@ -132,16 +135,27 @@ public class StatisticsWriter implements Closeable {
      *             if we fail to do any of the puts. Any single failure will prevent any future attempts for the
      *             remaining list of stats to update
      */
-    @SuppressWarnings("deprecation")
     public void addStats(StatisticsCollector tracker, ImmutableBytesPtr cfKey, List<Mutation> mutations)
             throws IOException {
+        addStats(tracker, cfKey, mutations, true);
+    }
+
+    /**
+     * Update a list of statistics for a given region, optionally leaving the last stats update
+     * time untouched as in {@link #commitStats(List, StatisticsCollector, boolean)}.
+     */
+    @SuppressWarnings("deprecation")
+    public void addStats(StatisticsCollector tracker, ImmutableBytesPtr cfKey, List<Mutation> mutations,
+            boolean updateLastStatsTime) throws IOException {
         if (tracker == null) { return; }
         boolean useMaxTimeStamp = clientTimeStamp == DefaultStatisticsCollector.NO_TIMESTAMP;
         long timeStamp = clientTimeStamp;
         if (useMaxTimeStamp) { // When using max timestamp, we write the update time later because we only know the ts
                                // now
             timeStamp = tracker.getMaxTimeStamp();
-            mutations.add(getLastStatsUpdatedTimePut(timeStamp));
+            if (updateLastStatsTime) {
+                mutations.add(getLastStatsUpdatedTimePut(timeStamp));
+            }
         }
         GuidePostsInfo gps = tracker.getGuidePosts(cfKey);
         if (gps != null) {
@@ -184,6 +198,36 @@ public class StatisticsWriter implements Closeable {
         }
     }
     
+    /**
+     * Add the per column statistics collected for the given region, if any.
+     */
+    public void addColumnStats(Region region, StatisticsCollector tracker, ImmutableBytesPtr cfKey,
+            List<Mutation> mutations) throws IOException {
+        if (tracker == null) { return; }
+        Map<ImmutableBytesPtr, ColumnStatistics> columnStats = tracker.getColumnStatistics(cfKey);
+        // Written even when no column has a value, as the null fraction of the columns is
+        // computed against the rows of the family in all regions
+        long rowCount = tracker.getColumnStatisticsRowCount(cfKey);
+        if (columnStats == null || (columnStats.isEmpty() && rowCount == 0)) {
+            return;
+        }
+        long timeStamp = clientTimeStamp == DefaultStatisticsCollector.NO_TIMESTAMP
+                ? tracker.getMaxTimeStamp() : clientTimeStamp;
+        byte[] rowKey = StatisticsUtil.getRowKey(tableName, StatisticsUtil.getColumnStatsFamily(cfKey),
+            region.getRegionInfo().getStartKey());
+        Put put = new Put(rowKey);
+        for (Map.Entry<ImmutableBytesPtr, ColumnStatistics> entry : columnStats.entrySet()) {
+            put.addColumn(QueryConstants.DEFAULT_COLUMN_FAMILY_BYTES,
+                StatisticsUtil.getColumnStatsQualifier(entry.getKey()), timeStamp, entry.getValue().toBytes());
+        }
+        put.addColumn(QueryConstants.DEFAULT_COLUMN_FAMILY_BYTES, PhoenixDatabaseMetaData.GUIDE_POSTS_ROW_COUNT_BYTES,
+                timeStamp, PLong.INSTANCE.toBytes(rowCount));
+        // Add our empty column value so queries behave correctly
+        put.addColumn(QueryConstants.DEFAULT_COLUMN_FAMILY_BYTES, QueryConstants.EMPTY_COLUMN_BYTES, timeStamp,
+                ByteUtil.EMPTY_BYTE_ARRAY);
+        mutations.add(put);
+    }
+
     @SuppressWarnings("deprecation")
     private void addGuidepost(ImmutableBytesPtr cfKey, List<Mutation> mutations, ImmutableBytesWritable ptr, long byteCount, long rowCount, long timeStamp) {
         byte[] prefix = StatisticsUtil.getRowKey(tableName, cfKey, ptr);
@@ -211,10 +255,22 @@ public class StatisticsWriter implements Closeable {
 
     public void commitStats(final List<Mutation> mutations, final StatisticsCollector statsCollector)
             throws IOException {
+        commitStats(mutations, statsCollector, true);
+    }
+
+    /**
+     * Commit the stats mutations, optionally leaving the last stats update time untouched. The
+     * latter is used when merging in stats for flushed data, as the region as a whole has not
+     * been analyzed.
+     */
+    public void commitStats(final List<Mutation> mutations, final StatisticsCollector statsCollector,
+            final boolean updateLastStatsTime) throws IOException {
         User.runAsLoginUser(new PrivilegedExceptionAction<Void>() {
             @Override
             public Void run() throws Exception {
-                commitLastStatsUpdatedTime(statsCollector);
+                if (updateLastStatsTime) {
+                    commitLastStatsUpdatedTime(statsCollector);
+                }
                 if (mutations.size() > 0) {
                     byte[] row = mutations.get(0).getRow();
                     MutateRowsRequest.Builder mrmBuilder = MutateRowsRequest.newBuilder();
@@ -251,23 +307,69 @@ public class StatisticsWriter implements Closeable {
         statsWriterTable.put(put);
     }
 
-    public void deleteStatsForRegion(Region region, StatisticsCollector tracker, ImmutableBytesPtr fam,
-            List<Mutation> mutations) throws IOException {
-        long timeStamp =
-                clientTimeStamp == DefaultStatisticsCollector.NO_TIMESTAMP
-                        ? tracker.getMaxTimeStamp() : clientTimeStamp;
+    /**
+     * Read the guideposts currently stored for the given region and column family.
+     * @return the guideposts of the region, excluding the empty guidepost indicator
+     */
+    public GuidePostsInfo readStatsForRegion(Region region, ImmutableBytesPtr fam) throws IOException {
         byte[] startKey = region.getRegionInfo().getStartKey();
         byte[] stopKey = region.getRegionInfo().getEndKey();
-        List<Result> statsForRegion = new ArrayList<Result>();
+        byte[] famBytes = fam.copyBytesIfNecessary();
         Scan s =
                 MetaDataUtil.newTableRowsScan(getAdjustedKey(startKey, tableName, fam, false),
                     getAdjustedKey(stopKey, tableName, fam, true),
                     MetaDataProtocol.MIN_TABLE_TIMESTAMP, clientTimeStamp);
-        s.addColumn(QueryConstants.DEFAULT_COLUMN_FAMILY_BYTES, QueryConstants.EMPTY_COLUMN_BYTES);
-        try (ResultScanner scanner = statsWriterTable.getScanner(s)) {
+        s.addColumn(QueryConstants.DEFAULT_COLUMN_FAMILY_BYTES, PhoenixDatabaseMetaData.GUIDE_POSTS_WIDTH_BYTES);
+        s.addColumn(QueryConstants.DEFAULT_COLUMN_FAMILY_BYTES, PhoenixDatabaseMetaData.GUIDE_POSTS_ROW_COUNT_BYTES);
+        GuidePostsInfoBuilder builder = new GuidePostsInfoBuilder();
+        try (ResultScanner scanner = statsReaderTable.getScanner(s)) {
             Result result = null;
             while ((result = scanner.next()) != null) {
-                statsForRegion.add(result);
+                byte[] key = StatisticsUtil.getGuidePostsInfoFromRowKey(tableName, famBytes, result.getRow());
+                if (GuidePostsInfo.isEmptyGpsKey(key)) {
+                    continue;
+                }
+                long byteCount = 0;
+                long rowCount = 0;
+                Cell cell = result.getColumnLatestCell(QueryConstants.DEFAULT_COLUMN_FAMILY_BYTES,
+                    PhoenixDatabaseMetaData.GUIDE_POSTS_WIDTH_BYTES);
+                if (cell != null) {
+                    byteCount = PLong.INSTANCE.getCodec().decodeLong(cell.getValueArray(),
+                        cell.getValueOffset(), SortOrder.getDefault());
+                }
+                cell = result.getColumnLatestCell(QueryConstants.DEFAULT_COLUMN_FAMILY_BYTES,
+                    PhoenixDatabaseMetaData.GUIDE_POSTS_ROW_COUNT_BYTES);
+                if (cell != null) {
+                    rowCount = PLong.INSTANCE.getCodec().decodeLong(cell.getValueArray(),
+                        cell.getValueOffset(), SortOrder.getDefault());
+                }
+                builder.addGuidePostOnCollection(new ImmutableBytesWritable(key), byteCount, rowCount);
+            }
+        }
+        return builder.build();
+    }
+
+    public void deleteStatsForRegion(Region region, StatisticsCollector tracker, ImmutableBytesPtr fam,
+            List<Mutation> mutations) throws IOException {
+        long timeStamp =
+                clientTimeStamp == DefaultStatisticsCollector.NO_TIMESTAMP
+                        ? tracker.getMaxTimeStamp() : clientTimeStamp;
+        byte[] startKey = region.getRegionInfo().getStartKey();
+        byte[] stopKey = region.getRegionInfo().getEndKey();
+        List<Result> statsForRegion = new ArrayList<Result>();
+        // Delete both the guideposts and the per column statistics of the region
+        for (ImmutableBytesWritable statsFam : new ImmutableBytesWritable[] { fam,
+                StatisticsUtil.getColumnStatsFamily(fam) }) {
+            Scan s =
+                    MetaDataUtil.newTableRowsScan(getAdjustedKey(startKey, tableName, statsFam, false),
+                        getAdjustedKey(stopKey, tableName, statsFam, true),
+                        MetaDataProtocol.MIN_TABLE_TIMESTAMP, clientTimeStamp);
+            s.addColumn(QueryConstants.DEFAULT_COLUMN_FAMILY_BYTES, QueryConstants.EMPTY_COLUMN_BYTES);
+            try (ResultScanner scanner = statsWriterTable.getScanner(s)) {
+                Result result = null;
+                while ((result = scanner.next()) != null) {
+                    statsForRegion.add(result);
+                }
             }
         }
         for (Result result : statsForRegion) {
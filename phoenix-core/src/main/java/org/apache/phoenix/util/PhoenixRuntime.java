@@ -33,6 +33,7 @@ import java.sql.SQLFeatureNotSupportedException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -68,9 +69,13 @@ import org.apache.phoenix.jdbc.PhoenixConnection;
 import org.apache.phoenix.jdbc.PhoenixPreparedStatement;
 import org.apache.phoenix.jdbc.PhoenixResultSet;
 import org.apache.phoenix.jdbc.PhoenixStatement;
+import org.apache.phoenix.monitoring.GlobalClientHistograms;
 import org.apache.phoenix.monitoring.GlobalClientMetrics;
 import org.apache.phoenix.monitoring.GlobalMetric;
+import org.apache.phoenix.monitoring.LatencyHistogram;
 import org.apache.phoenix.monitoring.MetricType;
+import org.apache.phoenix.monitoring.RunningQuery;
+import org.apache.phoenix.monitoring.StatementStats;
 import org.apache.phoenix.query.QueryConstants;
 import org.apache.phoenix.query.QueryServices;
 import org.apache.phoenix.schema.AmbiguousColumnException;
@@ -202,6 +207,13 @@ public class PhoenixRuntime {
     public static final String EXPLAIN_PLAN_ESTIMATE_INFO_TS_COLUMN =
             PhoenixStatement.EXPLAIN_PLAN_ESTIMATE_INFO_TS_COLUMN_ALIAS;
 
+    /**
+     * Use this column name on the row returned by explain plan result set to get the estimated cost
+     * of the plan, as used by the cost based optimizer to compare plans
+     */
+    public static final String EXPLAIN_PLAN_ESTIMATED_COST_COLUMN =
+            PhoenixStatement.EXPLAIN_PLAN_COST_ESTIMATE_COLUMN_ALIAS;
+
     /**
      * All Phoenix specific connection properties
      * TODO: use enum instead
@@ -1311,6 +1323,35 @@ public class PhoenixRuntime {
     public static Collection<GlobalMetric> getGlobalPhoenixClientMetrics() {
         return GlobalClientMetrics.getMetrics();
     }
+
+    /**
+     * Exposes the latency histograms collected at the client JVM level, from which percentiles
+     * of the latencies may be read.
+     */
+    public static Map<GlobalClientHistograms, LatencyHistogram.Snapshot> getGlobalPhoenixClientHistograms() {
+        Map<GlobalClientHistograms, LatencyHistogram.Snapshot> histograms =
+                new EnumMap<GlobalClientHistograms, LatencyHistogram.Snapshot>(GlobalClientHistograms.class);
+        for (GlobalClientHistograms histogram : GlobalClientHistograms.values()) {
+            histograms.put(histogram, histogram.getHistogram().getSnapshot());
+        }
+        return histograms;
+    }
+
+    /**
+     * Exposes the latency histograms of a physical table collected at the client JVM level.
+     * Histograms for which no latency was recorded for the table are absent from the map.
+     */
+    public static Map<GlobalClientHistograms, LatencyHistogram.Snapshot> getTablePhoenixClientHistograms(String tableName) {
+        Map<GlobalClientHistograms, LatencyHistogram.Snapshot> histograms =
+                new EnumMap<GlobalClientHistograms, LatencyHistogram.Snapshot>(GlobalClientHistograms.class);
+        for (GlobalClientHistograms histogram : GlobalClientHistograms.values()) {
+            LatencyHistogram tableHistogram = histogram.getTableHistogram(tableName);
+            if (tableHistogram != null) {
+                histograms.put(histogram, tableHistogram.getSnapshot());
+            }
+        }
+        return histograms;
+    }
     
     /**
      * 
@@ -1505,6 +1546,51 @@ public class PhoenixRuntime {
         PhoenixConnection pConn = conn.unwrap(PhoenixConnection.class);
         pConn.clearMetrics();
     }
+
+    /**
+     * Get the queries being executed through the connections sharing the query services of the
+     * given connection, along with their progress and the resources they use.
+     * 
+     * @param conn
+     * @return the running queries, empty if tracking them is disabled through
+     *         {@link QueryServices#QUERY_REGISTRY_ENABLED_ATTRIB}
+     * @throws SQLException
+     */
+    public static Collection<RunningQuery> getRunningQueries(Connection conn) throws SQLException {
+        PhoenixConnection pConn = conn.unwrap(PhoenixConnection.class);
+        return pConn.getQueryServices().getQueryRegistry().getRunningQueries();
+    }
+
+    /**
+     * Cancel a query being executed through the connections sharing the query services of the
+     * given connection. Its scans are stopped, and its result set fails with
+     * {@link org.apache.phoenix.exception.SQLExceptionCode#OPERATION_CANCELLED}.
+     * 
+     * @param conn
+     * @param queryId id of the query, as given by {@link RunningQuery#getId()}
+     * @return false if no such query is running
+     * @throws SQLException
+     */
+    public static boolean cancelQuery(Connection conn, long queryId) throws SQLException {
+        PhoenixConnection pConn = conn.unwrap(PhoenixConnection.class);
+        return pConn.getQueryServices().getQueryRegistry().cancelQuery(queryId);
+    }
+
+    /**
+     * Get the statistics of the queries executed through the connections sharing the query
+     * services of the given connection, aggregated per statement fingerprint and ordered by
+     * decreasing total execution time.
+     * 
+     * @param conn
+     * @param count maximum number of statements to return
+     * @return the statistics, empty if they are disabled through
+     *         {@link QueryServices#STATEMENT_STATS_ENABLED_ATTRIB}
+     * @throws SQLException
+     */
+    public static List<StatementStats> getTopStatements(Connection conn, int count) throws SQLException {
+        PhoenixConnection pConn = conn.unwrap(PhoenixConnection.class);
+        return pConn.getQueryServices().getQueryRegistry().getStatementStats().getTopStatements(count);
+    }
     
     /**
      * Use this utility function to ensure that a timestamp is in milliseconds across transactional and
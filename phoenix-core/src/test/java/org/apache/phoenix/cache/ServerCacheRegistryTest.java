@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.cache.ServerCacheClient.ServerCache;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.memory.GlobalMemoryManager;
+import org.apache.phoenix.memory.MemoryManager;
+import org.apache.phoenix.query.ConnectionQueryServices;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ServerCacheRegistryTest {
+    private ServerCacheClient client;
+    private ConnectionQueryServices services;
+    private MemoryManager memoryManager;
+
+    @Before
+    public void setUp() {
+        memoryManager = new GlobalMemoryManager(1000);
+        client = new ServerCacheClient(mock(PhoenixConnection.class), memoryManager);
+        services = mock(ConnectionQueryServices.class);
+        when(services.getProps()).thenReturn(ReadOnlyProps.EMPTY_PROPS);
+    }
+
+    private ServerCache newCache(long id) throws Exception {
+        return client.new ServerCache(Bytes.toBytes(id), Collections.<HRegionLocation>emptySet(),
+                new ImmutableBytesWritable(Bytes.toBytes("a")), services, memoryManager, false);
+    }
+
+    @Test
+    public void testReleasedOnceByEveryReference() throws Exception {
+        ServerCacheRegistry registry = new ServerCacheRegistry();
+        ServerCache cache = newCache(Long.MIN_VALUE | 1L);
+        assertNull(registry.acquire(cache.getId()));
+        assertSame(cache, registry.register(cache));
+        assertSame(cache, registry.acquire(cache.getId()));
+        assertEquals(1, registry.size());
+        assertFalse(registry.release(cache));
+        assertEquals(1, registry.size());
+        assertTrue(registry.release(cache));
+        assertEquals(0, registry.size());
+        assertNull(registry.acquire(cache.getId()));
+    }
+
+    @Test
+    public void testRegisterSameIdAddsReference() throws Exception {
+        ServerCacheRegistry registry = new ServerCacheRegistry();
+        ServerCache cache = newCache(Long.MIN_VALUE | 1L);
+        ServerCache sameCache = newCache(Long.MIN_VALUE | 1L);
+        assertSame(cache, registry.register(cache));
+        // Added by another query in the meantime, so the first one is shared instead
+        assertSame(cache, registry.register(sameCache));
+        // Never registered, so not holding a reference
+        assertTrue(registry.release(sameCache));
+        assertFalse(registry.release(cache));
+        assertTrue(registry.release(cache));
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    public void testRegistriesHaveDistinctIds() {
+        assertNotEquals(new ServerCacheRegistry().getRegistryId(), new ServerCacheRegistry().getRegistryId());
+    }
+}
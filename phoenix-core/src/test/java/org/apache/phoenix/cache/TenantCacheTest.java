@@ -19,6 +19,7 @@ package org.apache.phoenix.cache;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 import java.io.Closeable;
 import java.io.DataInput;
@@ -103,6 +104,25 @@ public class TenantCacheTest {
         assertEquals(2, memoryManager.getAvailableMemory());
     }
 
+    @Test
+    public void testSharedCacheSentAgainNotReferencedTwice() throws Exception {
+        int maxServerCacheTimeToLive = 10000;
+        long maxBytes = 1000;
+        GlobalMemoryManager memoryManager = new GlobalMemoryManager(maxBytes);
+        TenantCacheImpl cache = new TenantCacheImpl(memoryManager, maxServerCacheTimeToLive);
+        ImmutableBytesPtr cacheId = new ImmutableBytesPtr(Bytes.toBytes(Long.MIN_VALUE | 1L));
+        ImmutableBytesWritable cachePtr = new ImmutableBytesWritable(Bytes.toBytes("a"));
+        Closeable element = cache.addServerCache(cacheId, cachePtr, ByteUtil.EMPTY_BYTE_ARRAY, cacheFactory, true, MetaDataProtocol.PHOENIX_VERSION);
+        // Sent again by a client expecting it to have expired
+        assertSame(element, cache.addServerCache(cacheId, cachePtr, ByteUtil.EMPTY_BYTE_ARRAY, cacheFactory, true, MetaDataProtocol.PHOENIX_VERSION));
+        // Only allocated once
+        assertEquals(maxBytes-1, memoryManager.getAvailableMemory());
+        // Removed once by the client however many times it was sent
+        cache.removeServerCache(cacheId);
+        assertNull(cache.getServerCache(cacheId));
+        assertEquals(maxBytes, memoryManager.getAvailableMemory());
+    }
+
     public static class ManualTicker extends Ticker {
         public long time = 0;
         
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.filter.Filter.ReturnCode;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.query.KeyRange;
+import org.apache.phoenix.schema.PDatum;
+import org.apache.phoenix.schema.RowKeySchema;
+import org.apache.phoenix.schema.RowKeySchema.RowKeySchemaBuilder;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.types.PChar;
+import org.apache.phoenix.schema.types.PDataType;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class SkipScanLargeInListFilterTest {
+    private static final int KEY_COUNT = 10000;
+
+    private SkipScanFilter filter;
+
+    private static byte[] key(int i) {
+        return Bytes.toBytes(String.format("%08d", i));
+    }
+
+    @Before
+    public void setup() {
+        RowKeySchemaBuilder builder = new RowKeySchemaBuilder(1);
+        builder.addField(new PDatum() {
+            @Override
+            public boolean isNullable() {
+                return false;
+            }
+
+            @Override
+            public PDataType getDataType() {
+                return PChar.INSTANCE;
+            }
+
+            @Override
+            public Integer getMaxLength() {
+                return 8;
+            }
+
+            @Override
+            public Integer getScale() {
+                return null;
+            }
+
+            @Override
+            public SortOrder getSortOrder() {
+                return SortOrder.getDefault();
+            }
+        }, false, SortOrder.getDefault());
+        RowKeySchema schema = builder.build();
+        // Every even key of the key space
+        List<KeyRange> keys = Lists.newArrayListWithExpectedSize(KEY_COUNT);
+        for (int i = 0; i < KEY_COUNT; i++) {
+            keys.add(PChar.INSTANCE.getKeyRange(key(2 * i), true, key(2 * i), true));
+        }
+        List<List<KeyRange>> slots = Collections.singletonList(keys);
+        filter = new SkipScanFilter(slots, schema);
+    }
+
+    private static Cell cell(int i) {
+        return KeyValue.createFirstOnRow(key(i));
+    }
+
+    private void assertSeekTo(int row, int expectedHint) {
+        Cell cell = cell(row);
+        assertEquals(ReturnCode.SEEK_NEXT_USING_HINT, filter.filterKeyValue(cell));
+        Cell hint = filter.getNextCellHint(cell);
+        assertEquals(Bytes.toString(key(expectedHint)), Bytes.toString(CellUtil.cloneRow(hint)));
+    }
+
+    @Test
+    public void testSeekAcrossManyKeys() {
+        assertSeekTo(1, 2);
+        assertFalse(filter.filterKeyValue(cell(2)) == ReturnCode.SEEK_NEXT_USING_HINT);
+        // Jump over thousands of ranges at once
+        assertSeekTo(15001, 15002);
+        assertSeekTo(15003, 15004);
+        assertFalse(filter.filterKeyValue(cell(19998)) == ReturnCode.SEEK_NEXT_USING_HINT);
+        assertFalse(filter.filterAllRemaining());
+        assertEquals(ReturnCode.NEXT_ROW, filter.filterKeyValue(cell(19999)));
+        assertTrue(filter.filterAllRemaining());
+    }
+
+    @Test
+    public void testSerializationRoundTrip() throws Exception {
+        byte[] b = filter.toByteArray();
+        // The serialized form is computed once per filter
+        assertSame(b, filter.toByteArray());
+        SkipScanFilter deserialized = SkipScanFilter.parseFrom(b);
+        assertEquals(filter, deserialized);
+        assertEquals(KEY_COUNT, deserialized.getSlots().get(0).size());
+        KeyRange range = deserialized.getSlots().get(0).get(7);
+        assertTrue(range.isSingleKey());
+        assertEquals(Bytes.toString(key(14)), Bytes.toString(range.getLowerRange()));
+    }
+}
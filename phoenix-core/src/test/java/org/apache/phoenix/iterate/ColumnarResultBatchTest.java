@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.iterate;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class ColumnarResultBatchTest {
+    private static final byte[] CF1 = Bytes.toBytes("0");
+    private static final byte[] CF2 = Bytes.toBytes("B");
+    private static final byte[] CQ1 = Bytes.toBytes("COL1");
+    private static final byte[] CQ2 = Bytes.toBytes("COL2");
+
+    private static List<List<Cell>> newRows(int count) {
+        List<List<Cell>> rows = Lists.newArrayList();
+        for (int i = 0; i < count; i++) {
+            byte[] row = Bytes.toBytes("row" + String.format("%05d", i));
+            List<Cell> cells = Lists.newArrayList();
+            cells.add(new KeyValue(row, CF1, CQ1, 1000L, Bytes.toBytes("value" + i)));
+            if (i % 3 != 0) {
+                cells.add(new KeyValue(row, CF1, CQ2, 1000L + i, new byte[0]));
+            }
+            if (i % 2 == 0) {
+                cells.add(new KeyValue(row, CF2, CQ1, 1000L, KeyValue.Type.Put, Bytes.toBytes(i)));
+            }
+            rows.add(cells);
+        }
+        return rows;
+    }
+
+    private static void assertRoundTrip(List<List<Cell>> rows, boolean compress) throws Exception {
+        ColumnarResultBatch.Encoder encoder = new ColumnarResultBatch.Encoder();
+        for (List<Cell> row : rows) {
+            encoder.add(row);
+        }
+        assertEquals(rows.size(), encoder.getRowCount());
+        Result result = Result.create(Arrays.<Cell>asList(encoder.toCell(compress)));
+        assertTrue(ColumnarResultBatch.isBatch(result));
+        // Keyed by the last row so that a restarted scan resumes after the batch
+        assertArrayEquals(CellUtil.cloneRow(rows.get(rows.size() - 1).get(0)), result.getRow());
+
+        ColumnarResultBatch.Decoder decoder = ColumnarResultBatch.decode(result);
+        assertEquals(rows.size(), decoder.getRowCount());
+        for (List<Cell> row : rows) {
+            Cell[] cells = decoder.next().rawCells();
+            assertEquals(row.size(), cells.length);
+            for (int i = 0; i < cells.length; i++) {
+                assertEquals(row.get(i), cells[i]);
+                assertArrayEquals(CellUtil.cloneValue(row.get(i)), CellUtil.cloneValue(cells[i]));
+            }
+        }
+        assertNull(decoder.next());
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        assertRoundTrip(newRows(500), false);
+    }
+
+    @Test
+    public void testCompressedRoundTrip() throws Exception {
+        assertRoundTrip(newRows(500), true);
+    }
+
+    @Test
+    public void testSingleRow() throws Exception {
+        assertRoundTrip(newRows(1), true);
+    }
+
+    @Test
+    public void testSmallerThanKeyValues() throws Exception {
+        List<List<Cell>> rows = newRows(1000);
+        ColumnarResultBatch.Encoder encoder = new ColumnarResultBatch.Encoder();
+        for (List<Cell> row : rows) {
+            encoder.add(row);
+        }
+        assertTrue(encoder.toCell(false).getValueLength() < encoder.getRawSize() / 2);
+        assertTrue(encoder.toCell(true).getValueLength() < encoder.toCell(false).getValueLength());
+    }
+
+    @Test
+    public void testRegularResultIsNotBatch() {
+        List<Cell> row = newRows(1).get(0);
+        assertFalse(ColumnarResultBatch.isBatch(Result.create(row.subList(0, 1))));
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.iterate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class LoserTreeTest {
+    private static final Comparator<LinkedList<int[]>> BY_VALUE = new Comparator<LinkedList<int[]>>() {
+        @Override
+        public int compare(LinkedList<int[]> q1, LinkedList<int[]> q2) {
+            return Integer.compare(q1.peek()[0], q2.peek()[0]);
+        }
+    };
+
+    @Test
+    public void testNoQueues() {
+        LoserTree<int[], LinkedList<int[]>> tree =
+                new LoserTree<int[], LinkedList<int[]>>(Collections.<LinkedList<int[]>>emptyList(), BY_VALUE);
+        assertTrue(tree.isEmpty());
+        assertNull(tree.poll());
+    }
+
+    @Test
+    public void testMerge() {
+        Random random = new Random(42);
+        for (int queueCount = 1; queueCount <= 9; queueCount++) {
+            List<LinkedList<int[]>> queues = Lists.newArrayList();
+            List<Integer> expected = Lists.newArrayList();
+            for (int i = 0; i < queueCount; i++) {
+                // Some queues are empty
+                int size = random.nextInt(20);
+                List<Integer> values = Lists.newArrayList();
+                for (int j = 0; j < size; j++) {
+                    values.add(random.nextInt(10));
+                }
+                Collections.sort(values);
+                LinkedList<int[]> queue = new LinkedList<int[]>();
+                for (int value : values) {
+                    // Remember the queue of each element to check that the merge is stable
+                    queue.add(new int[] {value, i});
+                }
+                queues.add(queue);
+                expected.addAll(values);
+            }
+            Collections.sort(expected);
+            LoserTree<int[], LinkedList<int[]>> tree = new LoserTree<int[], LinkedList<int[]>>(queues, BY_VALUE);
+            int[] previous = null;
+            for (int value : expected) {
+                assertEquals(value, tree.peek()[0]);
+                int[] element = tree.poll();
+                assertEquals(value, element[0]);
+                if (previous != null && previous[0] == element[0]) {
+                    assertTrue(previous[1] <= element[1]);
+                }
+                previous = element;
+            }
+            assertTrue(tree.isEmpty());
+            assertNull(tree.poll());
+        }
+    }
+}
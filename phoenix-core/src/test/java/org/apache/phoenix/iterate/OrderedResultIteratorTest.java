@@ -16,13 +16,27 @@
  */
 package org.apache.phoenix.iterate;
 
+import static org.apache.phoenix.query.QueryConstants.SINGLE_COLUMN;
+import static org.apache.phoenix.query.QueryConstants.SINGLE_COLUMN_FAMILY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
 import java.sql.SQLException;
 import java.util.Collections;
 import java.util.List;
 
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.phoenix.expression.OrderByExpression;
+import org.apache.phoenix.expression.RowKeyExpression;
+import org.apache.phoenix.memory.GlobalMemoryManager;
+import org.apache.phoenix.schema.tuple.SingleKeyValueTuple;
+import org.apache.phoenix.schema.tuple.Tuple;
 import org.junit.Test;
 
+import com.google.common.collect.Lists;
+
 /**
  * Test class for {@link OrderedResultIterator}.
  */
@@ -38,4 +52,28 @@ public class OrderedResultIteratorTest {
       iterator.close();
   }
 
+  @Test
+  public void testSpillWhenMemoryIsShort() throws SQLException {
+      List<Tuple> results = Lists.newArrayList();
+      for (String key : new String[] {"c", "a", "e", "b", "d"}) {
+          results.add(new SingleKeyValueTuple(
+                  new KeyValue(Bytes.toBytes(key), SINGLE_COLUMN_FAMILY, SINGLE_COLUMN, Bytes.toBytes(1))));
+      }
+      List<OrderByExpression> orderByExpressions = Collections.singletonList(
+              new OrderByExpression(RowKeyExpression.INSTANCE, false, true));
+      // Too little memory to hold any row, so that the rows are buffered up to the spool
+      // threshold rather than spilled one at a time
+      GlobalMemoryManager memoryManager = new GlobalMemoryManager(1);
+      OrderedResultIterator iterator = new OrderedResultIterator(new MaterializedResultIterator(results),
+              orderByExpressions, Integer.MAX_VALUE, null, null, 0, memoryManager);
+      ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+      for (String key : new String[] {"a", "b", "c", "d", "e"}) {
+          iterator.next().getKey(ptr);
+          assertEquals(key, Bytes.toString(ptr.copyBytes()));
+      }
+      assertNull(iterator.next());
+      iterator.close();
+      assertEquals(memoryManager.getMaxMemory(), memoryManager.getAvailableMemory());
+  }
+
 }
@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.iterate;
+
+import static org.apache.phoenix.query.QueryConstants.SINGLE_COLUMN;
+import static org.apache.phoenix.query.QueryConstants.SINGLE_COLUMN_FAMILY;
+import static org.apache.phoenix.query.QueryConstants.UNGROUPED_AGG_ROW_KEY;
+import static org.apache.phoenix.util.TestUtil.TEST_PROPERTIES;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.RowKeyExpression;
+import org.apache.phoenix.expression.aggregator.ClientAggregators;
+import org.apache.phoenix.expression.aggregator.ServerAggregators;
+import org.apache.phoenix.memory.GlobalMemoryManager;
+import org.apache.phoenix.query.BaseConnectionlessQueryTest;
+import org.apache.phoenix.schema.tuple.SingleKeyValueTuple;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.schema.types.PLong;
+import org.apache.phoenix.util.AssertResults;
+import org.apache.phoenix.util.PropertiesUtil;
+import org.apache.phoenix.util.TestUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Test class for {@link PartitionedAggregatingResultIterator}.
+ */
+public class PartitionedAggregatingResultIteratorTest extends BaseConnectionlessQueryTest {
+    private static final int PARTITION_COUNT = 3;
+
+    private ExecutorService executor;
+    private GlobalMemoryManager memoryManager;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(PARTITION_COUNT);
+        memoryManager = new GlobalMemoryManager(Integer.MAX_VALUE);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private static Tuple newTuple(String key, long value) {
+        return new SingleKeyValueTuple(
+                new KeyValue(Bytes.toBytes(key), SINGLE_COLUMN_FAMILY, SINGLE_COLUMN, PLong.INSTANCE.toBytes(value)));
+    }
+
+    private static Tuple newTuple(byte[] key, long value) {
+        return new SingleKeyValueTuple(
+                new KeyValue(key, SINGLE_COLUMN_FAMILY, SINGLE_COLUMN, PLong.INSTANCE.toBytes(value)));
+    }
+
+    private ResultIterator newIterator(List<Tuple> rows, List<Expression> groupByExpressions,
+            ClientAggregators clientAggregators, int thresholdBytes, ExecutorService executor) {
+        byte[] serializedAggregators = ServerAggregators.serialize(
+                Arrays.asList(clientAggregators.getFunctions()), clientAggregators.getMinNullableIndex());
+        Configuration conf = new Configuration(false);
+        List<ServerAggregators> partitionAggregators = Lists.newArrayList();
+        for (int i = 0; i < PARTITION_COUNT; i++) {
+            partitionAggregators.add(ServerAggregators.deserialize(serializedAggregators, conf, null));
+        }
+        return new PartitionedAggregatingResultIterator(new MaterializedResultIterator(rows), groupByExpressions,
+                partitionAggregators, conf, thresholdBytes, memoryManager, executor);
+    }
+
+    private List<Tuple> newGroupedRows(long[] sums) {
+        List<Tuple> rows = Lists.newArrayList();
+        for (int i = 0; i < 1000; i++) {
+            rows.add(newTuple(Character.toString((char)('e' - i % 5)), i));
+            sums[4 - i % 5] += i;
+        }
+        return rows;
+    }
+
+    private void assertGroupedAggregation(int thresholdBytes, ExecutorService executor) throws Exception {
+        long[] sums = new long[5];
+        List<Tuple> rows = newGroupedRows(sums);
+        ClientAggregators aggregators = TestUtil.getSingleSumAggregator(getUrl(), PropertiesUtil.deepCopy(TEST_PROPERTIES));
+        ResultIterator iterator = new GroupedAggregatingResultIterator(LookAheadResultIterator.wrap(
+                newIterator(rows, Collections.<Expression> singletonList(RowKeyExpression.INSTANCE), aggregators,
+                        thresholdBytes, executor)), aggregators);
+        Tuple[] expectedResults = new Tuple[5];
+        for (int i = 0; i < 5; i++) {
+            expectedResults[i] = newTuple(Character.toString((char)('a' + i)), sums[i]);
+        }
+        AssertResults.assertResults(iterator, expectedResults);
+        assertEquals(memoryManager.getMaxMemory(), memoryManager.getAvailableMemory());
+    }
+
+    @Test
+    public void testGroupedAggregation() throws Exception {
+        // Too little memory for all the groups, so that partial aggregates of a group are combined
+        assertGroupedAggregation(100, executor);
+    }
+
+    @Test
+    public void testFewerThreadsThanPartitions() throws Exception {
+        // The partitions must not wait for rows on the threads of the executor
+        ExecutorService singleThreadExecutor = Executors.newSingleThreadExecutor();
+        try {
+            assertGroupedAggregation(Integer.MAX_VALUE, singleThreadExecutor);
+        } finally {
+            singleThreadExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRejectedExecution() throws Exception {
+        // The rows are aggregated on the calling thread instead
+        ExecutorService shutdownExecutor = Executors.newSingleThreadExecutor();
+        shutdownExecutor.shutdown();
+        assertGroupedAggregation(Integer.MAX_VALUE, shutdownExecutor);
+    }
+
+    @Test
+    public void testUngroupedAggregation() throws Exception {
+        List<Tuple> rows = Lists.newArrayList();
+        long sum = 0;
+        for (int i = 0; i < 1000; i++) {
+            rows.add(newTuple(Integer.toString(i), i));
+            sum += i;
+        }
+        ClientAggregators aggregators = TestUtil.getSingleSumAggregator(getUrl(), PropertiesUtil.deepCopy(TEST_PROPERTIES));
+        ResultIterator iterator = new UngroupedAggregatingResultIterator(LookAheadResultIterator.wrap(
+                newIterator(rows, Collections.<Expression> emptyList(), aggregators, Integer.MAX_VALUE, executor)),
+                aggregators);
+        AssertResults.assertResults(iterator, new Tuple[] {newTuple(UNGROUPED_AGG_ROW_KEY, sum)});
+        assertEquals(memoryManager.getMaxMemory(), memoryManager.getAvailableMemory());
+    }
+}
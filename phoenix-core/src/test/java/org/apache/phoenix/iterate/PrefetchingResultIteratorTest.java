@@ -0,0 +1,243 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.iterate;
+
+import static org.apache.phoenix.query.QueryConstants.SINGLE_COLUMN;
+import static org.apache.phoenix.query.QueryConstants.SINGLE_COLUMN_FAMILY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.memory.GlobalMemoryManager;
+import org.apache.phoenix.schema.tuple.SingleKeyValueTuple;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.util.AssertResults;
+import org.apache.phoenix.util.TestUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class PrefetchingResultIteratorTest {
+    private static final int ROW_SIZE = 100;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private static Tuple[] newTuples(int count) {
+        Tuple[] tuples = new Tuple[count];
+        for (int i = 0; i < count; i++) {
+            tuples[i] = new SingleKeyValueTuple(new KeyValue(Bytes.toBytes(i), SINGLE_COLUMN_FAMILY, SINGLE_COLUMN, Bytes.toBytes(i)));
+        }
+        return tuples;
+    }
+
+    @Test
+    public void testPrefetchedRows() throws Exception {
+        Tuple[] tuples = newTuples(1000);
+        GlobalMemoryManager memoryManager = new GlobalMemoryManager(1024 * 1024);
+        ResultIterator iterator = PrefetchingResultIterator.wrap(
+                new MaterializedResultIterator(Lists.newArrayList(tuples)), 10, ROW_SIZE, memoryManager, executor);
+        AssertResults.assertResults(iterator, tuples);
+        assertEquals(memoryManager.getMaxMemory(), memoryManager.getAvailableMemory());
+    }
+
+    @Test
+    public void testBufferBoundedByAvailableMemory() throws Exception {
+        Tuple[] tuples = newTuples(100);
+        // Only room for 2 rows rather than the 50 requested
+        GlobalMemoryManager memoryManager = new GlobalMemoryManager(2 * ROW_SIZE);
+        ResultIterator iterator = PrefetchingResultIterator.wrap(
+                new MaterializedResultIterator(Lists.newArrayList(tuples)), 50, ROW_SIZE, memoryManager, executor);
+        assertEquals(0, memoryManager.getAvailableMemory());
+        AssertResults.assertResults(iterator, tuples);
+        assertEquals(memoryManager.getMaxMemory(), memoryManager.getAvailableMemory());
+    }
+
+    @Test
+    public void testCloseBeforeExhausted() throws Exception {
+        Tuple[] tuples = newTuples(1000);
+        GlobalMemoryManager memoryManager = new GlobalMemoryManager(1024 * 1024);
+        ResultIterator iterator = PrefetchingResultIterator.wrap(
+                new MaterializedResultIterator(Lists.newArrayList(tuples)), 5, ROW_SIZE, memoryManager, executor);
+        TestUtil.compareTuples(tuples[0], iterator.next());
+        iterator.close();
+        assertEquals(memoryManager.getMaxMemory(), memoryManager.getAvailableMemory());
+    }
+
+    @Test
+    public void testReusedTuple() throws Exception {
+        final Tuple[] tuples = newTuples(100);
+        // Returns the same tuple for every row, which iterators are allowed to do
+        ResultIterator reusing = new ResultIterator() {
+            private final SingleKeyValueTuple tuple = new SingleKeyValueTuple();
+            private int index;
+
+            @Override
+            public Tuple next() throws SQLException {
+                if (index == tuples.length) {
+                    return null;
+                }
+                tuple.setCell(tuples[index++].getValue(0));
+                return tuple;
+            }
+
+            @Override
+            public void close() throws SQLException {
+            }
+
+            @Override
+            public void explain(List<String> planSteps) {
+            }
+        };
+        ResultIterator iterator = PrefetchingResultIterator.wrap(reusing, 50, ROW_SIZE,
+                new GlobalMemoryManager(1024 * 1024), executor);
+        AssertResults.assertResults(iterator, tuples);
+        iterator.close();
+    }
+
+    @Test
+    public void testCloseDoesNotWaitForFetch() throws Exception {
+        final CountDownLatch fetchStarted = new CountDownLatch(1);
+        final CountDownLatch fetchReleased = new CountDownLatch(1);
+        final CountDownLatch delegateClosed = new CountDownLatch(1);
+        ResultIterator blocking = new ResultIterator() {
+            @Override
+            public Tuple next() throws SQLException {
+                fetchStarted.countDown();
+                try {
+                    fetchReleased.await();
+                } catch (InterruptedException e) {
+                    throw new SQLException(e);
+                }
+                return null;
+            }
+
+            @Override
+            public void close() throws SQLException {
+                delegateClosed.countDown();
+            }
+
+            @Override
+            public void explain(List<String> planSteps) {
+            }
+        };
+        GlobalMemoryManager memoryManager = new GlobalMemoryManager(1024 * 1024);
+        ResultIterator iterator = PrefetchingResultIterator.wrap(blocking, 10, ROW_SIZE, memoryManager, executor);
+        assertTrue(fetchStarted.await(10, TimeUnit.SECONDS));
+        iterator.close();
+        assertEquals(memoryManager.getMaxMemory(), memoryManager.getAvailableMemory());
+        // Closed by the fetch once it is done with the delegate
+        assertFalse(delegateClosed.await(100, TimeUnit.MILLISECONDS));
+        fetchReleased.countDown();
+        assertTrue(delegateClosed.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testFetchFailure() throws Exception {
+        final Tuple[] tuples = newTuples(2);
+        ResultIterator failing = new ResultIterator() {
+            private int index;
+
+            @Override
+            public Tuple next() throws SQLException {
+                if (index < tuples.length) {
+                    return tuples[index++];
+                }
+                throw new SQLException("fetch failed");
+            }
+
+            @Override
+            public void close() throws SQLException {
+            }
+
+            @Override
+            public void explain(List<String> planSteps) {
+            }
+        };
+        ResultIterator iterator = PrefetchingResultIterator.wrap(failing, 10, ROW_SIZE,
+                new GlobalMemoryManager(1024 * 1024), executor);
+        TestUtil.compareTuples(tuples[0], iterator.next());
+        TestUtil.compareTuples(tuples[1], iterator.next());
+        try {
+            iterator.next();
+            fail();
+        } catch (SQLException e) {
+            assertEquals("fetch failed", e.getMessage());
+        }
+        assertNull(iterator.next());
+        iterator.close();
+    }
+
+    @Test
+    public void testFetchError() throws Exception {
+        ResultIterator failing = new ResultIterator() {
+            @Override
+            public Tuple next() throws SQLException {
+                throw new OutOfMemoryError("fetch failed");
+            }
+
+            @Override
+            public void close() throws SQLException {
+            }
+
+            @Override
+            public void explain(List<String> planSteps) {
+            }
+        };
+        ResultIterator iterator = PrefetchingResultIterator.wrap(failing, 10, ROW_SIZE,
+                new GlobalMemoryManager(1024 * 1024), executor);
+        try {
+            iterator.next();
+            fail();
+        } catch (SQLException e) {
+            assertTrue(e.getCause() instanceof OutOfMemoryError);
+        }
+        iterator.close();
+    }
+
+    @Test
+    public void testNoPrefetchWithoutMemory() throws Exception {
+        Tuple[] tuples = newTuples(10);
+        GlobalMemoryManager memoryManager = new GlobalMemoryManager(ROW_SIZE);
+        memoryManager.allocate(ROW_SIZE);
+        ResultIterator delegate = new MaterializedResultIterator(Lists.newArrayList(tuples));
+        assertSame(delegate, PrefetchingResultIterator.wrap(delegate, 10, ROW_SIZE, memoryManager, executor));
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.iterate;
+
+import static org.apache.phoenix.query.QueryConstants.SINGLE_COLUMN;
+import static org.apache.phoenix.query.QueryConstants.SINGLE_COLUMN_FAMILY;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.expression.BaseTerminalExpression;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.OrderByExpression;
+import org.apache.phoenix.expression.visitor.ExpressionVisitor;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.tuple.SingleKeyValueTuple;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.schema.types.PVarbinary;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Test class for {@link SortKeyEncoder}.
+ */
+public class SortKeyEncoderTest {
+
+    /** Evaluates to the row key or to the value of a row, an empty one being null. */
+    private static class TestExpression extends BaseTerminalExpression {
+        private final boolean isValue;
+        private final SortOrder sortOrder;
+
+        TestExpression(boolean isValue, SortOrder sortOrder) {
+            this.isValue = isValue;
+            this.sortOrder = sortOrder;
+        }
+
+        @Override
+        public boolean evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
+            if (isValue) {
+                Cell cell = tuple.getValue(0);
+                ptr.set(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength());
+            } else {
+                tuple.getKey(ptr);
+            }
+            return true;
+        }
+
+        @Override
+        public PDataType getDataType() {
+            return PVarbinary.INSTANCE;
+        }
+
+        @Override
+        public SortOrder getSortOrder() {
+            return sortOrder;
+        }
+
+        @Override
+        public <T> T accept(ExpressionVisitor<T> visitor) {
+            return null;
+        }
+    }
+
+    private static Tuple newTuple(String key, String value) {
+        return new SingleKeyValueTuple(
+                new KeyValue(Bytes.toBytes(key), SINGLE_COLUMN_FAMILY, SINGLE_COLUMN, Bytes.toBytes(value)));
+    }
+
+    private static List<String> sort(List<OrderByExpression> orderByExpressions, String... keys) {
+        final SortKeyEncoder encoder = new SortKeyEncoder(orderByExpressions);
+        List<Tuple> tuples = Lists.newArrayList();
+        for (String key : keys) {
+            tuples.add(newTuple(key, ""));
+        }
+        Collections.sort(tuples, new Comparator<Tuple>() {
+            @Override
+            public int compare(Tuple t1, Tuple t2) {
+                return Bytes.compareTo(encoder.encode(t1), encoder.encode(t2));
+            }
+        });
+        List<String> sortedKeys = Lists.newArrayList();
+        ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+        for (Tuple tuple : tuples) {
+            tuple.getKey(ptr);
+            sortedKeys.add(Bytes.toString(ptr.copyBytes()));
+        }
+        return sortedKeys;
+    }
+
+    private static List<OrderByExpression> orderBy(SortOrder sortOrder, boolean isNullsLast, boolean isAscending) {
+        Expression expression = new TestExpression(false, sortOrder);
+        return Collections.singletonList(new OrderByExpression(expression, isNullsLast, isAscending));
+    }
+
+    @Test
+    public void testAscending() {
+        assertEquals(Arrays.asList("", "a", "a\0", "ab", "b", "c"),
+                sort(orderBy(SortOrder.ASC, false, true), "b", "", "ab", "a\0", "c", "a"));
+        assertEquals(Arrays.asList("a", "a\0", "ab", "b", "c", ""),
+                sort(orderBy(SortOrder.ASC, true, true), "b", "", "ab", "a\0", "c", "a"));
+    }
+
+    @Test
+    public void testDescending() {
+        assertEquals(Arrays.asList("c", "b", "ab", "a\0", "a", ""),
+                sort(orderBy(SortOrder.ASC, true, false), "b", "", "ab", "a\0", "c", "a"));
+        assertEquals(Arrays.asList("", "c", "b", "ab", "a\0", "a"),
+                sort(orderBy(SortOrder.ASC, false, false), "b", "", "ab", "a\0", "c", "a"));
+    }
+
+    @Test
+    public void testDescSortOrderVarLength() {
+        // A shorter value sorts after the longer values it is a prefix of
+        assertEquals(Arrays.asList("", "a\0", "ab", "a\u007f", "a", "b"),
+                sort(orderBy(SortOrder.DESC, false, true), "b", "a", "", "ab", "a\u007f", "a\0"));
+        assertEquals(Arrays.asList("b", "a", "a\u007f", "ab", "a\0", ""),
+                sort(orderBy(SortOrder.DESC, true, false), "b", "a", "", "ab", "a\u007f", "a\0"));
+    }
+
+    @Test
+    public void testMultipleColumns() {
+        List<OrderByExpression> orderByExpressions = Arrays.asList(
+                new OrderByExpression(new TestExpression(false, SortOrder.ASC), false, true),
+                new OrderByExpression(new TestExpression(true, SortOrder.ASC), false, false));
+        SortKeyEncoder encoder = new SortKeyEncoder(orderByExpressions);
+        // The first column must not run into the second one
+        byte[] az = encoder.encode(newTuple("a", "z"));
+        byte[] ab = encoder.encode(newTuple("a", "b"));
+        byte[] aba = encoder.encode(newTuple("ab", "a"));
+        assertEquals(-1, Integer.signum(Bytes.compareTo(az, ab)));
+        assertEquals(-1, Integer.signum(Bytes.compareTo(ab, aba)));
+        assertEquals(0, Bytes.compareTo(az, encoder.encode(newTuple("a", "z"))));
+    }
+}
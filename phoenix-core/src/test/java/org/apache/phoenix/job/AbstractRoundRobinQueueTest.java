@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.job;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class AbstractRoundRobinQueueTest {
+
+    /*
+     * Elements are strings whose first character identifies the producer
+     */
+    private static class TestQueue extends AbstractRoundRobinQueue<String> {
+        TestQueue() {
+            super(100);
+        }
+
+        @Override
+        protected Object extractProducer(String o) {
+            return o.charAt(0);
+        }
+    }
+
+    @Test
+    public void testRemove() {
+        TestQueue queue = new TestQueue();
+        queue.offer("a1");
+        queue.offer("a2");
+        queue.offer("b1");
+        queue.offer("c1");
+        assertEquals(4, queue.size());
+
+        assertTrue(queue.remove("b1"));
+        assertFalse(queue.remove("b1"));
+        assertTrue(queue.remove("a2"));
+        assertEquals(2, queue.size());
+
+        assertEquals("a1", queue.poll());
+        assertEquals("c1", queue.poll());
+        assertNull(queue.poll());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void testRoundRobinAfterRemove() {
+        TestQueue queue = new TestQueue();
+        queue.offer("a1");
+        queue.offer("a2");
+        queue.offer("b1");
+        queue.offer("b2");
+        queue.offer("c1");
+        queue.offer("c2");
+        assertEquals("a1", queue.poll());
+        assertEquals("b1", queue.poll());
+        // Removing the last element of a producer keeps the round robin order of the others
+        assertTrue(queue.remove("a2"));
+        assertEquals("c1", queue.poll());
+        assertEquals("b2", queue.poll());
+        assertEquals("c2", queue.poll());
+        assertNull(queue.poll());
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.log;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.phoenix.query.QueryServices;
+import org.junit.Test;
+
+public class QueryLogSamplerTest {
+
+    private static int countSampled(QueryLogSampler sampler, String statement, int executions, double sampleRate) {
+        int sampled = 0;
+        for (int i = 0; i < executions; i++) {
+            if (sampler.isSampled(statement, sampleRate)) {
+                sampled++;
+            }
+        }
+        return sampled;
+    }
+
+    @Test
+    public void testSamplingPerStatement() {
+        QueryLogSampler sampler = new QueryLogSampler(new Configuration(false));
+        assertEquals(100, countSampled(sampler, "SELECT * FROM T", 100, 1.0));
+        assertEquals(0, countSampled(sampler, "SELECT * FROM T", 100, 0.0));
+        sampler = new QueryLogSampler(new Configuration(false));
+        assertEquals(10, countSampled(sampler, "SELECT * FROM T", 100, 0.1));
+        // The first execution of a statement is always sampled
+        assertTrue(sampler.isSampled("SELECT * FROM U", 0.1));
+        assertFalse(sampler.isSampled("SELECT * FROM U", 0.1));
+    }
+
+    @Test
+    public void testSlowAndFailedQueries() {
+        QueryLogSampler sampler = new QueryLogSampler(new Configuration(false));
+        assertFalse(sampler.isSlowQueryLoggingEnabled());
+        assertFalse(sampler.isLoggedAnyway(true, Long.MAX_VALUE));
+
+        Configuration conf = new Configuration(false);
+        conf.setLong(QueryServices.LOG_SLOW_QUERY_THRESHOLD_MS_ATTRIB, 1000);
+        sampler = new QueryLogSampler(conf);
+        assertTrue(sampler.isSlowQueryLoggingEnabled());
+        assertFalse(sampler.isLoggedAnyway(false, 999));
+        assertTrue(sampler.isLoggedAnyway(false, 1000));
+        assertTrue(sampler.isLoggedAnyway(true, 0));
+    }
+}
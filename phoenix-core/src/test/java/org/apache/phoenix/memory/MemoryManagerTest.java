@@ -17,6 +17,8 @@
  */
 package org.apache.phoenix.memory;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.spy;
@@ -25,9 +27,11 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.phoenix.coprocessor.GroupedAggregateRegionObserver;
 import org.apache.phoenix.memory.MemoryManager.MemoryChunk;
+import org.apache.phoenix.memory.MemoryManager.Spillable;
 import org.junit.Test;
 
 /**
@@ -179,6 +183,184 @@ public class MemoryManagerTest {
         assertTrue(gmm.getAvailableMemory() == gmm.getMaxMemory());
     }
 
+    @Test
+    public void testWaitForMemoryInOrder() throws Exception {
+        final GlobalMemoryManager gmm = new GlobalMemoryManager(100, 60000);
+        MemoryChunk c1 = gmm.allocate(100);
+        final AtomicReference<MemoryChunk> bigChunk = new AtomicReference<>();
+        final AtomicReference<MemoryChunk> smallChunk = new AtomicReference<>();
+        Thread bigThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                bigChunk.set(gmm.allocate(60));
+            }
+        });
+        bigThread.start();
+        while (gmm.getWaiterCount() < 1) {
+            Thread.sleep(1);
+        }
+        Thread smallThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                smallChunk.set(gmm.allocate(30));
+            }
+        });
+        smallThread.start();
+        while (gmm.getWaiterCount() < 2) {
+            Thread.sleep(1);
+        }
+        // Enough memory for the small allocation, which must not overtake the big one
+        c1.resize(50);
+        Thread.sleep(100);
+        assertNull(bigChunk.get());
+        assertNull(smallChunk.get());
+        assertEquals(50, gmm.getAvailableMemory());
+
+        c1.close();
+        bigThread.join();
+        smallThread.join();
+        assertEquals(60, bigChunk.get().getSize());
+        assertEquals(30, smallChunk.get().getSize());
+        assertEquals(0, gmm.getWaiterCount());
+        bigChunk.get().close();
+        smallChunk.get().close();
+        assertEquals(gmm.getMaxMemory(), gmm.getAvailableMemory());
+    }
+
+    @Test
+    public void testWaitForMemoryTimeout() throws Exception {
+        GlobalMemoryManager gmm = new GlobalMemoryManager(100, 10);
+        MemoryChunk c1 = gmm.allocate(100);
+        try {
+            gmm.allocate(1);
+            fail();
+        } catch (InsufficientMemoryException e) { // expected
+        }
+        assertEquals(0, gmm.getWaiterCount());
+        c1.close();
+        assertEquals(gmm.getMaxMemory(), gmm.getAvailableMemory());
+    }
+
+    @Test
+    public void testNestedChildMemoryManager() throws Exception {
+        GlobalMemoryManager gmm = new GlobalMemoryManager(100);
+        ChildMemoryManager tenantMM = new ChildMemoryManager(gmm, 50);
+        ChildMemoryManager queryMM = new ChildMemoryManager(tenantMM, 50);
+        assertEquals(25, queryMM.getMaxMemory());
+        MemoryChunk c1 = queryMM.allocate(10, 100);
+        assertEquals(25, c1.getSize());
+        try {
+            queryMM.allocate(1);
+            fail();
+        } catch (InsufficientMemoryException e) { // expected
+        }
+        assertEquals(25, tenantMM.getAvailableMemory());
+        c1.resize(10);
+        assertEquals(15, queryMM.getAvailableMemory());
+        assertEquals(40, tenantMM.getAvailableMemory());
+        assertEquals(90, gmm.getAvailableMemory());
+        c1.close();
+        assertEquals(queryMM.getMaxMemory(), queryMM.getAvailableMemory());
+        assertEquals(tenantMM.getMaxMemory(), tenantMM.getAvailableMemory());
+        assertEquals(gmm.getMaxMemory(), gmm.getAvailableMemory());
+    }
+
+    @Test
+    public void testSpillWhenMemoryIsShort() throws Exception {
+        GlobalMemoryManager gmm = new GlobalMemoryManager(100, 0, 60000);
+        final MemoryChunk c1 = gmm.allocate(80);
+        final CountDownLatch spillRequested = new CountDownLatch(1);
+        Spillable spillable = new Spillable() {
+            @Override
+            public long getSpillableBytes() {
+                return c1.getSize();
+            }
+
+            @Override
+            public void requestSpill() {
+                spillRequested.countDown();
+            }
+        };
+        gmm.registerSpillable(spillable);
+        // Spills from its own thread once asked to
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    spillRequested.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                c1.close();
+            }
+        }).start();
+        MemoryChunk c2 = gmm.allocate(50);
+        assertEquals(50, c2.getSize());
+        assertEquals(0, c1.getSize());
+        gmm.unregisterSpillable(spillable);
+        c2.close();
+        assertEquals(gmm.getMaxMemory(), gmm.getAvailableMemory());
+    }
+
+    @Test
+    public void testNoSpillRequestWhileSpillPending() throws Exception {
+        GlobalMemoryManager gmm = new GlobalMemoryManager(100, 0, 10);
+        final MemoryChunk c1 = gmm.allocate(80);
+        final AtomicInteger spillRequests = new AtomicInteger();
+        Spillable spillable = new Spillable() {
+            @Override
+            public long getSpillableBytes() {
+                // Never spills, so the first request stays pending
+                return spillRequests.get() > 0 ? 0 : c1.getSize();
+            }
+
+            @Override
+            public void requestSpill() {
+                spillRequests.incrementAndGet();
+            }
+        };
+        gmm.registerSpillable(spillable);
+        for (int i = 0; i < 2; i++) {
+            try {
+                gmm.allocate(50);
+                fail();
+            } catch (InsufficientMemoryException e) {
+            }
+        }
+        assertEquals(1, spillRequests.get());
+        gmm.unregisterSpillable(spillable);
+        c1.close();
+        assertEquals(gmm.getMaxMemory(), gmm.getAvailableMemory());
+    }
+
+    @Test
+    public void testNoSpillRequestWithoutWait() throws Exception {
+        GlobalMemoryManager gmm = new GlobalMemoryManager(100);
+        final MemoryChunk c1 = gmm.allocate(80);
+        final AtomicInteger spillRequests = new AtomicInteger();
+        Spillable spillable = new Spillable() {
+            @Override
+            public long getSpillableBytes() {
+                return c1.getSize();
+            }
+
+            @Override
+            public void requestSpill() {
+                spillRequests.incrementAndGet();
+            }
+        };
+        gmm.registerSpillable(spillable);
+        try {
+            gmm.allocate(50);
+            fail();
+        } catch (InsufficientMemoryException e) {
+        }
+        assertEquals(0, spillRequests.get());
+        gmm.unregisterSpillable(spillable);
+        c1.close();
+        assertEquals(gmm.getMaxMemory(), gmm.getAvailableMemory());
+    }
+
     /**
      * Test for SpillableGroupByCache which is using MemoryManager to allocate chunks for GroupBy execution
      * @throws Exception
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.monitoring;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketBoundaries() {
+        for (long value = 0; value < 1000000; value++) {
+            int index = LatencyHistogram.getIndex(value);
+            assertTrue(value <= LatencyHistogram.getHighestEquivalentValue(index));
+            if (index > 0) {
+                assertTrue(value > LatencyHistogram.getHighestEquivalentValue(index - 1));
+            }
+        }
+    }
+
+    @Test
+    public void testSmallValuesRecordedExactly() {
+        LatencyHistogram histogram = new LatencyHistogram(1000);
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+        assertEquals(100, snapshot.getCount());
+        assertEquals(5050, snapshot.getSum());
+        assertEquals(1, snapshot.getMin());
+        assertEquals(100, snapshot.getMax());
+        assertEquals(50.5, snapshot.getMean(), 0.0);
+        assertEquals(50, snapshot.getValueAtPercentile(50));
+        assertEquals(99, snapshot.getValueAtPercentile(99));
+        assertEquals(100, snapshot.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testLargeValuesWithinRelativeError() {
+        LatencyHistogram histogram = new LatencyHistogram(1000000);
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+        assertEquals(1000000, snapshot.getMax());
+        assertEquals(500000, snapshot.getValueAtPercentile(50), 500000 * 0.02);
+        assertEquals(990000, snapshot.getValueAtPercentile(99), 990000 * 0.02);
+    }
+
+    @Test
+    public void testValuesAboveHighestTrackableValue() {
+        LatencyHistogram histogram = new LatencyHistogram(1000);
+        histogram.record(-1);
+        histogram.record(5000);
+        LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+        assertEquals(0, snapshot.getMin());
+        assertEquals(5000, snapshot.getMax());
+        assertEquals(0, snapshot.getValueAtPercentile(50));
+        assertTrue(snapshot.getValueAtPercentile(100) >= 1000);
+    }
+
+    @Test
+    public void testReset() {
+        LatencyHistogram histogram = new LatencyHistogram(1000);
+        histogram.record(10);
+        histogram.reset();
+        LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getMin());
+        assertEquals(0, snapshot.getMax());
+        assertEquals(0, snapshot.getValueAtPercentile(99));
+    }
+}
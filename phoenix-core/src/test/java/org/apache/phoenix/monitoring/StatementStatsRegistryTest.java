@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.monitoring;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.phoenix.query.QueryServices;
+import org.junit.Test;
+
+public class StatementStatsRegistryTest {
+
+    private static StatementStatsRegistry newRegistry(boolean enabled) {
+        Configuration config = new Configuration(false);
+        config.setBoolean(QueryServices.STATEMENT_STATS_ENABLED_ATTRIB, enabled);
+        config.setInt(QueryServices.STATEMENT_STATS_MAX_STATEMENTS_ATTRIB, 10);
+        return new StatementStatsRegistry(config);
+    }
+
+    @Test
+    public void testDisabled() {
+        StatementStatsRegistry registry = newRegistry(false);
+        assertNull(registry.getStatementStats("SELECT * FROM T WHERE K = ?"));
+        assertTrue(registry.getTopStatements(10).isEmpty());
+    }
+
+    @Test
+    public void testTopStatements() {
+        StatementStatsRegistry registry = newRegistry(true);
+        StatementStats fast = registry.getStatementStats("SELECT * FROM T WHERE K = ?");
+        assertSame(fast, registry.getStatementStats("SELECT * FROM T WHERE K = ?"));
+        for (int i = 0; i < 100; i++) {
+            fast.record(1, 1, 100, false);
+        }
+        StatementStats slow = registry.getStatementStats("SELECT * FROM T");
+        slow.record(1000, 1000, 100000, false);
+        slow.record(3000, 0, 0, true);
+        registry.getStatementStats("SELECT COUNT(*) FROM T").record(10, 1, 10, false);
+
+        List<StatementStats> topStatements = registry.getTopStatements(2);
+        assertEquals(2, topStatements.size());
+        assertSame(slow, topStatements.get(0));
+        assertSame(fast, topStatements.get(1));
+
+        assertEquals(2, slow.getExecutionCount());
+        assertEquals(4000, slow.getTotalTimeMs());
+        assertEquals(1, slow.getFailureCount());
+        assertEquals(1000, slow.getRowsRead());
+        assertEquals(100000, slow.getBytesRead());
+        assertEquals(100, fast.getExecutionCount());
+        assertEquals(1, fast.getLatencies().getValueAtPercentile(99));
+
+        registry.reset();
+        assertTrue(registry.getTopStatements(10).isEmpty());
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.parse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+
+import org.junit.Test;
+
+public class StatementFingerprinterTest {
+
+    private static String fingerprint(String sql) throws Exception {
+        return StatementFingerprinter.fingerprint(new SQLParser(new StringReader(sql)).parseQuery());
+    }
+
+    @Test
+    public void testLiteralsAreNormalized() throws Exception {
+        String fingerprint = fingerprint("SELECT a, b FROM t WHERE k = 1 AND v > 'foo'");
+        assertEquals(fingerprint, fingerprint("SELECT a, b FROM t WHERE k = 42 AND v > 'bar'"));
+        assertEquals(fingerprint, fingerprint("SELECT a, b FROM t WHERE k = ? AND v > ?"));
+        assertFalse(fingerprint.contains("foo"));
+        assertTrue(fingerprint.contains("?"));
+        assertNotEquals(fingerprint, fingerprint("SELECT a, b FROM t WHERE k = 1 AND v < 'foo'"));
+        assertNotEquals(fingerprint, fingerprint("SELECT a, b FROM u WHERE k = 1 AND v > 'foo'"));
+    }
+
+    @Test
+    public void testInListsAreCollapsed() throws Exception {
+        assertEquals(fingerprint("SELECT * FROM t WHERE k IN (1, 2, 3)"),
+                fingerprint("SELECT * FROM t WHERE k IN (4, 5)"));
+        assertNotEquals(fingerprint("SELECT * FROM t WHERE k IN (1, 2, 3)"),
+                fingerprint("SELECT * FROM t WHERE k NOT IN (1, 2, 3)"));
+    }
+
+    @Test
+    public void testSubqueriesAreNormalized() throws Exception {
+        assertEquals(fingerprint("SELECT * FROM t WHERE k IN (SELECT k FROM u WHERE v = 1)"),
+                fingerprint("SELECT * FROM t WHERE k IN (SELECT k FROM u WHERE v = 2)"));
+    }
+
+    @Test
+    public void testSelectExpressionsAreNormalized() throws Exception {
+        assertEquals(fingerprint("SELECT a + 1, CAST('2018-01-01' AS DATE) FROM t"),
+                fingerprint("SELECT a + 2, CAST('2019-01-01' AS DATE) FROM t"));
+    }
+
+    @Test
+    public void testMutationsAreNormalizedFromTokens() throws Exception {
+        String fingerprint = StatementFingerprinter.fingerprint("UPSERT INTO t(k, v) VALUES (1, 'foo')");
+        assertEquals("UPSERT INTO t ( k , v ) VALUES ( ? , ? )", fingerprint);
+        assertEquals(fingerprint, StatementFingerprinter.fingerprint("UPSERT  INTO t(k,v) VALUES (2.5, 'bar')"));
+        assertEquals(fingerprint, StatementFingerprinter.fingerprint("UPSERT INTO t(k, v) VALUES (?, :1)"));
+        assertEquals(StatementFingerprinter.fingerprint("DELETE FROM t WHERE k = 1"),
+                StatementFingerprinter.fingerprint("DELETE FROM t WHERE k = 1e3"));
+        assertNotEquals(fingerprint, StatementFingerprinter.fingerprint("UPSERT INTO u(k, v) VALUES (1, 'foo')"));
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.schema.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.schema.types.PInteger;
+import org.junit.Test;
+
+public class ColumnStatisticsTest {
+
+    private static ColumnStatistics collect(int start, int end, int distinct, long rowCount) {
+        ColumnStatistics.Builder builder = new ColumnStatistics.Builder(8);
+        for (int i = start; i < end; i++) {
+            byte[] row = Bytes.toBytes(i);
+            byte[] value = PInteger.INSTANCE.toBytes(i % distinct);
+            builder.update(row, 0, row.length, value, 0, value.length);
+            // Older versions of the same column in a row are ignored
+            builder.update(row, 0, row.length, value, 0, value.length);
+        }
+        return builder.build(rowCount);
+    }
+
+    @Test
+    public void testNullFractionAndDistinctCount() {
+        ColumnStatistics stats = collect(0, 1000, 100, 2000);
+        assertEquals(1000, stats.getNonNullCount());
+        assertEquals(0.5, stats.getNullFraction(), 0.0001);
+        assertEquals(100, stats.getDistinctCount(), 5);
+        assertEquals(0.005, stats.getEqualitySelectivity(), 0.0005);
+    }
+
+    @Test
+    public void testRangeSelectivity() {
+        ColumnStatistics stats = collect(0, 10000, 10000, 10000);
+        double selectivity = stats.getRangeSelectivity(null, true, PInteger.INSTANCE.toBytes(2500), false);
+        assertEquals(0.25, selectivity, 0.1);
+        selectivity = stats.getRangeSelectivity(PInteger.INSTANCE.toBytes(2500), true, null, true);
+        assertEquals(0.75, selectivity, 0.1);
+        assertEquals(1.0, stats.getRangeSelectivity(null, true, null, true), 0.0001);
+    }
+
+    @Test
+    public void testNoHistogramWithTooFewValues() {
+        ColumnStatistics stats = collect(0, 3, 3, 3);
+        assertTrue(stats.getHistogram().isEmpty());
+        assertTrue(stats.getRangeSelectivity(null, true, PInteger.INSTANCE.toBytes(1), false) < 0);
+    }
+
+    @Test
+    public void testMergeAndSerialization() throws Exception {
+        ColumnStatistics stats1 = collect(0, 5000, 1000, 5000);
+        ColumnStatistics stats2 = collect(5000, 10000, 1000, 6000);
+        byte[] b = stats2.toBytes();
+        ColumnStatistics deserialized = ColumnStatistics.fromBytes(b, 0, b.length);
+        assertEquals(stats2.getRowCount(), deserialized.getRowCount());
+        assertEquals(stats2.getNonNullCount(), deserialized.getNonNullCount());
+        assertEquals(stats2.getDistinctCount(), deserialized.getDistinctCount());
+        assertEquals(stats2.getHistogram().size(), deserialized.getHistogram().size());
+
+        ColumnStatistics merged = stats1.merge(deserialized);
+        assertEquals(11000, merged.getRowCount());
+        assertEquals(10000, merged.getNonNullCount());
+        // Both regions hold the same set of distinct values
+        assertEquals(1000, merged.getDistinctCount(), 50);
+        assertEquals(stats1.getHistogram().size() + stats2.getHistogram().size(), merged.getHistogram().size());
+    }
+
+    @Test
+    public void testNullFractionOverFamilyRowCount() {
+        // The column only has values in the first region, of the 4000 rows of the family
+        ColumnStatistics stats = collect(0, 1000, 100, 1000).withFamilyRowCount(4000);
+        assertEquals(4000, stats.getRowCount());
+        assertEquals(1000, stats.getNonNullCount());
+        assertEquals(0.75, stats.getNullFraction(), 0.0001);
+        // Never fewer rows than already accounted for
+        assertEquals(4000, stats.withFamilyRowCount(0).getRowCount());
+    }
+}
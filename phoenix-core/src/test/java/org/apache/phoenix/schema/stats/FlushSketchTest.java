@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.schema.stats;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.util.PrefixByteDecoder;
+import org.junit.Test;
+
+public class FlushSketchTest {
+
+    private static ImmutableBytesWritable key(String s) {
+        return new ImmutableBytesWritable(Bytes.toBytes(s));
+    }
+
+    private static List<String> keys(GuidePostsInfo info) throws Exception {
+        List<String> keys = new ArrayList<String>();
+        ImmutableBytesWritable gps = info.getGuidePosts();
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(gps.get(), gps.getOffset(), gps.getLength()));
+        PrefixByteDecoder decoder = new PrefixByteDecoder();
+        for (int i = 0; i < info.getGuidePostsCount(); i++) {
+            keys.add(Bytes.toString(decoder.decode(input).copyBytes()));
+        }
+        return keys;
+    }
+
+    @Test
+    public void testChunksBoundedByFlushSize() throws Exception {
+        // Rows of 10 bytes adding up to the flush size
+        FlushSketch sketch = new FlushSketch(FlushSketch.MAX_CHUNKS * 100L);
+        for (int i = 0; i < 10 * FlushSketch.MAX_CHUNKS; i++) {
+            sketch.update(key(String.format("%08d", i)), 10, true);
+        }
+        assertEquals(FlushSketch.MAX_CHUNKS, sketch.getChunkCount());
+    }
+
+    @Test
+    public void testRowKeysCopied() throws Exception {
+        FlushSketch sketch = new FlushSketch(FlushSketch.MAX_CHUNKS * 100L);
+        byte[] row = Bytes.toBytes("b");
+        sketch.update(new ImmutableBytesWritable(row), 100, true);
+        // The cells of a flush may be reused once flushed
+        row[0] = 'z';
+        GuidePostsInfoBuilder builder = new GuidePostsInfoBuilder();
+        builder.addGuidePostOnCollection(key("m"), 100, 10);
+        GuidePostsDelta delta = new GuidePostsDelta(builder.build(), 100);
+        sketch.mergeInto(delta);
+        GuidePostsInfo info = delta.build();
+        assertEquals("[b]", keys(info).toString());
+    }
+
+    @Test
+    public void testMergeIntoExistingGuidePosts() throws Exception {
+        GuidePostsInfoBuilder builder = new GuidePostsInfoBuilder();
+        builder.addGuidePostOnCollection(key("d"), 100, 10);
+        builder.addGuidePostOnCollection(key("m"), 100, 10);
+        // Chunks of at least 1 byte, so each row is a chunk
+        FlushSketch sketch = new FlushSketch(FlushSketch.MAX_CHUNKS);
+        sketch.update(key("a"), 10, true);
+        sketch.update(key("a"), 10, false);
+        sketch.update(key("b"), 100, true);
+        sketch.update(key("e"), 30, true);
+        GuidePostsDelta delta = new GuidePostsDelta(builder.build(), 100);
+        sketch.mergeInto(delta);
+        GuidePostsInfo info = delta.build();
+        // The flushed data before d all went into the new guidepost, so d is unchanged
+        assertEquals("[b, m]", keys(info).toString());
+        assertArrayEquals(new long[] {120, 130}, info.getByteCounts());
+        assertArrayEquals(new long[] {2, 11}, info.getRowCounts());
+    }
+}
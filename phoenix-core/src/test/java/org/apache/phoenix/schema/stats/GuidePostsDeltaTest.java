@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.schema.stats;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.util.PrefixByteDecoder;
+import org.junit.Test;
+
+public class GuidePostsDeltaTest {
+
+    private static ImmutableBytesWritable key(String s) {
+        return new ImmutableBytesWritable(Bytes.toBytes(s));
+    }
+
+    private static List<String> keys(GuidePostsInfo info) throws Exception {
+        List<String> keys = new ArrayList<String>();
+        ImmutableBytesWritable gps = info.getGuidePosts();
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(gps.get(), gps.getOffset(), gps.getLength()));
+        PrefixByteDecoder decoder = new PrefixByteDecoder();
+        for (int i = 0; i < info.getGuidePostsCount(); i++) {
+            keys.add(Bytes.toString(decoder.decode(input).copyBytes()));
+        }
+        return keys;
+    }
+
+    private static GuidePostsInfo existing() {
+        GuidePostsInfoBuilder builder = new GuidePostsInfoBuilder();
+        builder.addGuidePostOnCollection(key("d"), 100, 10);
+        builder.addGuidePostOnCollection(key("m"), 100, 10);
+        return builder.build();
+    }
+
+    @Test
+    public void testNoExistingGuidePosts() throws Exception {
+        GuidePostsDelta delta = new GuidePostsDelta(new GuidePostsInfoBuilder().build(), 100);
+        delta.update(key("a"), 60, 1);
+        delta.update(key("b"), 60, 1);
+        delta.update(key("c"), 60, 1);
+        GuidePostsInfo info = delta.build();
+        assertEquals(1, info.getGuidePostsCount());
+        assertEquals("[b]", keys(info).toString());
+        assertArrayEquals(new long[] {120}, info.getByteCounts());
+        assertArrayEquals(new long[] {2}, info.getRowCounts());
+    }
+
+    @Test
+    public void testRemainderMergedIntoExistingGuidePost() throws Exception {
+        GuidePostsDelta delta = new GuidePostsDelta(existing(), 100);
+        delta.update(key("a"), 10, 1);
+        delta.update(key("a"), 10, 0);
+        delta.update(key("e"), 30, 1);
+        GuidePostsInfo info = delta.build();
+        assertEquals("[d, m]", keys(info).toString());
+        assertArrayEquals(new long[] {120, 130}, info.getByteCounts());
+        assertArrayEquals(new long[] {11, 11}, info.getRowCounts());
+    }
+
+    @Test
+    public void testNewGuidePostsInterleaved() throws Exception {
+        GuidePostsDelta delta = new GuidePostsDelta(existing(), 100);
+        delta.update(key("b"), 100, 1);
+        delta.update(key("c"), 5, 1);
+        delta.update(key("d"), 200, 1);
+        delta.update(key("x"), 150, 1);
+        delta.update(key("y"), 50, 1);
+        GuidePostsInfo info = delta.build();
+        // A new guidepost is never created on top of an existing one and the tail remainder
+        // after the last guidepost is dropped
+        assertEquals("[b, d, x]", keys(info).toString());
+        assertArrayEquals(new long[] {100, 305, 150}, info.getByteCounts());
+        assertArrayEquals(new long[] {1, 12, 1}, info.getRowCounts());
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.schema.stats;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.util.PrefixByteDecoder;
+import org.junit.Test;
+
+public class GuidePostsInfoTest {
+
+    private static ImmutableBytesWritable key(int i) {
+        // Keys share a long prefix so that guideposts between restart points are prefix encoded
+        return new ImmutableBytesWritable(Bytes.toBytes(String.format("guidepost-%08d", i)));
+    }
+
+    private static GuidePostsInfo build(int count) {
+        GuidePostsInfoBuilder builder = new GuidePostsInfoBuilder();
+        for (int i = 0; i < count; i++) {
+            builder.addGuidePostOnCollection(key(i * 2), i, 1);
+        }
+        return builder.build();
+    }
+
+    private static String decodeAt(GuidePostsInfo info, int restartPoint) throws Exception {
+        ImmutableBytesWritable gps = info.getGuidePosts();
+        int offset = info.getRestartOffset(restartPoint);
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(gps.get(),
+                gps.getOffset() + offset, gps.getLength() - offset));
+        return Bytes.toString(new PrefixByteDecoder(info.getMaxLength()).decode(input).copyBytes());
+    }
+
+    @Test
+    public void testRestartPoints() throws Exception {
+        int count = GuidePostsInfoBuilder.RESTART_INTERVAL * 10 + 7;
+        GuidePostsInfo info = build(count);
+        for (int i = 0; i < count; i++) {
+            int expectedIndex = (i / GuidePostsInfoBuilder.RESTART_INTERVAL) * GuidePostsInfoBuilder.RESTART_INTERVAL;
+            // Exact match and key between guideposts
+            for (ImmutableBytesWritable key : new ImmutableBytesWritable[] { key(i * 2), key(i * 2 + 1) }) {
+                int restartPoint = info.getRestartPoint(key);
+                assertEquals(expectedIndex, info.getRestartGuidePostIndex(restartPoint));
+                assertEquals(Bytes.toString(key(expectedIndex * 2).copyBytes()), decodeAt(info, restartPoint));
+            }
+        }
+    }
+
+    @Test
+    public void testKeyBeforeFirstGuidePost() throws Exception {
+        GuidePostsInfo info = build(100);
+        int restartPoint = info.getRestartPoint(new ImmutableBytesWritable(Bytes.toBytes("a")));
+        assertEquals(-1, restartPoint);
+        assertEquals(0, info.getRestartOffset(restartPoint));
+        assertEquals(0, info.getRestartGuidePostIndex(restartPoint));
+        assertEquals(-1, GuidePostsInfo.NO_GUIDEPOST.getRestartPoint(key(0)));
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.schema.stats;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class StatisticsUtilTest {
+    private static final long MB = 1024 * 1024;
+
+    @Test
+    public void testAdaptiveGuidePostDepth() {
+        // Average load: store size divided by the target count
+        assertEquals(100 * MB, StatisticsUtil.getAdaptiveGuidePostDepth(10000 * MB, 1, 100, MB, 1000 * MB));
+        // Unknown load is treated as average
+        assertEquals(100 * MB, StatisticsUtil.getAdaptiveGuidePostDepth(10000 * MB, Double.NaN, 100, MB, 1000 * MB));
+        // Hot regions get up to twice as many guideposts, cold ones down to half as many
+        assertEquals(50 * MB, StatisticsUtil.getAdaptiveGuidePostDepth(10000 * MB, 10, 100, MB, 1000 * MB));
+        assertEquals(200 * MB, StatisticsUtil.getAdaptiveGuidePostDepth(10000 * MB, 0, 100, MB, 1000 * MB));
+    }
+
+    @Test
+    public void testAdaptiveGuidePostDepthBounds() {
+        // Small stores are capped by the minimum width
+        assertEquals(10 * MB, StatisticsUtil.getAdaptiveGuidePostDepth(100 * MB, 1, 100, 10 * MB, 1000 * MB));
+        assertEquals(10 * MB, StatisticsUtil.getAdaptiveGuidePostDepth(0, 1, 100, 10 * MB, 1000 * MB));
+        // Huge stores are capped by the maximum width
+        assertEquals(1000 * MB, StatisticsUtil.getAdaptiveGuidePostDepth(1000000 * MB, 1, 100, 10 * MB, 1000 * MB));
+    }
+}